@@ -0,0 +1,36 @@
+package online.ityura.springdigitallibrary.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Создаёт при старте приложения индексы каталога, которые нельзя описать через JPA @Index.
+ * Keyset-пагинация по году публикации сортирует по COALESCE(published_year, 0), id (BookCatalogSortKey),
+ * поэтому нужен индекс по выражению - обычный индекс по колонке published_year для него не используется.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class BookCatalogIndexInitializer implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookCatalogIndexInitializer.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void run(String... args) {
+        try {
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_books_published_year_id " +
+                    "ON books ((COALESCE(published_year, 0)), id)");
+        } catch (Exception e) {
+            logger.error("Не удалось создать индекс каталога по году публикации. " +
+                    "Приложение продолжит работу, но сортировка по году будет медленнее.", e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package online.ityura.springdigitallibrary.config;
+
+import online.ityura.springdigitallibrary.repository.BookRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Создаёт при старте приложения колонку books.search_vector (tsvector) и GIN-индекс для полнотекстового поиска.
+ * JPA не умеет описывать такие колонки и индексы, поэтому они создаются отдельно после генерации схемы Hibernate.
+ * Выполняется раньше DataInitializer, после создания заполняет поисковые документы существующих книг.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class BookSearchIndexInitializer implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookSearchIndexInitializer.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Override
+    public void run(String... args) {
+        try {
+            jdbcTemplate.execute("ALTER TABLE books ADD COLUMN IF NOT EXISTS search_vector tsvector");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_books_search_vector ON books USING GIN (search_vector)");
+            int updated = bookRepository.refreshMissingSearchVectors();
+            logger.info("Поисковый индекс книг готов, заполнено документов: {}", updated);
+        } catch (Exception e) {
+            logger.error("Не удалось создать поисковый индекс книг. " +
+                    "Приложение продолжит работу, но поиск книг будет недоступен.", e);
+        }
+    }
+}
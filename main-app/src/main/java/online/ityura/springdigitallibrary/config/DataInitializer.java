@@ -2,6 +2,7 @@ package online.ityura.springdigitallibrary.config;
 
 import online.ityura.springdigitallibrary.model.*;
 import online.ityura.springdigitallibrary.repository.*;
+import online.ityura.springdigitallibrary.service.BookCatalogCacheService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
@@ -12,7 +13,6 @@ import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -38,6 +38,8 @@ public class DataInitializer implements CommandLineRunner {
     private RatingRepository ratingRepository;
     @Autowired
     private ResourceLoader resourceLoader;
+    @Autowired
+    private BookCatalogCacheService bookCatalogCacheService;
     @Value("${app.images.storage-path}")
     private String storagePath;
     @Value("${app.pdf.storage-path}")
@@ -89,6 +91,11 @@ public class DataInitializer implements CommandLineRunner {
 
         // Добавление смешных отзывов к каждой второй книге
         addFunnyReviews();
+
+        // Веб-сервер уже принимает запросы - сбрасываем страницы каталога, собранные во время инициализации
+        // Книги создаются через репозиторий напрямую, поисковые документы заполняем одним запросом
+        bookRepository.refreshMissingSearchVectors();
+        bookCatalogCacheService.invalidateAll();
     }
 
     private void initializeBooks() {
@@ -758,31 +765,11 @@ public class DataInitializer implements CommandLineRunner {
     }
 
     private void updateBookRatings(Set<Long> bookIds) {
-        int updatedCount = 0;
-        for (Long bookId : bookIds) {
-            try {
-                Book book = bookRepository.findById(bookId).orElse(null);
-                if (book == null) {
-                    continue;
-                }
-
-                Double avgRating = ratingRepository.calculateAverageRating(bookId);
-                long count = ratingRepository.countByBookId(bookId);
-
-                if (avgRating != null) {
-                    book.setRatingAvg(BigDecimal.valueOf(avgRating)
-                            .setScale(2, RoundingMode.HALF_UP));
-                } else {
-                    book.setRatingAvg(BigDecimal.ZERO);
-                }
-                book.setRatingCount((int) count);
-
-                bookRepository.save(book);
-                updatedCount++;
-            } catch (Exception e) {
-                System.err.println("Error updating rating for book id " + bookId + ": " + e.getMessage());
-            }
+        if (bookIds.isEmpty()) {
+            return;
         }
+        // Сумма, количество и среднее пересчитываются одним запросом по таблице ratings
+        int updatedCount = bookRepository.recalculateRatingAggregates(bookIds);
         System.out.println("Book ratings updated: " + updatedCount + " books.");
     }
 
@@ -30,6 +30,16 @@ public class KafkaConfig {
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
+    // Пакетирование событий аналитики продюсером: ждать до linger.ms, чтобы собрать пакет до batch.size, и сжимать его
+    @Value("${app.analytics.publisher.linger-ms:20}")
+    private int lingerMs;
+
+    @Value("${app.analytics.publisher.producer-batch-size:65536}")
+    private int producerBatchSize;
+
+    @Value("${app.analytics.publisher.compression:lz4}")
+    private String compressionType;
+
     @Bean
     public ProducerFactory<String, Object> producerFactory() {
         Map<String, Object> configProps = new HashMap<>();
@@ -39,10 +49,13 @@ public class KafkaConfig {
         configProps.put(ProducerConfig.ACKS_CONFIG, "1"); // Изменено с "all" на "1" для более быстрой обработки
         configProps.put(ProducerConfig.RETRIES_CONFIG, 0); // Отключаем повторные попытки при недоступности
         // Таймауты для более graceful handling недоступности Kafka
-        configProps.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, 2000); // Не блокировать больше 2 секунд
+        configProps.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, 2000); // Не блокировать поток отправки больше 2 секунд
         configProps.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, 5000); // 5 секунд на запрос
         configProps.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, 10000); // 10 секунд на доставку
         configProps.put(ProducerConfig.CONNECTIONS_MAX_IDLE_MS_CONFIG, 540000);
+        configProps.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, producerBatchSize);
+        configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
         return new DefaultKafkaProducerFactory<>(configProps);
     }
 
@@ -0,0 +1,125 @@
+package online.ityura.springdigitallibrary.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.parameters.RequestBody;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import online.ityura.springdigitallibrary.dto.response.ErrorResponse;
+import online.ityura.springdigitallibrary.dto.response.ImportResultResponse;
+import online.ityura.springdigitallibrary.service.BulkImportService;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/v1/admin/import")
+@Tag(name = "Массовый импорт", description = "API для импорта отзывов и оценок из внешних систем (требуется роль ADMIN)")
+@SecurityRequirement(name = "Bearer Authentication")
+@RequiredArgsConstructor
+public class AdminImportController {
+
+    private final BulkImportService bulkImportService;
+
+    @Operation(
+            summary = "Импортировать отзывы",
+            description = "Принимает поток NDJSON: одна JSON-запись отзыва на строку. " +
+                    "Строки проверяются и записываются пакетами; строки с ошибками, несуществующими книгами " +
+                    "или пользователями и уже существующие отзывы пропускаются и перечисляются в ответе. " +
+                    "Повторная загрузка того же файла не создаёт дубликатов. Требуется роль ADMIN.",
+            requestBody = @RequestBody(
+                    required = true,
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                            examples = @ExampleObject(
+                                    value = """
+                                            {"bookId":1,"userId":2,"text":"Отличная книга!","createdAt":"2024-05-01T12:00:00"}
+                                            {"bookId":1,"userId":3,"text":"Не понравилась концовка"}
+                                            """
+                            )
+                    )
+            )
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Импорт выполнен",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ImportResultResponse.class),
+                            examples = @ExampleObject(
+                                    value = "{\"processed\":3,\"imported\":2,\"skipped\":1,\"errors\":[{\"line\":3,\"message\":\"Book not found with id: 999\"}]}"
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Недостаточно прав (требуется роль ADMIN)",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class),
+                            examples = @ExampleObject(value = "{\"status\":403,\"error\":\"ACCESS_DENIED\",\"message\":\"Insufficient permissions (ADMIN role required)\",\"timestamp\":\"2025-12-17T13:20:00Z\",\"path\":\"/api/v1/admin/import/reviews\"}")
+                    )
+            )
+    })
+    @PostMapping(value = "/reviews", consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<ImportResultResponse> importReviews(InputStream body) {
+        return ResponseEntity.ok(bulkImportService.importReviews(body));
+    }
+
+    @Operation(
+            summary = "Импортировать оценки",
+            description = "Принимает поток NDJSON: одна JSON-запись оценки (1-10) на строку. " +
+                    "Строки проверяются и записываются пакетами, рейтинг книг обновляется один раз на пакет; " +
+                    "строки с ошибками, несуществующими книгами или пользователями и уже существующие оценки " +
+                    "пропускаются и перечисляются в ответе. Повторная загрузка того же файла не создаёт дубликатов. " +
+                    "Требуется роль ADMIN.",
+            requestBody = @RequestBody(
+                    required = true,
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                            examples = @ExampleObject(
+                                    value = """
+                                            {"bookId":1,"userId":2,"value":9}
+                                            {"bookId":1,"userId":3,"value":6,"createdAt":"2024-05-01T12:00:00"}
+                                            """
+                            )
+                    )
+            )
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Импорт выполнен",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ImportResultResponse.class),
+                            examples = @ExampleObject(
+                                    value = "{\"processed\":2,\"imported\":1,\"skipped\":1,\"errors\":[{\"line\":2,\"message\":\"Rating must be at most 10\"}]}"
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Недостаточно прав (требуется роль ADMIN)",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class),
+                            examples = @ExampleObject(value = "{\"status\":403,\"error\":\"ACCESS_DENIED\",\"message\":\"Insufficient permissions (ADMIN role required)\",\"timestamp\":\"2025-12-17T13:20:00Z\",\"path\":\"/api/v1/admin/import/ratings\"}")
+                    )
+            )
+    })
+    @PostMapping(value = "/ratings", consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<ImportResultResponse> importRatings(InputStream body) {
+        return ResponseEntity.ok(bulkImportService.importRatings(body));
+    }
+}
@@ -18,6 +18,11 @@ import online.ityura.springdigitallibrary.model.User;
 import online.ityura.springdigitallibrary.repository.EmailVerificationTokenRepository;
 import online.ityura.springdigitallibrary.repository.PasswordResetTokenRepository;
 import online.ityura.springdigitallibrary.repository.UserRepository;
+import online.ityura.springdigitallibrary.security.CustomUserDetailsService;
+import online.ityura.springdigitallibrary.security.TokenRevocationList;
+import online.ityura.springdigitallibrary.service.BookCatalogCacheService;
+import online.ityura.springdigitallibrary.service.ReviewPageCacheService;
+import online.ityura.springdigitallibrary.service.RefreshTokenService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
@@ -41,6 +46,11 @@ public class AdminUserController {
     private final UserRepository userRepository;
     private final EmailVerificationTokenRepository emailVerificationTokenRepository;
     private final PasswordResetTokenRepository passwordResetTokenRepository;
+    private final BookCatalogCacheService bookCatalogCacheService;
+    private final ReviewPageCacheService reviewPageCacheService;
+    private final CustomUserDetailsService customUserDetailsService;
+    private final TokenRevocationList tokenRevocationList;
+    private final RefreshTokenService refreshTokenService;
 
     @Operation(
             summary = "Получить список всех пользователей",
@@ -166,6 +176,13 @@ public class AdminUserController {
         passwordResetTokenRepository.deleteByUser(user);
         
         userRepository.delete(user);
+        // Токены удалённого пользователя перестают аутентифицироваться сразу, а не по истечении TTL кэша
+        customUserDetailsService.evict(user.getEmail());
+        tokenRevocationList.revoke(user.getId());
+        refreshTokenService.revokeAllForUser(user.getId());
+        // Отзывы и оценки пользователя удаляются каскадно в БД - страницы каталога устарели
+        bookCatalogCacheService.invalidateAll();
+        reviewPageCacheService.invalidateAll();
         return ResponseEntity.noContent().build();
     }
 }
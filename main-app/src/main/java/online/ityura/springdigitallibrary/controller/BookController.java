@@ -2,11 +2,17 @@ package online.ityura.springdigitallibrary.controller;
 
 import online.ityura.springdigitallibrary.dto.event.BookViewEvent;
 import online.ityura.springdigitallibrary.dto.response.BookResponse;
+import online.ityura.springdigitallibrary.dto.response.CursorPageResponse;
 import online.ityura.springdigitallibrary.dto.response.ErrorResponse;
+import online.ityura.springdigitallibrary.dto.response.SuggestionResponse;
 import online.ityura.springdigitallibrary.model.Genre;
+import online.ityura.springdigitallibrary.model.ImageVariant;
 import online.ityura.springdigitallibrary.repository.UserRepository;
+import online.ityura.springdigitallibrary.security.AuthenticatedUser;
 import online.ityura.springdigitallibrary.service.BookImageService;
 import online.ityura.springdigitallibrary.service.BookService;
+import online.ityura.springdigitallibrary.service.BookSuggestionService;
+import online.ityura.springdigitallibrary.service.FileDeliveryService;
 import online.ityura.springdigitallibrary.service.KafkaProducerService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -18,6 +24,8 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.security.SecurityRequirements;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springdoc.core.annotations.ParameterObject;
@@ -27,13 +35,17 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 
 @Slf4j
@@ -48,6 +60,10 @@ public class BookController {
     
     private final BookImageService bookImageService;
     
+    private final BookSuggestionService bookSuggestionService;
+    
+    private final FileDeliveryService fileDeliveryService;
+    
     @Autowired(required = false)
     private KafkaProducerService kafkaProducerService;
     
@@ -62,7 +78,11 @@ public class BookController {
                     "`genre` (жанр), `createdAt` (дата добавления), `publishedYear` (год публикации), `updatedAt` (дата обновления). " +
                     "Параметр фильтрации: `genre` (опциональный, фильтрует книги по жанру). " +
                     "Примеры: `title,asc`, `ratingAvg,desc`, `author.fullName,asc`, `genre,asc`, `createdAt,desc`. " +
-                    "Пример с фильтрацией: `?genre=FICTION&page=0&size=10`."
+                    "Пример с фильтрацией: `?genre=FICTION&page=0&size=10`. " +
+                    "Каждая книга содержит `reviewCount` (количество отзывов) и в `reviews` - до 3 последних отзывов " +
+                    "с сокращённым текстом (без email автора), `description` сокращено до 300 символов. " +
+                    "Полное описание и все отзывы возвращают `GET /api/v1/books/{bookId}` " +
+                    "и `GET /api/v1/books/{bookId}/reviews`."
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -81,6 +101,120 @@ public class BookController {
         return ResponseEntity.ok(bookService.getAllBooks(pageable, genre));
     }
     
+    @Operation(
+            summary = "Получить список книг (keyset-пагинация)",
+            description = "Режим для бесконечной прокрутки: включается параметром `pagination=cursor`. " +
+                    "Вместо номера страницы используется непрозрачный курсор `cursor` из поля `nextCursor` предыдущего ответа, " +
+                    "общее количество книг не вычисляется, поэтому время ответа не зависит от глубины прокрутки. " +
+                    "Сортировка `sort`: `title`, `ratingAvg`, `createdAt` или `publishedYear` с направлением `asc`/`desc` " +
+                    "(по умолчанию `title,asc`; при передаче курсора сортировка берётся из него). " +
+                    "Размер страницы `size` от 1 до 100. Пример: `?pagination=cursor&sort=ratingAvg,desc&size=20`. " +
+                    "Доступно без авторизации."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Страница книг успешно получена",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CursorPageResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Некорректный курсор, поле сортировки или размер страницы",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class),
+                            examples = @ExampleObject(value = "{\"status\":400,\"error\":\"BAD_REQUEST\",\"message\":\"Invalid cursor\",\"timestamp\":\"2025-12-17T13:20:00Z\",\"path\":\"/api/v1/books\"}")
+                    )
+            )
+    })
+    @SecurityRequirements
+    @GetMapping(params = "pagination=cursor")
+    public ResponseEntity<CursorPageResponse<BookResponse>> getAllBooksByCursor(
+            @Parameter(description = "Жанр для фильтрации книг (опционально)", example = "FICTION")
+            @RequestParam(required = false) Genre genre,
+            @Parameter(description = "Сортировка: поле и направление", example = "ratingAvg,desc")
+            @RequestParam(required = false) String sort,
+            @Parameter(description = "Курсор из поля nextCursor предыдущего ответа (для первой страницы не передаётся)")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Размер страницы (1-100)", example = "10")
+            @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(bookService.getBooksByCursor(genre, sort, cursor, size));
+    }
+    
+    @Operation(
+            summary = "Поиск книг",
+            description = "Полнотекстовый поиск по названию, автору и описанию книги. " +
+                    "Каждое слово запроса `q` ищется как начало слова (подходит для подсказок при вводе): " +
+                    "`вой ми` найдёт «Война и мир». Результаты упорядочены по релевантности: совпадение в названии " +
+                    "важнее совпадения в имени автора, а оно - важнее совпадения в описании. " +
+                    "Параметры: `genre` (опционально), `page` и `size` (по умолчанию 0 и 10). " +
+                    "Формат книг совпадает с `GET /api/v1/books`. Пример: `?q=толстой&genre=FICTION`. " +
+                    "Доступно без авторизации."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Результаты поиска получены",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = Page.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Запрос не содержит букв или цифр",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class),
+                            examples = @ExampleObject(value = "{\"status\":400,\"error\":\"BAD_REQUEST\",\"message\":\"Search query must contain at least one letter or digit\",\"timestamp\":\"2025-12-17T13:20:00Z\",\"path\":\"/api/v1/books/search\"}")
+                    )
+            )
+    })
+    @SecurityRequirements
+    @GetMapping("/search")
+    public ResponseEntity<Page<BookResponse>> searchBooks(
+            @Parameter(description = "Поисковый запрос", example = "война и мир", required = true)
+            @RequestParam("q") String query,
+            @Parameter(description = "Жанр для фильтрации книг (опционально)", example = "FICTION")
+            @RequestParam(required = false) Genre genre,
+            @ParameterObject
+            @PageableDefault(size = 10) Pageable pageable) {
+        return ResponseEntity.ok(bookService.searchBooks(query, genre, pageable));
+    }
+    
+    @Operation(
+            summary = "Подсказки при вводе",
+            description = "Возвращает названия книг и имена авторов, слова которых начинаются с введённого текста " +
+                    "(`тол` -> «Лев Толстой», «Толстой» и книги со словом «Толстой» в названии). " +
+                    "Предыдущие слова запроса должны быть началом других слов той же подсказки: `лев тол`. " +
+                    "Подсказки отвечают из индекса в памяти без обращения к БД. " +
+                    "`limit` - количество подсказок (1-20, по умолчанию 10); пустой запрос возвращает пустой список. " +
+                    "Для полного поиска с описанием книг используйте `GET /api/v1/books/search`. " +
+                    "Доступно без авторизации."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Подсказки получены",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = SuggestionResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Некорректное значение limit",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class),
+                            examples = @ExampleObject(value = "{\"status\":400,\"error\":\"BAD_REQUEST\",\"message\":\"Limit must be between 1 and 20\",\"timestamp\":\"2025-12-17T13:20:00Z\",\"path\":\"/api/v1/books/suggestions\"}")
+                    )
+            )
+    })
+    @SecurityRequirements
+    @GetMapping("/suggestions")
+    public ResponseEntity<List<SuggestionResponse>> getSuggestions(
+            @Parameter(description = "Введённый текст", example = "лев тол", required = true)
+            @RequestParam("q") String query,
+            @Parameter(description = "Количество подсказок (1-20)", example = "10")
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(bookSuggestionService.suggest(query, limit));
+    }
+    
     @Operation(
             summary = "Получить детальную информацию о книге",
             description = "Возвращает полную информацию о книге по её ID, включая автора, рейтинг и наличие файла. " +
@@ -135,6 +269,9 @@ public class BookController {
     }
     
     private Long getCurrentUserIdOrNull(Authentication authentication) {
+        if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser authenticatedUser) {
+            return authenticatedUser.getId();
+        }
         if (authentication == null || !(authentication.getPrincipal() instanceof UserDetails userDetails)) {
             return null;
         }
@@ -151,6 +288,8 @@ public class BookController {
     @Operation(
             summary = "Получить изображение книги",
             description = "Возвращает изображение книги по её ID. " +
+                    "Ответ содержит заголовки `ETag` и `Last-Modified`: при совпадении `If-None-Match` / `If-Modified-Since` " +
+                    "возвращается `304 Not Modified`. Поддерживаются `Range` и `If-Range`. " +
                     "Доступно без авторизации."
     )
     @ApiResponses(value = {
@@ -159,6 +298,10 @@ public class BookController {
                     description = "Изображение успешно получено",
                     content = @Content(mediaType = "image/png, image/jpeg, image/jpg")
             ),
+            @ApiResponse(
+                    responseCode = "304",
+                    description = "Изображение не изменилось (совпал If-None-Match или If-Modified-Since)"
+            ),
             @ApiResponse(
                     responseCode = "404",
                     description = "Книга или изображение не найдены",
@@ -171,51 +314,54 @@ public class BookController {
     })
     @SecurityRequirements
     @GetMapping("/{bookId}/image")
-    public ResponseEntity<Resource> getBookImage(
+    public void getBookImage(
             @Parameter(description = "ID книги", example = "1", required = true)
-            @PathVariable Long bookId) {
-        Resource resource = bookImageService.getBookImage(bookId);
+            @PathVariable Long bookId,
+            @Parameter(description = "Размер изображения: THUMBNAIL (160px), CARD (480px), FULL (1200px). " +
+                    "Без параметра возвращается оригинал", example = "CARD")
+            @RequestParam(required = false) ImageVariant size,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        Resource resource = bookImageService.getBookImage(bookId, size);
+        Path imagePath = resource.getFile().toPath();
         
-        // Определяем MediaType на основе расширения файла
-        MediaType mediaType = MediaType.APPLICATION_OCTET_STREAM;
-        try {
-            String imagePath = resource.getURI().getPath();
-            String extension = "";
-            if (imagePath != null && imagePath.contains(".")) {
-                extension = imagePath.substring(imagePath.lastIndexOf(".") + 1).toLowerCase();
-            }
-            
-            switch (extension) {
-                case "png":
-                    mediaType = MediaType.IMAGE_PNG;
-                    break;
-                case "jpg":
-                case "jpeg":
-                    mediaType = MediaType.IMAGE_JPEG;
-                    break;
-                case "gif":
-                    mediaType = MediaType.IMAGE_GIF;
-                    break;
-                case "webp":
-                    mediaType = MediaType.parseMediaType("image/webp");
-                    break;
-                default:
-                    mediaType = MediaType.APPLICATION_OCTET_STREAM;
-            }
-        } catch (Exception e) {
-            // Если не удалось определить тип, используем по умолчанию
-            mediaType = MediaType.APPLICATION_OCTET_STREAM;
+        // Файл отдаётся напрямую из файловой системы (sendfile / FileChannel.transferTo).
+        // Обложки кэшируются браузерами и CDN, но всегда ревалидируются по ETag (ответ 304)
+        fileDeliveryService.deliver(imagePath, resolveImageMediaType(imagePath), null,
+                CacheControl.noCache().cachePublic(), request, response);
+    }
+    
+    /**
+     * Определяет MediaType на основе расширения файла
+     */
+    private MediaType resolveImageMediaType(Path imagePath) {
+        String fileName = imagePath.getFileName() != null ? imagePath.getFileName().toString() : "";
+        String extension = "";
+        if (fileName.contains(".")) {
+            extension = fileName.substring(fileName.lastIndexOf(".") + 1).toLowerCase();
         }
         
-        return ResponseEntity.ok()
-                .contentType(mediaType)
-                .body(resource);
+        switch (extension) {
+            case "png":
+                return MediaType.IMAGE_PNG;
+            case "jpg":
+            case "jpeg":
+                return MediaType.IMAGE_JPEG;
+            case "gif":
+                return MediaType.IMAGE_GIF;
+            case "webp":
+                return MediaType.parseMediaType("image/webp");
+            default:
+                return MediaType.APPLICATION_OCTET_STREAM;
+        }
     }
     
     @Operation(
             summary = "Получить все изображения книг в ZIP архиве",
             description = "Возвращает ZIP архив со всеми изображениями книг, у которых есть изображение. " +
                     "Каждое изображение в архиве имеет имя в формате: {bookId}_{originalFileName}. " +
+                    "Первый запрос стримит архив по мере сборки, последующие отдают кэшированный архив " +
+                    "(поддерживаются Range, ETag и If-None-Match) до загрузки нового изображения. " +
                     "Доступно без авторизации."
     )
     @ApiResponses(value = {
@@ -236,13 +382,25 @@ public class BookController {
     })
     @SecurityRequirements
     @GetMapping("/images/all")
-    public ResponseEntity<Resource> getAllBookImages() {
-        Resource resource = bookImageService.getAllBookImagesAsZip();
+    public void getAllBookImages(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String contentDisposition = "attachment; filename=\"book-images.zip\"";
+        
+        // Готовый архив отдаётся из кэша как обычный файл (sendfile, Range, ETag)
+        Path archive = bookImageService.findCachedImagesArchive();
+        if (archive != null) {
+            fileDeliveryService.deliver(archive, MediaType.APPLICATION_OCTET_STREAM, contentDisposition,
+                    CacheControl.noCache().cachePublic(), request, response);
+            return;
+        }
         
-        return ResponseEntity.ok()
-                .header("Content-Disposition", "attachment; filename=\"book-images.zip\"")
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(resource);
+        // Архив строится на лету и сразу стримится клиенту, параллельно сохраняясь в кэш
+        bookImageService.writeAllBookImagesAsZip(() -> {
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setHeader("Content-Disposition", contentDisposition);
+            response.setHeader("Cache-Control", CacheControl.noCache().cachePublic().getHeaderValue());
+            return response.getOutputStream();
+        });
+        response.flushBuffer();
     }
 }
 
@@ -4,8 +4,10 @@ import online.ityura.springdigitallibrary.dto.event.BookDownloadEvent;
 import online.ityura.springdigitallibrary.dto.response.BookResponse;
 import online.ityura.springdigitallibrary.dto.response.ErrorResponse;
 import online.ityura.springdigitallibrary.repository.UserRepository;
+import online.ityura.springdigitallibrary.security.AuthenticatedUser;
 import online.ityura.springdigitallibrary.service.BookFileService;
 import online.ityura.springdigitallibrary.service.BookService;
+import online.ityura.springdigitallibrary.service.FileDeliveryService;
 import online.ityura.springdigitallibrary.service.KafkaProducerService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -16,17 +18,19 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
+import org.springframework.http.CacheControl;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
@@ -42,12 +46,15 @@ public class BookFileController {
     private final BookFileService bookFileService;
     private final UserRepository userRepository;
     private final BookService bookService;
+    private final FileDeliveryService fileDeliveryService;
     @Autowired(required = false)
     private KafkaProducerService kafkaProducerService;
     
     @Operation(
             summary = "Скачать PDF файл книги",
-            description = "Скачивает PDF файл указанной книги. Файл возвращается с заголовком Content-Disposition для загрузки."
+            description = "Скачивает PDF файл указанной книги. Файл возвращается с заголовком Content-Disposition для загрузки. " +
+                    "Поддерживается заголовок `Range` (один диапазон байт) для докачки: в этом случае возвращается `206 Partial Content`. " +
+                    "Ответ содержит `ETag` и `Last-Modified`; учитываются `If-None-Match`, `If-Modified-Since` и `If-Range`."
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -55,6 +62,11 @@ public class BookFileController {
                     description = "PDF файл успешно загружен",
                     content = @Content(mediaType = "application/pdf")
             ),
+            @ApiResponse(
+                    responseCode = "206",
+                    description = "Возвращена запрошенная часть PDF файла (заголовок Range)",
+                    content = @Content(mediaType = "application/pdf")
+            ),
             @ApiResponse(
                     responseCode = "404",
                     description = "Книга или файл не найдены",
@@ -93,18 +105,33 @@ public class BookFileController {
             )
     })
     @GetMapping("/download")
-    public ResponseEntity<Resource> downloadBook(
+    public void downloadBook(
             @Parameter(description = "ID книги", example = "1", required = true)
             @PathVariable Long bookId,
-            Authentication authentication) {
+            Authentication authentication,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
         Long userId = getCurrentUserId(authentication);
         Resource resource = bookFileService.downloadBookFile(bookId, userId);
         String filename = bookFileService.getOriginalFilename(bookId);
         
-        // Получаем информацию о книге для события
-        BookResponse book = bookService.getBookById(bookId);
+        String encodedFilename = URLEncoder.encode(filename, StandardCharsets.UTF_8)
+                .replace("+", "%20");
+        
+        // Файл отдаётся напрямую из файловой системы (sendfile / FileChannel.transferTo)
+        boolean fromFirstByte = fileDeliveryService.deliver(resource.getFile().toPath(), MediaType.APPLICATION_PDF,
+                "attachment; filename=\"" + filename + "\"; filename*=UTF-8''" + encodedFilename,
+                CacheControl.noCache().cachePrivate(), request, response);
         
-        // Отправка события скачивания книги
+        // Скачиванием считается только отдача с первого байта: просмотрщики PDF запрашивают файл
+        // десятками диапазонов, а 304/416 файл не отдают
+        if (fromFirstByte && kafkaProducerService != null) {
+            sendDownloadEvent(bookId, userId);
+        }
+    }
+    
+    private void sendDownloadEvent(Long bookId, Long userId) {
+        BookResponse book = bookService.getBookById(bookId);
         BookDownloadEvent event = BookDownloadEvent.builder()
                 .eventId(UUID.randomUUID().toString())
                 .eventType("BOOK_DOWNLOAD")
@@ -116,21 +143,13 @@ public class BookFileController {
                 .isFree(book.getPrice() == null || book.getPrice().compareTo(java.math.BigDecimal.ZERO) == 0)
                 .build();
         
-        if (kafkaProducerService != null) {
-            kafkaProducerService.sendBookDownloadEvent(event);
-        }
-        
-        String encodedFilename = URLEncoder.encode(filename, StandardCharsets.UTF_8)
-                .replace("+", "%20");
-        
-        return ResponseEntity.ok()
-                .contentType(MediaType.APPLICATION_PDF)
-                .header(HttpHeaders.CONTENT_DISPOSITION, 
-                        "attachment; filename=\"" + filename + "\"; filename*=UTF-8''" + encodedFilename)
-                .body(resource);
+        kafkaProducerService.sendBookDownloadEvent(event);
     }
     
     private Long getCurrentUserId(Authentication authentication) {
+        if (authentication.getPrincipal() instanceof AuthenticatedUser authenticatedUser) {
+            return authenticatedUser.getId();
+        }
         String email = ((UserDetails) authentication.getPrincipal()).getUsername();
         return userRepository.findByEmail(email)
                 .orElseThrow(() -> new ResponseStatusException(org.springframework.http.HttpStatus.NOT_FOUND, "User not found"))
@@ -18,6 +18,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import online.ityura.springdigitallibrary.dto.response.ErrorResponse;
 import online.ityura.springdigitallibrary.repository.UserRepository;
+import online.ityura.springdigitallibrary.security.AuthenticatedUser;
 import online.ityura.springdigitallibrary.service.StripeService;
 import org.springframework.beans.factory.annotation.Value;
 import org.slf4j.Logger;
@@ -300,6 +301,9 @@ public class PaymentController {
     }
     
     private Long getCurrentUserId(Authentication authentication) {
+        if (authentication.getPrincipal() instanceof AuthenticatedUser authenticatedUser) {
+            return authenticatedUser.getId();
+        }
         String email = ((UserDetails) authentication.getPrincipal()).getUsername();
         return userRepository.findByEmail(email)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"))
@@ -7,6 +7,7 @@ import online.ityura.springdigitallibrary.dto.response.MessageResponse;
 import online.ityura.springdigitallibrary.dto.response.RatingResponse;
 import online.ityura.springdigitallibrary.dto.response.ValidationErrorResponse;
 import online.ityura.springdigitallibrary.repository.RatingRepository;
+import online.ityura.springdigitallibrary.security.AuthenticatedUser;
 import online.ityura.springdigitallibrary.service.KafkaProducerService;
 import online.ityura.springdigitallibrary.service.RatingService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -174,6 +175,9 @@ public class RatingController {
     }
     
     private Long getCurrentUserId(Authentication authentication) {
+        if (authentication.getPrincipal() instanceof AuthenticatedUser authenticatedUser) {
+            return authenticatedUser.getId();
+        }
         String email = ((UserDetails) authentication.getPrincipal()).getUsername();
         return userRepository.findByEmail(email)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"))
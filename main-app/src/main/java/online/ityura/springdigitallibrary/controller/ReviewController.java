@@ -3,9 +3,12 @@ package online.ityura.springdigitallibrary.controller;
 import online.ityura.springdigitallibrary.dto.event.BookReviewEvent;
 import online.ityura.springdigitallibrary.dto.request.CreateReviewRequest;
 import online.ityura.springdigitallibrary.dto.request.UpdateReviewRequest;
+import online.ityura.springdigitallibrary.dto.response.CursorPageResponse;
+import online.ityura.springdigitallibrary.dto.response.ErrorResponse;
 import online.ityura.springdigitallibrary.dto.response.MessageResponse;
 import online.ityura.springdigitallibrary.dto.response.ReviewResponse;
 import online.ityura.springdigitallibrary.dto.response.ValidationErrorResponse;
+import online.ityura.springdigitallibrary.security.AuthenticatedUser;
 import online.ityura.springdigitallibrary.service.KafkaProducerService;
 import online.ityura.springdigitallibrary.service.ReviewService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -210,7 +213,46 @@ public class ReviewController {
         return ResponseEntity.ok(reviewService.getReviewsByBookId(bookId, pageable));
     }
     
+    @Operation(
+            summary = "Получить отзывы на книгу (keyset-пагинация, доступно без авторизации)",
+            description = "Режим для ленты отзывов: включается параметром `pagination=cursor`. " +
+                    "Отзывы упорядочены от новых к старым, вместо номера страницы используется непрозрачный курсор " +
+                    "`cursor` из поля `nextCursor` предыдущего ответа, общее количество отзывов не вычисляется. " +
+                    "Первая страница кэшируется и обновляется при создании и изменении отзывов. " +
+                    "Email авторов в ответе не возвращается. Размер страницы `size` от 1 до 100. " +
+                    "Пример: `?pagination=cursor&size=20`."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Страница отзывов получена",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CursorPageResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Некорректный курсор или размер страницы",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class),
+                            examples = @ExampleObject(value = "{\"status\":400,\"error\":\"BAD_REQUEST\",\"message\":\"Invalid cursor\",\"timestamp\":\"2025-12-17T13:20:00Z\",\"path\":\"/api/v1/books/1/reviews\"}")
+                    )
+            )
+    })
+    @GetMapping(params = "pagination=cursor")
+    public ResponseEntity<CursorPageResponse<ReviewResponse>> getReviewsByCursor(
+            @Parameter(description = "ID книги", example = "1", required = true)
+            @PathVariable Long bookId,
+            @Parameter(description = "Курсор из поля nextCursor предыдущего ответа (для первой страницы не передаётся)")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Размер страницы (1-100)", example = "20")
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(reviewService.getReviewsByCursor(bookId, cursor, size));
+    }
+    
     private Long getCurrentUserId(Authentication authentication) {
+        if (authentication.getPrincipal() instanceof AuthenticatedUser authenticatedUser) {
+            return authenticatedUser.getId();
+        }
         String email = ((UserDetails) authentication.getPrincipal()).getUsername();
         return userRepository.findByEmail(email)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"))
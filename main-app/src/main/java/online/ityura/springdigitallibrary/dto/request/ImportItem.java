@@ -0,0 +1,11 @@
+package online.ityura.springdigitallibrary.dto.request;
+
+/**
+ * Строка массового импорта: запись пользователя о книге (отзыв или оценка)
+ */
+public interface ImportItem {
+    
+    Long getBookId();
+    
+    Long getUserId();
+}
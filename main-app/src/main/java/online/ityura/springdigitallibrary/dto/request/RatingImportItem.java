@@ -0,0 +1,34 @@
+package online.ityura.springdigitallibrary.dto.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import online.ityura.springdigitallibrary.dto.BaseDto;
+
+import java.time.LocalDateTime;
+
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Schema(description = "Строка NDJSON массового импорта оценок")
+public class RatingImportItem extends BaseDto implements ImportItem {
+    
+    @Schema(description = "ID книги", example = "1", requiredMode = Schema.RequiredMode.REQUIRED)
+    @NotNull(message = "Book id is required")
+    private Long bookId;
+    
+    @Schema(description = "ID автора оценки", example = "2", requiredMode = Schema.RequiredMode.REQUIRED)
+    @NotNull(message = "User id is required")
+    private Long userId;
+    
+    @Schema(description = "Значение рейтинга (от 1 до 10)", example = "8", requiredMode = Schema.RequiredMode.REQUIRED, minimum = "1", maximum = "10")
+    @NotNull(message = "Rating value is required")
+    @Min(value = 1, message = "Rating must be at least 1")
+    @Max(value = 10, message = "Rating must be at most 10")
+    private Short value;
+    
+    @Schema(description = "Дата создания оценки в исходной системе (по умолчанию - время импорта)", example = "2024-05-01T12:00:00")
+    private LocalDateTime createdAt;
+}
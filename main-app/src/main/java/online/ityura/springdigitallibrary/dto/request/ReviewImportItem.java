@@ -0,0 +1,31 @@
+package online.ityura.springdigitallibrary.dto.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import online.ityura.springdigitallibrary.dto.BaseDto;
+
+import java.time.LocalDateTime;
+
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Schema(description = "Строка NDJSON массового импорта отзывов")
+public class ReviewImportItem extends BaseDto implements ImportItem {
+    
+    @Schema(description = "ID книги", example = "1", requiredMode = Schema.RequiredMode.REQUIRED)
+    @NotNull(message = "Book id is required")
+    private Long bookId;
+    
+    @Schema(description = "ID автора отзыва", example = "2", requiredMode = Schema.RequiredMode.REQUIRED)
+    @NotNull(message = "User id is required")
+    private Long userId;
+    
+    @Schema(description = "Текст отзыва", example = "Отличная книга! Очень рекомендую к прочтению.", requiredMode = Schema.RequiredMode.REQUIRED)
+    @NotBlank(message = "Review text is required")
+    private String text;
+    
+    @Schema(description = "Дата создания отзыва в исходной системе (по умолчанию - время импорта)", example = "2024-05-01T12:00:00")
+    private LocalDateTime createdAt;
+}
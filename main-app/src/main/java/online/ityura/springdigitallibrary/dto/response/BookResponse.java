@@ -26,6 +26,8 @@ public class BookResponse extends BaseDto {
     private Genre genre;
     private BigDecimal ratingAvg;
     private Integer ratingCount;
+    // Распределение оценок: элемент i - количество оценок i + 1 (шкала 1..10)
+    private int[] ratingHistogram;
     private Boolean hasFile;
     private String imagePath;
     private BigDecimal price;
@@ -33,6 +35,8 @@ public class BookResponse extends BaseDto {
     private BigDecimal finalPrice;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    // В каталоге - общее количество отзывов, в reviews только несколько последних (сокращённых)
+    private Long reviewCount;
     private List<ReviewResponse> reviews;
 }
 
@@ -0,0 +1,23 @@
+package online.ityura.springdigitallibrary.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import online.ityura.springdigitallibrary.dto.BaseDto;
+
+import java.util.List;
+
+@Data
+@EqualsAndHashCode(callSuper = false)
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CursorPageResponse<T> extends BaseDto {
+    private List<T> content;
+    private Integer size;
+    private Boolean hasNext;
+    // Передаётся в параметре cursor для получения следующей страницы (null - страниц больше нет)
+    private String nextCursor;
+}
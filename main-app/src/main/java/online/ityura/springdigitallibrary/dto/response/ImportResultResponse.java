@@ -0,0 +1,46 @@
+package online.ityura.springdigitallibrary.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import online.ityura.springdigitallibrary.dto.BaseDto;
+
+import java.util.List;
+
+@Data
+@EqualsAndHashCode(callSuper = false)
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Результат массового импорта")
+public class ImportResultResponse extends BaseDto {
+    
+    @Schema(description = "Количество обработанных строк (без пустых)", example = "1000")
+    private Long processed;
+    
+    @Schema(description = "Количество записанных строк", example = "990")
+    private Long imported;
+    
+    @Schema(description = "Количество пропущенных строк: ошибки формата, несуществующие книги и пользователи, дубликаты", example = "10")
+    private Long skipped;
+    
+    @Schema(description = "Ошибки строк (не более app.import.max-reported-errors)")
+    private List<LineError> errors;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    @Schema(description = "Ошибка строки импорта")
+    public static class LineError {
+        
+        @Schema(description = "Номер строки (с 1)", example = "17")
+        private Long line;
+        
+        @Schema(description = "Причина пропуска", example = "Book not found with id: 999")
+        private String message;
+    }
+}
@@ -1,5 +1,6 @@
 package online.ityura.springdigitallibrary.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -7,6 +8,7 @@ import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import online.ityura.springdigitallibrary.dto.BaseDto;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Data
@@ -21,5 +23,12 @@ public class RatingResponse extends BaseDto {
     private Short value;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    
+    // Рейтинг книги с учётом этой оценки (app.catalog.rating-aggregation.read-your-writes)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private BigDecimal bookRatingAvg;
+    
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer bookRatingCount;
 }
 
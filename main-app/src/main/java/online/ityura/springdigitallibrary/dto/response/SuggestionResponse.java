@@ -0,0 +1,22 @@
+package online.ityura.springdigitallibrary.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import online.ityura.springdigitallibrary.dto.BaseDto;
+import online.ityura.springdigitallibrary.model.SuggestionType;
+
+@Data
+@EqualsAndHashCode(callSuper = false)
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SuggestionResponse extends BaseDto {
+    // Название книги или имя автора
+    private String text;
+    private SuggestionType type;
+    // Для BOOK - id книги, для AUTHOR - id автора
+    private Long id;
+}
@@ -53,7 +53,9 @@ public class GlobalExceptionHandler {
             errorCode
         );
         
+        // Заголовки исключения (например, Retry-After у ServiceBusyException)
         return ResponseEntity.status(status)
+                .headers(ex.getHeaders())
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(response);
     }
@@ -0,0 +1,200 @@
+package online.ityura.springdigitallibrary.filter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import online.ityura.springdigitallibrary.dto.response.ErrorResponse;
+import online.ityura.springdigitallibrary.security.TokenBucketRateLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничение частоты запросов к эндпоинтам аутентификации, которые хешируют пароль или отправляют письма
+ * (login, register, forgot-password, resend-verification).
+ *
+ * - Два token bucket: по IP клиента и по email из тела запроса (TokenBucketRateLimiter, только память экземпляра)
+ * - IP берётся из request.getRemoteAddr(). Его определяет Tomcat (server.forward-headers-strategy=native, RemoteIpValve):
+ *   X-Forwarded-For учитывается только от доверенных прокси (server.tomcat.remoteip.internal-proxies), адрес клиента -
+ *   первый справа адрес не из доверенных. Подставив свой X-Forwarded-For, клиент не получает новое ведро
+ * - При превышении - 429 Too Many Requests с Retry-After, до BCrypt и EmailService запрос не доходит
+ * - Тело больше MAX_BODY_BYTES - 413 Payload Too Large: иначе лимит по email обходился бы дополнением тела
+ * - При заполненной таблице ключей новый IP получает отказ, а новый email пропускается без учёта: поток
+ *   случайных email не должен блокировать вход всем новым пользователям, лимит по IP при этом действует
+ * - Метрики: auth.rate-limit.rejected (key=ip/email, path), auth.rate-limit.keys (key=ip/email),
+ *   auth.rate-limit.overflow (key=ip/email) - запросы с новым ключом при заполненной таблице
+ * - Регистрируется в SecurityConfig перед JwtAuthenticationFilter
+ */
+@Slf4j
+@Component
+public class AuthRateLimitFilter extends OncePerRequestFilter {
+
+    private static final Set<String> LIMITED_PATHS = Set.of(
+            "/api/v1/auth/login",
+            "/api/v1/auth/register",
+            "/api/v1/auth/forgot-password",
+            "/api/v1/auth/resend-verification"
+    );
+
+    // Тела запросов аутентификации маленькие; большее тело отклоняется, не доходя до контроллера
+    private static final int MAX_BODY_BYTES = 16 * 1024;
+
+    private final boolean enabled;
+    private final TokenBucketRateLimiter ipLimiter;
+    private final TokenBucketRateLimiter emailLimiter;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    public AuthRateLimitFilter(ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.security.rate-limit.enabled:true}") boolean enabled,
+                               @Value("${app.security.rate-limit.ip.capacity:20}") int ipCapacity,
+                               @Value("${app.security.rate-limit.ip.refill-per-minute:10}") int ipRefillPerMinute,
+                               @Value("${app.security.rate-limit.email.capacity:5}") int emailCapacity,
+                               @Value("${app.security.rate-limit.email.refill-per-minute:3}") int emailRefillPerMinute,
+                               @Value("${app.security.rate-limit.max-keys:100000}") int maxKeys) {
+        this.enabled = enabled;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        long now = System.nanoTime();
+        this.ipLimiter = new TokenBucketRateLimiter(ipCapacity, TimeUnit.MINUTES.toNanos(1) / ipRefillPerMinute,
+                maxKeys, now);
+        this.emailLimiter = new TokenBucketRateLimiter(emailCapacity, TimeUnit.MINUTES.toNanos(1) / emailRefillPerMinute,
+                maxKeys, true, now);
+
+        Gauge.builder("auth.rate-limit.keys", ipLimiter, TokenBucketRateLimiter::size)
+                .tag("key", "ip")
+                .description("Rate limiter keys currently tracked")
+                .register(meterRegistry);
+        Gauge.builder("auth.rate-limit.keys", emailLimiter, TokenBucketRateLimiter::size)
+                .tag("key", "email")
+                .description("Rate limiter keys currently tracked")
+                .register(meterRegistry);
+        FunctionCounter.builder("auth.rate-limit.overflow", ipLimiter, TokenBucketRateLimiter::overflowCount)
+                .tag("key", "ip")
+                .description("Requests with a new key while the rate limiter table was full")
+                .register(meterRegistry);
+        FunctionCounter.builder("auth.rate-limit.overflow", emailLimiter, TokenBucketRateLimiter::overflowCount)
+                .tag("key", "email")
+                .description("Requests with a new key while the rate limiter table was full")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled
+                || !"POST".equals(request.getMethod())
+                || !LIMITED_PATHS.contains(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long now = System.nanoTime();
+
+        long waitNanos = ipLimiter.tryAcquire(request.getRemoteAddr(), now);
+        if (waitNanos > 0) {
+            reject(request, response, "ip", waitNanos);
+            return;
+        }
+
+        byte[] body = readBody(request);
+        if (body == null) {
+            writeError(request, response, HttpStatus.PAYLOAD_TOO_LARGE, "PAYLOAD_TOO_LARGE",
+                    "Request body must not exceed " + MAX_BODY_BYTES + " bytes");
+            return;
+        }
+        String email = extractEmail(body);
+        if (email != null) {
+            waitNanos = emailLimiter.tryAcquire(email, now);
+            if (waitNanos > 0) {
+                reject(request, response, "email", waitNanos);
+                return;
+            }
+        }
+
+        filterChain.doFilter(new CachedBodyRequestWrapper(request, body), response);
+    }
+
+    /**
+     * Тело запроса или null, если оно больше MAX_BODY_BYTES (в том числе chunked-тело без Content-Length)
+     */
+    private byte[] readBody(HttpServletRequest request) throws IOException {
+        long declaredLength = request.getContentLengthLong();
+        if (declaredLength > MAX_BODY_BYTES) {
+            return null;
+        }
+        InputStream input = request.getInputStream();
+        byte[] body = input.readNBytes(MAX_BODY_BYTES + 1);
+        if (body.length > MAX_BODY_BYTES) {
+            return null;
+        }
+        return body;
+    }
+
+    private String extractEmail(byte[] body) {
+        if (body.length == 0) {
+            return null;
+        }
+        try {
+            JsonNode email = objectMapper.readTree(body).get("email");
+            if (email == null || !email.isTextual() || email.asText().isBlank()) {
+                return null;
+            }
+            return email.asText().trim().toLowerCase(Locale.ROOT);
+        } catch (IOException e) {
+            // Некорректный JSON отклонит контроллер
+            return null;
+        }
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, String key, long waitNanos)
+            throws IOException {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+        Counter.builder("auth.rate-limit.rejected")
+                .tag("key", key)
+                .tag("path", request.getRequestURI())
+                .description("Authentication requests rejected by the rate limiter")
+                .register(meterRegistry)
+                .increment();
+        log.warn("Rate limit exceeded by {} for {}", key, request.getRequestURI());
+
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        writeError(request, response, HttpStatus.TOO_MANY_REQUESTS, "TOO_MANY_REQUESTS",
+                "Too many requests, please retry later");
+    }
+
+    private void writeError(HttpServletRequest request, HttpServletResponse response, HttpStatus status,
+                            String error, String message) throws IOException {
+        ErrorResponse body = ErrorResponse.builder()
+                .status(status.value())
+                .error(error)
+                .message(message)
+                .timestamp(Instant.now())
+                .path(request.getRequestURI())
+                .build();
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        objectMapper.writeValue(response.getWriter(), body);
+    }
+}
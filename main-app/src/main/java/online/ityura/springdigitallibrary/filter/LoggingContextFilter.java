@@ -4,16 +4,18 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.annotation.Order;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
-import org.springframework.web.util.ContentCachingResponseWrapper;
 import online.ityura.springdigitallibrary.repository.UserRepository;
+import online.ityura.springdigitallibrary.security.AuthenticatedUser;
 
 import java.io.IOException;
 import java.util.UUID;
@@ -32,9 +34,14 @@ import java.util.regex.Pattern;
  * - userAgent: Браузер/клиент пользователя
  * - responseTime: Время обработки запроса в миллисекундах
  * - statusCode: HTTP статус код ответа
+ * - responseBody: начало тела небольшого JSON ответа (только при DEBUG уровне логирования)
+ * 
+ * Тело ответа не буферизуется: PDF, изображения и ZIP архивы стримятся напрямую клиенту,
+ * а статус и время обработки фиксируются через {@link StatusRecordingResponseWrapper}.
  * 
  * Все поля автоматически попадут в JSON логи через LogstashEncoder.
  */
+@Slf4j
 @Component
 @Order(2) // Выполняется после JwtAuthenticationFilter (который имеет Order по умолчанию)
 public class LoggingContextFilter extends OncePerRequestFilter {
@@ -45,13 +52,19 @@ public class LoggingContextFilter extends OncePerRequestFilter {
     
     @Autowired(required = false)
     private UserRepository userRepository;
+    
+    // Максимальный размер тела JSON ответа (в байтах), который попадает в логи. 0 - не захватывать тело
+    @Value("${app.logging.response-body.capture-limit:2048}")
+    private int responseBodyCaptureLimit;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         
         long startTime = System.currentTimeMillis();
-        ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
+        // Тело захватывается только если его действительно будут логировать
+        int captureLimit = log.isDebugEnabled() ? responseBodyCaptureLimit : 0;
+        StatusRecordingResponseWrapper responseWrapper = new StatusRecordingResponseWrapper(response, captureLimit);
         
         try {
             // Очищаем MDC перед обработкой запроса
@@ -100,8 +113,14 @@ public class LoggingContextFilter extends OncePerRequestFilter {
             int statusCode = responseWrapper.getStatus();
             MDC.put("statusCode", String.valueOf(statusCode));
             
-            // Копируем ответ обратно в оригинальный response
-            responseWrapper.copyBodyToResponse();
+            // Тело небольшого JSON ответа (бинарные ответы не захватываются)
+            String responseBody = responseWrapper.getCapturedBody();
+            if (responseBody != null) {
+                MDC.put("responseBody", responseBody);
+            }
+            
+            log.debug("{} {} completed with status {} in {} ms",
+                    request.getMethod(), request.getRequestURI(), statusCode, responseTime);
             
         } finally {
             // Очищаем MDC после обработки запроса
@@ -131,6 +150,10 @@ public class LoggingContextFilter extends OncePerRequestFilter {
     private String extractUserId() {
         try {
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication != null && authentication.isAuthenticated()
+                    && authentication.getPrincipal() instanceof AuthenticatedUser authenticatedUser) {
+                return String.valueOf(authenticatedUser.getId());
+            }
             if (authentication != null && authentication.isAuthenticated() 
                     && authentication.getPrincipal() instanceof UserDetails userDetails) {
                 String email = userDetails.getUsername();
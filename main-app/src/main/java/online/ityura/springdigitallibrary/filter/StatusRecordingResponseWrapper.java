@@ -0,0 +1,254 @@
+package online.ityura.springdigitallibrary.filter;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Лёгкая обёртка ответа для логирования.
+ * В отличие от ContentCachingResponseWrapper не буферизует тело ответа:
+ * - статус код запоминается при setStatus/sendError
+ * - бинарные ответы (PDF, изображения, ZIP) пишутся напрямую в исходный response
+ * - для небольших JSON ответов первые captureLimit байт дублируются в память для логов
+ */
+public class StatusRecordingResponseWrapper extends HttpServletResponseWrapper {
+
+    private final int captureLimit;
+    private int status = HttpServletResponse.SC_OK;
+    private ByteArrayOutputStream capturedBytes;
+    private StringBuilder capturedChars;
+    private boolean captureTruncated;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    /**
+     * @param captureLimit максимальное количество байт тела JSON ответа для логов (0 - не захватывать)
+     */
+    public StatusRecordingResponseWrapper(HttpServletResponse response, int captureLimit) {
+        super(response);
+        this.captureLimit = Math.max(captureLimit, 0);
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        super.setStatus(sc);
+        this.status = sc;
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        super.sendError(sc);
+        this.status = sc;
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        super.sendError(sc, msg);
+        this.status = sc;
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        super.sendRedirect(location);
+        this.status = HttpServletResponse.SC_FOUND;
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (outputStream == null) {
+            ServletOutputStream delegate = super.getOutputStream();
+            if (shouldCapture()) {
+                capturedBytes = new ByteArrayOutputStream(Math.min(captureLimit, 1024));
+                outputStream = new CapturingOutputStream(delegate);
+            } else {
+                // Бинарные и большие ответы отдаются без какой-либо обработки
+                outputStream = delegate;
+            }
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            PrintWriter delegate = super.getWriter();
+            if (shouldCapture()) {
+                capturedChars = new StringBuilder(Math.min(captureLimit, 1024));
+                writer = new PrintWriter(new CapturingWriter(delegate));
+            } else {
+                writer = delegate;
+            }
+        }
+        return writer;
+    }
+
+    /**
+     * Возвращает захваченное тело ответа или null, если тело не захватывалось
+     */
+    public String getCapturedBody() {
+        String body = null;
+        if (capturedBytes != null) {
+            body = capturedBytes.toString(resolveCharset());
+        } else if (capturedChars != null) {
+            body = capturedChars.toString();
+        }
+        if (body != null && captureTruncated) {
+            body = body + "...(truncated)";
+        }
+        return body;
+    }
+
+    /**
+     * Захватываем тело только для JSON ответов, размер которых (если известен) не превышает лимит
+     */
+    private boolean shouldCapture() {
+        if (captureLimit <= 0) {
+            return false;
+        }
+        String contentType = getContentType();
+        if (contentType == null) {
+            return false;
+        }
+        try {
+            MediaType mediaType = MediaType.parseMediaType(contentType);
+            boolean json = MediaType.APPLICATION_JSON.isCompatibleWith(mediaType)
+                    || (mediaType.getSubtype() != null && mediaType.getSubtype().endsWith("+json"));
+            if (!json) {
+                return false;
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        String contentLength = getHeader("Content-Length");
+        if (contentLength != null) {
+            try {
+                return Long.parseLong(contentLength) <= captureLimit;
+            } catch (NumberFormatException e) {
+                return true;
+            }
+        }
+        return true;
+    }
+
+    private Charset resolveCharset() {
+        try {
+            return Charset.forName(getCharacterEncoding());
+        } catch (Exception e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    private void captureByte(int b) {
+        if (capturedBytes.size() < captureLimit) {
+            capturedBytes.write(b);
+        } else {
+            captureTruncated = true;
+        }
+    }
+
+    private void captureBytes(byte[] b, int off, int len) {
+        int remaining = captureLimit - capturedBytes.size();
+        if (remaining > 0) {
+            capturedBytes.write(b, off, Math.min(len, remaining));
+        }
+        if (len > remaining) {
+            captureTruncated = true;
+        }
+    }
+
+    private void captureChars(char[] cbuf, int off, int len) {
+        int remaining = captureLimit - capturedChars.length();
+        if (remaining > 0) {
+            capturedChars.append(cbuf, off, Math.min(len, remaining));
+        }
+        if (len > remaining) {
+            captureTruncated = true;
+        }
+    }
+
+    /**
+     * Пишет в исходный поток и параллельно копирует ограниченный префикс в память
+     */
+    private class CapturingOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+
+        CapturingOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            captureByte(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            captureBytes(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+    }
+
+    /**
+     * Writer без собственного буфера: всё сразу уходит в writer исходного response
+     */
+    private class CapturingWriter extends Writer {
+
+        private final PrintWriter delegate;
+
+        CapturingWriter(PrintWriter delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            delegate.write(cbuf, off, len);
+            captureChars(cbuf, off, len);
+        }
+
+        @Override
+        public void flush() {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
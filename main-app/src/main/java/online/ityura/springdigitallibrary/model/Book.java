@@ -5,6 +5,8 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -12,6 +14,12 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "books", uniqueConstraints = {
     @UniqueConstraint(columnNames = {"title", "author_id"})
+}, indexes = {
+    // Индексы для keyset-пагинации каталога: (ключ сортировки, id)
+    @Index(name = "idx_books_title_id", columnList = "title, id"),
+    @Index(name = "idx_books_rating_avg_id", columnList = "rating_avg, id"),
+    @Index(name = "idx_books_created_at_id", columnList = "created_at, id")
+    // Индекс по (COALESCE(published_year, 0), id) - выражение, создаётся в BookCatalogIndexInitializer
 })
 @Data
 @NoArgsConstructor
@@ -19,6 +27,9 @@ import java.time.LocalDateTime;
 @Builder
 public class Book {
     
+    // Шкала оценок: 1..RATING_SCALE (CreateRatingRequest, UpdateRatingRequest)
+    public static final int RATING_SCALE = 10;
+    
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -44,14 +55,28 @@ public class Book {
     @Builder.Default
     private Boolean deletionLocked = false;
     
-    @Column(name = "rating_avg", precision = 4, scale = 2, nullable = false)
+    // Агрегаты рейтинга пишет только RatingAggregator (UPDATE с дельтами), поэтому они не входят в UPDATE сущности:
+    // сохранение книги, прочитанной до записи дельт (правка администратора, загрузка файла), не затирает их
+    @Column(name = "rating_avg", precision = 4, scale = 2, nullable = false, updatable = false)
     @Builder.Default
     private BigDecimal ratingAvg = BigDecimal.ZERO;
     
-    @Column(name = "rating_count", nullable = false)
+    @Column(name = "rating_count", nullable = false, updatable = false)
     @Builder.Default
     private Integer ratingCount = 0;
     
+    // Сумма оценок: rating_avg = rating_sum / rating_count, изменяется дельтами (RatingAggregator)
+    @Column(name = "rating_sum", nullable = false, updatable = false)
+    @Builder.Default
+    private Long ratingSum = 0L;
+    
+    // Распределение оценок: элемент i - количество оценок i + 1, изменяется вместе с rating_sum
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(name = "rating_histogram", nullable = false, updatable = false,
+            columnDefinition = "integer[] DEFAULT '{0,0,0,0,0,0,0,0,0,0}'")
+    @Builder.Default
+    private int[] ratingHistogram = new int[RATING_SCALE];
+    
     @Column(name = "image_path")
     private String imagePath;
     
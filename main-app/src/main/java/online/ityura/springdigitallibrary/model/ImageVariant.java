@@ -0,0 +1,21 @@
+package online.ityura.springdigitallibrary.model;
+
+/**
+ * Размеры обложек книг, которые генерируются на сервере при загрузке изображения.
+ * Ширина задаёт максимальную ширину варианта, высота вычисляется с сохранением пропорций.
+ */
+public enum ImageVariant {
+    THUMBNAIL(160),
+    CARD(480),
+    FULL(1200);
+
+    private final int maxWidth;
+
+    ImageVariant(int maxWidth) {
+        this.maxWidth = maxWidth;
+    }
+
+    public int getMaxWidth() {
+        return maxWidth;
+    }
+}
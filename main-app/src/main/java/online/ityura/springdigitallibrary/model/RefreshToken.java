@@ -0,0 +1,48 @@
+package online.ityura.springdigitallibrary.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Выданный refresh-токен. Id совпадает с claim jti токена, familyId объединяет все токены одной сессии
+ * (цепочку ротаций начиная с логина). Записи создаются пакетно RefreshTokenService, поэтому пользователь
+ * хранится как id, без связи с сущностью
+ */
+@Entity
+@Table(name = "refresh_tokens",
+       indexes = {
+           @Index(name = "idx_refresh_tokens_user_id", columnList = "user_id"),
+           @Index(name = "idx_refresh_tokens_family_id", columnList = "family_id"),
+           @Index(name = "idx_refresh_tokens_expires_at", columnList = "expires_at")
+       })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RefreshToken {
+    
+    @Id
+    @Column(name = "token_id", length = 36)
+    private String tokenId;
+    
+    @Column(name = "family_id", nullable = false, length = 36)
+    private String familyId;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private RefreshTokenStatus status;
+    
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,10 @@
+package online.ityura.springdigitallibrary.model;
+
+/**
+ * Порядок значений важен: статус refresh-токена может только расти (ACTIVE -> ROTATED -> REVOKED)
+ */
+public enum RefreshTokenStatus {
+    ACTIVE,
+    ROTATED,
+    REVOKED
+}
@@ -13,6 +13,8 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "reviews", uniqueConstraints = {
     @UniqueConstraint(columnNames = {"book_id", "user_id"})
+}, indexes = {
+    @Index(name = "idx_reviews_book_created", columnList = "book_id, created_at DESC, id DESC")
 })
 @Data
 @NoArgsConstructor
@@ -0,0 +1,93 @@
+package online.ityura.springdigitallibrary.repository;
+
+import online.ityura.springdigitallibrary.repository.projection.BookCatalogRow;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Поля сортировки, поддерживаемые keyset-пагинацией каталога.
+ * Для каждого поля известно JPQL выражение, значение в строке каталога и его строковое представление в курсоре.
+ * Ключ всегда дополняется id книги, чтобы порядок был однозначным.
+ */
+public enum BookCatalogSortKey {
+    TITLE("title", "b.title") {
+        @Override
+        public Object extract(BookCatalogRow row) {
+            return row.title();
+        }
+
+        @Override
+        public Object parse(String value) {
+            return value;
+        }
+    },
+    RATING_AVG("ratingAvg", "b.ratingAvg") {
+        @Override
+        public Object extract(BookCatalogRow row) {
+            return row.ratingAvg();
+        }
+
+        @Override
+        public Object parse(String value) {
+            return new BigDecimal(value);
+        }
+    },
+    CREATED_AT("createdAt", "b.createdAt") {
+        @Override
+        public Object extract(BookCatalogRow row) {
+            return row.createdAt();
+        }
+
+        @Override
+        public Object parse(String value) {
+            return LocalDateTime.parse(value);
+        }
+    },
+    // Год публикации может отсутствовать - такие книги сортируются как год 0
+    PUBLISHED_YEAR("publishedYear", "COALESCE(b.publishedYear, 0)") {
+        @Override
+        public Object extract(BookCatalogRow row) {
+            return row.publishedYear() != null ? row.publishedYear() : 0;
+        }
+
+        @Override
+        public Object parse(String value) {
+            return Integer.valueOf(value);
+        }
+    };
+
+    private final String property;
+    private final String expression;
+
+    BookCatalogSortKey(String property, String expression) {
+        this.property = property;
+        this.expression = expression;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * Значение ключа сортировки для строки каталога
+     */
+    public abstract Object extract(BookCatalogRow row);
+
+    /**
+     * Восстанавливает значение ключа из строкового представления (toString значения)
+     */
+    public abstract Object parse(String value);
+
+    public static Optional<BookCatalogSortKey> fromProperty(String property) {
+        return Arrays.stream(values())
+                .filter(key -> key.property.equals(property))
+                .findFirst();
+    }
+}
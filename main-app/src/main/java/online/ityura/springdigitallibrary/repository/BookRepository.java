@@ -2,18 +2,50 @@ package online.ityura.springdigitallibrary.repository;
 
 import online.ityura.springdigitallibrary.model.Book;
 import online.ityura.springdigitallibrary.model.Genre;
+import online.ityura.springdigitallibrary.repository.projection.BookCatalogRow;
+import online.ityura.springdigitallibrary.repository.projection.BookRatingTotals;
+import online.ityura.springdigitallibrary.repository.projection.BookSuggestionRow;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
+    
+    // Поля карточки каталога (см. BookCatalogRow), автор присоединяется через JOIN b.author a
+    String CATALOG_SELECT = "SELECT new online.ityura.springdigitallibrary.repository.projection.BookCatalogRow(" +
+            "b.id, b.title, a.id, a.fullName, SUBSTRING(b.description, 1, :excerptLength), b.publishedYear, b.genre, " +
+            "b.ratingAvg, b.ratingCount, b.ratingHistogram, " +
+            "CASE WHEN b.pdfPath IS NOT NULL AND b.pdfPath <> '' THEN true ELSE false END, " +
+            "b.imagePath, b.price, b.discountPercent, b.createdAt, b.updatedAt)";
+    
+    // Поисковый документ книги: название (вес A), автор (B), описание (C). Конфигурация 'simple' -
+    // без стемминга, одинаково работает для русских и английских названий и даёт точный префиксный поиск
+    String SEARCH_VECTOR_EXPRESSION = "setweight(to_tsvector('simple', coalesce(b.title, '')), 'A') || " +
+            "setweight(to_tsvector('simple', coalesce(a.full_name, '')), 'B') || " +
+            "setweight(to_tsvector('simple', coalesce(b.description, '')), 'C')";
+    
+    String SEARCH_CONDITION = "b.search_vector @@ to_tsquery('simple', :query) " +
+            "AND (CAST(:genre AS varchar) IS NULL OR b.genre = CAST(:genre AS varchar))";
+    
+    // Агрегаты по таблице ratings для каждой книги
+    String RATING_TOTALS = "SELECT b2.id AS book_id, COALESCE(SUM(r.value), 0) AS rating_sum, COUNT(r.id) AS rating_count, " +
+            "CAST(ARRAY[COUNT(r.id) FILTER (WHERE r.value = 1), COUNT(r.id) FILTER (WHERE r.value = 2), " +
+            "COUNT(r.id) FILTER (WHERE r.value = 3), COUNT(r.id) FILTER (WHERE r.value = 4), " +
+            "COUNT(r.id) FILTER (WHERE r.value = 5), COUNT(r.id) FILTER (WHERE r.value = 6), " +
+            "COUNT(r.id) FILTER (WHERE r.value = 7), COUNT(r.id) FILTER (WHERE r.value = 8), " +
+            "COUNT(r.id) FILTER (WHERE r.value = 9), COUNT(r.id) FILTER (WHERE r.value = 10)] AS integer[]) " +
+            "AS rating_histogram FROM books b2 LEFT JOIN ratings r ON r.book_id = b2.id GROUP BY b2.id";
+    
     Optional<Book> findByTitleAndAuthorId(String title, Long authorId);
     boolean existsByTitleAndAuthorId(String title, Long authorId);
     
@@ -26,6 +58,91 @@ public interface BookRepository extends JpaRepository<Book, Long> {
     @Query("SELECT b FROM Book b WHERE b.imagePath IS NOT NULL AND b.imagePath != ''")
     List<Book> findAllWithImages();
     
-    Page<Book> findByGenre(Genre genre, Pageable pageable);
+    /**
+     * Страница каталога без загрузки сущностей: автор в том же запросе, описание обрезано до excerptLength
+     */
+    @Query(value = CATALOG_SELECT + " FROM Book b JOIN b.author a",
+            countQuery = "SELECT COUNT(b) FROM Book b")
+    Page<BookCatalogRow> findCatalogPage(@Param("excerptLength") int excerptLength, Pageable pageable);
+    
+    @Query(value = CATALOG_SELECT + " FROM Book b JOIN b.author a WHERE b.genre = :genre",
+            countQuery = "SELECT COUNT(b) FROM Book b WHERE b.genre = :genre")
+    Page<BookCatalogRow> findCatalogPageByGenre(@Param("genre") Genre genre,
+                                                @Param("excerptLength") int excerptLength,
+                                                Pageable pageable);
+    
+    @Query(CATALOG_SELECT + " FROM Book b JOIN b.author a WHERE b.id IN :ids")
+    List<BookCatalogRow> findCatalogRowsByIdIn(@Param("ids") Collection<Long> ids,
+                                               @Param("excerptLength") int excerptLength);
+    
+    @Query("SELECT new online.ityura.springdigitallibrary.repository.projection.BookSuggestionRow(" +
+            "b.id, b.title, a.id, a.fullName) FROM Book b JOIN b.author a")
+    List<BookSuggestionRow> findAllSuggestionRows();
+    
+    /**
+     * Пересчитывает поисковый документ книги (вызывается после создания и изменения книги)
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE books b SET search_vector = " + SEARCH_VECTOR_EXPRESSION +
+            " FROM authors a WHERE a.id = b.author_id AND b.id = :bookId", nativeQuery = true)
+    int refreshSearchVector(@Param("bookId") Long bookId);
+    
+    /**
+     * Заполняет поисковые документы книг, у которых их ещё нет (книги, созданные в обход AdminBookService)
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE books b SET search_vector = " + SEARCH_VECTOR_EXPRESSION +
+            " FROM authors a WHERE a.id = b.author_id AND b.search_vector IS NULL", nativeQuery = true)
+    int refreshMissingSearchVectors();
+    
+    @Query("SELECT new online.ityura.springdigitallibrary.repository.projection.BookRatingTotals(" +
+            "b.ratingSum, b.ratingCount) FROM Book b WHERE b.id = :bookId")
+    Optional<BookRatingTotals> findRatingTotals(@Param("bookId") Long bookId);
+    
+    /**
+     * Книги, агрегаты рейтинга которых (включая распределение оценок) расходятся с таблицей ratings
+     */
+    @Query(value = "SELECT b.id FROM books b JOIN (" + RATING_TOTALS + ") t ON t.book_id = b.id " +
+            "WHERE b.rating_sum <> t.rating_sum OR b.rating_count <> t.rating_count " +
+            "OR b.rating_histogram IS DISTINCT FROM t.rating_histogram " +
+            "OR b.rating_avg <> CASE WHEN t.rating_count > 0 " +
+            "THEN ROUND(CAST(t.rating_sum AS numeric) / t.rating_count, 2) ELSE 0 END", nativeQuery = true)
+    List<Long> findBookIdsWithStaleRatingAggregates();
+    
+    /**
+     * Пересчитывает агрегаты рейтинга указанных книг по таблице ratings
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE books b SET rating_sum = t.rating_sum, rating_count = t.rating_count, " +
+            "rating_histogram = t.rating_histogram, " +
+            "rating_avg = CASE WHEN t.rating_count > 0 " +
+            "THEN ROUND(CAST(t.rating_sum AS numeric) / t.rating_count, 2) ELSE 0 END " +
+            "FROM (" + RATING_TOTALS + ") t WHERE t.book_id = b.id AND b.id IN :ids", nativeQuery = true)
+    int recalculateRatingAggregates(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Какие из указанных книг существуют (проверка пакета строк импорта одним запросом)
+     */
+    @Query("SELECT b.id FROM Book b WHERE b.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Идентификаторы найденных книг в порядке релевантности (ts_rank_cd учитывает веса полей)
+     *
+     * @param query выражение tsquery, например "war:* & peace:*"
+     * @param genre имя жанра или null
+     */
+    @Query(value = "SELECT b.id FROM books b WHERE " + SEARCH_CONDITION +
+            " ORDER BY ts_rank_cd(b.search_vector, to_tsquery('simple', :query)) DESC, b.id" +
+            " LIMIT :limit OFFSET :offset", nativeQuery = true)
+    List<Long> searchBookIds(@Param("query") String query,
+                             @Param("genre") String genre,
+                             @Param("limit") int limit,
+                             @Param("offset") long offset);
+    
+    @Query(value = "SELECT COUNT(*) FROM books b WHERE " + SEARCH_CONDITION, nativeQuery = true)
+    long countSearchResults(@Param("query") String query, @Param("genre") String genre);
 }
-
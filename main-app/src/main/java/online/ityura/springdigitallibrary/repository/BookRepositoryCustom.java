@@ -0,0 +1,21 @@
+package online.ityura.springdigitallibrary.repository;
+
+import online.ityura.springdigitallibrary.model.Genre;
+import online.ityura.springdigitallibrary.repository.projection.BookCatalogRow;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+public interface BookRepositoryCustom {
+
+    /**
+     * Keyset-выборка каталога: книги строго после (afterValue, afterId) в заданном порядке, без OFFSET и COUNT.
+     *
+     * @param genre      фильтр по жанру (null - все книги)
+     * @param afterValue значение ключа сортировки последней книги предыдущей страницы (null - первая страница)
+     * @param afterId    id последней книги предыдущей страницы (null - первая страница)
+     * @param limit      максимальное количество строк
+     */
+    List<BookCatalogRow> findCatalogSlice(Genre genre, BookCatalogSortKey sortKey, Sort.Direction direction,
+                                          Object afterValue, Long afterId, int excerptLength, int limit);
+}
@@ -0,0 +1,55 @@
+package online.ityura.springdigitallibrary.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import online.ityura.springdigitallibrary.model.Genre;
+import online.ityura.springdigitallibrary.repository.projection.BookCatalogRow;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<BookCatalogRow> findCatalogSlice(Genre genre, BookCatalogSortKey sortKey, Sort.Direction direction,
+                                                 Object afterValue, Long afterId, int excerptLength, int limit) {
+        String key = sortKey.getExpression();
+        String comparison = direction.isAscending() ? ">" : "<";
+        String order = direction.isAscending() ? "ASC" : "DESC";
+
+        List<String> conditions = new ArrayList<>();
+        if (genre != null) {
+            conditions.add("b.genre = :genre");
+        }
+        if (afterId != null) {
+            // (key, id) > (:afterValue, :afterId) - сравнение строк, раскрытое для JPQL
+            conditions.add("(" + key + " " + comparison + " :afterValue OR (" + key + " = :afterValue AND b.id "
+                    + comparison + " :afterId))");
+        }
+
+        StringBuilder jpql = new StringBuilder(BookRepository.CATALOG_SELECT)
+                .append(" FROM Book b JOIN b.author a");
+        if (!conditions.isEmpty()) {
+            jpql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        jpql.append(" ORDER BY ").append(key).append(' ').append(order)
+                .append(", b.id ").append(order);
+
+        TypedQuery<BookCatalogRow> query = entityManager.createQuery(jpql.toString(), BookCatalogRow.class)
+                .setParameter("excerptLength", excerptLength)
+                .setMaxResults(limit);
+        if (genre != null) {
+            query.setParameter("genre", genre);
+        }
+        if (afterId != null) {
+            query.setParameter("afterValue", afterValue);
+            query.setParameter("afterId", afterId);
+        }
+        return query.getResultList();
+    }
+}
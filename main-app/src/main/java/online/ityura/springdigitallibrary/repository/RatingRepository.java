@@ -1,7 +1,9 @@
 package online.ityura.springdigitallibrary.repository;
 
+import jakarta.persistence.LockModeType;
 import online.ityura.springdigitallibrary.model.Rating;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -13,6 +15,11 @@ public interface RatingRepository extends JpaRepository<Rating, Long> {
     Optional<Rating> findByBookIdAndUserId(Long bookId, Long userId);
     boolean existsByBookIdAndUserId(Long bookId, Long userId);
     
+    // Блокировка строки: старое значение оценки должно совпадать с тем, которое заменяется (дельта агрегата книги)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Rating r WHERE r.book.id = :bookId AND r.user.id = :userId")
+    Optional<Rating> findByBookIdAndUserIdWithLock(@Param("bookId") Long bookId, @Param("userId") Long userId);
+    
     @Query("SELECT AVG(r.value) FROM Rating r WHERE r.book.id = :bookId")
     Double calculateAverageRating(@Param("bookId") Long bookId);
     
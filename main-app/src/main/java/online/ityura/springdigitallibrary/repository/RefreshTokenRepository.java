@@ -0,0 +1,32 @@
+package online.ityura.springdigitallibrary.repository;
+
+import online.ityura.springdigitallibrary.model.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, String> {
+    
+    @Transactional
+    @Modifying
+    @Query("UPDATE RefreshToken t SET t.status = online.ityura.springdigitallibrary.model.RefreshTokenStatus.REVOKED " +
+           "WHERE t.familyId = :familyId")
+    int revokeFamily(@Param("familyId") String familyId);
+    
+    @Transactional
+    @Modifying
+    @Query("UPDATE RefreshToken t SET t.status = online.ityura.springdigitallibrary.model.RefreshTokenStatus.REVOKED " +
+           "WHERE t.userId = :userId")
+    int revokeAllByUserId(@Param("userId") Long userId);
+    
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RefreshToken t WHERE t.expiresAt < :dateTime")
+    int deleteExpired(@Param("dateTime") LocalDateTime dateTime);
+}
@@ -1,20 +1,33 @@
 package online.ityura.springdigitallibrary.repository;
 
 import online.ityura.springdigitallibrary.model.Review;
+import online.ityura.springdigitallibrary.repository.projection.BookReviewCountView;
+import online.ityura.springdigitallibrary.repository.projection.ReviewRow;
+import online.ityura.springdigitallibrary.repository.projection.ReviewSnippetView;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ReviewRepository extends JpaRepository<Review, Long> {
+    
+    // Отзыв ленты книги (см. ReviewRow), автор присоединяется через JOIN r.user u
+    String REVIEW_ROW_SELECT = "SELECT new online.ityura.springdigitallibrary.repository.projection.ReviewRow(" +
+            "r.id, r.book.id, u.id, u.nickname, r.text, r.createdAt, r.updatedAt) " +
+            "FROM Review r JOIN r.user u WHERE r.book.id = :bookId";
+    
     List<Review> findByBookIdOrderByCreatedAtDesc(Long bookId);
+    
+    @EntityGraph(attributePaths = {"user", "book"})
     Page<Review> findByBookIdOrderByCreatedAtDesc(Long bookId, Pageable pageable);
     Optional<Review> findByBookIdAndUserId(Long bookId, Long userId);
     boolean existsByBookIdAndUserId(Long bookId, Long userId);
@@ -25,8 +38,41 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
     @Query("SELECT r FROM Review r JOIN FETCH r.user JOIN FETCH r.book WHERE r.book.id = :bookId ORDER BY r.createdAt DESC")
     List<Review> findByBookIdWithUserOrderByCreatedAtDesc(@Param("bookId") Long bookId);
     
-    @Query("SELECT r FROM Review r JOIN FETCH r.user WHERE r.book.id IN :bookIds ORDER BY r.book.id, r.createdAt DESC")
-    List<Review> findByBookIdIn(@Param("bookIds") List<Long> bookIds);
+    @Query("SELECT r.book.id AS bookId, COUNT(r) AS reviewCount FROM Review r WHERE r.book.id IN :bookIds GROUP BY r.book.id")
+    List<BookReviewCountView> countByBookIdIn(@Param("bookIds") List<Long> bookIds);
+    
+    /**
+     * Не более limit последних отзывов для каждой книги.
+     * LATERAL + LIMIT читает по индексу (book_id, created_at) только нужные строки, а не все отзывы книги
+     */
+    @Query(value = "SELECT r.id AS \"id\", r.book_id AS \"bookId\", u.id AS \"userId\", u.nickname AS \"nickname\", " +
+            "LEFT(r.text, :snippetLength) AS \"text\", r.created_at AS \"createdAt\", r.updated_at AS \"updatedAt\" " +
+            "FROM books b " +
+            "CROSS JOIN LATERAL (SELECT * FROM reviews lr WHERE lr.book_id = b.id " +
+            "ORDER BY lr.created_at DESC, lr.id DESC LIMIT :limit) r " +
+            "JOIN users u ON u.id = r.user_id " +
+            "WHERE b.id IN (:bookIds) " +
+            "ORDER BY r.book_id, r.created_at DESC, r.id DESC",
+            nativeQuery = true)
+    List<ReviewSnippetView> findLatestSnippetsByBookIdIn(@Param("bookIds") List<Long> bookIds,
+                                                         @Param("limit") int limit,
+                                                         @Param("snippetLength") int snippetLength);
+    
+    /**
+     * Первая страница отзывов книги, от новых к старым. Slice запрашивает на одну строку больше вместо COUNT
+     */
+    @Query(REVIEW_ROW_SELECT + " ORDER BY r.createdAt DESC, r.id DESC")
+    Slice<ReviewRow> findRowsByBookId(@Param("bookId") Long bookId, Pageable pageable);
+    
+    /**
+     * Следующая страница отзывов книги после отзыва (createdAt, id) - keyset-пагинация без OFFSET
+     */
+    @Query(REVIEW_ROW_SELECT + " AND (r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id))" +
+            " ORDER BY r.createdAt DESC, r.id DESC")
+    Slice<ReviewRow> findRowsByBookIdBefore(@Param("bookId") Long bookId,
+                                            @Param("createdAt") LocalDateTime createdAt,
+                                            @Param("id") Long id,
+                                            Pageable pageable);
     
     @EntityGraph(attributePaths = {"user", "book"})
     Page<Review> findByUserIdOrderByCreatedAtDesc(Long userId, Pageable pageable);
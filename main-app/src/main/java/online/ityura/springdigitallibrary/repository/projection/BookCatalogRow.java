@@ -0,0 +1,31 @@
+package online.ityura.springdigitallibrary.repository.projection;
+
+import online.ityura.springdigitallibrary.model.Genre;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Строка каталога книг: только поля, нужные карточке книги, автор выбирается в том же запросе.
+ * Создаётся через constructor expression в JPQL, поэтому не попадает в persistence context
+ * и не участвует в dirty checking.
+ */
+public record BookCatalogRow(
+        Long id,
+        String title,
+        Long authorId,
+        String authorFullName,
+        String description,
+        Integer publishedYear,
+        Genre genre,
+        BigDecimal ratingAvg,
+        Integer ratingCount,
+        int[] ratingHistogram,
+        Boolean hasFile,
+        String imagePath,
+        BigDecimal price,
+        BigDecimal discountPercent,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt
+) {
+}
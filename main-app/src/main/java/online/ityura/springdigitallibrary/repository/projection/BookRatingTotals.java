@@ -0,0 +1,24 @@
+package online.ityura.springdigitallibrary.repository.projection;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Агрегаты рейтинга книги: сумма и количество оценок (среднее вычисляется так же, как в БД)
+ */
+public record BookRatingTotals(
+        Long ratingSum,
+        Integer ratingCount
+) {
+
+    public BookRatingTotals plus(long sumDelta, int countDelta) {
+        return new BookRatingTotals(ratingSum + sumDelta, ratingCount + countDelta);
+    }
+
+    public BigDecimal ratingAvg() {
+        if (ratingCount <= 0) {
+            return BigDecimal.ZERO;
+        }
+        return BigDecimal.valueOf(ratingSum).divide(BigDecimal.valueOf(ratingCount), 2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,9 @@
+package online.ityura.springdigitallibrary.repository.projection;
+
+/**
+ * Количество отзывов по книге
+ */
+public interface BookReviewCountView {
+    Long getBookId();
+    Long getReviewCount();
+}
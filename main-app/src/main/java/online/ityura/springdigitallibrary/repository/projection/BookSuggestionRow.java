@@ -0,0 +1,12 @@
+package online.ityura.springdigitallibrary.repository.projection;
+
+/**
+ * Данные книги для индекса подсказок: название и автор, без остальных полей сущности
+ */
+public record BookSuggestionRow(
+        Long bookId,
+        String title,
+        Long authorId,
+        String authorFullName
+) {
+}
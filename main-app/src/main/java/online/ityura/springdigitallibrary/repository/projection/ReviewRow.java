@@ -0,0 +1,18 @@
+package online.ityura.springdigitallibrary.repository.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * Отзыв для ленты отзывов книги: никнейм автора выбирается в том же запросе,
+ * сущности Review, User и Book не загружаются (без email автора)
+ */
+public record ReviewRow(
+        Long id,
+        Long bookId,
+        Long userId,
+        String nickname,
+        String text,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt
+) {
+}
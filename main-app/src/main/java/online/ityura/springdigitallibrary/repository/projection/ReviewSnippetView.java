@@ -0,0 +1,16 @@
+package online.ityura.springdigitallibrary.repository.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * Короткий отзыв для карточки книги в каталоге (без email автора, текст обрезан)
+ */
+public interface ReviewSnippetView {
+    Long getId();
+    Long getBookId();
+    Long getUserId();
+    String getNickname();
+    String getText();
+    LocalDateTime getCreatedAt();
+    LocalDateTime getUpdatedAt();
+}
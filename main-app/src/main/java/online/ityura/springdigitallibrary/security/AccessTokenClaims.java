@@ -0,0 +1,22 @@
+package online.ityura.springdigitallibrary.security;
+
+import online.ityura.springdigitallibrary.model.Role;
+
+import java.time.Instant;
+
+/**
+ * Данные пользователя из access-токена. Достаточны для аутентификации запроса без обращения к БД
+ */
+public record AccessTokenClaims(
+        String email,
+        Long userId,
+        Role role,
+        boolean verified,
+        Instant issuedAt
+) {
+    
+    public AuthenticatedUser toPrincipal() {
+        // Хеш пароля в токене не передаётся и для авторизации запроса не нужен
+        return new AuthenticatedUser(userId, email, null, role, verified);
+    }
+}
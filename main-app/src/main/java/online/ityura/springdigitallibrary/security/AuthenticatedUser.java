@@ -0,0 +1,56 @@
+package online.ityura.springdigitallibrary.security;
+
+import lombok.Getter;
+import online.ityura.springdigitallibrary.model.Role;
+import online.ityura.springdigitallibrary.model.User;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Principal аутентифицированного пользователя. Кроме email и роли содержит id и статус верификации,
+ * поэтому контроллерам и фильтрам не нужно повторно искать пользователя в БД по email.
+ * Неизменяемый: один экземпляр разделяется запросами через кэш CustomUserDetailsService.
+ */
+@Getter
+public class AuthenticatedUser implements UserDetails {
+    
+    private final Long id;
+    private final String email;
+    private final String passwordHash;
+    private final Role role;
+    private final boolean verified;
+    private final List<GrantedAuthority> authorities;
+    
+    public AuthenticatedUser(Long id, String email, String passwordHash, Role role, boolean verified) {
+        this.id = id;
+        this.email = email;
+        this.passwordHash = passwordHash;
+        this.role = role;
+        this.verified = verified;
+        this.authorities = List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+    
+    public static AuthenticatedUser from(User user) {
+        return new AuthenticatedUser(user.getId(), user.getEmail(), user.getPasswordHash(), user.getRole(),
+                Boolean.TRUE.equals(user.getIsVerified()));
+    }
+    
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+    
+    @Override
+    public String getPassword() {
+        return passwordHash;
+    }
+    
+    @Override
+    public String getUsername() {
+        return email;
+    }
+}
@@ -3,27 +3,111 @@ package online.ityura.springdigitallibrary.security;
 import online.ityura.springdigitallibrary.model.User;
 import online.ityura.springdigitallibrary.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Загружает пользователя по email в виде AuthenticatedUser.
+ * Результаты кэшируются на короткое время (app.security.principal-cache.*), чтобы запросы с одним токеном
+ * не обращались к БД каждый раз. Изменения пользователя (верификация email, смена пароля, удаление)
+ * сбрасывают запись через evict().
+ */
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
     
     @Autowired
     private UserRepository userRepository;
     
+    // 0 - кэш отключён
+    @Value("${app.security.principal-cache.ttl-ms:30000}")
+    private long cacheTtlMillis;
+    
+    @Value("${app.security.principal-cache.max-entries:10000}")
+    private int cacheMaxEntries;
+    
+    private final Map<String, CachedPrincipal> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedPrincipal> eldest) {
+            return size() > cacheMaxEntries;
+        }
+    };
+    
+    // Увеличивается при каждом сбросе: загруженный до сброса пользователь в кэш не попадает
+    private long generation;
+    
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+        long loadGeneration = 0;
+        if (cacheTtlMillis > 0) {
+            synchronized (cache) {
+                CachedPrincipal cached = cache.get(email);
+                if (cached != null && cached.expiresAtNanos() - System.nanoTime() > 0) {
+                    return cached.principal();
+                }
+                loadGeneration = generation;
+            }
+        }
+        
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
+        AuthenticatedUser principal = AuthenticatedUser.from(user);
         
-        return org.springframework.security.core.userdetails.User.builder()
-                .username(user.getEmail())
-                .password(user.getPasswordHash())
-                .authorities("ROLE_" + user.getRole().name())
-                .build();
+        if (cacheTtlMillis > 0) {
+            synchronized (cache) {
+                if (generation == loadGeneration) {
+                    cache.put(email, new CachedPrincipal(principal, System.nanoTime() + cacheTtlMillis * 1_000_000L));
+                }
+            }
+        }
+        return principal;
+    }
+    
+    /**
+     * Пересчитанный хеш пароля после успешного логина: вызывается DaoAuthenticationProvider,
+     * если PasswordEncoder.upgradeEncoding сообщает, что хеш создан с другой стоимостью BCrypt
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findByEmail(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + userDetails.getUsername()));
+        user.setPasswordHash(newPassword);
+        user = userRepository.save(user);
+        evict(user.getEmail());
+        return AuthenticatedUser.from(user);
+    }
+    
+    /**
+     * Сбрасывает пользователя из кэша сразу и ещё раз после коммита текущей транзакции
+     * (пока транзакция не закоммичена, параллельный запрос может снова закэшировать старые данные)
+     */
+    public void evict(String email) {
+        evictNow(email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(email);
+                }
+            });
+        }
+    }
+    
+    private void evictNow(String email) {
+        synchronized (cache) {
+            generation++;
+            cache.remove(email);
+        }
+    }
+    
+    private record CachedPrincipal(AuthenticatedUser principal, long expiresAtNanos) {
     }
 }
-
@@ -4,9 +4,8 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import online.ityura.springdigitallibrary.model.User;
-import online.ityura.springdigitallibrary.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -30,95 +29,78 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private UserDetailsService userDetailsService;
     
     @Autowired
-    private UserRepository userRepository;
+    private TokenRevocationList tokenRevocationList;
+    
+    @Autowired
+    private PublicRoutes publicRoutes;
+    
+    // Аутентификация только по claims access-токена, без загрузки пользователя из БД
+    @Value("${jwt.stateless.enabled:false}")
+    private boolean statelessEnabled;
     
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         
-        String requestPath = request.getRequestURI();
-        
-        // Пропускаем Swagger эндпоинты без проверки JWT
-        if (requestPath.startsWith("/swagger-ui") || 
-            requestPath.startsWith("/v3/api-docs") || 
-            requestPath.startsWith("/swagger-ui.html") ||
-            requestPath.equals("/swagger-ui/index.html") ||
-            requestPath.startsWith("/swagger-resources") ||
-            requestPath.startsWith("/webjars")) {
-            filterChain.doFilter(request, response);
-            return;
-        }
-        
-        // Пропускаем публичные эндпоинты книг без проверки JWT
-        if (requestPath.startsWith("/api/v1/books") && 
-            (requestPath.equals("/api/v1/books") || 
-             requestPath.matches("/api/v1/books/\\d+/image") ||
-             requestPath.equals("/api/v1/books/images/all") ||
-             (request.getMethod().equals("GET") && requestPath.matches("/api/v1/books/\\d+/reviews")))) {
-            filterChain.doFilter(request, response);
-            return;
-        }
-        
-        // Пропускаем webhook endpoint без проверки JWT
-        if (requestPath.equals("/api/v1/payment/webhook")) {
-            filterChain.doFilter(request, response);
-            return;
-        }
-        
-        // Пропускаем страницы успеха/отмены оплаты без проверки JWT
-        if (requestPath.equals("/api/v1/payment/success") || requestPath.equals("/api/v1/payment/cancel")) {
-            filterChain.doFilter(request, response);
-            return;
-        }
-        
-        // Пропускаем эндпоинты верификации email и восстановления пароля без проверки JWT
-        if (requestPath.equals("/api/v1/auth/verify-email") || 
-            requestPath.equals("/api/v1/auth/resend-verification") ||
-            requestPath.equals("/api/v1/auth/forgot-password") ||
-            requestPath.equals("/api/v1/auth/reset-password")) {
+        // Публичные эндпоинты (общая таблица с SecurityConfig) пропускаем без проверки JWT
+        if (publicRoutes.skipsAuthentication(request)) {
             filterChain.doFilter(request, response);
             return;
         }
         
         String authHeader = request.getHeader("Authorization");
-        String token = null;
-        String username = null;
         
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            token = authHeader.substring(7);
-            try {
-                username = jwtTokenProvider.extractUsername(token);
-            } catch (Exception e) {
-                // Invalid token
-            }
-        }
-        
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        if (authHeader != null && authHeader.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            // Подпись и срок действия проверяются одним разбором токена, дальше используются только claims
+            TokenClaims claims = jwtTokenProvider.parseToken(authHeader.substring(7));
             
-            if (jwtTokenProvider.validateToken(token, userDetails)) {
-                // Проверяем верификацию email для защищенных эндпоинтов
-                User user = userRepository.findByEmail(username).orElse(null);
-                if (user != null && !user.getIsVerified()) {
-                    response.setStatus(HttpStatus.FORBIDDEN.value());
-                    response.setContentType("application/json");
-                    response.setCharacterEncoding("UTF-8");
-                    response.getWriter().write("{\"message\":\"Email not verified. Please check your email and click the verification link.\"}");
-                    return;
+            // Refresh-токен не даёт доступа к API
+            if (claims != null && claims.subject() != null && !claims.isRefreshToken()) {
+                // Stateless-режим: пользователь берётся из claims без обращения к БД
+                AccessTokenClaims accessClaims = statelessEnabled ? claims.toAccessClaims() : null;
+                if (accessClaims != null) {
+                    if (!tokenRevocationList.isRevoked(accessClaims.userId(), accessClaims.issuedAt())) {
+                        if (!accessClaims.verified()) {
+                            writeEmailNotVerified(response);
+                            return;
+                        }
+                        authenticate(request, accessClaims.toPrincipal(), accessClaims.role().name());
+                    }
+                } else {
+                    // Токен без claims пользователя (выпущен до включения режима) или stateless-режим выключен
+                    UserDetails userDetails = userDetailsService.loadUserByUsername(claims.subject());
+                    if (claims.subject().equals(userDetails.getUsername())) {
+                        // Проверяем верификацию email для защищенных эндпоинтов (статус уже загружен вместе с principal)
+                        if (userDetails instanceof AuthenticatedUser authenticatedUser && !authenticatedUser.isVerified()) {
+                            writeEmailNotVerified(response);
+                            return;
+                        }
+                        
+                        authenticate(request, userDetails, claims.role());
+                    }
                 }
-                
-                String role = jwtTokenProvider.getRoleFromToken(token);
-                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                        userDetails,
-                        null,
-                        Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + role))
-                );
-                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(authToken);
             }
         }
         
         filterChain.doFilter(request, response);
     }
+    
+    private void authenticate(HttpServletRequest request, UserDetails principal, String role) {
+        UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                principal,
+                null,
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + role))
+        );
+        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authToken);
+    }
+    
+    private void writeEmailNotVerified(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.FORBIDDEN.value());
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write("{\"message\":\"Email not verified. Please check your email and click the verification link.\"}");
+    }
 }
 
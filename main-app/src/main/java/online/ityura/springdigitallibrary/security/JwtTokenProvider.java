@@ -1,22 +1,31 @@
 package online.ityura.springdigitallibrary.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import online.ityura.springdigitallibrary.model.User;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.function.Function;
 
 @Component
 public class JwtTokenProvider {
     
+    // Момент выпуска с точностью до миллисекунд: стандартный claim iat хранит только секунды,
+    // а TokenRevocationList сравнивает момент выпуска с моментом отзыва
+    private static final String ISSUED_AT_MILLIS_CLAIM = "iat_ms";
+    
     @Value("${jwt.secret}")
     private String secret;
     
@@ -26,8 +35,38 @@ public class JwtTokenProvider {
     @Value("${jwt.refresh-expiration}")
     private Long refreshExpiration;
     
+    // Недавно проверенные access-токены (0 - отключить): повторный запрос с тем же токеном
+    // не разбирает его и не проверяет HMAC-подпись заново. Запись живёт не дольше срока действия токена
+    @Value("${jwt.verified-cache.max-entries:1024}")
+    private int verifiedCacheMaxEntries = 1024;
+    
+    // Ключ и парсер создаются один раз: секрет не меняется во время работы приложения
+    private volatile SecretKey signingKey;
+    private volatile JwtParser parser;
+    
+    // Токен -> claims: несколько LRU-сегментов со своими блокировками, чтобы запросы с разными токенами
+    // не ждали друг друга. Создаются при первом обращении, когда размер кэша уже известен
+    private static final int VERIFIED_CACHE_STRIPES = 16;
+    private volatile VerifiedTokenStripe[] verifiedTokens;
+    
     private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        SecretKey key = signingKey;
+        if (key == null) {
+            key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+            signingKey = key;
+        }
+        return key;
+    }
+    
+    private JwtParser getParser() {
+        JwtParser current = parser;
+        if (current == null) {
+            current = Jwts.parser()
+                    .verifyWith(getSigningKey())
+                    .build();
+            parser = current;
+        }
+        return current;
     }
     
     public String extractUsername(String token) {
@@ -44,9 +83,7 @@ public class JwtTokenProvider {
     }
     
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
+        return getParser()
                 .parseSignedClaims(token)
                 .getPayload();
     }
@@ -67,6 +104,24 @@ public class JwtTokenProvider {
         return createToken(claims, username, expiration);
     }
     
+    /**
+     * Access-токен с id пользователя и статусом верификации: в stateless-режиме
+     * JwtAuthenticationFilter аутентифицирует запрос только по этим claims
+     */
+    public String generateToken(User user) {
+        return generateAccessToken(user.getEmail(), user.getId(), user.getRole().name(),
+                Boolean.TRUE.equals(user.getIsVerified()));
+    }
+    
+    public String generateAccessToken(String email, Long userId, String role, boolean verified) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("role", role);
+        claims.put("type", "access");
+        claims.put("uid", userId);
+        claims.put("verified", verified);
+        return createToken(claims, email, expiration);
+    }
+    
     public String generateRefreshToken(String username, String role) {
         Map<String, Object> claims = new HashMap<>();
         claims.put("role", role);
@@ -74,12 +129,28 @@ public class JwtTokenProvider {
         return createToken(claims, username, refreshExpiration);
     }
     
+    /**
+     * Refresh-токен, учтённый в RefreshTokenService: tokenId (jti) - ключ записи в хранилище.
+     * Данные пользователя в claims позволяют выпустить новый access-токен без запроса к БД
+     */
+    public String generateRefreshToken(String email, Long userId, String role, boolean verified, String tokenId) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("role", role);
+        claims.put("type", "refresh");
+        claims.put("uid", userId);
+        claims.put("verified", verified);
+        claims.put(Claims.ID, tokenId);
+        return createToken(claims, email, refreshExpiration);
+    }
+    
     private String createToken(Map<String, Object> claims, String subject, Long expirationTime) {
+        long now = System.currentTimeMillis();
         return Jwts.builder()
                 .claims(claims)
+                .claim(ISSUED_AT_MILLIS_CLAIM, now)
                 .subject(subject)
-                .issuedAt(new Date(System.currentTimeMillis()))
-                .expiration(new Date(System.currentTimeMillis() + expirationTime))
+                .issuedAt(new Date(now))
+                .expiration(new Date(now + expirationTime))
                 .signWith(getSigningKey())
                 .compact();
     }
@@ -103,5 +174,115 @@ public class JwtTokenProvider {
         Claims claims = extractAllClaims(token);
         return claims.get("role", String.class);
     }
+    
+    /**
+     * Проверяет подпись и срок действия токена за один разбор и возвращает все нужные claims.
+     * Результат для access-токенов запоминается до истечения срока действия токена.
+     *
+     * @return claims токена или null, если токен недействителен или истёк
+     */
+    public TokenClaims parseToken(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        TokenClaims cached = getVerified(token, Instant.now());
+        if (cached != null) {
+            return cached;
+        }
+        
+        TokenClaims tokenClaims;
+        try {
+            Claims claims = extractAllClaims(token);
+            Number userId = claims.get("uid", Number.class);
+            Number issuedAtMillis = claims.get(ISSUED_AT_MILLIS_CLAIM, Number.class);
+            Instant issuedAt = issuedAtMillis != null
+                    ? Instant.ofEpochMilli(issuedAtMillis.longValue())
+                    : claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null;
+            tokenClaims = new TokenClaims(
+                    claims.getSubject(),
+                    claims.get("type", String.class),
+                    claims.get("role", String.class),
+                    userId != null ? userId.longValue() : null,
+                    claims.get("verified", Boolean.class),
+                    issuedAt,
+                    claims.getExpiration() != null ? claims.getExpiration().toInstant() : null,
+                    claims.getId());
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+        
+        if (tokenClaims.isAccessToken() && tokenClaims.expiresAt() != null) {
+            putVerified(token, tokenClaims);
+        }
+        return tokenClaims;
+    }
+    
+    /**
+     * Claims access-токена для stateless-аутентификации.
+     *
+     * @return claims токена или null, если токен недействителен, не является access-токеном
+     *         или выпущен без id пользователя (до включения stateless-режима)
+     */
+    public AccessTokenClaims parseAccessToken(String token) {
+        TokenClaims claims = parseToken(token);
+        return claims != null ? claims.toAccessClaims() : null;
+    }
+    
+    private TokenClaims getVerified(String token, Instant now) {
+        if (verifiedCacheMaxEntries <= 0) {
+            return null;
+        }
+        VerifiedTokenStripe stripe = verifiedStripe(token);
+        synchronized (stripe) {
+            TokenClaims cached = stripe.get(token);
+            if (cached != null && cached.isExpired(now)) {
+                stripe.remove(token);
+                return null;
+            }
+            return cached;
+        }
+    }
+    
+    private void putVerified(String token, TokenClaims claims) {
+        if (verifiedCacheMaxEntries <= 0) {
+            return;
+        }
+        VerifiedTokenStripe stripe = verifiedStripe(token);
+        synchronized (stripe) {
+            stripe.put(token, claims);
+        }
+    }
+    
+    private VerifiedTokenStripe verifiedStripe(String token) {
+        VerifiedTokenStripe[] stripes = verifiedTokens;
+        if (stripes == null) {
+            int count = Math.min(VERIFIED_CACHE_STRIPES, verifiedCacheMaxEntries);
+            int maxEntriesPerStripe = (verifiedCacheMaxEntries + count - 1) / count;
+            stripes = new VerifiedTokenStripe[count];
+            for (int i = 0; i < count; i++) {
+                stripes[i] = new VerifiedTokenStripe(maxEntriesPerStripe);
+            }
+            verifiedTokens = stripes;
+        }
+        return stripes[Math.floorMod(token.hashCode(), stripes.length)];
+    }
+    
+    /**
+     * LRU-сегмент кэша: при переполнении вытесняется только самая давно использованная запись,
+     * истёкшие записи удаляются при чтении
+     */
+    private static final class VerifiedTokenStripe extends LinkedHashMap<String, TokenClaims> {
+        
+        private final int maxEntries;
+        
+        private VerifiedTokenStripe(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TokenClaims> eldest) {
+            return size() > maxEntries;
+        }
+    }
 }
-
@@ -0,0 +1,137 @@
+package online.ityura.springdigitallibrary.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import online.ityura.springdigitallibrary.exception.ServiceBusyException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PasswordEncoder, выполняющий хеширование (encode/matches) в отдельном ограниченном пуле потоков.
+ *
+ * - Одновременно хешируется не больше threads паролей, ещё queueCapacity ждут в очереди:
+ *   всплеск логинов и регистраций не занимает CPU, нужный остальным запросам
+ * - Если очередь заполнена, запрос сразу получает 503 с Retry-After, а не ждёт освобождения пула
+ * - Метрики: auth.password.hashing (operation=encode/matches, outcome=success/mismatch/error) - время хеширования,
+ *   auth.password.hashing.rejected - отклонённые запросы, auth.password.hashing.queue - размер очереди
+ * - upgradeEncoding делегируется без пула: при смене стоимости BCrypt хеш пересчитывается при следующем логине
+ */
+public class OffloadingPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final long retryAfterSeconds;
+    private final MeterRegistry meterRegistry;
+    private final Counter rejectedEncodes;
+    private final Counter rejectedMatches;
+
+    public OffloadingPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, long retryAfterSeconds,
+                                     MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.meterRegistry = meterRegistry;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.rejectedEncodes = Counter.builder("auth.password.hashing.rejected")
+                .tag("operation", "encode")
+                .description("Password hashing requests rejected because the hashing pool is full")
+                .register(meterRegistry);
+        this.rejectedMatches = Counter.builder("auth.password.hashing.rejected")
+                .tag("operation", "matches")
+                .description("Password hashing requests rejected because the hashing pool is full")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.hashing.queue", executor, pool -> pool.getQueue().size())
+                .description("Password hashing requests waiting for a free thread")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return submit("encode", rejectedEncodes, () -> {
+            long start = System.nanoTime();
+            try {
+                String encoded = delegate.encode(rawPassword);
+                record("encode", "success", start);
+                return encoded;
+            } catch (RuntimeException e) {
+                record("encode", "error", start);
+                throw e;
+            }
+        });
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit("matches", rejectedMatches, () -> {
+            long start = System.nanoTime();
+            try {
+                boolean matches = delegate.matches(rawPassword, encodedPassword);
+                record("matches", matches ? "success" : "mismatch", start);
+                return matches;
+            } catch (RuntimeException e) {
+                record("matches", "error", start);
+                throw e;
+            }
+        });
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private <T> T submit(String operation, Counter rejected, Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ServiceBusyException("Too many authentication requests, please retry later", retryAfterSeconds);
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceBusyException("Password " + operation + " was interrupted", retryAfterSeconds);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Password " + operation + " failed", e.getCause());
+        }
+    }
+
+    private void record(String operation, String outcome, long startNanos) {
+        Timer.builder("auth.password.hashing")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .description("Password hashing duration, excluding time spent in the queue")
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+}
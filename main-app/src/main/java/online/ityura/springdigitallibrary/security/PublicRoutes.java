@@ -0,0 +1,199 @@
+package online.ityura.springdigitallibrary.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Единая таблица публичных маршрутов.
+ *
+ * - SecurityConfig разрешает все маршруты таблицы без авторизации (permitAll)
+ * - JwtAuthenticationFilter не обрабатывает JWT для маршрутов с доступом PUBLIC
+ * - Шаблоны в синтаксисе Spring: "*" - один сегмент пути, "/**" в конце - любое количество сегментов (в том числе ноль)
+ * - Для проверки в фильтре таблица один раз компилируется в дерево по сегментам пути:
+ *   сопоставление запроса не создаёт строк и регулярных выражений
+ */
+@Component
+public class PublicRoutes {
+
+    public enum Access {
+        // Доступно без авторизации, JWT не проверяется
+        PUBLIC,
+        // Доступно без авторизации, но переданный JWT обрабатывается (эндпоинт может учитывать пользователя)
+        OPTIONAL_AUTH
+    }
+
+    public record Route(HttpMethod method, String pattern, Access access) {
+    }
+
+    private static final List<Route> ROUTES = List.of(
+            // Swagger / OpenAPI
+            new Route(null, "/swagger-ui/**", Access.PUBLIC),
+            new Route(null, "/swagger-ui.html", Access.PUBLIC),
+            new Route(null, "/v3/api-docs/**", Access.PUBLIC),
+            new Route(null, "/swagger-resources/**", Access.PUBLIC),
+            new Route(null, "/webjars/**", Access.PUBLIC),
+            // Каталог, поиск и изображения книг
+            new Route(null, "/api/v1/books", Access.PUBLIC),
+            new Route(null, "/api/v1/books/search", Access.PUBLIC),
+            new Route(null, "/api/v1/books/suggestions", Access.PUBLIC),
+            new Route(null, "/api/v1/books/images/all", Access.PUBLIC),
+            new Route(null, "/api/v1/books/*/image", Access.PUBLIC),
+            new Route(HttpMethod.GET, "/api/v1/books/*/reviews", Access.PUBLIC),
+            // Stripe webhook и страницы результата оплаты
+            new Route(null, "/api/v1/payment/webhook", Access.PUBLIC),
+            new Route(null, "/api/v1/payment/success", Access.PUBLIC),
+            new Route(null, "/api/v1/payment/cancel", Access.PUBLIC),
+            // Верификация email и восстановление пароля
+            new Route(null, "/api/v1/auth/verify-email", Access.PUBLIC),
+            new Route(null, "/api/v1/auth/resend-verification", Access.PUBLIC),
+            new Route(null, "/api/v1/auth/forgot-password", Access.PUBLIC),
+            new Route(null, "/api/v1/auth/reset-password", Access.PUBLIC),
+            new Route(null, "/api/v1/auth/**", Access.OPTIONAL_AUTH),
+            // Служебные эндпоинты
+            new Route(null, "/api/v1/health", Access.OPTIONAL_AUTH),
+            new Route(null, "/actuator/**", Access.OPTIONAL_AUTH),
+            new Route(null, "/api/v1/kuberinfo", Access.OPTIONAL_AUTH)
+    );
+
+    private static final int ANY_METHOD = -1;
+    private static final int OTHER_METHOD = 1 << 8;
+
+    private final Node root = new Node();
+
+    public PublicRoutes() {
+        for (Route route : ROUTES) {
+            if (route.access() == Access.PUBLIC) {
+                add(route);
+            }
+        }
+    }
+
+    public List<Route> getRoutes() {
+        return ROUTES;
+    }
+
+    /**
+     * true - запрос к маршруту с доступом PUBLIC, JWT для него не проверяется
+     */
+    public boolean skipsAuthentication(HttpServletRequest request) {
+        return skipsAuthentication(request.getMethod(), request.getRequestURI());
+    }
+
+    public boolean skipsAuthentication(String method, String path) {
+        if (path == null || path.isEmpty() || path.charAt(0) != '/') {
+            return false;
+        }
+        return matches(root, path, 1, methodBit(method));
+    }
+
+    private void add(Route route) {
+        int mask = route.method() != null ? methodBit(route.method().name()) : ANY_METHOD;
+        String[] segments = route.pattern().substring(1).split("/", -1);
+        Node node = root;
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (segment.equals("**") && i == segments.length - 1) {
+                node.restMethods |= mask;
+                return;
+            }
+            node = segment.equals("*") ? node.wildcard() : node.child(segment);
+        }
+        node.methods |= mask;
+    }
+
+    /**
+     * Сопоставляет путь, начиная с позиции start (начало очередного сегмента).
+     * Сначала точное совпадение сегмента, затем "*", затем "/**" - при неудаче выполняется возврат к другим вариантам
+     */
+    private static boolean matches(Node node, String path, int start, int methodBit) {
+        if ((node.restMethods & methodBit) != 0) {
+            return true;
+        }
+        int end = path.indexOf('/', start);
+        if (end < 0) {
+            end = path.length();
+        }
+        boolean last = end == path.length();
+        int length = end - start;
+
+        for (int i = 0; i < node.childCount; i++) {
+            String segment = node.childSegments[i];
+            if (segment.length() == length && path.regionMatches(start, segment, 0, length)) {
+                Node child = node.childNodes[i];
+                if (last ? child.endsHere(methodBit) : matches(child, path, end + 1, methodBit)) {
+                    return true;
+                }
+            }
+        }
+        if (node.wildcardNode != null && length > 0) {
+            Node child = node.wildcardNode;
+            if (last ? child.endsHere(methodBit) : matches(child, path, end + 1, methodBit)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int methodBit(String method) {
+        if (method == null) {
+            return OTHER_METHOD;
+        }
+        return switch (method) {
+            case "GET" -> 1;
+            case "HEAD" -> 1 << 1;
+            case "POST" -> 1 << 2;
+            case "PUT" -> 1 << 3;
+            case "PATCH" -> 1 << 4;
+            case "DELETE" -> 1 << 5;
+            case "OPTIONS" -> 1 << 6;
+            case "TRACE" -> 1 << 7;
+            default -> OTHER_METHOD;
+        };
+    }
+
+    /**
+     * Узел дерева: дочерние сегменты хранятся в массивах (их мало), "*" - отдельной ссылкой.
+     * methods - методы, для которых путь заканчивается в этом узле; restMethods - методы для "/**"
+     */
+    private static final class Node {
+        private String[] childSegments = new String[0];
+        private Node[] childNodes = new Node[0];
+        private int childCount;
+        private Node wildcardNode;
+        private int methods;
+        private int restMethods;
+
+        private Node child(String segment) {
+            for (int i = 0; i < childCount; i++) {
+                if (childSegments[i].equals(segment)) {
+                    return childNodes[i];
+                }
+            }
+            Node child = new Node();
+            childSegments = Arrays.copyOf(childSegments, childCount + 1);
+            childNodes = Arrays.copyOf(childNodes, childCount + 1);
+            childSegments[childCount] = segment;
+            childNodes[childCount] = child;
+            childCount++;
+            return child;
+        }
+
+        /**
+         * Путь закончился на этом узле. "/**" допускает и ноль сегментов: "/v3/api-docs" для "/v3/api-docs/**"
+         */
+        private boolean endsHere(int methodBit) {
+            return ((methods | restMethods) & methodBit) != 0;
+        }
+
+        private Node wildcard() {
+            if (wildcardNode == null) {
+                wildcardNode = new Node();
+            }
+            return wildcardNode;
+        }
+    }
+}
@@ -2,10 +2,12 @@ package online.ityura.springdigitallibrary.security;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import online.ityura.springdigitallibrary.dto.response.ErrorResponse;
+import online.ityura.springdigitallibrary.filter.AuthRateLimitFilter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -36,10 +38,29 @@ public class SecurityConfig {
     @Autowired
     private JwtAuthenticationFilter jwtAuthenticationFilter;
     
+    @Autowired
+    private PublicRoutes publicRoutes;
+    
+    @Autowired
+    private AuthRateLimitFilter authRateLimitFilter;
+    
+    /**
+     * BCrypt выполняется в отдельном ограниченном пуле (OffloadingPasswordEncoder): всплеск логинов
+     * не занимает все потоки Tomcat. Стоимость задаётся app.security.bcrypt.strength, хеши с другой
+     * стоимостью пересчитываются при следующем успешном логине (CustomUserDetailsService.updatePassword)
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
+    public PasswordEncoder passwordEncoder(
+            MeterRegistry meterRegistry,
+            @Value("${app.security.bcrypt.strength:10}") int strength,
+            @Value("${app.security.password-hashing.threads:0}") int threads,
+            @Value("${app.security.password-hashing.queue-capacity:64}") int queueCapacity,
+            @Value("${app.security.password-hashing.retry-after-seconds:2}") long retryAfterSeconds) {
+        // 0 - половина доступных ядер, остальные остаются для обычных запросов
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
         // Старый вариант с безопасным алгоритмом хеширования паролей BCrypt:
-         return new BCryptPasswordEncoder();
+         return new OffloadingPasswordEncoder(new BCryptPasswordEncoder(strength), poolSize, queueCapacity,
+                 retryAfterSeconds, meterRegistry);
         // Вариант БЕЗ хеширования, пароли хранятся и сравниваются в открытом виде (только для локальных тестов, не
         // использовать в продакшене):
 //        return NoOpPasswordEncoder.getInstance();
@@ -78,44 +99,28 @@ public class SecurityConfig {
     public SecurityFilterChain securityFilterChain(HttpSecurity http, ObjectMapper objectMapper) throws Exception {
         http
             .csrf(csrf -> csrf.disable())
-            .authorizeHttpRequests(auth -> auth
-                .requestMatchers("/api/v1/auth/**").permitAll()
-                .requestMatchers("/api/v1/health").permitAll()
-                .requestMatchers("/actuator/**").permitAll()
-                .requestMatchers("/api/v1/kuberinfo").permitAll()
-                .requestMatchers("/api/v1/payment/webhook").permitAll()
-                .requestMatchers("/api/v1/payment/success").permitAll()
-                .requestMatchers("/api/v1/payment/cancel").permitAll()
-                .requestMatchers(
-                    "/swagger-ui/**", 
-                    "/v3/api-docs/**", 
-                    "/swagger-ui.html",
-                    "/swagger-resources/**",
-                    "/webjars/**",
-                    "/swagger-ui/index.html"
-                ).permitAll()
-                .requestMatchers("/api/v1/admin/**").hasRole("ADMIN")
-                // Публичные эндпоинты для книг (более специфичные правила идут первыми)
-                .requestMatchers("/api/v1/books").permitAll()
-                .requestMatchers("/api/v1/books/images/all").permitAll()
-                // Эндпоинты изображений - публичные (паттерн для /api/v1/books/{id}/image)
-                .requestMatchers("/api/v1/books/*/image").permitAll()
-                // GET запросы к списку отзывов - публичные
-                .requestMatchers(HttpMethod.GET, "/api/v1/books/*/reviews").permitAll()
-                // Эндпоинты, требующие авторизацию (используем * вместо ** в середине)
-                .requestMatchers("/api/v1/books/*/download").hasAnyRole("USER", "ADMIN")
-                .requestMatchers("/api/v1/books/*/ratings/**").hasAnyRole("USER", "ADMIN")
-                .requestMatchers("/api/v1/books/*/reviews/**").hasAnyRole("USER", "ADMIN")
-                // Эндпоинты сообщений читателям - требуют авторизацию
-                .requestMatchers("/api/v1/books/*/message/**").hasAnyRole("USER", "ADMIN")
-                // Эндпоинты службы поддержки - требуют авторизацию
-                .requestMatchers("/api/v1/support/**").hasAnyRole("USER", "ADMIN")
-                // Эндпоинты платежей - требуют авторизацию (кроме webhook)
-                .requestMatchers("/api/v1/payment/**").hasAnyRole("USER", "ADMIN")
-                // Остальные эндпоинты книг (например, /api/v1/books/{id}) - публичные
-                .requestMatchers("/api/v1/books/**").permitAll()
-                .anyRequest().authenticated()
-            )
+            .authorizeHttpRequests(auth -> {
+                // Публичные маршруты берутся из той же таблицы, по которой JwtAuthenticationFilter
+                // пропускает запросы без проверки JWT
+                for (PublicRoutes.Route route : publicRoutes.getRoutes()) {
+                    auth.requestMatchers(route.method(), route.pattern()).permitAll();
+                }
+                auth
+                    .requestMatchers("/api/v1/admin/**").hasRole("ADMIN")
+                    // Эндпоинты, требующие авторизацию (используем * вместо ** в середине)
+                    .requestMatchers("/api/v1/books/*/download").hasAnyRole("USER", "ADMIN")
+                    .requestMatchers("/api/v1/books/*/ratings/**").hasAnyRole("USER", "ADMIN")
+                    .requestMatchers("/api/v1/books/*/reviews/**").hasAnyRole("USER", "ADMIN")
+                    // Эндпоинты сообщений читателям - требуют авторизацию
+                    .requestMatchers("/api/v1/books/*/message/**").hasAnyRole("USER", "ADMIN")
+                    // Эндпоинты службы поддержки - требуют авторизацию
+                    .requestMatchers("/api/v1/support/**").hasAnyRole("USER", "ADMIN")
+                    // Эндпоинты платежей - требуют авторизацию (кроме webhook)
+                    .requestMatchers("/api/v1/payment/**").hasAnyRole("USER", "ADMIN")
+                    // Остальные эндпоинты книг (например, /api/v1/books/{id}) - публичные
+                    .requestMatchers("/api/v1/books/**").permitAll()
+                    .anyRequest().authenticated();
+            })
             .sessionManagement(session -> session
                 .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
             )
@@ -136,6 +141,8 @@ public class SecurityConfig {
                     }
                 })
             )
+            // Ограничение частоты логинов и регистраций - до разбора JWT (фильтры с одной позицией идут в порядке добавления)
+            .addFilterBefore(authRateLimitFilter, UsernamePasswordAuthenticationFilter.class)
             .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
         
         // LoggingContextFilter автоматически регистрируется через @Component
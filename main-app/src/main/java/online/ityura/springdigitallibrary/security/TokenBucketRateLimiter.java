@@ -0,0 +1,140 @@
+package online.ityura.springdigitallibrary.security;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token bucket в памяти без блокировок (вариант GCRA).
+ *
+ * - Состояние ключа - одно число: "теоретическое время прибытия" (TAT) следующего запроса, обновляется CAS-ом
+ * - Ёмкость capacity запросов подряд, затем один запрос раз в refillIntervalNanos
+ * - Ключ с TAT в прошлом соответствует полному ведру и не отличается от отсутствующего: такие ключи
+ *   удаляются колесом таймеров (wheel) по слотам в одну секунду, без обхода всей таблицы
+ * - Число ключей ограничено maxKeys. Пока таблица заполнена, новый ключ получает отказ или, если задан
+ *   allowWhenFull, пропускается без учёта (поток разных ключей не должен блокировать всех новых клиентов,
+ *   когда ограничение по другому ключу всё равно действует). Такие запросы считаются в overflowCount
+ */
+public class TokenBucketRateLimiter {
+
+    private static final long SLOT_NANOS = 1_000_000_000L;
+
+    private final long refillIntervalNanos;
+    private final long burstToleranceNanos;
+    private final int maxKeys;
+    private final boolean allowWhenFull;
+    private final LongAdder overflowCount = new LongAdder();
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final Set<String>[] wheel;
+    private final AtomicLong sweptSlot;
+
+    public TokenBucketRateLimiter(int capacity, long refillIntervalNanos, int maxKeys, long nowNanos) {
+        this(capacity, refillIntervalNanos, maxKeys, false, nowNanos);
+    }
+
+    @SuppressWarnings("unchecked")
+    public TokenBucketRateLimiter(int capacity, long refillIntervalNanos, int maxKeys, boolean allowWhenFull,
+                                  long nowNanos) {
+        if (capacity < 1 || refillIntervalNanos < 1 || maxKeys < 1) {
+            throw new IllegalArgumentException("Rate limiter capacity, refill interval and max keys must be positive");
+        }
+        this.refillIntervalNanos = refillIntervalNanos;
+        this.burstToleranceNanos = (capacity - 1) * refillIntervalNanos;
+        this.maxKeys = maxKeys;
+        this.allowWhenFull = allowWhenFull;
+        // TAT не бывает дальше now + capacity * interval: колесо покрывает этот горизонт с запасом
+        int slots = (int) Math.min(Integer.MAX_VALUE - 2,
+                (burstToleranceNanos + refillIntervalNanos) / SLOT_NANOS + 2);
+        this.wheel = new Set[slots];
+        for (int i = 0; i < slots; i++) {
+            wheel[i] = ConcurrentHashMap.newKeySet();
+        }
+        this.sweptSlot = new AtomicLong(Math.floorDiv(nowNanos, SLOT_NANOS));
+    }
+
+    /**
+     * Пытается взять токен для ключа.
+     *
+     * @return 0, если запрос разрешён, иначе время в наносекундах, через которое появится токен
+     */
+    public long tryAcquire(String key, long nowNanos) {
+        sweep(nowNanos);
+
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxKeys) {
+                overflowCount.increment();
+                return allowWhenFull ? 0 : SLOT_NANOS;
+            }
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(nowNanos));
+        }
+
+        while (true) {
+            long tat = bucket.get();
+            long waitNanos = tat - burstToleranceNanos - nowNanos;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            long newTat = Math.max(tat - nowNanos, 0) + nowNanos + refillIntervalNanos;
+            if (bucket.compareAndSet(tat, newTat)) {
+                wheel[slotIndex(newTat)].add(key);
+                return 0;
+            }
+        }
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    /**
+     * Сколько запросов с новым ключом пришло при заполненной таблице (отклонены или пропущены без учёта)
+     */
+    public long overflowCount() {
+        return overflowCount.sum();
+    }
+
+    /**
+     * Удаляет ключи, ведро которых снова полное. Обрабатывает только слоты, время которых уже прошло;
+     * одновременно подметает один поток
+     */
+    private void sweep(long nowNanos) {
+        long currentSlot = Math.floorDiv(nowNanos, SLOT_NANOS);
+        long lastSwept = sweptSlot.get();
+        if (currentSlot <= lastSwept || !sweptSlot.compareAndSet(lastSwept, currentSlot)) {
+            return;
+        }
+        long from = Math.max(lastSwept, currentSlot - wheel.length);
+        List<String> rescheduled = new ArrayList<>();
+        for (long slot = from; slot < currentSlot; slot++) {
+            Set<String> keys = wheel[(int) Math.floorMod(slot, (long) wheel.length)];
+            for (String key : keys) {
+                keys.remove(key);
+                AtomicLong bucket = buckets.get(key);
+                if (bucket == null) {
+                    continue;
+                }
+                long tat = bucket.get();
+                if (tat - nowNanos <= 0) {
+                    buckets.remove(key, bucket);
+                } else {
+                    // Ключ обновлён позже: он должен остаться в слоте своего TAT
+                    rescheduled.add(key);
+                }
+            }
+        }
+        for (String key : rescheduled) {
+            AtomicLong bucket = buckets.get(key);
+            if (bucket != null) {
+                wheel[slotIndex(bucket.get())].add(key);
+            }
+        }
+    }
+
+    private int slotIndex(long nanos) {
+        return (int) Math.floorMod(Math.floorDiv(nanos, SLOT_NANOS), (long) wheel.length);
+    }
+}
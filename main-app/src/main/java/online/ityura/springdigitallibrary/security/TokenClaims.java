@@ -0,0 +1,48 @@
+package online.ityura.springdigitallibrary.security;
+
+import online.ityura.springdigitallibrary.model.Role;
+
+import java.time.Instant;
+
+/**
+ * Неизменяемое представление claims JWT после однократной проверки подписи и срока действия.
+ * Поля, которых нет в токене (старые токены без id пользователя и т.п.), равны null. tokenId - claim jti refresh-токена
+ */
+public record TokenClaims(
+        String subject,
+        String type,
+        String role,
+        Long userId,
+        Boolean verified,
+        Instant issuedAt,
+        Instant expiresAt,
+        String tokenId
+) {
+    
+    public boolean isAccessToken() {
+        return "access".equals(type);
+    }
+    
+    public boolean isRefreshToken() {
+        return "refresh".equals(type);
+    }
+    
+    public boolean isExpired(Instant now) {
+        return expiresAt != null && !expiresAt.isAfter(now);
+    }
+    
+    /**
+     * Claims для stateless-аутентификации или null, если токен выпущен без id пользователя,
+     * статуса верификации или роли
+     */
+    public AccessTokenClaims toAccessClaims() {
+        if (!isAccessToken() || userId == null || verified == null || role == null || issuedAt == null) {
+            return null;
+        }
+        try {
+            return new AccessTokenClaims(subject, userId, Role.valueOf(role), verified, issuedAt);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package online.ityura.springdigitallibrary.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Отзыв access-токенов в stateless-режиме аутентификации.
+ * Для пользователя хранится момент отзыва (миллисекунды): токены, выпущенные раньше него, отклоняются.
+ * Токен, выпущенный сразу после отзыва в ту же секунду (новый вход после смены пароля), остаётся действительным.
+ * Запись нужна только пока живут старые токены (jwt.expiration), затем удаляется.
+ * Список хранится в памяти экземпляра приложения.
+ */
+@Component
+public class TokenRevocationList {
+    
+    @Value("${jwt.expiration}")
+    private long accessTokenTtlMillis;
+    
+    // id пользователя -> момент отзыва (миллисекунды epoch, точность claim iat_ms)
+    private final Map<Long, Long> revokedAt = new ConcurrentHashMap<>();
+    
+    /**
+     * Отзывает все уже выпущенные access-токены пользователя (удаление, смена пароля или роли)
+     */
+    public void revoke(Long userId) {
+        long now = System.currentTimeMillis();
+        revokedAt.merge(userId, now, Math::max);
+        purgeExpired(now);
+    }
+    
+    public boolean isRevoked(Long userId, Instant issuedAt) {
+        Long revokedAtMillis = revokedAt.get(userId);
+        return revokedAtMillis != null && issuedAt.toEpochMilli() < revokedAtMillis;
+    }
+    
+    public int size() {
+        return revokedAt.size();
+    }
+    
+    private void purgeExpired(long nowMillis) {
+        // Токены, выпущенные до этого момента, уже истекли сами
+        long cutoff = nowMillis - accessTokenTtlMillis;
+        revokedAt.values().removeIf(revokedAtMillis -> revokedAtMillis < cutoff);
+    }
+}
@@ -10,6 +10,7 @@ import online.ityura.springdigitallibrary.model.Book;
 import online.ityura.springdigitallibrary.repository.AuthorRepository;
 import online.ityura.springdigitallibrary.repository.BookRepository;
 import online.ityura.springdigitallibrary.repository.ReviewRepository;
+import online.ityura.springdigitallibrary.repository.projection.BookSuggestionRow;
 import online.ityura.springdigitallibrary.service.BookImageService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -41,6 +42,15 @@ public class AdminBookService {
     @Autowired
     private BookFileService bookFileService;
     
+    @Autowired
+    private BookCatalogCacheService bookCatalogCacheService;
+    
+    @Autowired
+    private BookSuggestionService bookSuggestionService;
+    
+    @Autowired
+    private ReviewPageCacheService reviewPageCacheService;
+    
     @Transactional
     public BookResponse createBook(CreateBookRequest request) {
         // Проверка уникальности (title, author)
@@ -69,12 +79,18 @@ public class AdminBookService {
                 .build();
         
         book = bookRepository.save(book);
+        // Поисковый документ (tsvector) пересчитывается в БД по только что сохранённым полям
+        bookRepository.refreshSearchVector(book.getId());
+        bookCatalogCacheService.invalidateAll();
+        bookSuggestionService.indexBooks(List.of(toSuggestionRow(book)));
+        
         return mapToBookResponse(book);
     }
     
     @Transactional
     public List<BookResponse> createBooks(List<CreateBookRequest> requests) {
         List<BookResponse> responses = new ArrayList<>();
+        List<BookSuggestionRow> suggestionRows = new ArrayList<>();
         
         for (CreateBookRequest request : requests) {
             // Проверка уникальности (title, author)
@@ -103,9 +119,14 @@ public class AdminBookService {
                     .build();
             
             book = bookRepository.save(book);
+            bookRepository.refreshSearchVector(book.getId());
             responses.add(mapToBookResponse(book));
+            suggestionRows.add(toSuggestionRow(book));
         }
         
+        bookCatalogCacheService.invalidateAll();
+        bookSuggestionService.indexBooks(suggestionRows);
+        
         return responses;
     }
     
@@ -150,6 +171,10 @@ public class AdminBookService {
         book.setDiscountPercent(request.getDiscountPercent() != null ? request.getDiscountPercent() : BigDecimal.ZERO);
         
         book = bookRepository.save(book);
+        bookRepository.refreshSearchVector(book.getId());
+        bookCatalogCacheService.invalidateAll();
+        bookSuggestionService.indexBooks(List.of(toSuggestionRow(book)));
+        
         return mapToBookResponse(book);
     }
     
@@ -219,6 +244,7 @@ public class AdminBookService {
         }
         
         book = bookRepository.save(book);
+        bookRepository.refreshSearchVector(book.getId());
         
         // Если передан файл изображения, обновляем изображение
         if (imageFile != null && !imageFile.isEmpty()) {
@@ -237,6 +263,9 @@ public class AdminBookService {
                             "Book not found with id: " + bookId));
         }
         
+        bookCatalogCacheService.invalidateAll();
+        bookSuggestionService.indexBooks(List.of(toSuggestionRow(book)));
+        
         return mapToBookResponse(book);
     }
     
@@ -264,6 +293,14 @@ public class AdminBookService {
         // (файл будет оставаться в файловой системе, но ссылка в БД удалится вместе с книгой)
         
         bookRepository.delete(book);
+        
+        if (book.getImagePath() != null && !book.getImagePath().isEmpty()) {
+            bookImageService.invalidateImagesArchive();
+        }
+        
+        bookCatalogCacheService.invalidateAll();
+        reviewPageCacheService.invalidateBook(bookId);
+        bookSuggestionService.removeBooks(List.of(bookId));
     }
     
     @Transactional
@@ -301,6 +338,21 @@ public class AdminBookService {
         
         // Удаляем автора
         authorRepository.delete(author);
+        
+        if (books.stream().anyMatch(book -> book.getImagePath() != null && !book.getImagePath().isEmpty())) {
+            bookImageService.invalidateImagesArchive();
+        }
+        
+        bookCatalogCacheService.invalidateAll();
+        books.forEach(book -> reviewPageCacheService.invalidateBook(book.getId()));
+        bookSuggestionService.removeBooks(books.stream().map(Book::getId).toList());
+    }
+    
+    private BookSuggestionRow toSuggestionRow(Book book) {
+        Author author = book.getAuthor();
+        return new BookSuggestionRow(book.getId(), book.getTitle(),
+                author != null ? author.getId() : null,
+                author != null ? author.getFullName() : null);
     }
     
     private BookResponse mapToBookResponse(Book book) {
@@ -321,6 +373,7 @@ public class AdminBookService {
                 .genre(book.getGenre())
                 .ratingAvg(book.getRatingAvg())
                 .ratingCount(book.getRatingCount())
+                .ratingHistogram(book.getRatingHistogram())
                 .hasFile(hasFile)
                 .imagePath(book.getImagePath())
                 .price(book.getPrice())
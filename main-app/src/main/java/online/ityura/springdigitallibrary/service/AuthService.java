@@ -9,6 +9,7 @@ import online.ityura.springdigitallibrary.model.Role;
 import online.ityura.springdigitallibrary.model.User;
 import online.ityura.springdigitallibrary.repository.UserRepository;
 import online.ityura.springdigitallibrary.security.JwtTokenProvider;
+import online.ityura.springdigitallibrary.security.TokenClaims;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,6 +37,9 @@ public class AuthService {
     @Autowired
     private JwtTokenProvider jwtTokenProvider;
     
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+    
     @Autowired
     private AuthenticationManager authenticationManager;
     
@@ -104,8 +108,8 @@ public class AuthService {
             );
         }
         
-        String accessToken = jwtTokenProvider.generateToken(user.getEmail(), user.getRole().name());
-        String refreshToken = jwtTokenProvider.generateRefreshToken(user.getEmail(), user.getRole().name());
+        String accessToken = jwtTokenProvider.generateToken(user);
+        String refreshToken = refreshTokenService.issue(user);
         
         return LoginResponse.builder()
                 .accessToken(accessToken)
@@ -117,33 +121,18 @@ public class AuthService {
     public LoginResponse refreshToken(RefreshTokenRequest request) {
         String refreshToken = request.getRefreshToken();
         
-        // Проверяем, что это действительно refresh токен
-        if (!jwtTokenProvider.isRefreshToken(refreshToken)) {
+        // Один разбор токена: подпись, срок действия и тип проверяются вместе
+        TokenClaims claims = jwtTokenProvider.parseToken(refreshToken);
+        if (claims == null || !claims.isRefreshToken()) {
             throw new RuntimeException("Invalid refresh token");
         }
         
-        // Извлекаем email из токена
-        String email = jwtTokenProvider.extractUsername(refreshToken);
-        
-        // Проверяем, что пользователь существует
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
-        
-        // Валидируем токен
-        org.springframework.security.core.userdetails.UserDetails userDetails = 
-                org.springframework.security.core.userdetails.User.builder()
-                        .username(user.getEmail())
-                        .password(user.getPasswordHash())
-                        .authorities("ROLE_" + user.getRole().name())
-                        .build();
-        
-        if (!jwtTokenProvider.validateToken(refreshToken, userDetails)) {
-            throw new RuntimeException("Refresh token is expired or invalid");
-        }
+        // Ротация: старый токен становится недействительным, повторное его использование отзывает сессию
+        String newRefreshToken = refreshTokenService.rotate(claims);
         
-        // Генерируем новые токены
-        String newAccessToken = jwtTokenProvider.generateToken(user.getEmail(), user.getRole().name());
-        String newRefreshToken = jwtTokenProvider.generateRefreshToken(user.getEmail(), user.getRole().name());
+        // Данные пользователя берутся из refresh-токена: удаление пользователя и смена пароля отзывают его токены
+        String newAccessToken = jwtTokenProvider.generateAccessToken(claims.subject(), claims.userId(), claims.role(),
+                Boolean.TRUE.equals(claims.verified()));
         
         return LoginResponse.builder()
                 .accessToken(newAccessToken)
@@ -0,0 +1,185 @@
+package online.ityura.springdigitallibrary.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import online.ityura.springdigitallibrary.dto.response.BookResponse;
+import online.ityura.springdigitallibrary.model.Genre;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through кэш страниц каталога книг (GET /api/v1/books).
+ *
+ * - Ключ: жанр, номер и размер страницы, сортировка
+ * - Размер ограничен, при переполнении вытесняется давно не использованная страница (LRU)
+ * - Инвалидация выполняется после коммита транзакции, которая изменила данные:
+ *   изменения книг администратором сбрасывают весь кэш, отзывы и рейтинги - только затронутые страницы
+ * - Страница, загруженная до инвалидации, в кэш не попадает (счётчик поколений)
+ * - Метрики: catalog.cache.requests (result=hit/miss), catalog.cache.evictions (cause=size/invalidation), catalog.cache.size
+ */
+@Service
+public class BookCatalogCacheService {
+
+    private final int maxEntries;
+    private final Map<CacheKey, CacheEntry> entries;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter sizeEvictions;
+    private final Counter invalidationEvictions;
+
+    // Увеличивается при каждой инвалидации, защищает от записи в кэш устаревших данных
+    private long generation;
+
+    public BookCatalogCacheService(MeterRegistry meterRegistry,
+                                   @Value("${app.catalog.cache.max-entries:500}") int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, CacheEntry> eldest) {
+                if (size() > BookCatalogCacheService.this.maxEntries) {
+                    sizeEvictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        this.hits = Counter.builder("catalog.cache.requests")
+                .tag("result", "hit")
+                .description("Catalog page cache lookups")
+                .register(meterRegistry);
+        this.misses = Counter.builder("catalog.cache.requests")
+                .tag("result", "miss")
+                .description("Catalog page cache lookups")
+                .register(meterRegistry);
+        this.sizeEvictions = Counter.builder("catalog.cache.evictions")
+                .tag("cause", "size")
+                .description("Catalog pages removed from the cache")
+                .register(meterRegistry);
+        this.invalidationEvictions = Counter.builder("catalog.cache.evictions")
+                .tag("cause", "invalidation")
+                .description("Catalog pages removed from the cache")
+                .register(meterRegistry);
+        Gauge.builder("catalog.cache.size", this, BookCatalogCacheService::size)
+                .description("Number of cached catalog pages")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Возвращает страницу каталога из кэша или загружает её через loader
+     */
+    public Page<BookResponse> getPage(Genre genre, Pageable pageable, Supplier<Page<BookResponse>> loader) {
+        if (maxEntries <= 0 || pageable.isUnpaged()) {
+            return loader.get();
+        }
+
+        CacheKey key = new CacheKey(genre, pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort());
+        long loadGeneration;
+        synchronized (this) {
+            CacheEntry entry = entries.get(key);
+            if (entry != null) {
+                hits.increment();
+                return entry.page();
+            }
+            loadGeneration = generation;
+        }
+        misses.increment();
+
+        // Загрузка выполняется вне блокировки, параллельные промахи по одному ключу допустимы
+        Page<BookResponse> page = loader.get();
+        Set<Long> bookIds = page.getContent().stream()
+                .map(BookResponse::getId)
+                .collect(Collectors.toUnmodifiableSet());
+
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                entries.put(key, new CacheEntry(page, bookIds));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Сбрасывает весь кэш после коммита текущей транзакции (создание, изменение, удаление книг)
+     */
+    public void invalidateAll() {
+        afterCommit(() -> {
+            synchronized (this) {
+                generation++;
+                invalidationEvictions.increment(entries.size());
+                entries.clear();
+            }
+        });
+    }
+
+    /**
+     * Удаляет страницы, которые содержат книгу, и страницы, отсортированные по изменившимся полям
+     * (книга могла переместиться на них с других страниц)
+     *
+     * @param changedProperties изменившиеся поля книги (имена свойств BookResponse/Book)
+     */
+    public void invalidateBook(Long bookId, String... changedProperties) {
+        afterCommit(() -> {
+            synchronized (this) {
+                generation++;
+                Iterator<Map.Entry<CacheKey, CacheEntry>> iterator = entries.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<CacheKey, CacheEntry> entry = iterator.next();
+                    if (entry.getValue().bookIds().contains(bookId)
+                            || isSortedByAny(entry.getKey().sort(), changedProperties)) {
+                        iterator.remove();
+                        invalidationEvictions.increment();
+                    }
+                }
+            }
+        });
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private boolean isSortedByAny(Sort sort, String[] properties) {
+        for (String property : properties) {
+            if (sort.getOrderFor(property) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Выполняет действие после успешного коммита или сразу, если транзакции нет
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private record CacheKey(Genre genre, int page, int size, Sort sort) {
+    }
+
+    private record CacheEntry(Page<BookResponse> page, Set<Long> bookIds) {
+    }
+}
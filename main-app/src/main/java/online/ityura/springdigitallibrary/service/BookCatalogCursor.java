@@ -0,0 +1,42 @@
+package online.ityura.springdigitallibrary.service;
+
+import online.ityura.springdigitallibrary.repository.BookCatalogSortKey;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Курсор keyset-пагинации каталога: поле и направление сортировки, значение ключа и id последней книги.
+ * Для клиента курсор непрозрачен (Base64url), сортировка продолжается по тому полю, по которому был выдан курсор.
+ */
+public record BookCatalogCursor(BookCatalogSortKey sortKey, Sort.Direction direction, Long lastId, Object lastValue) {
+
+    private static final String SEPARATOR = "|";
+
+    public String encode() {
+        // Значение идёт последним: в названии книги может встретиться разделитель
+        String raw = sortKey.name() + SEPARATOR + direction.name() + SEPARATOR + lastId + SEPARATOR + lastValue;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static BookCatalogCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 4);
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Unexpected cursor format");
+            }
+            BookCatalogSortKey sortKey = BookCatalogSortKey.valueOf(parts[0]);
+            return new BookCatalogCursor(
+                    sortKey,
+                    Sort.Direction.valueOf(parts[1]),
+                    Long.valueOf(parts[2]),
+                    sortKey.parse(parts[3]));
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+}
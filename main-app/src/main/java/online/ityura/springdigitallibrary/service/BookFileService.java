@@ -30,6 +30,9 @@ public class BookFileService {
     @Autowired
     private StripeService stripeService;
     
+    @Autowired
+    private BookCatalogCacheService bookCatalogCacheService;
+    
     @Value("${app.pdf.storage-path}")
     private String storagePath;
     
@@ -216,6 +219,7 @@ public class BookFileService {
             // Обновляем путь к PDF в базе данных
             book.setPdfPath(pdfPath);
             bookRepository.save(book);
+            bookCatalogCacheService.invalidateBook(bookId, "pdfPath", "updatedAt");
             
             return pdfPath;
             
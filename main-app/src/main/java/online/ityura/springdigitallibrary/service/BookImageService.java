@@ -1,39 +1,69 @@
 package online.ityura.springdigitallibrary.service;
 
+import lombok.extern.slf4j.Slf4j;
 import online.ityura.springdigitallibrary.model.Book;
+import online.ityura.springdigitallibrary.model.ImageVariant;
 import online.ityura.springdigitallibrary.repository.BookRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.UUID;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 import java.time.Instant;
 
+@Slf4j
 @Service
 public class BookImageService {
     
     @Autowired
     private BookRepository bookRepository;
     
+    @Autowired
+    private BookImageVariantService bookImageVariantService;
+    
+    @Autowired
+    private BookCatalogCacheService bookCatalogCacheService;
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
     @Value("${app.images.storage-path}")
     private String storagePath;
     
+    @Value("${app.images.archive-cache-path:${java.io.tmpdir}/spring-digital-bookstore/archives}")
+    private String archiveCachePath;
+    
+    // Последний построенный ZIP архив всех изображений (null - нужно проверить/построить заново).
+    // Архив публикуется, только если с начала его построения не было сброса (archiveGeneration не изменился)
+    private Path cachedArchive;
+    private long archiveGeneration;
+    
     @Transactional
     public String uploadBookImage(Long bookId, MultipartFile file) {
         // Проверяем существование книги
@@ -145,6 +175,15 @@ public class BookImageService {
             // Обновляем путь к изображению в базе данных
             book.setImagePath(imagePath);
             bookRepository.save(book);
+            bookCatalogCacheService.invalidateBook(bookId, "imagePath", "updatedAt");
+            
+            // Архив всех изображений устарел
+            invalidateImagesArchive();
+            
+            // Уменьшенные варианты обложки создаются в фоне после коммита: транзакция и соединение с БД
+            // не удерживаются на время декодирования и масштабирования
+            Path originalPath = filePath;
+            afterCommit(() -> bookImageVariantService.scheduleBackfill(originalPath));
             
             return imagePath;
             
@@ -155,6 +194,16 @@ public class BookImageService {
     }
     
     public Resource getBookImage(Long bookId) {
+        return getBookImage(bookId, null);
+    }
+    
+    /**
+     * Возвращает изображение книги нужного размера.
+     * Если вариант ещё не создан, отдаётся оригинал, а вариант генерируется в фоне.
+     *
+     * @param size размер варианта (null - оригинал)
+     */
+    public Resource getBookImage(Long bookId, ImageVariant size) {
         // Проверяем существование книги
         Book book = bookRepository.findById(bookId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, 
@@ -168,6 +217,12 @@ public class BookImageService {
         
         try {
             Path imagePath = Paths.get(book.getImagePath());
+            if (size != null && Files.isRegularFile(imagePath)) {
+                Path variantPath = bookImageVariantService.findVariant(imagePath, size);
+                if (variantPath != null) {
+                    imagePath = variantPath;
+                }
+            }
             Resource resource = new UrlResource(imagePath.toUri());
             
             if (resource.exists() && resource.isReadable()) {
@@ -182,64 +237,269 @@ public class BookImageService {
         }
     }
     
-    public Resource getAllBookImagesAsZip() {
+    /**
+     * Возвращает готовый ZIP архив со всеми изображениями или null, если его нужно построить.
+     * Архив адресуется по содержимому (хэш списка изображений, их размеров и времени изменения),
+     * поэтому переживает перезапуск приложения и пересобирается только после загрузки нового изображения.
+     */
+    public Path findCachedImagesArchive() {
+        long lookupGeneration;
+        synchronized (this) {
+            if (cachedArchive != null && Files.isRegularFile(cachedArchive)) {
+                return cachedArchive;
+            }
+            lookupGeneration = archiveGeneration;
+        }
+        
+        List<Book> booksWithImages = bookRepository.findAllWithImages();
+        if (booksWithImages.isEmpty()) {
+            return null;
+        }
+        
+        Path candidate = Paths.get(archiveCachePath).resolve(archiveFileName(computeArchiveKey(booksWithImages)));
+        synchronized (this) {
+            // Сброс во время вычисления ключа: ключ мог быть вычислен по устаревшим данным
+            if (archiveGeneration != lookupGeneration || !Files.isRegularFile(candidate)) {
+                return null;
+            }
+            cachedArchive = candidate;
+            return candidate;
+        }
+    }
+    
+    /**
+     * Стримит ZIP архив со всеми изображениями книг в поток, полученный от target.
+     * Архив одновременно сохраняется в кэш, так что следующие запросы отдаются готовым файлом.
+     * Изображения (JPEG, PNG и т.д.) уже сжаты, поэтому записываются без компрессии (STORED).
+     */
+    public void writeAllBookImagesAsZip(ArchiveTarget target) throws IOException {
+        long buildGeneration;
+        synchronized (this) {
+            buildGeneration = archiveGeneration;
+        }
+        
+        // Получаем все книги с изображениями
+        List<Book> booksWithImages = bookRepository.findAllWithImages();
+        
+        if (booksWithImages.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, 
+                    "No books with images found");
+        }
+        
+        Path cacheDir = Paths.get(archiveCachePath);
+        Files.createDirectories(cacheDir);
+        Path archivePath = cacheDir.resolve(archiveFileName(computeArchiveKey(booksWithImages)));
+        Path tempPath = Files.createTempFile(cacheDir, "book-images-", ".zip.tmp");
+        
+        // Ответ начинает отправляться только после того, как известно, что архив не пустой.
+        // Поток ответа открывается внутри try: если открыть его не удалось, временный файл удаляется
+        try (OutputStream cacheStream = new BufferedOutputStream(Files.newOutputStream(tempPath), BUFFER_SIZE);
+             ZipOutputStream zos = new ZipOutputStream(new TeeOutputStream(target.open(), cacheStream))) {
+            for (Book book : booksWithImages) {
+                if (book.getImagePath() == null || book.getImagePath().isEmpty()) {
+                    continue;
+                }
+                Path imagePath = Paths.get(book.getImagePath());
+                if (!Files.exists(imagePath) || !Files.isReadable(imagePath)) {
+                    continue;
+                }
+                // Получаем имя файла из пути
+                String fileName = imagePath.getFileName().toString();
+                // Используем ID книги и название для уникальности имени в ZIP
+                String zipEntryName = book.getId() + "_" + fileName;
+                
+                ZipEntry zipEntry;
+                try {
+                    zipEntry = createZipEntry(zipEntryName, imagePath);
+                } catch (IOException e) {
+                    // Пропускаем файлы, которые не удалось прочитать
+                    log.warn("Failed to add image for book {} to archive: {}", book.getId(), e.getMessage());
+                    continue;
+                }
+                // Ошибки записи (например, клиент разорвал соединение) прерывают построение архива,
+                // чтобы в кэш не попал неполный файл
+                zos.putNextEntry(zipEntry);
+                Files.copy(imagePath, zos);
+                zos.closeEntry();
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+        
         try {
-            // Получаем все книги с изображениями
-            List<Book> booksWithImages = bookRepository.findAllWithImages();
-            
-            if (booksWithImages.isEmpty()) {
-                throw new ResponseStatusException(HttpStatus.NOT_FOUND, 
-                        "No books with images found");
+            synchronized (this) {
+                // Изображения изменились во время построения: архив отправлен клиенту, но в кэш не попадает
+                if (archiveGeneration != buildGeneration) {
+                    Files.deleteIfExists(tempPath);
+                    return;
+                }
+                Files.move(tempPath, archivePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                cachedArchive = archivePath;
             }
-            
-            // Создаем временный ZIP файл
-            Path zipPath = Files.createTempFile("book-images-", ".zip");
-            
-            try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zipPath))) {
-                for (Book book : booksWithImages) {
-                    if (book.getImagePath() != null && !book.getImagePath().isEmpty()) {
+            deleteStaleArchives(cacheDir, archivePath);
+        } catch (IOException e) {
+            // Архив уже отправлен клиенту, кэш будет построен при следующем запросе
+            Files.deleteIfExists(tempPath);
+            log.warn("Failed to cache images archive: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Сбрасывает кэшированный ZIP архив изображений после коммита текущей транзакции
+     * (загрузка изображения, удаление книги). Построение архива, начатое до сброса, не попадёт в кэш
+     */
+    public void invalidateImagesArchive() {
+        afterCommit(() -> {
+            Path archive;
+            synchronized (this) {
+                archiveGeneration++;
+                archive = cachedArchive;
+                cachedArchive = null;
+            }
+            if (archive != null) {
+                try {
+                    Files.deleteIfExists(archive);
+                } catch (IOException e) {
+                    log.warn("Failed to delete cached images archive: {}", e.getMessage());
+                }
+            }
+        });
+    }
+    
+    /**
+     * Для STORED записи размер и CRC32 должны быть известны до записи данных
+     */
+    private ZipEntry createZipEntry(String zipEntryName, Path imagePath) throws IOException {
+        ZipEntry zipEntry = new ZipEntry(zipEntryName);
+        if (!isAlreadyCompressed(imagePath)) {
+            return zipEntry;
+        }
+        
+        CRC32 crc = new CRC32();
+        long size = 0;
+        try (InputStream is = Files.newInputStream(imagePath)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int length;
+            while ((length = is.read(buffer)) > 0) {
+                crc.update(buffer, 0, length);
+                size += length;
+            }
+        }
+        zipEntry.setMethod(ZipEntry.STORED);
+        zipEntry.setSize(size);
+        zipEntry.setCompressedSize(size);
+        zipEntry.setCrc(crc.getValue());
+        return zipEntry;
+    }
+    
+    private boolean isAlreadyCompressed(Path imagePath) {
+        String fileName = imagePath.getFileName().toString().toLowerCase();
+        return fileName.endsWith(".jpg") || fileName.endsWith(".jpeg") || fileName.endsWith(".png")
+                || fileName.endsWith(".gif") || fileName.endsWith(".webp");
+    }
+    
+    /**
+     * Ключ архива: SHA-256 от имён записей, размеров и времени изменения изображений
+     */
+    private String computeArchiveKey(List<Book> booksWithImages) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            booksWithImages.stream()
+                    .sorted(Comparator.comparing(Book::getId))
+                    .forEach(book -> {
+                        Path imagePath = Paths.get(book.getImagePath());
+                        String line = book.getId() + "|" + book.getImagePath();
                         try {
-                            Path imagePath = Paths.get(book.getImagePath());
-                            if (Files.exists(imagePath) && Files.isReadable(imagePath)) {
-                                // Получаем имя файла из пути
-                                String fileName = imagePath.getFileName().toString();
-                                // Используем ID книги и название для уникальности имени в ZIP
-                                String zipEntryName = book.getId() + "_" + fileName;
-                                
-                                ZipEntry zipEntry = new ZipEntry(zipEntryName);
-                                zos.putNextEntry(zipEntry);
-                                
-                                // Копируем содержимое файла в ZIP
-                                try (InputStream is = Files.newInputStream(imagePath)) {
-                                    byte[] buffer = new byte[8192];
-                                    int length;
-                                    while ((length = is.read(buffer)) > 0) {
-                                        zos.write(buffer, 0, length);
-                                    }
-                                }
-                                
-                                zos.closeEntry();
-                            }
+                            BasicFileAttributes attributes = Files.readAttributes(imagePath, BasicFileAttributes.class);
+                            line += "|" + attributes.size() + "|" + attributes.lastModifiedTime().toMillis();
                         } catch (IOException e) {
-                            // Пропускаем файлы, которые не удалось прочитать
-                            System.err.println("Failed to add image for book " + book.getId() + ": " + e.getMessage());
+                            line += "|missing";
                         }
-                    }
+                        digest.update((line + "\n").getBytes(StandardCharsets.UTF_8));
+                    });
+            return HexFormat.of().formatHex(digest.digest()).substring(0, 32);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+    
+    private String archiveFileName(String key) {
+        return "book-images-" + key + ".zip";
+    }
+    
+    private void deleteStaleArchives(Path cacheDir, Path currentArchive) {
+        try (DirectoryStream<Path> archives = Files.newDirectoryStream(cacheDir, "book-images-*.zip")) {
+            for (Path archive : archives) {
+                if (!archive.equals(currentArchive)) {
+                    Files.deleteIfExists(archive);
                 }
             }
-            
-            // Читаем содержимое ZIP файла в байтовый массив
-            byte[] zipBytes = Files.readAllBytes(zipPath);
-            
-            // Удаляем временный файл
-            Files.deleteIfExists(zipPath);
-            
-            // Создаем Resource из байтового массива
-            return new ByteArrayResource(zipBytes);
-            
         } catch (IOException e) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, 
-                    "Error creating ZIP archive: " + e.getMessage());
+            log.warn("Failed to clean up stale images archives: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Выполняет действие после успешного коммита или сразу, если транзакции нет
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+    
+    /**
+     * Источник выходного потока для архива (например, поток HTTP ответа)
+     */
+    @FunctionalInterface
+    public interface ArchiveTarget {
+        OutputStream open() throws IOException;
+    }
+    
+    /**
+     * Дублирует запись в два потока: ответ клиенту и файл кэша
+     */
+    private static class TeeOutputStream extends OutputStream {
+        
+        private final OutputStream primary;
+        private final OutputStream secondary;
+        
+        TeeOutputStream(OutputStream primary, OutputStream secondary) {
+            this.primary = primary;
+            this.secondary = secondary;
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            primary.write(b);
+            secondary.write(b);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            primary.write(b, off, len);
+            secondary.write(b, off, len);
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            primary.flush();
+            secondary.flush();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            // Поток ответа закрывает контейнер, закрываем только файл кэша
+            primary.flush();
+            secondary.close();
         }
     }
 }
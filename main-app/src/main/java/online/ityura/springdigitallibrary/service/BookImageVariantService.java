@@ -0,0 +1,201 @@
+package online.ityura.springdigitallibrary.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import online.ityura.springdigitallibrary.model.ImageVariant;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Генерация уменьшенных вариантов обложек (THUMBNAIL, CARD, FULL).
+ *
+ * - Варианты создаются в фоне после загрузки изображения и хранятся в {storage-path}/variants/{size}/
+ * - Вариант считается актуальным, если он не старше оригинала
+ * - Отсутствующие или устаревшие варианты досоздаются в фоне, пока клиенту отдаётся оригинал
+ * - Изображения меньше целевой ширины не увеличиваются, вариант совпадает с оригиналом
+ */
+@Slf4j
+@Service
+public class BookImageVariantService {
+    
+    private static final String VARIANTS_DIRECTORY = "variants";
+    
+    @Value("${app.images.storage-path}")
+    private String storagePath;
+    
+    // Один фоновый поток с ограниченной очередью: генерация не конкурирует с обработкой запросов
+    private final ThreadPoolExecutor backfillExecutor = new ThreadPoolExecutor(
+            1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(256),
+            runnable -> {
+                Thread thread = new Thread(runnable, "image-variant-backfill");
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+    
+    // Оригиналы, для которых генерация уже запланирована
+    private final Set<Path> pendingBackfills = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * Создаёт все варианты для оригинального изображения.
+     * Оригинал декодируется один раз, каждый следующий вариант уменьшается из предыдущего.
+     */
+    public void generateVariants(Path original) throws IOException {
+        String format = resolveFormat(original);
+        if (format == null) {
+            return;
+        }
+        
+        BufferedImage source = ImageIO.read(original.toFile());
+        if (source == null) {
+            // Формат не поддерживается ImageIO - отдаём только оригинал
+            log.debug("Cannot decode image {}, variants are not generated", original);
+            return;
+        }
+        
+        FileTime originalModified = Files.getLastModifiedTime(original);
+        BufferedImage current = source;
+        ImageVariant[] variants = ImageVariant.values();
+        // От большего к меньшему, чтобы каждый шаг уменьшения был дешевле
+        for (int i = variants.length - 1; i >= 0; i--) {
+            ImageVariant variant = variants[i];
+            Path target = getVariantPath(original, variant);
+            Files.createDirectories(target.getParent());
+            
+            Path tempFile = Files.createTempFile(target.getParent(), ".variant-", ".tmp");
+            try {
+                if (source.getWidth() <= variant.getMaxWidth()) {
+                    Files.copy(original, tempFile, StandardCopyOption.REPLACE_EXISTING);
+                } else {
+                    current = resize(current, variant.getMaxWidth(), "png".equals(format));
+                    if (!ImageIO.write(current, format, tempFile.toFile())) {
+                        Files.deleteIfExists(tempFile);
+                        return;
+                    }
+                }
+                // Время изменения варианта не раньше оригинала - признак актуальности
+                Files.setLastModifiedTime(tempFile, originalModified);
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+    
+    /**
+     * Возвращает путь к актуальному варианту или null, если его ещё нет.
+     * В этом случае генерация ставится в фоновую очередь.
+     */
+    public Path findVariant(Path original, ImageVariant variant) {
+        if (resolveFormat(original) == null) {
+            return null;
+        }
+        Path variantPath = getVariantPath(original, variant);
+        try {
+            if (Files.isRegularFile(variantPath)
+                    && Files.getLastModifiedTime(variantPath).compareTo(Files.getLastModifiedTime(original)) >= 0) {
+                return variantPath;
+            }
+        } catch (IOException e) {
+            log.debug("Cannot check image variant {}: {}", variantPath, e.getMessage());
+        }
+        scheduleBackfill(original);
+        return null;
+    }
+    
+    /**
+     * Ставит генерацию вариантов в фоновую очередь (повторные запросы для того же файла игнорируются)
+     */
+    public void scheduleBackfill(Path original) {
+        if (!pendingBackfills.add(original)) {
+            return;
+        }
+        try {
+            backfillExecutor.execute(() -> {
+                try {
+                    generateVariants(original);
+                } catch (Exception e) {
+                    log.warn("Failed to generate image variants for {}: {}", original, e.getMessage());
+                } finally {
+                    pendingBackfills.remove(original);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Очередь переполнена - попробуем при следующем запросе
+            pendingBackfills.remove(original);
+        }
+    }
+    
+    Path getVariantPath(Path original, ImageVariant variant) {
+        return Paths.get(storagePath, VARIANTS_DIRECTORY, variant.name().toLowerCase(Locale.ROOT))
+                .resolve(original.getFileName().toString());
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        backfillExecutor.shutdownNow();
+    }
+    
+    /**
+     * Уменьшение с шагом не более чем в 2 раза: билинейная интерполяция на каждом шаге
+     * даёт качество, близкое к бикубической, и работает значительно быстрее
+     */
+    private BufferedImage resize(BufferedImage image, int targetWidth, boolean keepAlpha) {
+        int targetHeight = Math.max(1, (int) Math.round((double) image.getHeight() * targetWidth / image.getWidth()));
+        int type = keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(width / 2, targetWidth);
+            height = Math.max(height / 2, targetHeight);
+            
+            BufferedImage step = new BufferedImage(width, height, type);
+            Graphics2D graphics = step.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = step;
+        } while (width != targetWidth || height != targetHeight);
+        
+        return current;
+    }
+    
+    /**
+     * Формат для записи варианта (только форматы, для которых у ImageIO есть writer)
+     */
+    private String resolveFormat(Path original) {
+        String fileName = original.getFileName() != null ? original.getFileName().toString().toLowerCase(Locale.ROOT) : "";
+        if (fileName.endsWith(".jpg") || fileName.endsWith(".jpeg")) {
+            return "jpg";
+        }
+        if (fileName.endsWith(".png")) {
+            return "png";
+        }
+        return null;
+    }
+}
@@ -2,66 +2,229 @@ package online.ityura.springdigitallibrary.service;
 
 import online.ityura.springdigitallibrary.dto.response.AuthorResponse;
 import online.ityura.springdigitallibrary.dto.response.BookResponse;
+import online.ityura.springdigitallibrary.dto.response.CursorPageResponse;
 import online.ityura.springdigitallibrary.dto.response.ReviewResponse;
 import online.ityura.springdigitallibrary.dto.response.UserInfoResponse;
 import online.ityura.springdigitallibrary.model.Book;
 import online.ityura.springdigitallibrary.model.Genre;
 import online.ityura.springdigitallibrary.model.Review;
+import online.ityura.springdigitallibrary.repository.BookCatalogSortKey;
 import online.ityura.springdigitallibrary.repository.BookRepository;
 import online.ityura.springdigitallibrary.repository.ReviewRepository;
+import online.ityura.springdigitallibrary.repository.projection.BookCatalogRow;
+import online.ityura.springdigitallibrary.repository.projection.BookReviewCountView;
+import online.ityura.springdigitallibrary.repository.projection.ReviewSnippetView;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
 public class BookService {
     
+    // Максимальный размер страницы в режиме keyset-пагинации
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+    
+    // Ограничение числа слов поискового запроса: каждое слово - отдельный префиксный терм tsquery
+    private static final int MAX_SEARCH_TERMS = 8;
+    
     @Autowired
     private BookRepository bookRepository;
     
     @Autowired
     private ReviewRepository reviewRepository;
     
+    @Autowired
+    private BookCatalogCacheService bookCatalogCacheService;
+    
+    // Сколько последних отзывов показывать в карточке книги в каталоге
+    @Value("${app.catalog.review-snippets.limit:3}")
+    private int reviewSnippetsLimit;
+    
+    // Максимальная длина описания книги в карточке каталога (полное описание - в GET /books/{id})
+    @Value("${app.catalog.description-excerpt-length:300}")
+    private int descriptionExcerptLength;
+    
+    // Максимальная длина текста отзыва в карточке каталога
+    @Value("${app.catalog.review-snippets.length:200}")
+    private int reviewSnippetLength;
+    
+    /**
+     * Страница каталога. Собранные страницы кэшируются до изменения книг, отзывов или рейтингов
+     */
     public Page<BookResponse> getAllBooks(Pageable pageable, Genre genre) {
-        Page<Book> booksPage;
+        return bookCatalogCacheService.getPage(genre, pageable, () -> loadCatalogPage(pageable, genre));
+    }
+    
+    private Page<BookResponse> loadCatalogPage(Pageable pageable, Genre genre) {
+        // Проекция вместо сущностей: один запрос с автором, без persistence context и dirty checking
+        Page<BookCatalogRow> booksPage;
         
         if (genre != null) {
-            booksPage = bookRepository.findByGenre(genre, pageable);
+            booksPage = bookRepository.findCatalogPageByGenre(genre, descriptionExcerptLength, pageable);
         } else {
-            booksPage = bookRepository.findAll(pageable);
+            booksPage = bookRepository.findCatalogPage(descriptionExcerptLength, pageable);
+        }
+        
+        List<BookResponse> content = mapCatalogRows(booksPage.getContent());
+        return new PageImpl<>(content, booksPage.getPageable(), booksPage.getTotalElements());
+    }
+    
+    /**
+     * Страница каталога в режиме keyset-пагинации: без OFFSET и подсчёта общего количества книг.
+     * Время ответа не зависит от того, насколько далеко клиент пролистал каталог.
+     *
+     * @param sort   поле и направление сортировки ("ratingAvg,desc"), null - из курсора или title,asc
+     * @param cursor курсор из предыдущего ответа (null - первая страница)
+     */
+    public CursorPageResponse<BookResponse> getBooksByCursor(Genre genre, String sort, String cursor, int size) {
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Page size must be between 1 and " + MAX_CURSOR_PAGE_SIZE);
+        }
+        
+        BookCatalogCursor after = cursor != null && !cursor.isBlank() ? BookCatalogCursor.decode(cursor) : null;
+        BookCatalogSortKey sortKey = BookCatalogSortKey.TITLE;
+        Sort.Direction direction = Sort.Direction.ASC;
+        if (sort != null && !sort.isBlank()) {
+            String[] parts = sort.split(",");
+            sortKey = BookCatalogSortKey.fromProperty(parts[0].trim())
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                            "Unsupported sort field for cursor pagination: " + parts[0].trim()));
+            direction = parts.length > 1
+                    ? Sort.Direction.fromOptionalString(parts[1].trim())
+                            .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                                    "Invalid sort direction: " + parts[1].trim()))
+                    : Sort.Direction.ASC;
+            if (after != null && (after.sortKey() != sortKey || after.direction() != direction)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursor does not match sort");
+            }
+        } else if (after != null) {
+            sortKey = after.sortKey();
+            direction = after.direction();
         }
         
-        // Загружаем все отзывы для всех книг на странице одним запросом (избегаем N+1 проблемы)
-        List<Long> bookIds = booksPage.getContent().stream()
-                .map(Book::getId)
+        // Запрашиваем на одну строку больше, чтобы узнать, есть ли следующая страница
+        List<BookCatalogRow> rows = bookRepository.findCatalogSlice(genre, sortKey, direction,
+                after != null ? after.lastValue() : null,
+                after != null ? after.lastId() : null,
+                descriptionExcerptLength, size + 1);
+        boolean hasNext = rows.size() > size;
+        if (hasNext) {
+            rows = rows.subList(0, size);
+        }
+        
+        String nextCursor = null;
+        if (hasNext) {
+            BookCatalogRow last = rows.get(rows.size() - 1);
+            nextCursor = new BookCatalogCursor(sortKey, direction, last.id(), sortKey.extract(last)).encode();
+        }
+        
+        return CursorPageResponse.<BookResponse>builder()
+                .content(mapCatalogRows(rows))
+                .size(size)
+                .hasNext(hasNext)
+                .nextCursor(nextCursor)
+                .build();
+    }
+    
+    /**
+     * Полнотекстовый поиск по названию, автору и описанию книги.
+     * Каждое слово запроса ищется как префикс ("вой ми" находит "Война и мир"),
+     * результаты упорядочены по релевантности: совпадение в названии весит больше, чем в авторе и описании.
+     */
+    public Page<BookResponse> searchBooks(String query, Genre genre, Pageable pageable) {
+        String tsQuery = toPrefixTsQuery(query);
+        if (tsQuery.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Search query must contain at least one letter or digit");
+        }
+        String genreName = genre != null ? genre.name() : null;
+        
+        // Сначала идентификаторы в порядке релевантности, затем карточки тех же книг одним запросом.
+        // Подсчёт выполняется только если общее количество нельзя вычислить по неполной странице
+        List<Long> bookIds = bookRepository.searchBookIds(tsQuery, genreName,
+                pageable.getPageSize(), pageable.getOffset());
+        Page<Long> idsPage = PageableExecutionUtils.getPage(bookIds, pageable,
+                () -> bookRepository.countSearchResults(tsQuery, genreName));
+        if (bookIds.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, idsPage.getTotalElements());
+        }
+        
+        Map<Long, BookCatalogRow> rowsById = bookRepository.findCatalogRowsByIdIn(bookIds, descriptionExcerptLength).stream()
+                .collect(Collectors.toMap(BookCatalogRow::id, row -> row));
+        List<BookCatalogRow> rows = bookIds.stream()
+                .map(rowsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        
+        return new PageImpl<>(mapCatalogRows(rows), pageable, idsPage.getTotalElements());
+    }
+    
+    /**
+     * Преобразует текст пользователя в tsquery из префиксных термов: "Война и мир" -> "война:* & и:* & мир:*".
+     * В термы попадают только буквы и цифры, поэтому спецсимволы tsquery во вводе не интерпретируются.
+     */
+    private String toPrefixTsQuery(String query) {
+        if (query == null) {
+            return "";
+        }
+        return Arrays.stream(query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+                .filter(term -> !term.isEmpty())
+                .distinct()
+                .limit(MAX_SEARCH_TERMS)
+                .map(term -> term + ":*")
+                .collect(Collectors.joining(" & "));
+    }
+    
+    /**
+     * Дополняет строки каталога количеством отзывов и последними отзывами
+     */
+    private List<BookResponse> mapCatalogRows(List<BookCatalogRow> rows) {
+        List<Long> bookIds = rows.stream()
+                .map(BookCatalogRow::id)
                 .collect(Collectors.toList());
         
-        // Загружаем отзывы для всех книг на странице (если есть книги)
-        Map<Long, List<ReviewResponse>> reviewsByBookId;
+        // Для карточек каталога достаточно количества отзывов и нескольких последних из них.
+        // Оба запроса ограничены книгами текущей страницы (избегаем N+1 проблемы)
+        Map<Long, Long> reviewCountByBookId;
+        Map<Long, List<ReviewResponse>> snippetsByBookId;
         if (bookIds.isEmpty()) {
-            reviewsByBookId = Map.of();
+            reviewCountByBookId = Map.of();
+            snippetsByBookId = Map.of();
         } else {
-            reviewsByBookId = reviewRepository.findByBookIdIn(bookIds).stream()
-                    .collect(Collectors.groupingBy(
-                            review -> review.getBook().getId(),
-                            Collectors.mapping(this::mapToReviewResponse, Collectors.toList())
-                    ));
+            reviewCountByBookId = reviewRepository.countByBookIdIn(bookIds).stream()
+                    .collect(Collectors.toMap(BookReviewCountView::getBookId, BookReviewCountView::getReviewCount));
+            snippetsByBookId = reviewSnippetsLimit <= 0
+                    ? Map.of()
+                    : reviewRepository.findLatestSnippetsByBookIdIn(bookIds, reviewSnippetsLimit, reviewSnippetLength).stream()
+                            .collect(Collectors.groupingBy(
+                                    ReviewSnippetView::getBookId,
+                                    Collectors.mapping(this::mapToReviewSnippet, Collectors.toList())
+                            ));
         }
         
-        // Маппим книги с отзывами
-        return booksPage.map(book -> {
-            List<ReviewResponse> reviews = reviewsByBookId.getOrDefault(book.getId(), List.of());
-            return mapToBookResponseWithReviews(book, reviews);
-        });
+        // Маппим книги с количеством отзывов и последними отзывами
+        return rows.stream()
+                .map(row -> mapCatalogRowToBookResponse(row,
+                        reviewCountByBookId.getOrDefault(row.id(), 0L),
+                        snippetsByBookId.getOrDefault(row.id(), List.of())))
+                .collect(Collectors.toList());
     }
     
     public BookResponse getBookById(Long bookId) {
@@ -74,32 +237,34 @@ public class BookService {
                 .map(this::mapToReviewResponse)
                 .collect(Collectors.toList());
         
-        return mapToBookResponseWithReviews(book, reviewResponses);
+        BookResponse response = mapToBookResponseWithReviews(book, reviewResponses);
+        response.setReviewCount((long) reviewResponses.size());
+        return response;
     }
     
-    private BookResponse mapToBookResponse(Book book) {
-        boolean hasFile = book.getPdfPath() != null && !book.getPdfPath().isEmpty();
-        BigDecimal finalPrice = calculateFinalPrice(book);
-        
+    private BookResponse mapCatalogRowToBookResponse(BookCatalogRow row, Long reviewCount, List<ReviewResponse> reviews) {
         return BookResponse.builder()
-                .id(book.getId())
-                .title(book.getTitle())
+                .id(row.id())
+                .title(row.title())
                 .author(AuthorResponse.builder()
-                        .id(book.getAuthor().getId())
-                        .fullName(book.getAuthor().getFullName())
+                        .id(row.authorId())
+                        .fullName(row.authorFullName())
                         .build())
-                .description(book.getDescription())
-                .publishedYear(book.getPublishedYear())
-                .genre(book.getGenre())
-                .ratingAvg(book.getRatingAvg())
-                .ratingCount(book.getRatingCount())
-                .hasFile(hasFile)
-                .imagePath(book.getImagePath())
-                .price(book.getPrice())
-                .discountPercent(book.getDiscountPercent())
-                .finalPrice(finalPrice)
-                .createdAt(book.getCreatedAt())
-                .updatedAt(book.getUpdatedAt())
+                .description(row.description())
+                .publishedYear(row.publishedYear())
+                .genre(row.genre())
+                .ratingAvg(row.ratingAvg())
+                .ratingCount(row.ratingCount())
+                .ratingHistogram(row.ratingHistogram())
+                .hasFile(row.hasFile())
+                .imagePath(row.imagePath())
+                .price(row.price())
+                .discountPercent(row.discountPercent())
+                .finalPrice(calculateFinalPrice(row.price(), row.discountPercent()))
+                .createdAt(row.createdAt())
+                .updatedAt(row.updatedAt())
+                .reviewCount(reviewCount)
+                .reviews(reviews)
                 .build();
     }
     
@@ -119,6 +284,7 @@ public class BookService {
                 .genre(book.getGenre())
                 .ratingAvg(book.getRatingAvg())
                 .ratingCount(book.getRatingCount())
+                .ratingHistogram(book.getRatingHistogram())
                 .hasFile(hasFile)
                 .imagePath(book.getImagePath())
                 .price(book.getPrice())
@@ -134,9 +300,10 @@ public class BookService {
      * Вычисляет финальную цену с учетом скидки
      */
     private BigDecimal calculateFinalPrice(Book book) {
-        BigDecimal price = book.getPrice();
-        BigDecimal discountPercent = book.getDiscountPercent();
-        
+        return calculateFinalPrice(book.getPrice(), book.getDiscountPercent());
+    }
+    
+    private BigDecimal calculateFinalPrice(BigDecimal price, BigDecimal discountPercent) {
         if (price == null || price.compareTo(BigDecimal.ZERO) == 0) {
             return BigDecimal.ZERO;
         }
@@ -152,6 +319,23 @@ public class BookService {
         return finalPrice.max(BigDecimal.ZERO);
     }
     
+    /**
+     * Отзыв для карточки каталога: без email автора, текст обрезан в запросе
+     */
+    private ReviewResponse mapToReviewSnippet(ReviewSnippetView snippet) {
+        return ReviewResponse.builder()
+                .id(snippet.getId())
+                .bookId(snippet.getBookId())
+                .user(UserInfoResponse.builder()
+                        .id(snippet.getUserId())
+                        .nickname(snippet.getNickname())
+                        .build())
+                .text(snippet.getText())
+                .createdAt(snippet.getCreatedAt())
+                .updatedAt(snippet.getUpdatedAt())
+                .build();
+    }
+    
     private ReviewResponse mapToReviewResponse(Review review) {
         return ReviewResponse.builder()
                 .id(review.getId())
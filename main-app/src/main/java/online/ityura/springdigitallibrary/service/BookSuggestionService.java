@@ -0,0 +1,586 @@
+package online.ityura.springdigitallibrary.service;
+
+import lombok.extern.slf4j.Slf4j;
+import online.ityura.springdigitallibrary.dto.response.SuggestionResponse;
+import online.ityura.springdigitallibrary.model.SuggestionType;
+import online.ityura.springdigitallibrary.repository.BookRepository;
+import online.ityura.springdigitallibrary.repository.projection.BookSuggestionRow;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Подсказки при вводе (type-ahead) по словам названий книг и имён авторов без обращения к БД.
+ *
+ * - Индекс строится после старта приложения одним запросом и хранится в памяти целиком
+ * - Подсказки, их слова и отсортированный список слов хранятся в примитивных массивах (char[] + смещения),
+ *   без объектов на каждую книгу или слово; поиск префикса - бинарный поиск и просмотр соседних слов
+ * - Изменения книг применяются после коммита транзакции: разбиваются на слова только изменённые подсказки,
+ *   их слова сливаются с уже отсортированными, остальные данные копируются из предыдущего снимка.
+ *   Новый снимок публикуется атомарно, чтение идёт без блокировок
+ */
+@Slf4j
+@Service
+public class BookSuggestionService {
+
+    public static final int MAX_LIMIT = 20;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    // Изменяется только под блокировкой updateLock, читается без блокировок
+    private volatile SuggestionIndex index = SuggestionIndex.EMPTY;
+    private final Object updateLock = new Object();
+
+    /**
+     * Полностью перестраивает индекс по данным из БД (после старта приложения, когда DataInitializer уже отработал)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<BookSuggestionRow> rows = bookRepository.findAllSuggestionRows();
+        synchronized (updateLock) {
+            index = SuggestionIndex.EMPTY.apply(rows, List.of());
+        }
+        log.info("Индекс подсказок построен: книг {}, слов {}", rows.size(), index.tokenCount());
+    }
+
+    /**
+     * Добавляет или обновляет книги в индексе после коммита текущей транзакции
+     */
+    public void indexBooks(Collection<BookSuggestionRow> rows) {
+        List<BookSuggestionRow> snapshot = List.copyOf(rows);
+        afterCommit(() -> {
+            synchronized (updateLock) {
+                index = index.apply(snapshot, List.of());
+            }
+        });
+    }
+
+    /**
+     * Удаляет книги из индекса после коммита текущей транзакции. Автор пропадает из подсказок вместе с последней книгой
+     */
+    public void removeBooks(Collection<Long> bookIds) {
+        List<Long> snapshot = List.copyOf(bookIds);
+        afterCommit(() -> {
+            synchronized (updateLock) {
+                index = index.apply(List.of(), snapshot);
+            }
+        });
+    }
+
+    /**
+     * Подсказки для введённого текста: последнее слово ищется как префикс, остальные слова
+     * должны быть началом какого-либо слова той же подсказки ("лев тол" -> "Лев Толстой")
+     */
+    public List<SuggestionResponse> suggest(String query, int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Limit must be between 1 and " + MAX_LIMIT);
+        }
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        return index.lookup(terms, limit);
+    }
+
+    /**
+     * Нормализует текст в слова без повторов: нижний регистр, "ё" -> "е", разделители - всё, кроме букв и цифр
+     */
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                char lower = Character.toLowerCase(c);
+                token.append(lower == 'ё' ? 'е' : lower);
+            } else if (!token.isEmpty()) {
+                String value = token.toString();
+                if (!tokens.contains(value)) {
+                    tokens.add(value);
+                }
+                token.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Выполняет действие после успешного коммита или сразу, если транзакции нет
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Неизменяемый снимок индекса.
+     * Подсказки (entry): сначала книги по возрастанию id (bookCount штук), затем авторы по возрастанию id.
+     * Текст подсказки e: labelChars[labelOffsets[e], labelOffsets[e + 1]), id - entryIds[e].
+     * Слова подсказки e - номера entryTokenStarts[e] .. entryTokenStarts[e + 1] - 1; текст слова t:
+     * tokenChars[tokenOffsets[t], tokenOffsets[t + 1]), подсказка - tokenEntries[t].
+     * sortedTokens - номера всех слов в порядке (текст слова, номер подсказки).
+     */
+    private static final class SuggestionIndex {
+
+        static final SuggestionIndex EMPTY = new SuggestionIndex(0, new char[0], new int[1], new long[0],
+                new long[0], new int[0], new char[0], new int[1], new int[1], new int[0], new int[0]);
+
+        // Книга без автора
+        private static final long NO_AUTHOR = Long.MIN_VALUE;
+
+        private final int bookCount;
+        private final char[] labelChars;
+        private final int[] labelOffsets;
+        private final long[] entryIds;
+        // Для книг: id автора; для авторов: количество книг в индексе
+        private final long[] bookAuthorIds;
+        private final int[] authorBookCounts;
+        private final char[] tokenChars;
+        private final int[] tokenOffsets;
+        private final int[] entryTokenStarts;
+        private final int[] tokenEntries;
+        private final int[] sortedTokens;
+
+        private SuggestionIndex(int bookCount, char[] labelChars, int[] labelOffsets, long[] entryIds,
+                                long[] bookAuthorIds, int[] authorBookCounts, char[] tokenChars, int[] tokenOffsets,
+                                int[] entryTokenStarts, int[] tokenEntries, int[] sortedTokens) {
+            this.bookCount = bookCount;
+            this.labelChars = labelChars;
+            this.labelOffsets = labelOffsets;
+            this.entryIds = entryIds;
+            this.bookAuthorIds = bookAuthorIds;
+            this.authorBookCounts = authorBookCounts;
+            this.tokenChars = tokenChars;
+            this.tokenOffsets = tokenOffsets;
+            this.entryTokenStarts = entryTokenStarts;
+            this.tokenEntries = tokenEntries;
+            this.sortedTokens = sortedTokens;
+        }
+
+        int entryCount() {
+            return entryIds.length;
+        }
+
+        int tokenCount() {
+            return tokenEntries.length;
+        }
+
+        /**
+         * Новый снимок с добавленными/обновлёнными и удалёнными книгами.
+         * Объекты создаются только для изменений пакета, данные остальных подсказок копируются массивами
+         */
+        SuggestionIndex apply(Collection<BookSuggestionRow> upsertRows, Collection<Long> removedIds) {
+            TreeMap<Long, BookSuggestionRow> upserts = new TreeMap<>();
+            upsertRows.forEach(row -> upserts.put(row.bookId(), row));
+            Set<Long> removed = new HashSet<>(removedIds);
+            removed.forEach(upserts::remove);
+
+            // Изменение количества книг и имена авторов из пакета
+            TreeMap<Long, Integer> authorCountDeltas = new TreeMap<>();
+            Map<Long, String> authorNames = new HashMap<>();
+            for (int e = 0; e < bookCount; e++) {
+                if ((upserts.containsKey(entryIds[e]) || removed.contains(entryIds[e])) && bookAuthorIds[e] != NO_AUTHOR) {
+                    authorCountDeltas.merge(bookAuthorIds[e], -1, Integer::sum);
+                }
+            }
+            for (BookSuggestionRow row : upserts.values()) {
+                if (row.authorId() != null && row.authorFullName() != null) {
+                    authorCountDeltas.merge(row.authorId(), 1, Integer::sum);
+                    authorNames.put(row.authorId(), row.authorFullName());
+                }
+            }
+
+            Builder builder = new Builder(this, entryCount() + upserts.size() + authorCountDeltas.size());
+
+            // Книги: слияние неизменённых книг снимка и книг пакета по возрастанию id
+            Iterator<BookSuggestionRow> added = upserts.values().iterator();
+            BookSuggestionRow next = added.hasNext() ? added.next() : null;
+            for (int e = 0; e < bookCount; e++) {
+                long id = entryIds[e];
+                while (next != null && next.bookId() < id) {
+                    builder.addBook(next);
+                    next = added.hasNext() ? added.next() : null;
+                }
+                if (!upserts.containsKey(id) && !removed.contains(id)) {
+                    builder.copy(e, bookAuthorIds[e]);
+                }
+            }
+            while (next != null) {
+                builder.addBook(next);
+                next = added.hasNext() ? added.next() : null;
+            }
+            builder.finishBooks();
+
+            // Авторы: слияние авторов снимка и авторов, затронутых пакетом
+            Iterator<Map.Entry<Long, Integer>> deltas = authorCountDeltas.entrySet().iterator();
+            Map.Entry<Long, Integer> delta = deltas.hasNext() ? deltas.next() : null;
+            for (int e = bookCount; e < entryCount(); e++) {
+                long id = entryIds[e];
+                while (delta != null && delta.getKey() < id) {
+                    if (delta.getValue() > 0) {
+                        builder.addAuthor(delta.getKey(), authorNames.get(delta.getKey()), delta.getValue());
+                    }
+                    delta = deltas.hasNext() ? deltas.next() : null;
+                }
+                int count = authorBookCounts[e - bookCount];
+                String name = null;
+                if (delta != null && delta.getKey() == id) {
+                    count += delta.getValue();
+                    name = authorNames.get(id);
+                    delta = deltas.hasNext() ? deltas.next() : null;
+                }
+                if (count <= 0) {
+                    continue;
+                }
+                if (name == null || labelEquals(e, name)) {
+                    builder.copy(e, count);
+                } else {
+                    builder.addAuthor(id, name, count);
+                }
+            }
+            while (delta != null) {
+                if (delta.getValue() > 0) {
+                    builder.addAuthor(delta.getKey(), authorNames.get(delta.getKey()), delta.getValue());
+                }
+                delta = deltas.hasNext() ? deltas.next() : null;
+            }
+            return builder.build();
+        }
+
+        List<SuggestionResponse> lookup(List<String> terms, int limit) {
+            String prefix = terms.get(terms.size() - 1);
+            int[] found = new int[limit];
+            int foundCount = 0;
+
+            for (int i = lowerBound(prefix); i < sortedTokens.length && foundCount < limit
+                    && startsWith(sortedTokens[i], prefix); i++) {
+                int entry = tokenEntries[sortedTokens[i]];
+                if (!contains(found, foundCount, entry) && matchesOtherTerms(entry, terms)) {
+                    found[foundCount++] = entry;
+                }
+            }
+
+            List<SuggestionResponse> result = new ArrayList<>(foundCount);
+            for (int i = 0; i < foundCount; i++) {
+                int entry = found[i];
+                result.add(SuggestionResponse.builder()
+                        .text(label(entry))
+                        .type(entry < bookCount ? SuggestionType.BOOK : SuggestionType.AUTHOR)
+                        .id(entryIds[entry])
+                        .build());
+            }
+            return result;
+        }
+
+        /**
+         * Позиция в sortedTokens первого слова, которое не меньше prefix
+         */
+        private int lowerBound(String prefix) {
+            int low = 0;
+            int high = sortedTokens.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compare(sortedTokens[mid], prefix) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private int compare(int token, String value) {
+            int start = tokenOffsets[token];
+            int length = tokenOffsets[token + 1] - start;
+            int common = Math.min(length, value.length());
+            for (int i = 0; i < common; i++) {
+                int diff = tokenChars[start + i] - value.charAt(i);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return length - value.length();
+        }
+
+        private boolean startsWith(int token, String prefix) {
+            int start = tokenOffsets[token];
+            if (tokenOffsets[token + 1] - start < prefix.length()) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length(); i++) {
+                if (tokenChars[start + i] != prefix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Каждое слово запроса, кроме последнего, - начало одного из уже разбитых слов подсказки
+         */
+        private boolean matchesOtherTerms(int entry, List<String> terms) {
+            for (int i = 0; i < terms.size() - 1; i++) {
+                String term = terms.get(i);
+                boolean matched = false;
+                for (int t = entryTokenStarts[entry]; t < entryTokenStarts[entry + 1] && !matched; t++) {
+                    matched = startsWith(t, term);
+                }
+                if (!matched) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean labelEquals(int entry, String value) {
+            int start = labelOffsets[entry];
+            if (labelOffsets[entry + 1] - start != value.length()) {
+                return false;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                if (labelChars[start + i] != value.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String label(int entry) {
+            return new String(labelChars, labelOffsets[entry], labelOffsets[entry + 1] - labelOffsets[entry]);
+        }
+
+        private static boolean contains(int[] values, int count, int value) {
+            for (int i = 0; i < count; i++) {
+                if (values[i] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Сборка следующего снимка: подсказки добавляются по порядку (книги, затем авторы, каждые по возрастанию id).
+     * Подсказки предыдущего снимка копируются вместе с их словами, новые разбиваются на слова
+     */
+    private static final class Builder {
+
+        private final SuggestionIndex previous;
+        // Номер подсказки в новом снимке для каждой подсказки предыдущего (-1 - не скопирована)
+        private final int[] entryMapping;
+        private final StringBuilder labelChars = new StringBuilder();
+        private final StringBuilder tokenChars = new StringBuilder();
+        private long[] entryIds;
+        private long[] authorData;
+        private int[] labelOffsets;
+        private int[] entryTokenStarts;
+        private int[] tokenOffsets;
+        private int[] tokenEntries;
+        private int entryCount;
+        private int tokenCount;
+        private int bookCount = -1;
+        // Слова новых подсказок, которые нужно отсортировать и слить с отсортированными словами снимка
+        private int[] addedTokens = new int[16];
+        private int addedTokenCount;
+
+        Builder(SuggestionIndex previous, int maxEntries) {
+            this.previous = previous;
+            this.entryMapping = new int[previous.entryCount()];
+            Arrays.fill(entryMapping, -1);
+            this.entryIds = new long[maxEntries];
+            this.authorData = new long[maxEntries];
+            this.labelOffsets = new int[maxEntries + 1];
+            this.entryTokenStarts = new int[maxEntries + 1];
+            this.tokenOffsets = new int[previous.tokenCount() + 16 + 1];
+            this.tokenEntries = new int[previous.tokenCount() + 16];
+        }
+
+        void addBook(BookSuggestionRow row) {
+            long authorId = row.authorId() != null && row.authorFullName() != null
+                    ? row.authorId() : SuggestionIndex.NO_AUTHOR;
+            add(row.bookId(), row.title() != null ? row.title() : "", authorId);
+        }
+
+        void addAuthor(long authorId, String fullName, int bookCount) {
+            add(authorId, fullName, bookCount);
+        }
+
+        void finishBooks() {
+            bookCount = entryCount;
+        }
+
+        /**
+         * Копирует подсказку предыдущего снимка вместе с её словами
+         *
+         * @param data id автора книги или количество книг автора
+         */
+        void copy(int previousEntry, long data) {
+            int entry = startEntry(previous.entryIds[previousEntry], data);
+            entryMapping[previousEntry] = entry;
+            labelChars.append(previous.labelChars, previous.labelOffsets[previousEntry],
+                    previous.labelOffsets[previousEntry + 1] - previous.labelOffsets[previousEntry]);
+            for (int t = previous.entryTokenStarts[previousEntry]; t < previous.entryTokenStarts[previousEntry + 1]; t++) {
+                appendToken(entry, previous.tokenChars, previous.tokenOffsets[t],
+                        previous.tokenOffsets[t + 1] - previous.tokenOffsets[t]);
+            }
+            finishEntry();
+        }
+
+        private void add(long id, String label, long data) {
+            int entry = startEntry(id, data);
+            labelChars.append(label);
+            for (String token : tokenize(label)) {
+                if (addedTokenCount == addedTokens.length) {
+                    addedTokens = Arrays.copyOf(addedTokens, addedTokenCount * 2);
+                }
+                addedTokens[addedTokenCount++] = tokenCount;
+                appendToken(entry, token.toCharArray(), 0, token.length());
+            }
+            finishEntry();
+        }
+
+        private int startEntry(long id, long data) {
+            entryIds[entryCount] = id;
+            authorData[entryCount] = data;
+            entryTokenStarts[entryCount] = tokenCount;
+            return entryCount;
+        }
+
+        private void finishEntry() {
+            entryCount++;
+            labelOffsets[entryCount] = labelChars.length();
+            entryTokenStarts[entryCount] = tokenCount;
+        }
+
+        private void appendToken(int entry, char[] chars, int start, int length) {
+            if (tokenCount == tokenEntries.length) {
+                tokenEntries = Arrays.copyOf(tokenEntries, tokenCount * 2);
+                tokenOffsets = Arrays.copyOf(tokenOffsets, tokenCount * 2 + 1);
+            }
+            tokenChars.append(chars, start, length);
+            tokenEntries[tokenCount] = entry;
+            tokenCount++;
+            tokenOffsets[tokenCount] = tokenChars.length();
+        }
+
+        SuggestionIndex build() {
+            int authorCount = entryCount - bookCount;
+            long[] bookAuthorIds = Arrays.copyOf(authorData, bookCount);
+            int[] authorBookCounts = new int[authorCount];
+            for (int i = 0; i < authorCount; i++) {
+                authorBookCounts[i] = (int) authorData[bookCount + i];
+            }
+            char[] tokenText = tokenChars.toString().toCharArray();
+            int[] offsets = Arrays.copyOf(tokenOffsets, tokenCount + 1);
+            int[] entries = Arrays.copyOf(tokenEntries, tokenCount);
+
+            // Слова скопированных подсказок остаются в прежнем порядке: номера подсказок сохраняют взаимный порядок
+            int[] kept = new int[tokenCount - addedTokenCount];
+            int keptCount = 0;
+            for (int previousToken : previous.sortedTokens) {
+                int previousEntry = previous.tokenEntries[previousToken];
+                int entry = entryMapping[previousEntry];
+                if (entry >= 0) {
+                    kept[keptCount++] = entryTokenStarts[entry] + previousToken - previous.entryTokenStarts[previousEntry];
+                }
+            }
+            int[] added = Arrays.copyOf(addedTokens, addedTokenCount);
+            sortTokens(added, tokenText, offsets, entries);
+
+            int[] sorted = new int[tokenCount];
+            int k = 0;
+            int a = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (a == added.length
+                        || (k < keptCount && compareTokens(kept[k], added[a], tokenText, offsets, entries) <= 0)) {
+                    sorted[i] = kept[k++];
+                } else {
+                    sorted[i] = added[a++];
+                }
+            }
+
+            return new SuggestionIndex(bookCount, labelChars.toString().toCharArray(),
+                    Arrays.copyOf(labelOffsets, entryCount + 1), Arrays.copyOf(entryIds, entryCount),
+                    bookAuthorIds, authorBookCounts, tokenText, offsets,
+                    Arrays.copyOf(entryTokenStarts, entryCount + 1), entries, sorted);
+        }
+
+        /**
+         * Сортировка слиянием номеров слов по (текст слова, номер подсказки) без упаковки в объекты
+         */
+        private static void sortTokens(int[] tokens, char[] chars, int[] offsets, int[] entries) {
+            int[] buffer = new int[tokens.length];
+            int[] source = tokens;
+            int[] target = buffer;
+            for (int width = 1; width < tokens.length; width *= 2) {
+                for (int low = 0; low < tokens.length; low += 2 * width) {
+                    int middle = Math.min(low + width, tokens.length);
+                    int high = Math.min(low + 2 * width, tokens.length);
+                    int left = low;
+                    int right = middle;
+                    for (int i = low; i < high; i++) {
+                        if (right >= high || (left < middle
+                                && compareTokens(source[left], source[right], chars, offsets, entries) <= 0)) {
+                            target[i] = source[left++];
+                        } else {
+                            target[i] = source[right++];
+                        }
+                    }
+                }
+                int[] swap = source;
+                source = target;
+                target = swap;
+            }
+            if (source != tokens) {
+                System.arraycopy(source, 0, tokens, 0, tokens.length);
+            }
+        }
+
+        private static int compareTokens(int first, int second, char[] chars, int[] offsets, int[] entries) {
+            int firstStart = offsets[first];
+            int firstLength = offsets[first + 1] - firstStart;
+            int secondStart = offsets[second];
+            int secondLength = offsets[second + 1] - secondStart;
+            int common = Math.min(firstLength, secondLength);
+            for (int i = 0; i < common; i++) {
+                int diff = chars[firstStart + i] - chars[secondStart + i];
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            if (firstLength != secondLength) {
+                return firstLength - secondLength;
+            }
+            return Integer.compare(entries[first], entries[second]);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package online.ityura.springdigitallibrary.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import online.ityura.springdigitallibrary.dto.request.ImportItem;
+import online.ityura.springdigitallibrary.dto.request.RatingImportItem;
+import online.ityura.springdigitallibrary.dto.request.ReviewImportItem;
+import online.ityura.springdigitallibrary.dto.response.ImportResultResponse;
+import online.ityura.springdigitallibrary.model.Book;
+import online.ityura.springdigitallibrary.repository.BookRepository;
+import online.ityura.springdigitallibrary.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Массовый импорт отзывов и оценок из NDJSON (одна JSON-запись на строку), например при миграции с партнёрских площадок.
+ *
+ * - Поток читается построчно, в памяти находится только текущий пакет (app.import.chunk-size строк)
+ * - Существование книг и пользователей пакета проверяется двумя запросами IN, а не по запросу на строку
+ * - Строки пакета записываются одним JDBC batch INSERT в одной транзакции; существующая пара (книга, пользователь)
+ *   пропускается (ON CONFLICT DO NOTHING), поэтому повторная загрузка того же файла безопасна
+ * - Агрегаты рейтинга обновляются одной дельтой на книгу за пакет (RatingAggregator), кэши сбрасываются по книгам пакета
+ * - Ошибочные строки пропускаются и попадают в ответ с номером строки
+ */
+@Slf4j
+@Service
+public class BulkImportService {
+
+    private static final String INSERT_REVIEW_SQL =
+            "INSERT INTO reviews (book_id, user_id, text, created_at, updated_at) VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (book_id, user_id) DO NOTHING";
+
+    private static final String INSERT_RATING_SQL =
+            "INSERT INTO ratings (book_id, user_id, value, created_at, updated_at) VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (book_id, user_id) DO NOTHING";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RatingAggregator ratingAggregator;
+
+    @Autowired
+    private BookCatalogCacheService bookCatalogCacheService;
+
+    @Autowired
+    private ReviewPageCacheService reviewPageCacheService;
+
+    @Value("${app.import.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${app.import.max-reported-errors:100}")
+    private int maxReportedErrors;
+
+    public ImportResultResponse importReviews(InputStream ndjson) {
+        return importLines(ndjson, ReviewImportItem.class, "Review", this::writeReviews, this::afterReviewsInserted);
+    }
+
+    public ImportResultResponse importRatings(InputStream ndjson) {
+        return importLines(ndjson, RatingImportItem.class, "Rating", this::writeRatings, this::afterRatingsInserted);
+    }
+
+    private <T extends ImportItem> ImportResultResponse importLines(InputStream ndjson, Class<T> type, String entityName,
+                                                                   ChunkWriter<T> writer,
+                                                                   Consumer<List<ImportLine<T>>> afterInsert) {
+        // Поля исходной системы, которых нет в схеме импорта, игнорируются
+        ObjectReader reader = objectMapper.readerFor(type).without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        ImportReport report = new ImportReport();
+        List<ImportLine<T>> chunk = new ArrayList<>(chunkSize);
+
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8))) {
+            long lineNumber = 0;
+            String line;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                report.processed++;
+                T item = parse(reader, line, lineNumber, report);
+                if (item == null) {
+                    continue;
+                }
+                chunk.add(new ImportLine<>(lineNumber, item));
+                if (chunk.size() >= chunkSize) {
+                    writeChunk(chunk, entityName, writer, afterInsert, report);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Failed to read import stream after " + report.imported + " imported rows", e);
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(chunk, entityName, writer, afterInsert, report);
+        }
+
+        log.info("Импорт ({}) завершён: обработано строк {}, записано {}, пропущено {}",
+                entityName, report.processed, report.imported, report.skipped);
+        return ImportResultResponse.builder()
+                .processed(report.processed)
+                .imported(report.imported)
+                .skipped(report.skipped)
+                .errors(report.errors)
+                .build();
+    }
+
+    private <T extends ImportItem> T parse(ObjectReader reader, String line, long lineNumber, ImportReport report) {
+        T item;
+        try {
+            item = reader.readValue(line);
+        } catch (JsonProcessingException e) {
+            report.skip(lineNumber, "Invalid JSON: " + e.getOriginalMessage());
+            return null;
+        }
+        if (item == null) {
+            report.skip(lineNumber, "Invalid JSON: expected an object");
+            return null;
+        }
+
+        Set<ConstraintViolation<T>> violations = validator.validate(item);
+        if (!violations.isEmpty()) {
+            report.skip(lineNumber, violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+            return null;
+        }
+        return item;
+    }
+
+    /**
+     * Проверяет ссылки пакета и записывает его в одной транзакции
+     */
+    private <T extends ImportItem> void writeChunk(List<ImportLine<T>> chunk, String entityName, ChunkWriter<T> writer,
+                                                   Consumer<List<ImportLine<T>>> afterInsert, ImportReport report) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Set<Long> existingBooks = new HashSet<>(bookRepository.findExistingIds(
+                    chunk.stream().map(line -> line.item().getBookId()).collect(Collectors.toSet())));
+            Set<Long> existingUsers = new HashSet<>(userRepository.findExistingIds(
+                    chunk.stream().map(line -> line.item().getUserId()).collect(Collectors.toSet())));
+
+            List<ImportLine<T>> valid = new ArrayList<>(chunk.size());
+            for (ImportLine<T> line : chunk) {
+                if (!existingBooks.contains(line.item().getBookId())) {
+                    report.skip(line.number(), "Book not found with id: " + line.item().getBookId());
+                } else if (!existingUsers.contains(line.item().getUserId())) {
+                    report.skip(line.number(), "User not found with id: " + line.item().getUserId());
+                } else {
+                    valid.add(line);
+                }
+            }
+            if (valid.isEmpty()) {
+                return;
+            }
+
+            int[] counts = writer.write(valid);
+            List<ImportLine<T>> inserted = new ArrayList<>(valid.size());
+            for (int i = 0; i < counts.length; i++) {
+                // 0 - пара (книга, пользователь) уже существует, в том числе выше в этом же пакете
+                if (counts[i] == 0) {
+                    report.skip(valid.get(i).number(), entityName + " already exists for this book");
+                } else {
+                    inserted.add(valid.get(i));
+                }
+            }
+            report.imported += inserted.size();
+            afterInsert.accept(inserted);
+        });
+    }
+
+    private int[] writeReviews(List<ImportLine<ReviewImportItem>> lines) {
+        LocalDateTime now = LocalDateTime.now();
+        return jdbcTemplate.batchUpdate(INSERT_REVIEW_SQL, lines.stream()
+                .map(line -> {
+                    Timestamp createdAt = Timestamp.valueOf(line.item().getCreatedAt() != null
+                            ? line.item().getCreatedAt() : now);
+                    return new Object[]{line.item().getBookId(), line.item().getUserId(), line.item().getText(),
+                            createdAt, createdAt};
+                })
+                .toList());
+    }
+
+    private int[] writeRatings(List<ImportLine<RatingImportItem>> lines) {
+        LocalDateTime now = LocalDateTime.now();
+        return jdbcTemplate.batchUpdate(INSERT_RATING_SQL, lines.stream()
+                .map(line -> {
+                    Timestamp createdAt = Timestamp.valueOf(line.item().getCreatedAt() != null
+                            ? line.item().getCreatedAt() : now);
+                    return new Object[]{line.item().getBookId(), line.item().getUserId(), line.item().getValue(),
+                            createdAt, createdAt};
+                })
+                .toList());
+    }
+
+    /**
+     * Число отзывов и последние отзывы в каталоге, первые страницы отзывов - сбрасываются после коммита
+     */
+    private void afterReviewsInserted(List<ImportLine<ReviewImportItem>> inserted) {
+        inserted.stream().map(line -> line.item().getBookId()).distinct().forEach(bookId -> {
+            bookCatalogCacheService.invalidateBook(bookId);
+            reviewPageCacheService.invalidateBook(bookId);
+        });
+    }
+
+    /**
+     * Одна дельта агрегатов на книгу пакета; страницы каталога сбрасывает RatingAggregator при записи агрегатов
+     */
+    private void afterRatingsInserted(List<ImportLine<RatingImportItem>> inserted) {
+        Map<Long, long[]> histograms = new HashMap<>();
+        for (ImportLine<RatingImportItem> line : inserted) {
+            histograms.computeIfAbsent(line.item().getBookId(), id -> new long[Book.RATING_SCALE])
+                    [line.item().getValue() - 1]++;
+        }
+        histograms.forEach(ratingAggregator::recordCreated);
+    }
+
+    @FunctionalInterface
+    private interface ChunkWriter<T extends ImportItem> {
+        int[] write(List<ImportLine<T>> lines);
+    }
+
+    private record ImportLine<T extends ImportItem>(long number, T item) {
+    }
+
+    /**
+     * Счётчики импорта и первые maxReportedErrors ошибок строк
+     */
+    private final class ImportReport {
+        private long processed;
+        private long imported;
+        private long skipped;
+        private final List<ImportResultResponse.LineError> errors = new ArrayList<>();
+
+        private void skip(long lineNumber, String message) {
+            skipped++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new ImportResultResponse.LineError(lineNumber, message));
+            }
+        }
+    }
+}
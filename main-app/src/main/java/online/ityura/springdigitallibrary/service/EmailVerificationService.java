@@ -4,6 +4,7 @@ import online.ityura.springdigitallibrary.model.EmailVerificationToken;
 import online.ityura.springdigitallibrary.model.User;
 import online.ityura.springdigitallibrary.repository.EmailVerificationTokenRepository;
 import online.ityura.springdigitallibrary.repository.UserRepository;
+import online.ityura.springdigitallibrary.security.CustomUserDetailsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
@@ -26,6 +27,9 @@ public class EmailVerificationService {
     @Autowired
     private EmailService emailService;
     
+    @Autowired
+    private CustomUserDetailsService customUserDetailsService;
+    
     @Value("${app.email.verification.token-expiration-hours:24}")
     private int tokenExpirationHours;
     
@@ -81,6 +85,7 @@ public class EmailVerificationService {
         // Устанавливаем isVerified = true
         user.setIsVerified(true);
         userRepository.save(user);
+        customUserDetailsService.evict(user.getEmail());
         
         // Помечаем токен как использованный
         verificationToken.setUsed(true);
@@ -0,0 +1,20 @@
+package online.ityura.springdigitallibrary.service;
+
+/**
+ * Что делать с событием аналитики, если буфер отправки в Kafka заполнен (app.analytics.publisher.overflow-policy)
+ */
+public enum EventOverflowPolicy {
+    /**
+     * Вытеснить самое старое событие из буфера, новое сохранить
+     */
+    DROP_OLDEST,
+    /**
+     * Отбросить новое событие
+     */
+    DROP_NEW,
+    /**
+     * Записать буфер и новое событие в журнал на диске (EventSpillLog), отправить после освобождения буфера.
+     * В журнал пишут потоки отправки; событие отбрасывается, только если они не успевают разобрать и очередь переполнения
+     */
+    SPILL
+}
@@ -0,0 +1,314 @@
+package online.ityura.springdigitallibrary.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал событий аналитики на диске: события, которые нельзя отправить сейчас (Kafka недоступен, переполнен буфер).
+ *
+ * - Журнал состоит из сегментов фиксированного размера (segmentBytes), отображённых в память; запись только в конец
+ *   последнего сегмента, при заполнении создаётся следующий. Общий размер ограничен maxBytes (количеством сегментов)
+ * - Запись: длина (4 байта), CRC32 данных (4 байта), данные. Длина пишется последней, поэтому недописанная
+ *   при аварийной остановке запись имеет нулевую длину; при открытии конец данных - первая запись с нулевой длиной
+ *   или неверной CRC
+ * - read не сдвигает подтверждённую позицию: после подтверждения Kafka вызывается commit, который сохраняет позицию
+ *   в файл offset (временный файл + атомарное переименование); rewind возвращает чтение к подтверждённой позиции
+ * - После перезапуска чтение продолжается с подтверждённой позиции: неподтверждённые записи отправляются повторно
+ *   (доставка "хотя бы раз"), полностью подтверждённые сегменты удаляются
+ */
+@Slf4j
+public class EventSpillLog implements Closeable {
+
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String OFFSET_FILE = "offset";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    // id сегмента -> сегмент, от самого старого к текущему
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+
+    private Position committed;
+    private Position reading;
+    private boolean closed;
+
+    public EventSpillLog(Path directory, int segmentBytes, long maxBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = (int) Math.max(2, maxBytes / segmentBytes);
+        try {
+            Files.createDirectories(directory);
+            this.committed = readOffset();
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.filter(EventSpillLog::isSegment).sorted().toList()) {
+                    long id = segmentId(file);
+                    if (id < committed.segmentId()) {
+                        // Сегмент подтверждён целиком до остановки, но не был удалён
+                        Files.deleteIfExists(file);
+                    } else {
+                        segments.put(id, Segment.open(file, id, segmentBytes));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open analytics spill log in " + directory, e);
+        }
+
+        if (segments.isEmpty()) {
+            segments.put(committed.segmentId(), createSegment(committed.segmentId()));
+        }
+        if (!segments.containsKey(committed.segmentId())) {
+            committed = new Position(segments.firstKey(), 0);
+        }
+        this.reading = committed;
+    }
+
+    /**
+     * Добавляет запись в конец журнала
+     *
+     * @return false, если журнал достиг maxBytes, запись больше сегмента или журнал закрыт
+     */
+    public synchronized boolean append(byte[] record) {
+        int size = HEADER_BYTES + record.length;
+        if (closed || size > segmentBytes) {
+            return false;
+        }
+        Segment tail = segments.lastEntry().getValue();
+        if (tail.writePosition + size > segmentBytes) {
+            if (segments.size() >= maxSegments) {
+                return false;
+            }
+            tail.buffer.force();
+            tail = createSegment(tail.id + 1);
+            segments.put(tail.id, tail);
+        }
+        tail.write(record);
+        return true;
+    }
+
+    /**
+     * Читает не больше maxRecords записей после прочитанных ранее, не подтверждая их
+     */
+    public synchronized List<byte[]> read(int maxRecords) {
+        List<byte[]> records = new ArrayList<>();
+        while (records.size() < maxRecords) {
+            Segment segment = segments.get(reading.segmentId());
+            if (reading.offset() < segment.writePosition) {
+                byte[] record = segment.read(reading.offset());
+                records.add(record);
+                reading = new Position(segment.id, reading.offset() + HEADER_BYTES + record.length);
+            } else if (segment.id < segments.lastKey()) {
+                reading = new Position(segments.higherKey(segment.id), 0);
+            } else {
+                break;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Подтверждает прочитанные записи: сохраняет позицию и удаляет пройденные сегменты
+     */
+    public synchronized void commit() {
+        committed = reading;
+        writeOffset(committed);
+        while (segments.firstKey() < committed.segmentId()) {
+            Map.Entry<Long, Segment> oldest = segments.pollFirstEntry();
+            oldest.getValue().delete();
+        }
+    }
+
+    /**
+     * Возвращает чтение к подтверждённой позиции (отправка прочитанных записей не удалась)
+     */
+    public synchronized void rewind() {
+        reading = committed;
+    }
+
+    /**
+     * Есть ли неподтверждённые записи
+     */
+    public synchronized boolean hasPending() {
+        return pendingBytes() > 0;
+    }
+
+    /**
+     * Размер неподтверждённых записей в байтах
+     */
+    public synchronized long pendingBytes() {
+        long pending = 0;
+        for (Segment segment : segments.tailMap(committed.segmentId(), true).values()) {
+            pending += segment.writePosition - (segment.id == committed.segmentId() ? committed.offset() : 0);
+        }
+        return pending;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+    }
+
+    private Segment createSegment(long id) {
+        try {
+            return Segment.open(directory.resolve(segmentFileName(id)), id, segmentBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create analytics spill segment " + id, e);
+        }
+    }
+
+    private Position readOffset() throws IOException {
+        Path file = directory.resolve(OFFSET_FILE);
+        if (!Files.exists(file)) {
+            return new Position(0, 0);
+        }
+        String[] parts = Files.readString(file, StandardCharsets.UTF_8).trim().split(" ");
+        return new Position(Long.parseLong(parts[0]), Integer.parseInt(parts[1]));
+    }
+
+    private void writeOffset(Position position) {
+        Path file = directory.resolve(OFFSET_FILE);
+        Path temp = directory.resolve(OFFSET_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(StandardCharsets.UTF_8.encode(position.segmentId() + " " + position.offset()));
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write analytics spill log offset", e);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write analytics spill log offset", e);
+        }
+    }
+
+    private static boolean isSegment(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static long segmentId(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static String segmentFileName(long id) {
+        // Ведущие нули - сортировка имён файлов совпадает с порядком сегментов
+        return SEGMENT_PREFIX + String.format("%019d", id) + SEGMENT_SUFFIX;
+    }
+
+    /**
+     * Позиция в журнале: сегмент и смещение внутри него
+     */
+    private record Position(long segmentId, int offset) {
+    }
+
+    private static final class Segment {
+        private final long id;
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+
+        private Segment(long id, Path file, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Отображает файл сегмента в память (новый файл заполняется нулями до segmentBytes)
+         * и находит конец записанных данных
+         */
+        private static Segment open(Path file, long id, int segmentBytes) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            Segment segment = new Segment(id, file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+            segment.writePosition = segment.findEnd();
+            return segment;
+        }
+
+        private int findEnd() {
+            int position = 0;
+            while (position + HEADER_BYTES <= buffer.capacity()) {
+                int length = buffer.getInt(position);
+                if (length <= 0 || position + HEADER_BYTES + length > buffer.capacity()) {
+                    break;
+                }
+                byte[] data = new byte[length];
+                buffer.get(position + HEADER_BYTES, data);
+                if (crc(data) != buffer.getInt(position + Integer.BYTES)) {
+                    log.warn("Повреждённая запись в журнале событий аналитики {} на позиции {}, дальше не читается",
+                            file.getFileName(), position);
+                    break;
+                }
+                position += HEADER_BYTES + length;
+            }
+            return position;
+        }
+
+        private void write(byte[] record) {
+            buffer.putInt(writePosition + Integer.BYTES, crc(record));
+            buffer.put(writePosition + HEADER_BYTES, record);
+            // Длина - последней: до этого момента запись считается отсутствующей
+            buffer.putInt(writePosition, record.length);
+            writePosition += HEADER_BYTES + record.length;
+        }
+
+        private byte[] read(int position) {
+            byte[] record = new byte[buffer.getInt(position)];
+            buffer.get(position + HEADER_BYTES, record);
+            return record;
+        }
+
+        private void close() {
+            try {
+                buffer.force();
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to close analytics spill segment " + file, e);
+            }
+        }
+
+        private void delete() {
+            try {
+                channel.close();
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // Например, Windows не удаляет отображённый файл - он будет удалён при следующем запуске
+                log.debug("Не удалось удалить подтверждённый сегмент {}: {}", file.getFileName(), e.getMessage());
+            }
+        }
+
+        private static int crc(byte[] data) {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            return (int) crc.getValue();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package online.ityura.springdigitallibrary.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Отдача файлов (PDF книг, изображения обложек) напрямую в HTTP ответ без копирования через буферы приложения.
+ *
+ * - Если контейнер поддерживает sendfile (Tomcat NIO), файл отдаётся ядром после завершения обработки запроса
+ * - Иначе используется FileChannel.transferTo в канал выходного потока ответа
+ * - Поддерживается заголовок Range (один диапазон) с ответом 206 Partial Content
+ * - Каждый ответ содержит строгий ETag и Last-Modified (по размеру и времени изменения файла),
+ *   учитываются If-None-Match, If-Modified-Since (304 Not Modified) и If-Range
+ */
+@Service
+public class FileDeliveryService {
+
+    // Атрибуты запроса Tomcat для отдачи файла через sendfile
+    static final String SENDFILE_SUPPORTED_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
+    // Маленькие файлы дешевле отдать обычной записью, чем через sendfile (аналогично DefaultServlet Tomcat)
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    /**
+     * Отдаёт файл целиком или запрошенный диапазон байт
+     *
+     * @param file               путь к файлу на диске
+     * @param mediaType          Content-Type ответа
+     * @param contentDisposition значение Content-Disposition (может быть null)
+     * @param cacheControl       политика кэширования для браузеров и CDN (может быть null)
+     * @return true, если файл отдаётся с первого байта (200 или диапазон от 0); false для 304, 416, HEAD
+     *         и докачки с середины файла - такие запросы не считаются новым скачиванием
+     */
+    public boolean deliver(Path file, MediaType mediaType, String contentDisposition, CacheControl cacheControl,
+                        HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!Files.isRegularFile(file) || !Files.isReadable(file)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found or not readable");
+        }
+
+        // Размер и время изменения читаются одним системным вызовом
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long fileSize = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String etag = buildEtag(fileSize, lastModified);
+
+        if (cacheControl != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        }
+
+        // If-None-Match / If-Modified-Since: выставляет ETag, Last-Modified и при совпадении статус 304
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return false;
+        }
+
+        response.setContentType(mediaType.toString());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (contentDisposition != null) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+        }
+
+        long start = 0;
+        long end = fileSize - 1;
+
+        // Если файл изменился с момента, указанного в If-Range, отдаём его целиком
+        ByteRange range = isIfRangeSatisfied(request, etag, lastModified)
+                ? parseRange(request.getHeader(HttpHeaders.RANGE), fileSize)
+                : null;
+        if (range == ByteRange.UNSATISFIABLE) {
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + fileSize);
+            response.setContentLength(0);
+            return false;
+        }
+        if (range != null) {
+            start = range.start();
+            end = range.end();
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + fileSize);
+        } else {
+            response.setStatus(HttpStatus.OK.value());
+        }
+
+        long length = end - start + 1;
+        response.setContentLengthLong(Math.max(length, 0));
+
+        if (HttpMethod.HEAD.matches(request.getMethod())) {
+            return false;
+        }
+        if (length <= 0) {
+            return true;
+        }
+
+        if (length >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTRIBUTE))) {
+            // Tomcat отдаст файл через sendfile после выхода из сервлета
+            request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTRIBUTE, start);
+            request.setAttribute(SENDFILE_END_ATTRIBUTE, end + 1);
+            return start == 0;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, target);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+        response.flushBuffer();
+        return start == 0;
+    }
+
+    /**
+     * Строгий ETag на основе размера и времени последнего изменения файла.
+     * При загрузке нового файла меняется время изменения, а значит и ETag.
+     */
+    static String buildEtag(long fileSize, long lastModified) {
+        return "\"" + Long.toHexString(fileSize) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    /**
+     * Проверяет условие If-Range: Range применяется только если ETag (строгое сравнение)
+     * или дата в заголовке соответствует текущей версии файла
+     */
+    private boolean isIfRangeSatisfied(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null || ifRange.isBlank()) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // Слабые ETag в If-Range не допускаются
+            return ifRange.equals(etag);
+        }
+        try {
+            long ifRangeDate = request.getDateHeader(HttpHeaders.IF_RANGE);
+            // Даты в HTTP заголовках имеют точность до секунды
+            return ifRangeDate != -1 && lastModified / 1000 == ifRangeDate / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Разбирает заголовок Range. Поддерживается только один диапазон:
+     * bytes=start-end, bytes=start- и bytes=-suffixLength.
+     *
+     * @return null, если заголовок отсутствует, некорректен или содержит несколько диапазонов
+     *         (в этих случаях отдаётся весь файл), либо {@link ByteRange#UNSATISFIABLE}
+     */
+    static ByteRange parseRange(String rangeHeader, long fileSize) {
+        if (rangeHeader == null || !rangeHeader.startsWith("bytes=")) {
+            return null;
+        }
+        String spec = rangeHeader.substring("bytes=".length()).trim();
+        if (spec.isEmpty() || spec.indexOf(',') >= 0) {
+            return null;
+        }
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String startPart = spec.substring(0, dash).trim();
+            String endPart = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (startPart.isEmpty()) {
+                if (endPart.isEmpty()) {
+                    return null;
+                }
+                long suffixLength = Long.parseLong(endPart);
+                if (suffixLength <= 0) {
+                    return ByteRange.UNSATISFIABLE;
+                }
+                start = Math.max(fileSize - suffixLength, 0);
+                end = fileSize - 1;
+            } else {
+                start = Long.parseLong(startPart);
+                if (start >= fileSize) {
+                    return ByteRange.UNSATISFIABLE;
+                }
+                long requestedEnd = endPart.isEmpty() ? fileSize - 1 : Long.parseLong(endPart);
+                if (requestedEnd < start) {
+                    // Синтаксически некорректный диапазон игнорируется
+                    return null;
+                }
+                end = Math.min(requestedEnd, fileSize - 1);
+            }
+            if (start < 0) {
+                return null;
+            }
+            return new ByteRange(start, end);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    record ByteRange(long start, long end) {
+        static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+    }
+}
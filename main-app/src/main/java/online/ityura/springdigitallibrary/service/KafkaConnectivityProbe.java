@@ -0,0 +1,46 @@
+package online.ityura.springdigitallibrary.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.DescribeClusterOptions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Проверка доступности Kafka без отправки событий: запрос описания кластера через AdminClient
+ */
+@Slf4j
+@Component
+@ConditionalOnBean(AdminClient.class)
+public class KafkaConnectivityProbe {
+
+    @Autowired
+    private AdminClient adminClient;
+
+    @Value("${app.analytics.publisher.probe-timeout-ms:2000}")
+    private int timeoutMs;
+
+    /**
+     * @return true, если брокер ответил и в кластере есть хотя бы один узел
+     */
+    public boolean isReachable() {
+        try {
+            return !adminClient.describeCluster(new DescribeClusterOptions().timeoutMs(timeoutMs))
+                    .nodes()
+                    .get(timeoutMs, TimeUnit.MILLISECONDS)
+                    .isEmpty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            log.debug("Kafka недоступен: {}", e.getMessage());
+            return false;
+        }
+    }
+}
@@ -1,5 +1,13 @@
 package online.ityura.springdigitallibrary.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import online.ityura.springdigitallibrary.dto.event.BookViewEvent;
 import online.ityura.springdigitallibrary.dto.event.BookDownloadEvent;
@@ -8,134 +16,405 @@ import online.ityura.springdigitallibrary.dto.event.BookReviewEvent;
 import online.ityura.springdigitallibrary.dto.event.BookRatingEvent;
 import org.apache.kafka.common.errors.TimeoutException;
 import org.apache.kafka.common.errors.InterruptException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Отправка событий аналитики в Kafka вне потока запроса.
+ *
+ * - send*Event только кладёт событие в ограниченный неблокирующий буфер (EventRingBuffer) и сразу возвращает управление:
+ *   время ответа API не зависит от доступности Kafka (max.block.ms и задержки брокера ждут потоки отправки)
+ * - Потоки отправки (app.analytics.publisher.sender-threads) забирают события пачками по batch-size,
+ *   продюсер объединяет их в пакеты по linger.ms/batch.size со сжатием (KafkaConfig)
+ * - При заполненном буфере действует app.analytics.publisher.overflow-policy (EventOverflowPolicy). Поток запроса
+ *   только кладёт событие в очередь или отбрасывает его: при SPILL событие уходит в очередь переполнения, а буфер
+ *   и эту очередь переносят в журнал потоки отправки
+ * - Неудачная отправка возвращается потокам отправки через очередь ошибок: сетевой поток продюсера
+ *   не сериализует события и не пишет на диск
+ * - Пока Kafka недоступен (ошибка отправки), события не теряются: потоки отправки пишут их в журнал на диске
+ *   (EventSpillLog, app.analytics.publisher.spill-dir). Возврат Kafka определяет фоновая проверка
+ *   (KafkaConnectivityProbe, probe-interval-ms), после чего журнал отправляется по порядку; новые события
+ *   пишутся в конец журнала, пока он не опустеет. Позиция в журнале сохраняется только после подтверждения
+ *   брокером, поэтому после сбоя часть событий может быть отправлена повторно
+ * - Метрики: analytics.events.queue.size, analytics.events.dropped (reason), analytics.events.spilled,
+ *   analytics.events.spill.bytes, analytics.events.sent, analytics.events.failed,
+ *   analytics.events.latency (от вызова send*Event до подтверждения брокера), analytics.kafka.available
+ */
 @Slf4j
 @Service
 @ConditionalOnBean(KafkaTemplate.class)
 public class KafkaProducerService {
 
+    // Типы событий, которые можно восстановить из журнала
+    private static final Map<String, Class<?>> EVENT_TYPES = Map.of(
+            BookViewEvent.class.getSimpleName(), BookViewEvent.class,
+            BookDownloadEvent.class.getSimpleName(), BookDownloadEvent.class,
+            BookPurchaseEvent.class.getSimpleName(), BookPurchaseEvent.class,
+            BookReviewEvent.class.getSimpleName(), BookReviewEvent.class,
+            BookRatingEvent.class.getSimpleName(), BookRatingEvent.class);
+
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long SHUTDOWN_TIMEOUT_MS = 5000;
+    // Ожидание подтверждения пачки из журнала (больше delivery.timeout.ms продюсера)
+    private static final long REPLAY_ACK_TIMEOUT_MS = 15000;
+
     private final KafkaTemplate<String, Object> kafkaTemplate;
-    private static final AtomicBoolean kafkaAvailable = new AtomicBoolean(true);
-    private static volatile long lastErrorLogTime = 0;
-    private static final long ERROR_LOG_INTERVAL_MS = 60000; // Логируем ошибки не чаще раза в минуту
+    private final KafkaConnectivityProbe connectivityProbe;
+    // Сбрасывается при ошибке отправки, восстанавливается только проверкой probeKafka
+    private final AtomicBoolean kafkaAvailable = new AtomicBoolean(true);
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final EventRingBuffer<PendingEvent> buffer;
+    // События, не поместившиеся в буфер при политике SPILL, и события с ошибкой отправки: в журнал их пишут потоки отправки
+    private final EventRingBuffer<PendingEvent> overflow;
+    private final EventRingBuffer<PendingEvent> failures;
+    private final EventOverflowPolicy overflowPolicy;
+    private final EventSpillLog spillLog;
+    // Журнал отправляет один поток, чтобы сохранить порядок
+    private final ReentrantLock replayLock = new ReentrantLock();
+    private final int batchSize;
+    private final int senderThreadCount;
+    private final List<Thread> senderThreads = new ArrayList<>();
+    private volatile boolean running;
 
-    public KafkaProducerService(KafkaTemplate<String, Object> kafkaTemplate) {
+    private final Counter sent;
+    private final Counter failed;
+    private final Counter spilled;
+    private final Timer latency;
+
+    public KafkaProducerService(KafkaTemplate<String, Object> kafkaTemplate,
+                                ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry,
+                                KafkaConnectivityProbe connectivityProbe,
+                                @Value("${app.analytics.publisher.buffer-capacity:8192}") int bufferCapacity,
+                                @Value("${app.analytics.publisher.overflow-policy:DROP_OLDEST}") EventOverflowPolicy overflowPolicy,
+                                @Value("${app.analytics.publisher.batch-size:500}") int batchSize,
+                                @Value("${app.analytics.publisher.sender-threads:1}") int senderThreadCount,
+                                @Value("${app.analytics.publisher.spill-dir:${java.io.tmpdir}/spring-digital-bookstore/analytics-spill}") String spillDir,
+                                @Value("${app.analytics.publisher.spill-segment-bytes:16777216}") int spillSegmentBytes,
+                                @Value("${app.analytics.publisher.spill-max-bytes:268435456}") long spillMaxBytes) {
         this.kafkaTemplate = kafkaTemplate;
+        this.connectivityProbe = connectivityProbe;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.buffer = new EventRingBuffer<>(bufferCapacity);
+        this.overflow = new EventRingBuffer<>(overflowPolicy == EventOverflowPolicy.SPILL ? bufferCapacity : 2);
+        this.failures = new EventRingBuffer<>(bufferCapacity);
+        this.overflowPolicy = overflowPolicy;
+        this.spillLog = new EventSpillLog(Path.of(spillDir), spillSegmentBytes, spillMaxBytes);
+        this.batchSize = batchSize;
+        this.senderThreadCount = senderThreadCount;
+
+        this.sent = Counter.builder("analytics.events.sent")
+                .description("Analytics events acknowledged by Kafka")
+                .register(meterRegistry);
+        this.failed = Counter.builder("analytics.events.failed")
+                .description("Analytics events rejected by Kafka or failed to send")
+                .register(meterRegistry);
+        this.spilled = Counter.builder("analytics.events.spilled")
+                .description("Analytics events written to the spill log (Kafka unavailable or send buffer full)")
+                .register(meterRegistry);
+        this.latency = Timer.builder("analytics.events.latency")
+                .description("Time from publishing an analytics event to Kafka acknowledgement")
+                .register(meterRegistry);
+        Gauge.builder("analytics.events.queue.size", buffer, EventRingBuffer::size)
+                .description("Analytics events waiting in the send buffer")
+                .register(meterRegistry);
+        Gauge.builder("analytics.events.spill.bytes", spillLog, EventSpillLog::pendingBytes)
+                .description("Unsent analytics events in the spill log, bytes")
+                .register(meterRegistry);
+        Gauge.builder("analytics.kafka.available", kafkaAvailable, available -> available.get() ? 1 : 0)
+                .description("Whether Kafka is considered reachable by the analytics publisher")
+                .register(meterRegistry);
     }
 
-    public void sendBookViewEvent(BookViewEvent event) {
-        if (!kafkaAvailable.get()) {
-            return; // Тихо игнорируем, если Kafka недоступен
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 1; i <= senderThreadCount; i++) {
+            Thread thread = new Thread(this::runSender, "analytics-publisher-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            senderThreads.add(thread);
         }
-        
-        try {
-            CompletableFuture<SendResult<String, Object>> future = kafkaTemplate
-                .send("book.views", String.valueOf(event.getBookId()), event);
-            future.thenAccept(result -> kafkaAvailable.set(true))
-                  .exceptionally(ex -> {
-                      handleKafkaError(ex, "book view");
-                      return null;
-                  });
-        } catch (Exception e) {
-            handleKafkaError(e, "book view");
+    }
+
+    /**
+     * Останавливает потоки отправки; оставшиеся в буфере события записываются в журнал
+     * и будут отправлены после следующего запуска
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Thread thread : senderThreads) {
+            thread.join(SHUTDOWN_TIMEOUT_MS);
         }
+
+        spillAll(failures);
+        spillAll(buffer);
+        spillAll(overflow);
+        spillLog.close();
     }
 
-    public void sendBookDownloadEvent(BookDownloadEvent event) {
-        if (!kafkaAvailable.get()) {
+    /**
+     * Проверяет, вернулся ли Kafka; до этого события копятся в журнале
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.publisher.probe-interval-ms:5000}")
+    public void probeKafka() {
+        if (kafkaAvailable.get() || !connectivityProbe.isReachable()) {
             return;
         }
-        
-        try {
-            CompletableFuture<SendResult<String, Object>> future = kafkaTemplate
-                .send("book.downloads", String.valueOf(event.getUserId()), event);
-            future.thenAccept(result -> kafkaAvailable.set(true))
-                  .exceptionally(ex -> {
-                      handleKafkaError(ex, "book download");
-                      return null;
-                  });
-        } catch (Exception e) {
-            handleKafkaError(e, "book download");
-        }
+        kafkaAvailable.set(true);
+        log.info("Kafka снова доступен, отправляются события аналитики из журнала ({} байт)", spillLog.pendingBytes());
+    }
+
+    public boolean isKafkaAvailable() {
+        return kafkaAvailable.get();
+    }
+
+    public void sendBookViewEvent(BookViewEvent event) {
+        publish("book.views", String.valueOf(event.getBookId()), event);
+    }
+
+    public void sendBookDownloadEvent(BookDownloadEvent event) {
+        publish("book.downloads", String.valueOf(event.getUserId()), event);
     }
 
     public void sendBookPurchaseEvent(BookPurchaseEvent event) {
-        if (!kafkaAvailable.get()) {
-            return;
+        publish("book.purchases", String.valueOf(event.getUserId()), event);
+    }
+
+    public void sendBookReviewEvent(BookReviewEvent event) {
+        publish("book.reviews", String.valueOf(event.getBookId()), event);
+    }
+
+    public void sendBookRatingEvent(BookRatingEvent event) {
+        publish("book.ratings", String.valueOf(event.getBookId()), event);
+    }
+
+    /**
+     * Отправляет в Kafka пачку событий из буфера. Пока Kafka недоступен или в журнале есть неотправленные события,
+     * пачка дописывается в конец журнала, а при доступном Kafka отправляется очередная пачка из журнала.
+     * Сначала в журнал записываются события с ошибкой отправки, а после переполнения при политике SPILL -
+     * весь буфер и затем не поместившиеся в него события
+     *
+     * @return количество взятых событий (0 - отправлять нечего)
+     */
+    public int sendBatch() {
+        int taken = spillAll(failures);
+        if (!overflow.isEmpty()) {
+            taken += spillAll(buffer) + spillAll(overflow);
         }
-        
-        try {
-            CompletableFuture<SendResult<String, Object>> future = kafkaTemplate
-                .send("book.purchases", String.valueOf(event.getUserId()), event);
-            future.thenAccept(result -> kafkaAvailable.set(true))
-                  .exceptionally(ex -> {
-                      handleKafkaError(ex, "book purchase");
-                      return null;
-                  });
-        } catch (Exception e) {
-            handleKafkaError(e, "book purchase");
+
+        List<PendingEvent> batch = new ArrayList<>(batchSize);
+        buffer.drainTo(batch, batchSize);
+        if (kafkaAvailable.get() && !spillLog.hasPending()) {
+            for (PendingEvent event : batch) {
+                send(event);
+            }
+            return taken + batch.size();
+        }
+
+        for (PendingEvent event : batch) {
+            spill(event);
         }
+        return taken + batch.size() + (kafkaAvailable.get() ? replaySpilled() : 0);
     }
 
-    public void sendBookReviewEvent(BookReviewEvent event) {
-        if (!kafkaAvailable.get()) {
+    private void publish(String topic, String key, Object event) {
+        PendingEvent pending = new PendingEvent(topic, key, event, System.currentTimeMillis());
+        if (buffer.offer(pending)) {
             return;
         }
-        
+        switch (overflowPolicy) {
+            case DROP_NEW -> drop("queue_full");
+            case DROP_OLDEST -> {
+                while (!buffer.offer(pending)) {
+                    if (buffer.poll() != null) {
+                        drop("queue_full");
+                    }
+                }
+            }
+            case SPILL -> {
+                // В журнал событие запишет поток отправки (после событий буфера, чтобы сохранить порядок)
+                if (!overflow.offer(pending)) {
+                    drop("queue_full");
+                }
+            }
+        }
+    }
+
+    /**
+     * Отправляет событие из буфера; при ошибке событие возвращается потокам отправки для записи в журнал
+     * (обработчик выполняется в сетевом потоке продюсера)
+     */
+    private void send(PendingEvent event) {
+        deliver(event).exceptionally(ex -> {
+            if (!failures.offer(event)) {
+                drop("failure_queue_full");
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Отправляет пачку из журнала и ждёт подтверждения всех событий: только после этого позиция в журнале сохраняется.
+     * При ошибке чтение возвращается к сохранённой позиции, и пачка будет отправлена снова после возврата Kafka
+     *
+     * @return количество отправленных событий
+     */
+    private int replaySpilled() {
+        if (!replayLock.tryLock()) {
+            return 0;
+        }
+        try {
+            List<byte[]> records = spillLog.read(batchSize);
+            List<CompletableFuture<?>> acks = new ArrayList<>(records.size());
+            for (byte[] record : records) {
+                PendingEvent event = fromSpillRecord(record);
+                if (event != null) {
+                    acks.add(deliver(event));
+                }
+            }
+
+            try {
+                CompletableFuture.allOf(acks.toArray(CompletableFuture[]::new))
+                        .get(REPLAY_ACK_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                spillLog.commit();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                spillLog.rewind();
+            } catch (ExecutionException | java.util.concurrent.TimeoutException e) {
+                spillLog.rewind();
+                markUnavailable(e, "из журнала");
+            }
+            return records.size();
+        } finally {
+            replayLock.unlock();
+        }
+    }
+
+    private CompletableFuture<?> deliver(PendingEvent event) {
         try {
-            CompletableFuture<SendResult<String, Object>> future = kafkaTemplate
-                .send("book.reviews", String.valueOf(event.getBookId()), event);
-            future.thenAccept(result -> kafkaAvailable.set(true))
-                  .exceptionally(ex -> {
-                      handleKafkaError(ex, "book review");
-                      return null;
-                  });
+            return kafkaTemplate.send(event.topic(), event.key(), event.payload())
+                    .whenComplete((result, ex) -> {
+                        if (ex != null) {
+                            failed.increment();
+                            markUnavailable(ex, event.topic());
+                            return;
+                        }
+                        sent.increment();
+                        latency.record(System.currentTimeMillis() - event.publishedAt(), TimeUnit.MILLISECONDS);
+                    });
         } catch (Exception e) {
-            handleKafkaError(e, "book review");
+            failed.increment();
+            markUnavailable(e, event.topic());
+            return CompletableFuture.failedFuture(e);
         }
     }
 
-    public void sendBookRatingEvent(BookRatingEvent event) {
-        if (!kafkaAvailable.get()) {
-            return;
+    private void runSender() {
+        while (running) {
+            try {
+                if (sendBatch() == 0) {
+                    LockSupport.parkNanos(IDLE_WAIT_NANOS);
+                }
+            } catch (RuntimeException e) {
+                log.error("Ошибка потока отправки событий аналитики", e);
+                LockSupport.parkNanos(IDLE_WAIT_NANOS);
+            }
+        }
+    }
+
+    private int spillAll(EventRingBuffer<PendingEvent> queue) {
+        int count = 0;
+        PendingEvent event;
+        while ((event = queue.poll()) != null) {
+            spill(event);
+            count++;
         }
-        
+        return count;
+    }
+
+    private void spill(PendingEvent event) {
         try {
-            CompletableFuture<SendResult<String, Object>> future = kafkaTemplate
-                .send("book.ratings", String.valueOf(event.getBookId()), event);
-            future.thenAccept(result -> kafkaAvailable.set(true))
-                  .exceptionally(ex -> {
-                      handleKafkaError(ex, "book rating");
-                      return null;
-                  });
-        } catch (Exception e) {
-            handleKafkaError(e, "book rating");
+            byte[] record = objectMapper.writeValueAsBytes(new SpilledEvent(event.topic(), event.key(),
+                    event.payload().getClass().getSimpleName(), event.publishedAt(),
+                    objectMapper.valueToTree(event.payload())));
+            if (spillLog.append(record)) {
+                spilled.increment();
+            } else {
+                drop("spill_full");
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Не удалось записать событие аналитики в журнал: {}", e.getMessage());
+            drop("spill_error");
+        }
+    }
+
+    private PendingEvent fromSpillRecord(byte[] record) {
+        try {
+            SpilledEvent spilledEvent = objectMapper.readValue(record, SpilledEvent.class);
+            Class<?> type = EVENT_TYPES.get(spilledEvent.type());
+            if (type == null) {
+                throw new IOException("Unknown event type: " + spilledEvent.type());
+            }
+            return new PendingEvent(spilledEvent.topic(), spilledEvent.key(),
+                    objectMapper.treeToValue(spilledEvent.payload(), type), spilledEvent.publishedAt());
+        } catch (IOException e) {
+            log.warn("Пропущена повреждённая запись события аналитики в журнале: {}", e.getMessage());
+            drop("spill_error");
+            return null;
         }
     }
-    
-    private void handleKafkaError(Throwable ex, String eventType) {
-        // Логируем ошибки только периодически, чтобы не засорять логи
-        long currentTime = System.currentTimeMillis();
-        if (currentTime - lastErrorLogTime > ERROR_LOG_INTERVAL_MS) {
-            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+
+    private void drop(String reason) {
+        meterRegistry.counter("analytics.events.dropped", "reason", reason).increment();
+    }
+
+    private void markUnavailable(Throwable ex, String topic) {
+        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+        if (cause instanceof InterruptException) {
+            // Игнорируем прерывания
+            return;
+        }
+        // Логируем только переход в недоступность, чтобы не засорять логи
+        if (kafkaAvailable.getAndSet(false)) {
             if (cause instanceof TimeoutException) {
-                log.warn("Kafka недоступен. Аналитика временно отключена. События {} будут игнорироваться.", eventType);
-            } else if (cause instanceof InterruptException) {
-                // Игнорируем прерывания
-                return;
+                log.warn("Kafka недоступен. События аналитики записываются в журнал до восстановления связи ({}).", topic);
             } else {
-                log.warn("Ошибка отправки события {} в Kafka: {}. Аналитика временно отключена.", 
-                        eventType, cause.getMessage());
+                log.warn("Ошибка отправки события {} в Kafka: {}. События аналитики записываются в журнал.",
+                        topic, cause.getMessage());
             }
-            lastErrorLogTime = currentTime;
-            kafkaAvailable.set(false);
         }
     }
+
+    /**
+     * @param publishedAt время вызова send*Event (мс), для метрики задержки доставки
+     */
+    private record PendingEvent(String topic, String key, Object payload, long publishedAt) {
+    }
+
+    /**
+     * Запись журнала: событие в JSON и имя его класса для восстановления
+     */
+    record SpilledEvent(String topic, String key, String type, long publishedAt, JsonNode payload) {
+    }
 }
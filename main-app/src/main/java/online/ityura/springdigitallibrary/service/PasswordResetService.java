@@ -4,6 +4,8 @@ import online.ityura.springdigitallibrary.model.PasswordResetToken;
 import online.ityura.springdigitallibrary.model.User;
 import online.ityura.springdigitallibrary.repository.PasswordResetTokenRepository;
 import online.ityura.springdigitallibrary.repository.UserRepository;
+import online.ityura.springdigitallibrary.security.CustomUserDetailsService;
+import online.ityura.springdigitallibrary.security.TokenRevocationList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -35,6 +37,15 @@ public class PasswordResetService {
     @Autowired
     private PasswordEncoder passwordEncoder;
     
+    @Autowired
+    private CustomUserDetailsService customUserDetailsService;
+    
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+    
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+    
     @Value("${app.password.reset.token-expiration-hours:1}")
     private int tokenExpirationHours;
     
@@ -113,6 +124,10 @@ public class PasswordResetService {
         // Обновляем пароль пользователя
         user.setPasswordHash(hashedPassword);
         userRepository.save(user);
+        customUserDetailsService.evict(user.getEmail());
+        // Токены, выпущенные со старым паролем, больше не принимаются
+        tokenRevocationList.revoke(user.getId());
+        refreshTokenService.revokeAllForUser(user.getId());
         
         // Помечаем токен как использованный
         resetToken.setUsed(true);
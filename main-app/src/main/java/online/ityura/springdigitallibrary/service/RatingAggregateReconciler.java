@@ -0,0 +1,64 @@
+package online.ityura.springdigitallibrary.service;
+
+import lombok.extern.slf4j.Slf4j;
+import online.ityura.springdigitallibrary.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Сверка агрегатов рейтинга книг (rating_sum, rating_count, rating_avg, rating_histogram) с таблицей ratings.
+ *
+ * - RatingService изменяет агрегаты дельтами (RatingAggregator); оценки, изменённые в обход сервиса
+ *   (удаление пользователя каскадом, ручные правки БД), приводят к расхождению
+ * - Пересчитываются только книги с расхождением, затем сбрасываются их страницы каталога в кэше
+ * - После старта приложения заполняет агрегаты книг, оценённых до их появления (например, rating_histogram)
+ */
+@Slf4j
+@Service
+public class RatingAggregateReconciler {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookCatalogCacheService bookCatalogCacheService;
+
+    @Autowired
+    private RatingAggregator ratingAggregator;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        int updated = reconcile();
+        log.info("Агрегаты рейтинга проверены после старта, пересчитано книг: {}", updated);
+    }
+
+    /**
+     * @return количество исправленных книг
+     */
+    @Scheduled(cron = "${app.catalog.rating-reconciliation.cron:0 30 3 * * *}")
+    public int reconcile() {
+        // Незаписанные дельты и оценки, зафиксированные во время пересчёта, иначе были бы учтены дважды:
+        // в пересчёте и при следующей записи. Коммиты оценок ждут окончания сверки
+        return ratingAggregator.withDeltasFlushed(this::reconcileFlushed);
+    }
+
+    private int reconcileFlushed() {
+        List<Long> staleBookIds = bookRepository.findBookIdsWithStaleRatingAggregates();
+        if (staleBookIds.isEmpty()) {
+            return 0;
+        }
+
+        int updated = bookRepository.recalculateRatingAggregates(staleBookIds);
+        for (Long bookId : staleBookIds) {
+            bookCatalogCacheService.invalidateBook(bookId, "ratingAvg", "ratingCount");
+        }
+        log.warn("Агрегаты рейтинга расходились с таблицей ratings и пересчитаны для {} книг: {}",
+                updated, staleBookIds);
+        return updated;
+    }
+}
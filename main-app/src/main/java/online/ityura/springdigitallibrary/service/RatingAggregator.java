@@ -0,0 +1,303 @@
+package online.ityura.springdigitallibrary.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import online.ityura.springdigitallibrary.model.Book;
+import online.ityura.springdigitallibrary.repository.BookRepository;
+import online.ityura.springdigitallibrary.repository.projection.BookRatingTotals;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Отложенная запись агрегатов рейтинга книг (write-behind).
+ *
+ * - Оценка сохраняется сразу, а изменение суммы и количества оценок книги накапливается в памяти
+ *   и записывается в books пакетом раз в app.catalog.rating-aggregation.flush-interval-ms и при остановке
+ * - Одновременные оценки одной книги не блокируют строку books: дельта добавляется в LongAdder книги без блокировок
+ * - Сумма и количество упакованы в одно число (сумма << COUNT_BITS | количество), поэтому сбрасываются атомарно
+ *   и не расходятся между собой при записи
+ * - Распределение оценок (rating_histogram) накапливается отдельными счётчиками по значению оценки;
+ *   изменение оценки, попавшее между их сбросами, записывается частями в двух соседних записях
+ * - Дельта учитывается только после коммита транзакции оценки. Коммит оценки (от beforeCommit до добавления дельты)
+ *   выполняется под read lock: пока запись дельт или сверка держат write lock, новые оценки не фиксируются,
+ *   поэтому оценка не попадает одновременно в пересчёт сверки и в дельту
+ * - Книг в таблице не больше, чем книг с оценками; записи не удаляются, чтобы не потерять конкурентную дельту
+ */
+@Slf4j
+@Service
+public class RatingAggregator {
+
+    private static final String APPLY_DELTA_SQL =
+            "UPDATE books SET rating_sum = rating_sum + ?, rating_count = rating_count + ?, " +
+            // Выражения SET вычисляются по значениям строки до обновления
+            "rating_avg = CASE WHEN rating_count + ? > 0 " +
+            "THEN ROUND(CAST(rating_sum + ? AS numeric) / (rating_count + ?), 2) ELSE 0 END, " +
+            // Поэлементное сложение массивов распределения оценок
+            "rating_histogram = ARRAY(SELECT h + d FROM unnest(rating_histogram, CAST(? AS integer[])) " +
+            "WITH ORDINALITY AS t(h, d, i) ORDER BY i), " +
+            "updated_at = LOCALTIMESTAMP WHERE id = ?";
+
+    // Новых оценок одной книги за интервал записи должно быть меньше 2^20
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookCatalogCacheService bookCatalogCacheService;
+
+    // id книги -> незаписанная дельта
+    private final Map<Long, PendingDelta> deltas = new ConcurrentHashMap<>();
+
+    // Запись в БД и сверка - write lock; чтение "БД + дельта" и коммит оценки с её дельтой - read lock:
+    // дельта не учитывается дважды
+    private final ReentrantReadWriteLock flushLock = new ReentrantReadWriteLock();
+
+    /**
+     * Учитывает новую оценку книги после коммита текущей транзакции
+     */
+    public void recordCreated(Long bookId, short value) {
+        record(bookId, value, 1, value, 0);
+    }
+
+    /**
+     * Учитывает изменение оценки книги после коммита текущей транзакции
+     */
+    public void recordChanged(Long bookId, short oldValue, short newValue) {
+        if (oldValue != newValue) {
+            record(bookId, newValue - oldValue, 0, newValue, oldValue);
+        }
+    }
+
+    /**
+     * Учитывает пакет новых оценок книги после коммита текущей транзакции (массовый импорт)
+     *
+     * @param histogram количество новых оценок по значениям 1..RATING_SCALE
+     */
+    public void recordCreated(Long bookId, long[] histogram) {
+        long sumDelta = 0;
+        long countDelta = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            sumDelta += (i + 1) * histogram[i];
+            countDelta += histogram[i];
+        }
+        DrainedDelta delta = new DrainedDelta((sumDelta << COUNT_BITS) + countDelta, histogram.clone());
+        afterCommit(() -> deltas.computeIfAbsent(bookId, id -> new PendingDelta()).add(delta));
+    }
+
+    /**
+     * Агрегаты книги из БД вместе с ещё не записанными дельтами
+     */
+    public BookRatingTotals currentTotals(Long bookId) {
+        flushLock.readLock().lock();
+        try {
+            BookRatingTotals persisted = bookRepository.findRatingTotals(bookId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                            "Book not found with id: " + bookId));
+            PendingDelta pending = deltas.get(bookId);
+            if (pending == null) {
+                return persisted;
+            }
+            long packed = pending.sumAndCount.sum();
+            return persisted.plus(sumOf(packed), countOf(packed));
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Записывает накопленные дельты и выполняет action; до его завершения транзакции оценок ждут коммита,
+     * и новых дельт не появляется (сверка агрегатов с таблицей ratings)
+     */
+    public <T> T withDeltasFlushed(Supplier<T> action) {
+        flushLock.writeLock().lock();
+        try {
+            flush();
+            return action.get();
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Записывает накопленные дельты одним пакетом UPDATE в одной транзакции
+     */
+    @Scheduled(fixedDelayString = "${app.catalog.rating-aggregation.flush-interval-ms:250}")
+    public void flush() {
+        flushLock.writeLock().lock();
+        try {
+            // Порядок по id книги: одинаковый порядок блокировок строк при записи с нескольких экземпляров
+            List<Long> bookIds = new ArrayList<>(deltas.keySet());
+            bookIds.sort(null);
+
+            List<Long> flushedIds = new ArrayList<>();
+            List<DrainedDelta> flushedDeltas = new ArrayList<>();
+            List<Object[]> rows = new ArrayList<>();
+            for (Long bookId : bookIds) {
+                DrainedDelta drained = deltas.get(bookId).drain();
+                if (drained.isEmpty()) {
+                    continue;
+                }
+                long sumDelta = sumOf(drained.packed());
+                int countDelta = countOf(drained.packed());
+                flushedIds.add(bookId);
+                flushedDeltas.add(drained);
+                rows.add(new Object[]{sumDelta, countDelta, countDelta, sumDelta, countDelta,
+                        arrayLiteral(drained.histogram()), bookId});
+            }
+            if (rows.isEmpty()) {
+                return;
+            }
+
+            try {
+                new TransactionTemplate(transactionManager)
+                        .executeWithoutResult(status -> jdbcTemplate.batchUpdate(APPLY_DELTA_SQL, rows));
+            } catch (RuntimeException e) {
+                // Вернём дельты, повторим при следующем запуске
+                for (int i = 0; i < flushedIds.size(); i++) {
+                    deltas.computeIfAbsent(flushedIds.get(i), id -> new PendingDelta()).add(flushedDeltas.get(i));
+                }
+                log.error("Не удалось записать агрегаты рейтинга ({} книг)", flushedIds.size(), e);
+                return;
+            }
+
+            for (Long bookId : flushedIds) {
+                bookCatalogCacheService.invalidateBook(bookId, "ratingAvg", "ratingCount", "updatedAt");
+            }
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void record(Long bookId, long sumDelta, int countDelta, int addedValue, int removedValue) {
+        long packed = (sumDelta << COUNT_BITS) + countDelta;
+        afterCommit(() -> {
+            PendingDelta pending = deltas.computeIfAbsent(bookId, id -> new PendingDelta());
+            pending.sumAndCount.add(packed);
+            pending.histogram[addedValue - 1].increment();
+            if (removedValue > 0) {
+                pending.histogram[removedValue - 1].decrement();
+            }
+        });
+    }
+
+    private static String arrayLiteral(long[] values) {
+        StringBuilder literal = new StringBuilder("{");
+        for (int i = 0; i < values.length; i++) {
+            literal.append(i > 0 ? "," : "").append(values[i]);
+        }
+        return literal.append('}').toString();
+    }
+
+    private static long sumOf(long packed) {
+        return packed >> COUNT_BITS;
+    }
+
+    private static int countOf(long packed) {
+        return (int) (packed & COUNT_MASK);
+    }
+
+    /**
+     * Выполняет action после коммита транзакции оценки. Read lock берётся в beforeCommit и отпускается после action:
+     * коммит оценки и добавление её дельты не пересекаются с записью дельт и сверкой
+     */
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            flushLock.readLock().lock();
+            try {
+                action.run();
+            } finally {
+                flushLock.readLock().unlock();
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean locked;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                flushLock.readLock().lock();
+                locked = true;
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        action.run();
+                    }
+                } finally {
+                    if (locked) {
+                        locked = false;
+                        flushLock.readLock().unlock();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Незаписанная дельта книги: сумма и количество (упакованы) и изменение распределения оценок
+     */
+    private static final class PendingDelta {
+        private final LongAdder sumAndCount = new LongAdder();
+        private final LongAdder[] histogram = new LongAdder[Book.RATING_SCALE];
+
+        private PendingDelta() {
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = new LongAdder();
+            }
+        }
+
+        private DrainedDelta drain() {
+            long[] drainedHistogram = new long[histogram.length];
+            for (int i = 0; i < histogram.length; i++) {
+                drainedHistogram[i] = histogram[i].sumThenReset();
+            }
+            return new DrainedDelta(sumAndCount.sumThenReset(), drainedHistogram);
+        }
+
+        private void add(DrainedDelta drained) {
+            sumAndCount.add(drained.packed());
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i].add(drained.histogram()[i]);
+            }
+        }
+    }
+
+    private record DrainedDelta(long packed, long[] histogram) {
+
+        private boolean isEmpty() {
+            return packed == 0 && Arrays.stream(histogram).allMatch(value -> value == 0);
+        }
+    }
+}
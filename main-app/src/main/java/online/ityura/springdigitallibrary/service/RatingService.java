@@ -9,15 +9,14 @@ import online.ityura.springdigitallibrary.model.User;
 import online.ityura.springdigitallibrary.repository.BookRepository;
 import online.ityura.springdigitallibrary.repository.RatingRepository;
 import online.ityura.springdigitallibrary.repository.UserRepository;
+import online.ityura.springdigitallibrary.repository.projection.BookRatingTotals;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-
 @Service
 public class RatingService {
     
@@ -30,6 +29,13 @@ public class RatingService {
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private RatingAggregator ratingAggregator;
+    
+    // Возвращать в ответе автору оценки рейтинг книги с учётом его оценки (агрегаты в БД обновляются с задержкой)
+    @Value("${app.catalog.rating-aggregation.read-your-writes:true}")
+    private boolean readYourWrites;
+    
     @Transactional
     public RatingResponse createRating(Long bookId, Long userId, CreateRatingRequest request) {
         Book book = bookRepository.findById(bookId)
@@ -53,41 +59,35 @@ public class RatingService {
                 .build();
         
         rating = ratingRepository.save(rating);
-        updateBookRating(bookId);
+        ratingAggregator.recordCreated(bookId, request.getValue());
         
-        return mapToRatingResponse(rating);
+        return withBookRating(mapToRatingResponse(rating), bookId, request.getValue(), 1);
     }
     
     @Transactional
     public RatingResponse updateRating(Long bookId, Long userId, UpdateRatingRequest request) {
-        Rating rating = ratingRepository.findByBookIdAndUserId(bookId, userId)
+        Rating rating = ratingRepository.findByBookIdAndUserIdWithLock(bookId, userId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, 
                         "Rating not found"));
         
+        short oldValue = rating.getValue();
         rating.setValue(request.getValue());
         rating = ratingRepository.save(rating);
-        updateBookRating(bookId);
+        ratingAggregator.recordChanged(bookId, oldValue, request.getValue());
         
-        return mapToRatingResponse(rating);
+        return withBookRating(mapToRatingResponse(rating), bookId, request.getValue() - oldValue, 0);
     }
     
-    private void updateBookRating(Long bookId) {
-        Book book = bookRepository.findById(bookId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, 
-                        "Book not found with id: " + bookId));
-        
-        Double avgRating = ratingRepository.calculateAverageRating(bookId);
-        long count = ratingRepository.countByBookId(bookId);
-        
-        if (avgRating != null) {
-            book.setRatingAvg(BigDecimal.valueOf(avgRating)
-                    .setScale(2, RoundingMode.HALF_UP));
-        } else {
-            book.setRatingAvg(BigDecimal.ZERO);
+    /**
+     * Дельта этой оценки учитывается в RatingAggregator только после коммита, поэтому добавляется к ответу явно
+     */
+    private RatingResponse withBookRating(RatingResponse response, Long bookId, long sumDelta, int countDelta) {
+        if (readYourWrites) {
+            BookRatingTotals totals = ratingAggregator.currentTotals(bookId).plus(sumDelta, countDelta);
+            response.setBookRatingAvg(totals.ratingAvg());
+            response.setBookRatingCount(totals.ratingCount());
         }
-        book.setRatingCount((int) count);
-        
-        bookRepository.save(book);
+        return response;
     }
     
     private RatingResponse mapToRatingResponse(Rating rating) {
@@ -0,0 +1,261 @@
+package online.ityura.springdigitallibrary.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import online.ityura.springdigitallibrary.model.RefreshToken;
+import online.ityura.springdigitallibrary.model.RefreshTokenStatus;
+import online.ityura.springdigitallibrary.model.User;
+import online.ityura.springdigitallibrary.repository.RefreshTokenRepository;
+import online.ityura.springdigitallibrary.security.JwtTokenProvider;
+import online.ityura.springdigitallibrary.security.TokenClaims;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Хранилище refresh-токенов с ротацией.
+ *
+ * - Каждый refresh-токен одноразовый: при обновлении он помечается ROTATED, а клиент получает новый токен той же сессии (family)
+ * - Повторное предъявление уже использованного токена означает его утечку: отзывается вся сессия
+ * - Проверка токена выполняется по состоянию в памяти (хеш-таблица по jti), БД читается только при промахе
+ *   (токен выдан до перезапуска приложения)
+ * - Новые токены и смены статуса записываются в БД пакетами раз в app.security.refresh-tokens.flush-interval-ms;
+ *   отзыв сессий и всех токенов пользователя записывается сразу
+ * - Состояние хранится в памяти экземпляра приложения (как и TokenRevocationList)
+ */
+@Slf4j
+@Service
+public class RefreshTokenService {
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO refresh_tokens (token_id, family_id, user_id, status, expires_at, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (token_id) DO UPDATE SET status = CASE " +
+            // Статус не понижается: отзыв, записанный сразу, не перетирается отложенной записью ротации
+            "WHEN refresh_tokens.status = 'REVOKED' OR EXCLUDED.status = 'REVOKED' THEN 'REVOKED' " +
+            "WHEN refresh_tokens.status = 'ROTATED' OR EXCLUDED.status = 'ROTATED' THEN 'ROTATED' " +
+            "ELSE EXCLUDED.status END";
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Value("${jwt.refresh-expiration}")
+    private long refreshExpirationMillis;
+
+    // jti -> состояние токена
+    private final Map<String, TokenState> tokens = new ConcurrentHashMap<>();
+
+    // id пользователя -> jti его токенов (для отзыва сессий без обхода всей таблицы)
+    private final Map<Long, Set<String>> tokensByUser = new ConcurrentHashMap<>();
+
+    // Изменения, ещё не записанные в БД
+    private final Set<TokenState> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Выдаёт refresh-токен новой сессии (логин)
+     */
+    public String issue(User user) {
+        return issue(user.getEmail(), user.getId(), user.getRole().name(), Boolean.TRUE.equals(user.getIsVerified()),
+                UUID.randomUUID().toString());
+    }
+
+    /**
+     * Обменивает refresh-токен на новый той же сессии.
+     *
+     * @return новый refresh-токен
+     * @throws RuntimeException если токен неизвестен, истёк, отозван или уже был использован
+     */
+    public String rotate(TokenClaims claims) {
+        if (claims.tokenId() == null || claims.userId() == null) {
+            throw invalidToken();
+        }
+        TokenState state = lookup(claims.tokenId());
+        if (state == null || !state.userId.equals(claims.userId())) {
+            throw invalidToken();
+        }
+
+        synchronized (state) {
+            if (state.status == RefreshTokenStatus.ROTATED) {
+                log.warn("Повторное использование refresh-токена пользователя {}: сессия {} отозвана",
+                        state.userId, state.familyId);
+                revokeFamily(state);
+                throw invalidToken();
+            }
+            if (state.status == RefreshTokenStatus.REVOKED || !state.expiresAt.isAfter(LocalDateTime.now())) {
+                throw invalidToken();
+            }
+            state.status = RefreshTokenStatus.ROTATED;
+        }
+        pending.add(state);
+
+        return issue(claims.subject(), claims.userId(), claims.role(), Boolean.TRUE.equals(claims.verified()),
+                state.familyId);
+    }
+
+    /**
+     * Отзывает все refresh-токены пользователя (удаление пользователя, смена пароля)
+     */
+    public void revokeAllForUser(Long userId) {
+        for (String tokenId : tokensByUser.getOrDefault(userId, Set.of())) {
+            TokenState state = tokens.get(tokenId);
+            if (state != null) {
+                revokeInMemory(state);
+            }
+        }
+        flush();
+        refreshTokenRepository.revokeAllByUserId(userId);
+    }
+
+    /**
+     * Пакетная запись новых токенов и смен статуса
+     */
+    @Scheduled(fixedDelayString = "${app.security.refresh-tokens.flush-interval-ms:1000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<TokenState> batch = new ArrayList<>(pending);
+        pending.removeAll(batch);
+
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (TokenState state : batch) {
+            RefreshTokenStatus status;
+            synchronized (state) {
+                status = state.status;
+            }
+            rows.add(new Object[]{state.tokenId, state.familyId, state.userId, status.name(),
+                    Timestamp.valueOf(state.expiresAt), Timestamp.valueOf(state.createdAt)});
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+        } catch (RuntimeException e) {
+            // Повторим при следующем запуске
+            pending.addAll(batch);
+            log.error("Не удалось записать refresh-токены ({} шт.)", batch.size(), e);
+        }
+    }
+
+    /**
+     * Удаляет истёкшие токены из памяти и БД
+     */
+    @Scheduled(fixedDelayString = "${app.security.refresh-tokens.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        tokens.values().removeIf(state -> {
+            if (state.expiresAt.isAfter(now) || pending.contains(state)) {
+                return false;
+            }
+            tokensByUser.computeIfPresent(state.userId, (userId, ids) -> {
+                ids.remove(state.tokenId);
+                return ids.isEmpty() ? null : ids;
+            });
+            return true;
+        });
+        int deleted = refreshTokenRepository.deleteExpired(now);
+        if (deleted > 0) {
+            log.info("Удалено истёкших refresh-токенов: {}", deleted);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    public int size() {
+        return tokens.size();
+    }
+
+    private String issue(String email, Long userId, String role, boolean verified, String familyId) {
+        LocalDateTime now = LocalDateTime.now();
+        TokenState state = new TokenState(UUID.randomUUID().toString(), familyId, userId,
+                now.plusNanos(refreshExpirationMillis * 1_000_000), now);
+        tokens.put(state.tokenId, state);
+        tokensByUser.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(state.tokenId);
+        pending.add(state);
+        return jwtTokenProvider.generateRefreshToken(email, userId, role, verified, state.tokenId);
+    }
+
+    /**
+     * Состояние токена из памяти, при промахе - из БД
+     */
+    private TokenState lookup(String tokenId) {
+        TokenState state = tokens.get(tokenId);
+        if (state != null) {
+            return state;
+        }
+        RefreshToken entity = refreshTokenRepository.findById(tokenId).orElse(null);
+        if (entity == null) {
+            return null;
+        }
+        TokenState loaded = new TokenState(entity.getTokenId(), entity.getFamilyId(), entity.getUserId(),
+                entity.getExpiresAt(), entity.getCreatedAt());
+        loaded.status = entity.getStatus();
+        TokenState existing = tokens.putIfAbsent(tokenId, loaded);
+        if (existing != null) {
+            return existing;
+        }
+        tokensByUser.computeIfAbsent(loaded.userId, id -> ConcurrentHashMap.newKeySet()).add(tokenId);
+        return loaded;
+    }
+
+    private void revokeFamily(TokenState compromised) {
+        for (String tokenId : tokensByUser.getOrDefault(compromised.userId, Set.of())) {
+            TokenState state = tokens.get(tokenId);
+            if (state != null && state.familyId.equals(compromised.familyId)) {
+                revokeInMemory(state);
+            }
+        }
+        flush();
+        refreshTokenRepository.revokeFamily(compromised.familyId);
+    }
+
+    private void revokeInMemory(TokenState state) {
+        synchronized (state) {
+            state.status = RefreshTokenStatus.REVOKED;
+        }
+        pending.add(state);
+    }
+
+    private static RuntimeException invalidToken() {
+        return new RuntimeException("Invalid refresh token");
+    }
+
+    /**
+     * Состояние токена в памяти. Статус меняется под блокировкой на самом объекте
+     */
+    private static final class TokenState {
+        private final String tokenId;
+        private final String familyId;
+        private final Long userId;
+        private final LocalDateTime expiresAt;
+        private final LocalDateTime createdAt;
+        private RefreshTokenStatus status = RefreshTokenStatus.ACTIVE;
+
+        private TokenState(String tokenId, String familyId, Long userId, LocalDateTime expiresAt,
+                           LocalDateTime createdAt) {
+            this.tokenId = tokenId;
+            this.familyId = familyId;
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+            this.createdAt = createdAt;
+        }
+    }
+}
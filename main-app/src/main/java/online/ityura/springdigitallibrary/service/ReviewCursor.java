@@ -0,0 +1,35 @@
+package online.ityura.springdigitallibrary.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Курсор keyset-пагинации отзывов книги: дата создания и id последнего отзыва страницы.
+ * Отзывы упорядочены по (createdAt, id) от новых к старым, для клиента курсор непрозрачен (Base64url).
+ */
+public record ReviewCursor(LocalDateTime lastCreatedAt, Long lastId) {
+
+    private static final String SEPARATOR = "|";
+
+    public String encode() {
+        String raw = lastCreatedAt + SEPARATOR + lastId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ReviewCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Unexpected cursor format");
+            }
+            return new ReviewCursor(LocalDateTime.parse(parts[0]), Long.valueOf(parts[1]));
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package online.ityura.springdigitallibrary.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import online.ityura.springdigitallibrary.dto.response.CursorPageResponse;
+import online.ityura.springdigitallibrary.dto.response.ReviewResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Read-through кэш первой страницы отзывов книги (запрашивается при каждом открытии книги).
+ *
+ * - Ключ: книга и размер страницы; следующие страницы (по курсору) не кэшируются
+ * - Размер ограничен, при переполнении вытесняется давно не использованная страница (LRU)
+ * - Инвалидация после коммита: создание и изменение отзыва сбрасывают страницы книги, удаление пользователя - весь кэш
+ * - Страница, загруженная до инвалидации, в кэш не попадает (счётчик поколений)
+ * - Метрики: reviews.cache.requests (result=hit/miss), reviews.cache.size
+ */
+@Service
+public class ReviewPageCacheService {
+
+    private final int maxEntries;
+    private final Map<CacheKey, CursorPageResponse<ReviewResponse>> entries;
+    private final Counter hits;
+    private final Counter misses;
+
+    // Увеличивается при каждой инвалидации, защищает от записи в кэш устаревших данных
+    private long generation;
+
+    public ReviewPageCacheService(MeterRegistry meterRegistry,
+                                  @Value("${app.catalog.reviews-cache.max-entries:1000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, CursorPageResponse<ReviewResponse>> eldest) {
+                return size() > ReviewPageCacheService.this.maxEntries;
+            }
+        };
+
+        this.hits = Counter.builder("reviews.cache.requests")
+                .tag("result", "hit")
+                .description("First review page cache lookups")
+                .register(meterRegistry);
+        this.misses = Counter.builder("reviews.cache.requests")
+                .tag("result", "miss")
+                .description("First review page cache lookups")
+                .register(meterRegistry);
+        Gauge.builder("reviews.cache.size", this, ReviewPageCacheService::size)
+                .description("Number of cached first review pages")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Возвращает первую страницу отзывов книги из кэша или загружает её через loader
+     */
+    public CursorPageResponse<ReviewResponse> getFirstPage(Long bookId, int size,
+                                                           Supplier<CursorPageResponse<ReviewResponse>> loader) {
+        if (maxEntries <= 0) {
+            return loader.get();
+        }
+
+        CacheKey key = new CacheKey(bookId, size);
+        long loadGeneration;
+        synchronized (this) {
+            CursorPageResponse<ReviewResponse> page = entries.get(key);
+            if (page != null) {
+                hits.increment();
+                return page;
+            }
+            loadGeneration = generation;
+        }
+        misses.increment();
+
+        // Загрузка выполняется вне блокировки, параллельные промахи по одному ключу допустимы
+        CursorPageResponse<ReviewResponse> page = loader.get();
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                entries.put(key, page);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Удаляет первые страницы отзывов книги после коммита текущей транзакции
+     */
+    public void invalidateBook(Long bookId) {
+        afterCommit(() -> {
+            synchronized (this) {
+                generation++;
+                entries.keySet().removeIf(key -> key.bookId().equals(bookId));
+            }
+        });
+    }
+
+    /**
+     * Сбрасывает весь кэш после коммита текущей транзакции (удаление пользователя удаляет его отзывы каскадом)
+     */
+    public void invalidateAll() {
+        afterCommit(() -> {
+            synchronized (this) {
+                generation++;
+                entries.clear();
+            }
+        });
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Выполняет действие после успешного коммита или сразу, если транзакции нет
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private record CacheKey(Long bookId, int size) {
+    }
+}
@@ -2,6 +2,7 @@ package online.ityura.springdigitallibrary.service;
 
 import online.ityura.springdigitallibrary.dto.request.CreateReviewRequest;
 import online.ityura.springdigitallibrary.dto.request.UpdateReviewRequest;
+import online.ityura.springdigitallibrary.dto.response.CursorPageResponse;
 import online.ityura.springdigitallibrary.dto.response.ReviewResponse;
 import online.ityura.springdigitallibrary.dto.response.UserInfoResponse;
 import online.ityura.springdigitallibrary.model.Book;
@@ -10,17 +11,24 @@ import online.ityura.springdigitallibrary.model.User;
 import online.ityura.springdigitallibrary.repository.BookRepository;
 import online.ityura.springdigitallibrary.repository.ReviewRepository;
 import online.ityura.springdigitallibrary.repository.UserRepository;
+import online.ityura.springdigitallibrary.repository.projection.ReviewRow;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.List;
+
 @Service
 public class ReviewService {
     
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+    
     @Autowired
     private ReviewRepository reviewRepository;
     
@@ -30,6 +38,12 @@ public class ReviewService {
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private BookCatalogCacheService bookCatalogCacheService;
+    
+    @Autowired
+    private ReviewPageCacheService reviewPageCacheService;
+    
     @Transactional
     public ReviewResponse createReview(Long bookId, Long userId, CreateReviewRequest request) {
         Book book = bookRepository.findById(bookId)
@@ -53,6 +67,8 @@ public class ReviewService {
                 .build();
         
         review = reviewRepository.save(review);
+        bookCatalogCacheService.invalidateBook(bookId);
+        reviewPageCacheService.invalidateBook(bookId);
         return mapToReviewResponse(review);
     }
     
@@ -64,6 +80,8 @@ public class ReviewService {
         
         review.setText(request.getText());
         review = reviewRepository.save(review);
+        bookCatalogCacheService.invalidateBook(bookId);
+        reviewPageCacheService.invalidateBook(bookId);
         return mapToReviewResponse(review);
     }
     
@@ -72,6 +90,27 @@ public class ReviewService {
                 .map(this::mapToReviewResponse);
     }
     
+    /**
+     * Отзывы книги в режиме keyset-пагинации по (createdAt, id), от новых к старым: без OFFSET и COUNT,
+     * никнейм автора - в том же запросе. Первая страница кэшируется (ReviewPageCacheService)
+     *
+     * @param cursor курсор из предыдущего ответа (null - первая страница)
+     */
+    public CursorPageResponse<ReviewResponse> getReviewsByCursor(Long bookId, String cursor, int size) {
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Page size must be between 1 and " + MAX_CURSOR_PAGE_SIZE);
+        }
+        
+        if (cursor == null || cursor.isBlank()) {
+            return reviewPageCacheService.getFirstPage(bookId, size,
+                    () -> toCursorPage(reviewRepository.findRowsByBookId(bookId, PageRequest.of(0, size)), size));
+        }
+        ReviewCursor after = ReviewCursor.decode(cursor);
+        return toCursorPage(reviewRepository.findRowsByBookIdBefore(bookId, after.lastCreatedAt(), after.lastId(),
+                PageRequest.of(0, size)), size);
+    }
+    
     public ReviewResponse getMyReview(Long bookId, Long userId) {
         Review review = reviewRepository.findByBookIdAndUserId(bookId, userId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, 
@@ -84,6 +123,35 @@ public class ReviewService {
                 .map(this::mapToReviewResponse);
     }
     
+    private CursorPageResponse<ReviewResponse> toCursorPage(Slice<ReviewRow> slice, int size) {
+        List<ReviewRow> rows = slice.getContent();
+        String nextCursor = null;
+        if (slice.hasNext() && !rows.isEmpty()) {
+            ReviewRow last = rows.get(rows.size() - 1);
+            nextCursor = new ReviewCursor(last.createdAt(), last.id()).encode();
+        }
+        return CursorPageResponse.<ReviewResponse>builder()
+                .content(rows.stream().map(this::mapRowToReviewResponse).toList())
+                .size(size)
+                .hasNext(slice.hasNext())
+                .nextCursor(nextCursor)
+                .build();
+    }
+    
+    private ReviewResponse mapRowToReviewResponse(ReviewRow row) {
+        return ReviewResponse.builder()
+                .id(row.id())
+                .bookId(row.bookId())
+                .user(UserInfoResponse.builder()
+                        .id(row.userId())
+                        .nickname(row.nickname())
+                        .build())
+                .text(row.text())
+                .createdAt(row.createdAt())
+                .updatedAt(row.updatedAt())
+                .build();
+    }
+    
     private ReviewResponse mapToReviewResponse(Review review) {
         return ReviewResponse.builder()
                 .id(review.getId())
@@ -0,0 +1,75 @@
+package online.ityura.springdigitallibrary.unit.controller;
+
+import online.ityura.springdigitallibrary.controller.AdminImportController;
+import online.ityura.springdigitallibrary.dto.response.ImportResultResponse;
+import online.ityura.springdigitallibrary.service.BulkImportService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AdminImportControllerTest {
+
+    @Mock
+    private BulkImportService bulkImportService;
+
+    @InjectMocks
+    private AdminImportController adminImportController;
+
+    @Test
+    void testImportReviews_ShouldReturnImportResult() {
+        // Given
+        InputStream body = new ByteArrayInputStream(
+                "{\"bookId\":1,\"userId\":2,\"text\":\"Отличная книга\"}".getBytes(StandardCharsets.UTF_8));
+        ImportResultResponse result = ImportResultResponse.builder()
+                .processed(1L)
+                .imported(1L)
+                .skipped(0L)
+                .errors(List.of())
+                .build();
+        when(bulkImportService.importReviews(body)).thenReturn(result);
+
+        // When
+        ResponseEntity<ImportResultResponse> response = adminImportController.importReviews(body);
+
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(result, response.getBody());
+        verify(bulkImportService).importReviews(body);
+    }
+
+    @Test
+    void testImportRatings_ShouldReturnImportResult() {
+        // Given
+        InputStream body = new ByteArrayInputStream(
+                "{\"bookId\":1,\"userId\":2,\"value\":11}".getBytes(StandardCharsets.UTF_8));
+        ImportResultResponse result = ImportResultResponse.builder()
+                .processed(1L)
+                .imported(0L)
+                .skipped(1L)
+                .errors(List.of(new ImportResultResponse.LineError(1L, "Rating must be at most 10")))
+                .build();
+        when(bulkImportService.importRatings(body)).thenReturn(result);
+
+        // When
+        ResponseEntity<ImportResultResponse> response = adminImportController.importRatings(body);
+
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1L, response.getBody().getSkipped());
+        assertEquals("Rating must be at most 10", response.getBody().getErrors().get(0).getMessage());
+    }
+}
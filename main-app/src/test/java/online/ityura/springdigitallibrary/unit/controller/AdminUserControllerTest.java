@@ -7,6 +7,11 @@ import online.ityura.springdigitallibrary.model.User;
 import online.ityura.springdigitallibrary.repository.EmailVerificationTokenRepository;
 import online.ityura.springdigitallibrary.repository.PasswordResetTokenRepository;
 import online.ityura.springdigitallibrary.repository.UserRepository;
+import online.ityura.springdigitallibrary.security.CustomUserDetailsService;
+import online.ityura.springdigitallibrary.security.TokenRevocationList;
+import online.ityura.springdigitallibrary.service.BookCatalogCacheService;
+import online.ityura.springdigitallibrary.service.ReviewPageCacheService;
+import online.ityura.springdigitallibrary.service.RefreshTokenService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -42,6 +47,21 @@ class AdminUserControllerTest {
     @Mock
     private PasswordResetTokenRepository passwordResetTokenRepository;
     
+    @Mock
+    private BookCatalogCacheService bookCatalogCacheService;
+    
+    @Mock
+    private ReviewPageCacheService reviewPageCacheService;
+    
+    @Mock
+    private CustomUserDetailsService customUserDetailsService;
+    
+    @Mock
+    private TokenRevocationList tokenRevocationList;
+    
+    @Mock
+    private RefreshTokenService refreshTokenService;
+    
     @InjectMocks
     private AdminUserController adminUserController;
     
@@ -152,6 +172,9 @@ class AdminUserControllerTest {
         verify(emailVerificationTokenRepository).deleteByUser(testUser);
         verify(passwordResetTokenRepository).deleteByUser(testUser);
         verify(userRepository).delete(testUser);
+        verify(customUserDetailsService).evict(testUser.getEmail());
+        verify(tokenRevocationList).revoke(testUser.getId());
+        verify(refreshTokenService).revokeAllForUser(testUser.getId());
     }
     
     @Test
@@ -1,6 +1,7 @@
 package online.ityura.springdigitallibrary.unit.controller;
 
 import online.ityura.springdigitallibrary.controller.BookFileController;
+import online.ityura.springdigitallibrary.dto.event.BookDownloadEvent;
 import online.ityura.springdigitallibrary.dto.response.AuthorResponse;
 import online.ityura.springdigitallibrary.dto.response.BookResponse;
 import online.ityura.springdigitallibrary.model.Role;
@@ -8,25 +9,36 @@ import online.ityura.springdigitallibrary.model.User;
 import online.ityura.springdigitallibrary.repository.UserRepository;
 import online.ityura.springdigitallibrary.service.BookFileService;
 import online.ityura.springdigitallibrary.service.BookService;
+import online.ityura.springdigitallibrary.service.FileDeliveryService;
+import online.ityura.springdigitallibrary.service.KafkaProducerService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class BookFileControllerTest {
@@ -46,6 +58,15 @@ class BookFileControllerTest {
     @Mock
     private UserDetails userDetails;
     
+    @Mock
+    private KafkaProducerService kafkaProducerService;
+    
+    @Spy
+    private FileDeliveryService fileDeliveryService = new FileDeliveryService();
+    
+    @TempDir
+    Path tempDir;
+    
     @InjectMocks
     private BookFileController bookFileController;
     
@@ -53,6 +74,7 @@ class BookFileControllerTest {
     
     @BeforeEach
     void setUp() {
+        ReflectionTestUtils.setField(bookFileController, "kafkaProducerService", kafkaProducerService);
         testUser = User.builder()
                 .id(1L)
                 .nickname("testuser")
@@ -64,9 +86,10 @@ class BookFileControllerTest {
     }
     
     @Test
-    void testDownloadBook_Success_ShouldReturn200() {
+    void testDownloadBook_Success_ShouldReturn200() throws Exception {
         // Given
-        Resource mockResource = new ByteArrayResource("test pdf content".getBytes());
+        Path pdf = Files.write(tempDir.resolve("test-book.pdf"), "test pdf content".getBytes());
+        Resource mockResource = new FileSystemResource(pdf);
         String filename = "test-book.pdf";
         
         BookResponse bookResponse = BookResponse.builder()
@@ -86,15 +109,76 @@ class BookFileControllerTest {
         when(bookFileService.downloadBookFile(1L, 1L)).thenReturn(mockResource);
         when(bookFileService.getOriginalFilename(1L)).thenReturn(filename);
         
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        // When
+        bookFileController.downloadBook(1L, authentication,
+                new MockHttpServletRequest("GET", "/api/v1/books/1/download"), response);
+        
+        // Then
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+        assertEquals(MediaType.APPLICATION_PDF_VALUE, response.getContentType());
+        assertEquals("test pdf content", response.getContentAsString());
+        assertNotNull(response.getHeader(HttpHeaders.CONTENT_DISPOSITION));
+        assertTrue(response.getHeader(HttpHeaders.CONTENT_DISPOSITION).contains(filename));
+        ArgumentCaptor<BookDownloadEvent> event = ArgumentCaptor.forClass(BookDownloadEvent.class);
+        verify(kafkaProducerService).sendBookDownloadEvent(event.capture());
+        assertEquals("Test Book", event.getValue().getBookTitle());
+        assertTrue(event.getValue().getIsFree());
+    }
+    
+    @Test
+    void testDownloadBook_WithRangeHeader_ShouldReturnPartialContentWithoutDownloadEvent() throws Exception {
+        // Given - докачка с середины файла
+        Path pdf = Files.write(tempDir.resolve("test-book.pdf"), "test pdf content".getBytes());
+        
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(userDetails.getUsername()).thenReturn("test@example.com");
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(testUser));
+        when(bookFileService.downloadBookFile(1L, 1L)).thenReturn(new FileSystemResource(pdf));
+        when(bookFileService.getOriginalFilename(1L)).thenReturn("test-book.pdf");
+        
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/books/1/download");
+        request.addHeader(HttpHeaders.RANGE, "bytes=9-");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        // When
+        bookFileController.downloadBook(1L, authentication, request, response);
+        
+        // Then
+        assertEquals(HttpStatus.PARTIAL_CONTENT.value(), response.getStatus());
+        assertEquals("content", response.getContentAsString());
+        assertEquals("bytes 9-15/16", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        verifyNoInteractions(kafkaProducerService, bookService);
+    }
+    
+    @Test
+    void testDownloadBook_NotModified_ShouldNotSendDownloadEvent() throws Exception {
+        // Given - повторная проверка актуальности файла браузером
+        Path pdf = Files.write(tempDir.resolve("test-book.pdf"), "test pdf content".getBytes());
+        
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(userDetails.getUsername()).thenReturn("test@example.com");
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(testUser));
+        when(bookFileService.downloadBookFile(1L, 1L)).thenReturn(new FileSystemResource(pdf));
+        when(bookFileService.getOriginalFilename(1L)).thenReturn("test-book.pdf");
+        
+        MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+        MockHttpServletRequest firstRequest = new MockHttpServletRequest("GET", "/api/v1/books/1/download");
+        firstRequest.addHeader(HttpHeaders.RANGE, "bytes=9-");
+        bookFileController.downloadBook(1L, authentication, firstRequest, firstResponse);
+        
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/books/1/download");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, firstResponse.getHeader(HttpHeaders.ETAG));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
         // When
-        ResponseEntity<Resource> response = bookFileController.downloadBook(1L, authentication);
+        bookFileController.downloadBook(1L, authentication, request, response);
         
         // Then
-        assertNotNull(response);
-        assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertNotNull(response.getBody());
-        assertNotNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION));
-        assertTrue(response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION).contains(filename));
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus());
+        verify(kafkaProducerService, never()).sendBookDownloadEvent(any());
+        verifyNoInteractions(bookService);
     }
 }
 
@@ -3,6 +3,7 @@ package online.ityura.springdigitallibrary.unit.controller;
 import online.ityura.springdigitallibrary.controller.ReviewController;
 import online.ityura.springdigitallibrary.dto.request.CreateReviewRequest;
 import online.ityura.springdigitallibrary.dto.request.UpdateReviewRequest;
+import online.ityura.springdigitallibrary.dto.response.CursorPageResponse;
 import online.ityura.springdigitallibrary.dto.response.ReviewResponse;
 import online.ityura.springdigitallibrary.model.Role;
 import online.ityura.springdigitallibrary.model.User;
@@ -17,10 +18,14 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.util.Collections;
 import java.util.List;
@@ -28,8 +33,15 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @ExtendWith(MockitoExtension.class)
 class ReviewControllerTest {
@@ -165,5 +177,65 @@ class ReviewControllerTest {
         assertNotNull(response.getBody());
         assertEquals(0, response.getBody().getTotalElements());
     }
+    
+    @Test
+    void testGetReviewsByCursor_Success_ShouldReturn200() {
+        // Given
+        CursorPageResponse<ReviewResponse> page = CursorPageResponse.<ReviewResponse>builder()
+                .content(List.of(reviewResponse))
+                .size(20)
+                .hasNext(false)
+                .build();
+        
+        when(reviewService.getReviewsByCursor(eq(1L), isNull(), eq(20))).thenReturn(page);
+        
+        // When
+        ResponseEntity<CursorPageResponse<ReviewResponse>> response = reviewController.getReviewsByCursor(1L, null, 20);
+        
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(1, response.getBody().getContent().size());
+        assertFalse(response.getBody().getHasNext());
+    }
+    
+    @Test
+    void testGetReviews_WithoutPaginationParam_ShouldReturnNumberedPage() throws Exception {
+        // Given
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(reviewController)
+                .setCustomArgumentResolvers(new PageableHandlerMethodArgumentResolver())
+                .build();
+        when(reviewService.getReviewsByBookId(eq(1L), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(reviewResponse), PageRequest.of(0, 10), 21));
+        
+        // When & Then - без pagination=cursor формат ответа не меняется, в том числе при одном size
+        mockMvc.perform(get("/api/v1/books/1/reviews"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElements").value(21));
+        mockMvc.perform(get("/api/v1/books/1/reviews").param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElements").value(21));
+        verify(reviewService, never()).getReviewsByCursor(anyLong(), any(), anyInt());
+    }
+    
+    @Test
+    void testGetReviews_WithCursorPagination_ShouldRouteToCachedCursorHandler() throws Exception {
+        // Given
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(reviewController)
+                .setCustomArgumentResolvers(new PageableHandlerMethodArgumentResolver())
+                .build();
+        CursorPageResponse<ReviewResponse> page = CursorPageResponse.<ReviewResponse>builder()
+                .content(List.of(reviewResponse))
+                .size(20)
+                .hasNext(true)
+                .nextCursor("abc")
+                .build();
+        when(reviewService.getReviewsByCursor(eq(1L), isNull(), eq(20))).thenReturn(page);
+        
+        // When & Then
+        mockMvc.perform(get("/api/v1/books/1/reviews").param("pagination", "cursor"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nextCursor").value("abc"));
+        verify(reviewService, never()).getReviewsByBookId(anyLong(), any());
+    }
 }
-
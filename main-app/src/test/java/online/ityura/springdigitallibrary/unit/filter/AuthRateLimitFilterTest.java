@@ -0,0 +1,196 @@
+package online.ityura.springdigitallibrary.unit.filter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import online.ityura.springdigitallibrary.config.RestTemplateConfig;
+import online.ityura.springdigitallibrary.filter.AuthRateLimitFilter;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.RemoteIpValve;
+import org.apache.catalina.valves.ValveBase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class AuthRateLimitFilterTest {
+    
+    private SimpleMeterRegistry meterRegistry;
+    private AuthRateLimitFilter filter;
+    
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // По IP - 3 запроса подряд, по email - 2
+        filter = new AuthRateLimitFilter(new RestTemplateConfig().objectMapper(), meterRegistry, true, 3, 1, 2, 1, 1000);
+    }
+    
+    @Test
+    void testDoFilter_SameEmailOverLimit_ShouldReturn429AndKeepBodyReadable() throws ServletException, IOException {
+        // Given
+        FilterChain chain = mock(FilterChain.class);
+        
+        // When
+        MockHttpServletResponse first = send(chain, "10.0.0.1", "User@Example.com");
+        MockHttpServletResponse second = send(chain, "10.0.0.2", "user@example.com");
+        MockHttpServletResponse third = send(chain, "10.0.0.3", "user@example.com");
+        
+        // Then - email нормализуется, третий запрос отклонён до контроллера
+        assertEquals(200, first.getStatus());
+        assertEquals(200, second.getStatus());
+        assertEquals(429, third.getStatus());
+        assertNotNull(third.getHeader(HttpHeaders.RETRY_AFTER));
+        assertTrue(third.getContentAsString().contains("TOO_MANY_REQUESTS"));
+        
+        ArgumentCaptor<HttpServletRequest> forwarded = ArgumentCaptor.forClass(HttpServletRequest.class);
+        verify(chain, times(2)).doFilter(forwarded.capture(), any());
+        String body = new String(forwarded.getValue().getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(body.contains("user@example.com"));
+        assertEquals(1.0, meterRegistry.get("auth.rate-limit.rejected").tag("key", "email").counter().count());
+    }
+    
+    @Test
+    void testDoFilter_SameIpOverLimit_ShouldReturn429() throws ServletException, IOException {
+        // Given
+        FilterChain chain = mock(FilterChain.class);
+        
+        // When
+        send(chain, "10.0.0.1", "a@example.com");
+        send(chain, "10.0.0.1", "b@example.com");
+        send(chain, "10.0.0.1", "c@example.com");
+        MockHttpServletResponse rejected = send(chain, "10.0.0.1", "d@example.com");
+        
+        // Then
+        assertEquals(429, rejected.getStatus());
+        assertEquals(1.0, meterRegistry.get("auth.rate-limit.rejected").tag("key", "ip").counter().count());
+    }
+    
+    @Test
+    void testDoFilter_EmailTableFull_ShouldPassNewEmailsAndCountOverflow() throws ServletException, IOException {
+        // Given - таблица ключей на 2 записи заполнена случайными email
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new AuthRateLimitFilter(new RestTemplateConfig().objectMapper(), meterRegistry, true, 3, 1, 2, 1, 2);
+        FilterChain chain = mock(FilterChain.class);
+        send(chain, "10.0.0.1", "spray1@example.com");
+        send(chain, "10.0.0.1", "spray2@example.com");
+        
+        // When
+        MockHttpServletResponse newUser = send(chain, "10.0.0.2", "user@example.com");
+        
+        // Then - новый email не отклонён, переполнение учтено в метрике
+        assertEquals(200, newUser.getStatus());
+        assertEquals(1.0, meterRegistry.get("auth.rate-limit.overflow").tag("key", "email").functionCounter().count());
+    }
+    
+    @Test
+    void testDoFilter_BodyOverLimit_ShouldReturn413WithoutCallingController() throws ServletException, IOException {
+        // Given - тело дополнено пробелами после email: с Content-Length и без него (chunked)
+        FilterChain chain = mock(FilterChain.class);
+        byte[] padded = ("{\"email\":\"user@example.com\",\"password\":\"Password123!\"}" + " ".repeat(20 * 1024))
+                .getBytes(StandardCharsets.UTF_8);
+        MockHttpServletRequest declared = loginRequest("10.0.0.1", padded);
+        MockHttpServletRequest chunked = new MockHttpServletRequest("POST", "/api/v1/auth/login") {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        chunked.setRemoteAddr("10.0.0.1");
+        chunked.setContent(padded);
+        MockHttpServletResponse declaredResponse = new MockHttpServletResponse();
+        MockHttpServletResponse chunkedResponse = new MockHttpServletResponse();
+        
+        // When
+        filter.doFilter(declared, declaredResponse, chain);
+        filter.doFilter(chunked, chunkedResponse, chain);
+        
+        // Then
+        assertEquals(413, declaredResponse.getStatus());
+        assertEquals(413, chunkedResponse.getStatus());
+        assertTrue(chunkedResponse.getContentAsString().contains("PAYLOAD_TOO_LARGE"));
+        verify(chain, never()).doFilter(any(), any());
+    }
+    
+    @Test
+    void testDoFilter_RotatingXForwardedFor_ShouldNotResetIpBucket() throws Exception {
+        // Given - адрес клиента определяет Tomcat (server.forward-headers-strategy=native) с доверенным прокси localhost
+        RemoteIpValve remoteIpValve = new RemoteIpValve();
+        remoteIpValve.setInternalProxies("127\\.\\d+\\.\\d+\\.\\d+|0:0:0:0:0:0:0:1");
+        FilterChain chain = mock(FilterChain.class);
+        List<String> clientAddresses = new ArrayList<>();
+        List<Integer> statuses = new ArrayList<>();
+        remoteIpValve.setNext(new ValveBase() {
+            @Override
+            public void invoke(Request request, Response response) throws IOException, ServletException {
+                clientAddresses.add(request.getRemoteAddr());
+                statuses.add(send(chain, request.getRemoteAddr(), "user" + statuses.size() + "@example.com").getStatus());
+            }
+        });
+        
+        // When - клиент напрямую и клиент за доверенным прокси подставляют новый X-Forwarded-For в каждом запросе
+        for (int i = 0; i < 4; i++) {
+            remoteIpValve.invoke(tomcatRequest("203.0.113.5", "198.51.100." + i), null);
+        }
+        for (int i = 0; i < 4; i++) {
+            remoteIpValve.invoke(tomcatRequest("127.0.0.1", "198.51.100." + i + ", 203.0.113.7"), null);
+        }
+        
+        // Then - ключ не меняется, четвёртый запрос каждого клиента отклонён
+        assertEquals(List.of("203.0.113.5", "203.0.113.5", "203.0.113.5", "203.0.113.5",
+                "203.0.113.7", "203.0.113.7", "203.0.113.7", "203.0.113.7"), clientAddresses);
+        assertEquals(List.of(200, 200, 200, 429, 200, 200, 200, 429), statuses);
+    }
+    
+    @Test
+    void testDoFilter_NotLimitedEndpoint_ShouldPassThrough() throws ServletException, IOException {
+        // Given
+        FilterChain chain = mock(FilterChain.class);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/books");
+        request.setRemoteAddr("10.0.0.1");
+        
+        // When
+        for (int i = 0; i < 10; i++) {
+            filter.doFilter(request, new MockHttpServletResponse(), chain);
+        }
+        
+        // Then
+        verify(chain, times(10)).doFilter(any(), any());
+    }
+    
+    private MockHttpServletResponse send(FilterChain chain, String ip, String email) throws ServletException, IOException {
+        MockHttpServletRequest request = loginRequest(ip,
+                ("{\"email\":\"" + email + "\",\"password\":\"Password123!\"}").getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+    
+    private static MockHttpServletRequest loginRequest(String ip, byte[] body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/auth/login");
+        request.setRemoteAddr(ip);
+        request.setContentType("application/json");
+        request.setContent(body);
+        return request;
+    }
+    
+    private static Request tomcatRequest(String peerAddress, String forwardedFor) {
+        Request request = new Request(new Connector(), new org.apache.coyote.Request());
+        request.setRemoteAddr(peerAddress);
+        request.getCoyoteRequest().getMimeHeaders().addValue("X-Forwarded-For").setString(forwardedFor);
+        return request;
+    }
+}
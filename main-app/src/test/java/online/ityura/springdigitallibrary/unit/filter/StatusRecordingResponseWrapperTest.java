@@ -0,0 +1,78 @@
+package online.ityura.springdigitallibrary.unit.filter;
+
+import online.ityura.springdigitallibrary.filter.StatusRecordingResponseWrapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatusRecordingResponseWrapperTest {
+    
+    @Test
+    void testBinaryResponse_ShouldPassThroughWithoutCapture() throws IOException {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        StatusRecordingResponseWrapper wrapper = new StatusRecordingResponseWrapper(response, 1024);
+        wrapper.setContentType(MediaType.APPLICATION_PDF_VALUE);
+        
+        // When
+        wrapper.getOutputStream().write("%PDF-1.7".getBytes(StandardCharsets.UTF_8));
+        
+        // Then
+        assertSame(response.getOutputStream(), wrapper.getOutputStream());
+        assertEquals("%PDF-1.7", response.getContentAsString());
+        assertNull(wrapper.getCapturedBody());
+    }
+    
+    @Test
+    void testJsonResponse_ShouldCaptureBodyAndWriteThrough() throws IOException {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        StatusRecordingResponseWrapper wrapper = new StatusRecordingResponseWrapper(response, 1024);
+        wrapper.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        wrapper.setStatus(201);
+        
+        // When
+        wrapper.getOutputStream().write("{\"id\":1}".getBytes(StandardCharsets.UTF_8));
+        
+        // Then
+        assertEquals(201, wrapper.getStatus());
+        assertEquals("{\"id\":1}", response.getContentAsString());
+        assertEquals("{\"id\":1}", wrapper.getCapturedBody());
+    }
+    
+    @Test
+    void testJsonResponse_OverLimit_ShouldTruncateCapturedBody() throws IOException {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        StatusRecordingResponseWrapper wrapper = new StatusRecordingResponseWrapper(response, 4);
+        wrapper.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        
+        // When
+        wrapper.getWriter().write("{\"id\":1}");
+        wrapper.getWriter().flush();
+        
+        // Then
+        assertEquals("{\"id\":1}", response.getContentAsString());
+        assertEquals("{\"id...(truncated)", wrapper.getCapturedBody());
+    }
+    
+    @Test
+    void testCaptureDisabled_ShouldNotCaptureJson() throws IOException {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        StatusRecordingResponseWrapper wrapper = new StatusRecordingResponseWrapper(response, 0);
+        wrapper.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        
+        // When
+        wrapper.getOutputStream().write("{}".getBytes(StandardCharsets.UTF_8));
+        
+        // Then
+        assertNull(wrapper.getCapturedBody());
+        assertEquals(200, wrapper.getStatus());
+    }
+}
@@ -3,6 +3,7 @@ package online.ityura.springdigitallibrary.unit.security;
 import online.ityura.springdigitallibrary.model.Role;
 import online.ityura.springdigitallibrary.model.User;
 import online.ityura.springdigitallibrary.repository.UserRepository;
+import online.ityura.springdigitallibrary.security.AuthenticatedUser;
 import online.ityura.springdigitallibrary.security.CustomUserDetailsService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,11 +13,12 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class CustomUserDetailsServiceTest {
@@ -82,5 +84,80 @@ class CustomUserDetailsServiceTest {
         
         assertTrue(exception.getMessage().contains("User not found with email"));
     }
+    
+    @Test
+    void testLoadUserByUsername_ShouldReturnPrincipalWithIdAndVerification() {
+        // Given
+        testUser.setIsVerified(true);
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(testUser));
+        
+        // When
+        UserDetails userDetails = customUserDetailsService.loadUserByUsername("test@example.com");
+        
+        // Then
+        AuthenticatedUser principal = assertInstanceOf(AuthenticatedUser.class, userDetails);
+        assertEquals(1L, principal.getId());
+        assertEquals(Role.USER, principal.getRole());
+        assertTrue(principal.isVerified());
+    }
+    
+    @Test
+    void testLoadUserByUsername_CacheEnabled_ShouldQueryDatabaseOnce() {
+        // Given
+        ReflectionTestUtils.setField(customUserDetailsService, "cacheTtlMillis", 60_000L);
+        ReflectionTestUtils.setField(customUserDetailsService, "cacheMaxEntries", 10);
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(testUser));
+        
+        // When
+        UserDetails first = customUserDetailsService.loadUserByUsername("test@example.com");
+        UserDetails second = customUserDetailsService.loadUserByUsername("test@example.com");
+        
+        // Then
+        assertSame(first, second);
+        verify(userRepository, times(1)).findByEmail("test@example.com");
+    }
+    
+    @Test
+    void testEvict_ShouldReloadChangedUser() {
+        // Given
+        ReflectionTestUtils.setField(customUserDetailsService, "cacheTtlMillis", 60_000L);
+        ReflectionTestUtils.setField(customUserDetailsService, "cacheMaxEntries", 10);
+        testUser.setIsVerified(false);
+        User verifiedUser = User.builder()
+                .id(1L)
+                .email("test@example.com")
+                .passwordHash("encodedPassword")
+                .role(Role.USER)
+                .isVerified(true)
+                .build();
+        when(userRepository.findByEmail("test@example.com"))
+                .thenReturn(Optional.of(testUser))
+                .thenReturn(Optional.of(verifiedUser));
+        
+        // When
+        AuthenticatedUser before = (AuthenticatedUser) customUserDetailsService.loadUserByUsername("test@example.com");
+        customUserDetailsService.evict("test@example.com");
+        AuthenticatedUser after = (AuthenticatedUser) customUserDetailsService.loadUserByUsername("test@example.com");
+        
+        // Then
+        assertFalse(before.isVerified());
+        assertTrue(after.isVerified());
+        verify(userRepository, times(2)).findByEmail("test@example.com");
+    }
+    
+    @Test
+    void testUpdatePassword_ShouldStoreRehashedPasswordAndReturnFreshPrincipal() {
+        // Given
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(testUser));
+        when(userRepository.save(testUser)).thenReturn(testUser);
+        UserDetails current = AuthenticatedUser.from(testUser);
+        
+        // When
+        UserDetails updated = customUserDetailsService.updatePassword(current, "rehashedPassword");
+        
+        // Then
+        assertEquals("rehashedPassword", testUser.getPasswordHash());
+        assertEquals("rehashedPassword", updated.getPassword());
+        verify(userRepository).save(testUser);
+    }
 }
-
@@ -5,15 +5,18 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import online.ityura.springdigitallibrary.model.Role;
-import online.ityura.springdigitallibrary.model.User;
-import online.ityura.springdigitallibrary.repository.UserRepository;
+import online.ityura.springdigitallibrary.security.AuthenticatedUser;
 import online.ityura.springdigitallibrary.security.JwtAuthenticationFilter;
 import online.ityura.springdigitallibrary.security.JwtTokenProvider;
+import online.ityura.springdigitallibrary.security.PublicRoutes;
+import online.ityura.springdigitallibrary.security.TokenClaims;
+import online.ityura.springdigitallibrary.security.TokenRevocationList;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -21,6 +24,9 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -36,7 +42,10 @@ class JwtAuthenticationFilterTest {
     private UserDetailsService userDetailsService;
     
     @Mock
-    private UserRepository userRepository;
+    private TokenRevocationList tokenRevocationList;
+    
+    @Spy
+    private PublicRoutes publicRoutes = new PublicRoutes();
     
     @Mock
     private HttpServletRequest request;
@@ -65,7 +74,7 @@ class JwtAuthenticationFilterTest {
         
         // Then
         verify(filterChain).doFilter(request, response);
-        verify(jwtTokenProvider, never()).extractUsername(anyString());
+        verify(jwtTokenProvider, never()).parseToken(anyString());
     }
     
     @Test
@@ -78,7 +87,7 @@ class JwtAuthenticationFilterTest {
         
         // Then
         verify(filterChain).doFilter(request, response);
-        verify(jwtTokenProvider, never()).extractUsername(anyString());
+        verify(jwtTokenProvider, never()).parseToken(anyString());
     }
     
     @Test
@@ -91,7 +100,7 @@ class JwtAuthenticationFilterTest {
         
         // Then
         verify(filterChain).doFilter(request, response);
-        verify(jwtTokenProvider, never()).extractUsername(anyString());
+        verify(jwtTokenProvider, never()).parseToken(anyString());
     }
     
     @Test
@@ -101,39 +110,49 @@ class JwtAuthenticationFilterTest {
         String username = "test@example.com";
         String role = "USER";
         
-        User testUser = User.builder()
-                .id(1L)
-                .email(username)
-                .nickname("testuser")
-                .passwordHash("password")
-                .role(Role.USER)
-                .isVerified(true)
-                .build();
-        
         when(request.getRequestURI()).thenReturn("/api/v1/books/1/download");
         when(request.getMethod()).thenReturn("GET");
         when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
-        when(jwtTokenProvider.extractUsername(token)).thenReturn(username);
+        when(jwtTokenProvider.parseToken(token)).thenReturn(tokenClaims(username, "access", role));
         
-        UserDetails userDetails = org.springframework.security.core.userdetails.User.builder()
-                .username(username)
-                .password("password")
-                .authorities("ROLE_" + role)
-                .build();
+        UserDetails userDetails = new AuthenticatedUser(1L, username, "password", Role.USER, true);
         
         when(userDetailsService.loadUserByUsername(username)).thenReturn(userDetails);
-        when(jwtTokenProvider.validateToken(token, userDetails)).thenReturn(true);
-        when(jwtTokenProvider.getRoleFromToken(token)).thenReturn(role);
-        when(userRepository.findByEmail(username)).thenReturn(java.util.Optional.of(testUser));
         
         // When - используем ReflectionTestUtils для вызова protected метода
         ReflectionTestUtils.invokeMethod(jwtAuthenticationFilter, "doFilterInternal", request, response, filterChain);
         
         // Then
         verify(filterChain).doFilter(request, response);
-        verify(jwtTokenProvider).extractUsername(token);
-        verify(jwtTokenProvider).validateToken(token, userDetails);
+        verify(jwtTokenProvider, times(1)).parseToken(token);
+        verify(userDetailsService, times(1)).loadUserByUsername(username);
         assertNotNull(SecurityContextHolder.getContext().getAuthentication());
+        assertSame(userDetails, SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+    }
+    
+    @Test
+    void testDoFilterInternal_UnverifiedUser_ShouldReturn403() throws ServletException, IOException {
+        // Given
+        String token = "validToken";
+        String username = "test@example.com";
+        UserDetails userDetails = new AuthenticatedUser(1L, username, "password", Role.USER, false);
+        StringWriter body = new StringWriter();
+        
+        when(request.getRequestURI()).thenReturn("/api/v1/books/1/download");
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(jwtTokenProvider.parseToken(token)).thenReturn(tokenClaims(username, "access", "USER"));
+        when(userDetailsService.loadUserByUsername(username)).thenReturn(userDetails);
+        when(response.getWriter()).thenReturn(new PrintWriter(body));
+        
+        // When - используем ReflectionTestUtils для вызова protected метода
+        ReflectionTestUtils.invokeMethod(jwtAuthenticationFilter, "doFilterInternal", request, response, filterChain);
+        
+        // Then
+        verify(response).setStatus(403);
+        verify(filterChain, never()).doFilter(request, response);
+        assertTrue(body.toString().contains("Email not verified"));
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
     }
     
     @Test
@@ -144,14 +163,14 @@ class JwtAuthenticationFilterTest {
         when(request.getRequestURI()).thenReturn("/api/v1/books/1/download");
         when(request.getMethod()).thenReturn("GET");
         when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
-        when(jwtTokenProvider.extractUsername(token)).thenThrow(new RuntimeException("Invalid token"));
+        when(jwtTokenProvider.parseToken(token)).thenReturn(null);
         
         // When - используем ReflectionTestUtils для вызова protected метода
         ReflectionTestUtils.invokeMethod(jwtAuthenticationFilter, "doFilterInternal", request, response, filterChain);
         
         // Then
         verify(filterChain).doFilter(request, response);
-        verify(jwtTokenProvider).extractUsername(token);
+        verify(jwtTokenProvider).parseToken(token);
         verify(userDetailsService, never()).loadUserByUsername(anyString());
         assertNull(SecurityContextHolder.getContext().getAuthentication());
     }
@@ -168,7 +187,7 @@ class JwtAuthenticationFilterTest {
         
         // Then
         verify(filterChain).doFilter(request, response);
-        verify(jwtTokenProvider, never()).extractUsername(anyString());
+        verify(jwtTokenProvider, never()).parseToken(anyString());
         assertNull(SecurityContextHolder.getContext().getAuthentication());
     }
     
@@ -184,8 +203,81 @@ class JwtAuthenticationFilterTest {
         
         // Then
         verify(filterChain).doFilter(request, response);
-        verify(jwtTokenProvider, never()).extractUsername(anyString());
+        verify(jwtTokenProvider, never()).parseToken(anyString());
         assertNull(SecurityContextHolder.getContext().getAuthentication());
     }
+    
+    @Test
+    void testDoFilterInternal_StatelessMode_ShouldAuthenticateFromClaimsWithoutUserLookup() throws ServletException, IOException {
+        // Given
+        ReflectionTestUtils.setField(jwtAuthenticationFilter, "statelessEnabled", true);
+        String token = "statelessToken";
+        Instant issuedAt = Instant.now();
+        
+        when(request.getRequestURI()).thenReturn("/api/v1/books/1/download");
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(jwtTokenProvider.parseToken(token)).thenReturn(new TokenClaims("test@example.com", "access", "ADMIN",
+                7L, true, issuedAt, issuedAt.plusSeconds(300), null));
+        when(tokenRevocationList.isRevoked(7L, issuedAt)).thenReturn(false);
+        
+        // When - используем ReflectionTestUtils для вызова protected метода
+        ReflectionTestUtils.invokeMethod(jwtAuthenticationFilter, "doFilterInternal", request, response, filterChain);
+        
+        // Then
+        verify(filterChain).doFilter(request, response);
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+        AuthenticatedUser principal = assertInstanceOf(AuthenticatedUser.class,
+                SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+        assertEquals(7L, principal.getId());
+        assertTrue(SecurityContextHolder.getContext().getAuthentication().getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN")));
+    }
+    
+    @Test
+    void testDoFilterInternal_StatelessModeRevokedToken_ShouldNotSetAuthentication() throws ServletException, IOException {
+        // Given
+        ReflectionTestUtils.setField(jwtAuthenticationFilter, "statelessEnabled", true);
+        String token = "revokedToken";
+        Instant issuedAt = Instant.now();
+        
+        when(request.getRequestURI()).thenReturn("/api/v1/books/1/download");
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(jwtTokenProvider.parseToken(token)).thenReturn(new TokenClaims("test@example.com", "access", "USER",
+                7L, true, issuedAt, issuedAt.plusSeconds(300), null));
+        when(tokenRevocationList.isRevoked(7L, issuedAt)).thenReturn(true);
+        
+        // When - используем ReflectionTestUtils для вызова protected метода
+        ReflectionTestUtils.invokeMethod(jwtAuthenticationFilter, "doFilterInternal", request, response, filterChain);
+        
+        // Then
+        verify(filterChain).doFilter(request, response);
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+    
+    @Test
+    void testDoFilterInternal_RefreshToken_ShouldNotSetAuthentication() throws ServletException, IOException {
+        // Given
+        String token = "refreshToken";
+        
+        when(request.getRequestURI()).thenReturn("/api/v1/books/1/download");
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(jwtTokenProvider.parseToken(token)).thenReturn(tokenClaims("test@example.com", "refresh", "USER"));
+        
+        // When - используем ReflectionTestUtils для вызова protected метода
+        ReflectionTestUtils.invokeMethod(jwtAuthenticationFilter, "doFilterInternal", request, response, filterChain);
+        
+        // Then
+        verify(filterChain).doFilter(request, response);
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+    
+    private static TokenClaims tokenClaims(String email, String type, String role) {
+        Instant now = Instant.now();
+        return new TokenClaims(email, type, role, null, null, now, now.plusSeconds(300), null);
+    }
 }
-
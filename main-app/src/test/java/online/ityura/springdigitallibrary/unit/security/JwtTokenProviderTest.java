@@ -1,13 +1,18 @@
 package online.ityura.springdigitallibrary.unit.security;
 
+import online.ityura.springdigitallibrary.model.Role;
+import online.ityura.springdigitallibrary.security.AccessTokenClaims;
 import online.ityura.springdigitallibrary.security.JwtTokenProvider;
+import online.ityura.springdigitallibrary.security.TokenClaims;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -219,5 +224,116 @@ class JwtTokenProviderTest {
             shortExpirationProvider.validateToken(token, userDetails);
         });
     }
+    
+    @Test
+    void testParseAccessToken_UserToken_ShouldReturnClaims() {
+        // Given
+        online.ityura.springdigitallibrary.model.User user = online.ityura.springdigitallibrary.model.User.builder()
+                .id(42L)
+                .email("test@example.com")
+                .role(Role.ADMIN)
+                .isVerified(true)
+                .build();
+        String token = jwtTokenProvider.generateToken(user);
+        
+        // When
+        AccessTokenClaims claims = jwtTokenProvider.parseAccessToken(token);
+        
+        // Then
+        assertNotNull(claims);
+        assertEquals("test@example.com", claims.email());
+        assertEquals(42L, claims.userId());
+        assertEquals(Role.ADMIN, claims.role());
+        assertTrue(claims.verified());
+        assertNotNull(claims.issuedAt());
+        assertEquals("ADMIN", jwtTokenProvider.getRoleFromToken(token));
+    }
+    
+    @Test
+    void testParseAccessToken_ShouldKeepIssuedAtMillis() {
+        // Given
+        long before = System.currentTimeMillis();
+        String token = jwtTokenProvider.generateAccessToken("test@example.com", 42L, "USER", true);
+        long after = System.currentTimeMillis();
+        
+        // When
+        AccessTokenClaims claims = jwtTokenProvider.parseAccessToken(token);
+        
+        // Then - claim iat хранит только секунды, момент выпуска берётся из iat_ms
+        assertNotNull(claims);
+        assertTrue(claims.issuedAt().toEpochMilli() >= before);
+        assertTrue(claims.issuedAt().toEpochMilli() <= after);
+    }
+    
+    @Test
+    void testParseAccessToken_TokenWithoutUserClaimsOrInvalid_ShouldReturnNull() {
+        // Given
+        String legacyToken = jwtTokenProvider.generateToken("test@example.com", "USER");
+        String refreshToken = jwtTokenProvider.generateRefreshToken("test@example.com", "USER");
+        
+        // When & Then
+        assertNull(jwtTokenProvider.parseAccessToken(legacyToken));
+        assertNull(jwtTokenProvider.parseAccessToken(refreshToken));
+        assertNull(jwtTokenProvider.parseAccessToken(legacyToken + "tampered"));
+        assertNull(jwtTokenProvider.parseAccessToken("not-a-jwt"));
+    }
+    
+    @Test
+    void testParseToken_ShouldReturnAllClaimsFromSingleParse() {
+        // Given
+        String refreshToken = jwtTokenProvider.generateRefreshToken("test@example.com", "USER");
+        
+        // When
+        TokenClaims claims = jwtTokenProvider.parseToken(refreshToken);
+        
+        // Then
+        assertNotNull(claims);
+        assertEquals("test@example.com", claims.subject());
+        assertTrue(claims.isRefreshToken());
+        assertFalse(claims.isAccessToken());
+        assertEquals("USER", claims.role());
+        assertNull(claims.userId());
+        assertTrue(claims.expiresAt().isAfter(claims.issuedAt()));
+        assertNull(jwtTokenProvider.parseToken(refreshToken + "tampered"));
+        assertNull(jwtTokenProvider.parseToken(null));
+    }
+    
+    @Test
+    void testParseToken_RepeatedAccessToken_ShouldBeServedFromVerifiedCache() {
+        // Given
+        ReflectionTestUtils.setField(jwtTokenProvider, "verifiedCacheMaxEntries", 1);
+        String first = jwtTokenProvider.generateToken("first@example.com", "USER");
+        String second = jwtTokenProvider.generateToken("second@example.com", "USER");
+        
+        // When
+        TokenClaims parsed = jwtTokenProvider.parseToken(first);
+        TokenClaims repeated = jwtTokenProvider.parseToken(first);
+        jwtTokenProvider.parseToken(second);
+        TokenClaims afterEviction = jwtTokenProvider.parseToken(first);
+        
+        // Then - повторный запрос не разбирает токен, вытесненная запись разбирается заново
+        assertSame(parsed, repeated);
+        assertNotSame(parsed, afterEviction);
+        assertEquals(parsed, afterEviction);
+    }
+    
+    @Test
+    void testParseToken_ManyAccessTokens_ShouldKeepVerifiedCacheBounded() {
+        // Given
+        ReflectionTestUtils.setField(jwtTokenProvider, "verifiedCacheMaxEntries", 32);
+        
+        // When
+        TokenClaims last = null;
+        String lastToken = null;
+        for (int i = 0; i < 500; i++) {
+            lastToken = jwtTokenProvider.generateToken("user" + i + "@example.com", "USER");
+            last = jwtTokenProvider.parseToken(lastToken);
+        }
+        
+        // Then - при переполнении вытесняются старые записи, последняя остаётся в кэше
+        Map<?, ?>[] stripes = (Map<?, ?>[]) ReflectionTestUtils.getField(jwtTokenProvider, "verifiedTokens");
+        assertNotNull(stripes);
+        assertTrue(Arrays.stream(stripes).mapToInt(Map::size).sum() <= 32);
+        assertSame(last, jwtTokenProvider.parseToken(lastToken));
+    }
 }
-
@@ -0,0 +1,116 @@
+package online.ityura.springdigitallibrary.unit.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import online.ityura.springdigitallibrary.exception.ServiceBusyException;
+import online.ityura.springdigitallibrary.security.OffloadingPasswordEncoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffloadingPasswordEncoderTest {
+    
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private OffloadingPasswordEncoder encoder;
+    
+    @AfterEach
+    void tearDown() {
+        if (encoder != null) {
+            encoder.close();
+        }
+    }
+    
+    @Test
+    void testEncodeAndMatches_ShouldDelegateAndRecordOutcomes() {
+        // Given
+        encoder = new OffloadingPasswordEncoder(new BCryptPasswordEncoder(4), 1, 4, 2, meterRegistry);
+        
+        // When
+        String hash = encoder.encode("Password123!");
+        boolean matches = encoder.matches("Password123!", hash);
+        boolean mismatch = encoder.matches("wrong", hash);
+        
+        // Then
+        assertTrue(matches);
+        assertFalse(mismatch);
+        assertEquals(1, meterRegistry.get("auth.password.hashing")
+                .tag("operation", "encode").tag("outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get("auth.password.hashing")
+                .tag("operation", "matches").tag("outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get("auth.password.hashing")
+                .tag("operation", "matches").tag("outcome", "mismatch").timer().count());
+    }
+    
+    @Test
+    void testUpgradeEncoding_ShouldDetectChangedCost() {
+        // Given
+        String weakHash = new BCryptPasswordEncoder(4).encode("Password123!");
+        encoder = new OffloadingPasswordEncoder(new BCryptPasswordEncoder(5), 1, 4, 2, meterRegistry);
+        
+        // When & Then
+        assertTrue(encoder.upgradeEncoding(weakHash));
+        assertFalse(encoder.upgradeEncoding(encoder.encode("Password123!")));
+    }
+    
+    @Test
+    void testMatches_PoolAndQueueFull_ShouldReject503WithRetryAfter() throws Exception {
+        // Given - один поток и очередь на одну задачу, хеширование заблокировано
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder blocking = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return rawPassword.toString();
+            }
+            
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+        };
+        encoder = new OffloadingPasswordEncoder(blocking, 1, 1, 3, meterRegistry);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            callers.submit(() -> encoder.matches("a", "a"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            callers.submit(() -> encoder.matches("b", "b"));
+            waitForQueuedTask();
+            
+            // When
+            ServiceBusyException exception = assertThrows(ServiceBusyException.class,
+                    () -> encoder.matches("c", "c"));
+            
+            // Then
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatusCode());
+            assertEquals("3", exception.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+            assertEquals(1.0, meterRegistry.get("auth.password.hashing.rejected")
+                    .tag("operation", "matches").counter().count());
+        } finally {
+            release.countDown();
+            callers.shutdown();
+            assertTrue(callers.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+    
+    private void waitForQueuedTask() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("auth.password.hashing.queue").gauge().value() < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
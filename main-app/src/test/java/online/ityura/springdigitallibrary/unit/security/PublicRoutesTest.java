@@ -0,0 +1,61 @@
+package online.ityura.springdigitallibrary.unit.security;
+
+import online.ityura.springdigitallibrary.security.PublicRoutes;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PublicRoutesTest {
+    
+    private final PublicRoutes publicRoutes = new PublicRoutes();
+    
+    @Test
+    void testSkipsAuthentication_ExactAndWildcardSegments() {
+        // When & Then
+        assertTrue(publicRoutes.skipsAuthentication("GET", "/api/v1/books"));
+        assertTrue(publicRoutes.skipsAuthentication("GET", "/api/v1/books/42/image"));
+        assertTrue(publicRoutes.skipsAuthentication("GET", "/api/v1/books/images/all"));
+        assertTrue(publicRoutes.skipsAuthentication("POST", "/api/v1/payment/webhook"));
+        assertFalse(publicRoutes.skipsAuthentication("GET", "/api/v1/books/42"));
+        assertFalse(publicRoutes.skipsAuthentication("GET", "/api/v1/books/42/download"));
+        assertFalse(publicRoutes.skipsAuthentication("GET", "/api/v1/books//image"));
+        assertFalse(publicRoutes.skipsAuthentication("GET", "/api/v1/books/"));
+    }
+    
+    @Test
+    void testSkipsAuthentication_BacktracksFromLiteralToWildcard() {
+        // "images" совпадает с литеральным сегментом маршрута images/all, но путь подходит только под */image
+        assertTrue(publicRoutes.skipsAuthentication("GET", "/api/v1/books/images/image"));
+    }
+    
+    @Test
+    void testSkipsAuthentication_RespectsHttpMethod() {
+        // When & Then
+        assertTrue(publicRoutes.skipsAuthentication("GET", "/api/v1/books/7/reviews"));
+        assertFalse(publicRoutes.skipsAuthentication("POST", "/api/v1/books/7/reviews"));
+        assertFalse(publicRoutes.skipsAuthentication("GET", "/api/v1/books/7/reviews/my"));
+    }
+    
+    @Test
+    void testSkipsAuthentication_DoubleWildcardMatchesAnyDepthIncludingZero() {
+        // When & Then
+        assertTrue(publicRoutes.skipsAuthentication("GET", "/v3/api-docs"));
+        assertTrue(publicRoutes.skipsAuthentication("GET", "/v3/api-docs/swagger-config"));
+        assertTrue(publicRoutes.skipsAuthentication("GET", "/swagger-ui/index.html"));
+        assertFalse(publicRoutes.skipsAuthentication("GET", "/swagger-uix"));
+    }
+    
+    @Test
+    void testSkipsAuthentication_OptionalAuthRoutesAreNotBypassed() {
+        // /api/v1/auth/** открыт для всех, но JWT на нём по-прежнему обрабатывается
+        assertFalse(publicRoutes.skipsAuthentication("POST", "/api/v1/auth/login"));
+        assertTrue(publicRoutes.skipsAuthentication("GET", "/api/v1/auth/verify-email"));
+        assertTrue(publicRoutes.getRoutes().stream()
+                .anyMatch(route -> route.pattern().equals("/api/v1/auth/**")
+                        && route.access() == PublicRoutes.Access.OPTIONAL_AUTH));
+        assertTrue(publicRoutes.getRoutes().stream()
+                .anyMatch(route -> route.method() == HttpMethod.GET
+                        && route.pattern().equals("/api/v1/books/*/reviews")));
+    }
+}
@@ -0,0 +1,77 @@
+package online.ityura.springdigitallibrary.unit.security;
+
+import online.ityura.springdigitallibrary.security.TokenBucketRateLimiter;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketRateLimiterTest {
+    
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    
+    @Test
+    void testTryAcquire_ShouldAllowBurstThenRefillOneTokenPerInterval() {
+        // Given - 3 запроса подряд, затем один раз в 10 секунд
+        long now = 0;
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(3, 10 * SECOND, 100, now);
+        
+        // When & Then
+        assertEquals(0, limiter.tryAcquire("1.2.3.4", now));
+        assertEquals(0, limiter.tryAcquire("1.2.3.4", now));
+        assertEquals(0, limiter.tryAcquire("1.2.3.4", now));
+        assertEquals(10 * SECOND, limiter.tryAcquire("1.2.3.4", now));
+        assertEquals(0, limiter.tryAcquire("5.6.7.8", now));
+        
+        assertEquals(0, limiter.tryAcquire("1.2.3.4", now + 10 * SECOND));
+        assertTrue(limiter.tryAcquire("1.2.3.4", now + 10 * SECOND) > 0);
+    }
+    
+    @Test
+    void testTryAcquire_IdleKeysShouldBeEvictedByTimeWheel() {
+        // Given
+        long now = 0;
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(2, SECOND, 100, now);
+        limiter.tryAcquire("a", now);
+        limiter.tryAcquire("b", now);
+        assertEquals(2, limiter.size());
+        
+        // When - ведра снова полные, следующий вызов подметает прошедшие слоты
+        limiter.tryAcquire("c", now + 5 * SECOND);
+        
+        // Then
+        assertEquals(1, limiter.size());
+    }
+    
+    @Test
+    void testTryAcquire_KeyLimitReached_ShouldRejectNewKeys() {
+        // Given
+        long now = 0;
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(5, 60 * SECOND, 2, now);
+        limiter.tryAcquire("a", now);
+        limiter.tryAcquire("b", now);
+        
+        // When & Then - известные ключи обслуживаются, новый ключ не помещается
+        assertTrue(limiter.tryAcquire("c", now) > 0);
+        assertEquals(0, limiter.tryAcquire("a", now));
+        assertEquals(2, limiter.size());
+        assertEquals(1, limiter.overflowCount());
+    }
+    
+    @Test
+    void testTryAcquire_KeyLimitReachedWithAllowWhenFull_ShouldPassNewKeysUntracked() {
+        // Given
+        long now = 0;
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 60 * SECOND, 2, true, now);
+        limiter.tryAcquire("a", now);
+        limiter.tryAcquire("b", now);
+        
+        // When & Then - новые ключи пропускаются без учёта, известные по-прежнему ограничены
+        assertEquals(0, limiter.tryAcquire("c", now));
+        assertEquals(0, limiter.tryAcquire("c", now));
+        assertTrue(limiter.tryAcquire("a", now) > 0);
+        assertEquals(2, limiter.size());
+        assertEquals(2, limiter.overflowCount());
+    }
+}
@@ -0,0 +1,60 @@
+package online.ityura.springdigitallibrary.unit.security;
+
+import online.ityura.springdigitallibrary.security.TokenRevocationList;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenRevocationListTest {
+    
+    private TokenRevocationList tokenRevocationList;
+    
+    @BeforeEach
+    void setUp() {
+        tokenRevocationList = new TokenRevocationList();
+        ReflectionTestUtils.setField(tokenRevocationList, "accessTokenTtlMillis", 300000L);
+    }
+    
+    @Test
+    void testRevoke_ShouldRejectTokensIssuedBeforeRevocationOnly() {
+        // Given
+        Instant issuedBefore = Instant.now().minusSeconds(60);
+        
+        // When
+        tokenRevocationList.revoke(1L);
+        
+        // Then
+        assertTrue(tokenRevocationList.isRevoked(1L, issuedBefore));
+        assertFalse(tokenRevocationList.isRevoked(1L, Instant.now().plusSeconds(2)));
+        assertFalse(tokenRevocationList.isRevoked(2L, issuedBefore));
+    }
+    
+    @Test
+    void testRevoke_TokenIssuedRightAfterRevocation_ShouldStayValid() {
+        // Given
+        long before = System.currentTimeMillis();
+        tokenRevocationList.revoke(1L);
+        long after = System.currentTimeMillis();
+        
+        // When & Then - сравнение с точностью до миллисекунд, а не секунд
+        assertTrue(tokenRevocationList.isRevoked(1L, Instant.ofEpochMilli(before - 1)));
+        assertFalse(tokenRevocationList.isRevoked(1L, Instant.ofEpochMilli(after)));
+    }
+    
+    @Test
+    void testRevoke_ShouldPurgeEntriesOlderThanTokenLifetime() {
+        // Given
+        ReflectionTestUtils.setField(tokenRevocationList, "accessTokenTtlMillis", -5000L);
+        tokenRevocationList.revoke(1L);
+        
+        // When
+        tokenRevocationList.revoke(2L);
+        
+        // Then - при отрицательном TTL любая запись считается устаревшей
+        assertEquals(0, tokenRevocationList.size());
+    }
+}
@@ -9,9 +9,12 @@ import online.ityura.springdigitallibrary.model.Genre;
 import online.ityura.springdigitallibrary.repository.AuthorRepository;
 import online.ityura.springdigitallibrary.repository.BookRepository;
 import online.ityura.springdigitallibrary.repository.ReviewRepository;
+import online.ityura.springdigitallibrary.service.BookCatalogCacheService;
+import online.ityura.springdigitallibrary.service.BookSuggestionService;
 import online.ityura.springdigitallibrary.service.AdminBookService;
 import online.ityura.springdigitallibrary.service.BookImageService;
 import online.ityura.springdigitallibrary.service.BookFileService;
+import online.ityura.springdigitallibrary.service.ReviewPageCacheService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -22,10 +25,12 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -46,6 +51,15 @@ class AdminBookServiceTest {
     @Mock
     private BookFileService bookFileService;
     
+    @Mock
+    private BookCatalogCacheService bookCatalogCacheService;
+    
+    @Mock
+    private BookSuggestionService bookSuggestionService;
+    
+    @Mock
+    private ReviewPageCacheService reviewPageCacheService;
+    
     @InjectMocks
     private AdminBookService adminBookService;
     
@@ -107,6 +121,7 @@ class AdminBookServiceTest {
         verify(authorRepository).findByFullName("Test Author");
         verify(bookRepository).existsByTitleAndAuthorId("New Book", 1L);
         verify(bookRepository).save(any(Book.class));
+        verify(bookRepository).refreshSearchVector(testBook.getId());
     }
     
     @Test
@@ -203,6 +218,34 @@ class AdminBookServiceTest {
         verify(bookRepository).findById(1L);
         verify(reviewRepository).countByBookId(1L);
         verify(bookRepository).delete(any(Book.class));
+        verify(bookCatalogCacheService).invalidateAll();
+        verify(reviewPageCacheService).invalidateBook(1L);
+        verify(bookSuggestionService).removeBooks(List.of(1L));
+    }
+    
+    @Test
+    void testDeleteAuthorAndAllBooks_ShouldInvalidateReviewPagesOfEachBook() {
+        // Given
+        Book secondBook = Book.builder()
+                .id(2L)
+                .title("Second Book")
+                .author(testAuthor)
+                .deletionLocked(false)
+                .build();
+        when(authorRepository.findById(1L)).thenReturn(Optional.of(testAuthor));
+        when(bookRepository.findByAuthorId(1L)).thenReturn(List.of(testBook, secondBook));
+        when(reviewRepository.countByBookId(anyLong())).thenReturn(0L);
+        
+        // When
+        adminBookService.deleteAuthorAndAllBooks(1L);
+        
+        // Then
+        verify(bookRepository, times(2)).delete(any(Book.class));
+        verify(authorRepository).delete(testAuthor);
+        verify(bookCatalogCacheService).invalidateAll();
+        verify(reviewPageCacheService).invalidateBook(1L);
+        verify(reviewPageCacheService).invalidateBook(2L);
+        verify(bookSuggestionService).removeBooks(List.of(1L, 2L));
     }
     
     @Test
@@ -9,9 +9,11 @@ import online.ityura.springdigitallibrary.model.Role;
 import online.ityura.springdigitallibrary.model.User;
 import online.ityura.springdigitallibrary.repository.UserRepository;
 import online.ityura.springdigitallibrary.security.JwtTokenProvider;
+import online.ityura.springdigitallibrary.security.TokenClaims;
 import online.ityura.springdigitallibrary.service.AuthService;
 import online.ityura.springdigitallibrary.service.EmailService;
 import online.ityura.springdigitallibrary.service.EmailVerificationService;
+import online.ityura.springdigitallibrary.service.RefreshTokenService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -22,10 +24,10 @@ import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Instant;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -44,6 +46,9 @@ class AuthServiceTest {
     @Mock
     private JwtTokenProvider jwtTokenProvider;
     
+    @Mock
+    private RefreshTokenService refreshTokenService;
+    
     @Mock
     private AuthenticationManager authenticationManager;
     
@@ -128,10 +133,9 @@ class AuthServiceTest {
                 .thenReturn(null);
         when(userRepository.findByEmail(loginRequest.getEmail()))
                 .thenReturn(Optional.of(testUser));
-        when(jwtTokenProvider.generateToken(testUser.getEmail(), testUser.getRole().name()))
+        when(jwtTokenProvider.generateToken(testUser))
                 .thenReturn(accessToken);
-        when(jwtTokenProvider.generateRefreshToken(testUser.getEmail(), testUser.getRole().name()))
-                .thenReturn(refreshToken);
+        when(refreshTokenService.issue(testUser)).thenReturn(refreshToken);
         
         // When
         LoginResponse response = authService.login(loginRequest);
@@ -144,8 +148,8 @@ class AuthServiceTest {
         
         verify(authenticationManager).authenticate(any(UsernamePasswordAuthenticationToken.class));
         verify(userRepository).findByEmail(loginRequest.getEmail());
-        verify(jwtTokenProvider).generateToken(testUser.getEmail(), testUser.getRole().name());
-        verify(jwtTokenProvider).generateRefreshToken(testUser.getEmail(), testUser.getRole().name());
+        verify(jwtTokenProvider).generateToken(testUser);
+        verify(refreshTokenService).issue(testUser);
     }
     
     @Test
@@ -188,21 +192,12 @@ class AuthServiceTest {
         String newAccessToken = "newAccessToken";
         String newRefreshToken = "newRefreshToken";
         
-        when(jwtTokenProvider.isRefreshToken("validRefreshToken")).thenReturn(true);
-        when(jwtTokenProvider.extractUsername("validRefreshToken")).thenReturn(testUser.getEmail());
-        when(userRepository.findByEmail(testUser.getEmail())).thenReturn(Optional.of(testUser));
-        
-        UserDetails userDetails = org.springframework.security.core.userdetails.User.builder()
-                .username(testUser.getEmail())
-                .password(testUser.getPasswordHash())
-                .authorities("ROLE_" + testUser.getRole().name())
-                .build();
+        TokenClaims claims = refreshClaims(testUser.getEmail());
         
-        when(jwtTokenProvider.validateToken("validRefreshToken", userDetails)).thenReturn(true);
-        when(jwtTokenProvider.generateToken(testUser.getEmail(), testUser.getRole().name()))
+        when(jwtTokenProvider.parseToken("validRefreshToken")).thenReturn(claims);
+        when(refreshTokenService.rotate(claims)).thenReturn(newRefreshToken);
+        when(jwtTokenProvider.generateAccessToken(testUser.getEmail(), testUser.getId(), "USER", true))
                 .thenReturn(newAccessToken);
-        when(jwtTokenProvider.generateRefreshToken(testUser.getEmail(), testUser.getRole().name()))
-                .thenReturn(newRefreshToken);
         
         // When
         LoginResponse response = authService.refreshToken(request);
@@ -213,9 +208,9 @@ class AuthServiceTest {
         assertEquals(newRefreshToken, response.getRefreshToken());
         assertEquals("Bearer", response.getTokenType());
         
-        verify(jwtTokenProvider).isRefreshToken("validRefreshToken");
-        verify(jwtTokenProvider).extractUsername("validRefreshToken");
-        verify(userRepository).findByEmail(testUser.getEmail());
+        verify(jwtTokenProvider, times(1)).parseToken("validRefreshToken");
+        // Пользователь для обновления токенов из БД не читается
+        verify(userRepository, never()).findByEmail(anyString());
     }
     
     @Test
@@ -224,7 +219,7 @@ class AuthServiceTest {
         RefreshTokenRequest request = new RefreshTokenRequest();
         request.setRefreshToken("invalidToken");
         
-        when(jwtTokenProvider.isRefreshToken("invalidToken")).thenReturn(false);
+        when(jwtTokenProvider.parseToken("invalidToken")).thenReturn(null);
         
         // When & Then
         RuntimeException exception = assertThrows(RuntimeException.class, 
@@ -235,46 +230,58 @@ class AuthServiceTest {
     }
     
     @Test
-    void testRefreshToken_UserNotFound_ShouldThrowException() {
+    void testRefreshToken_RotatedOrRevokedToken_ShouldThrowException() {
         // Given
         RefreshTokenRequest request = new RefreshTokenRequest();
-        request.setRefreshToken("validRefreshToken");
+        request.setRefreshToken("reusedRefreshToken");
+        TokenClaims claims = refreshClaims(testUser.getEmail());
         
-        when(jwtTokenProvider.isRefreshToken("validRefreshToken")).thenReturn(true);
-        when(jwtTokenProvider.extractUsername("validRefreshToken")).thenReturn("nonexistent@example.com");
-        when(userRepository.findByEmail("nonexistent@example.com")).thenReturn(Optional.empty());
+        when(jwtTokenProvider.parseToken("reusedRefreshToken")).thenReturn(claims);
+        when(refreshTokenService.rotate(claims)).thenThrow(new RuntimeException("Invalid refresh token"));
         
         // When & Then
-        ResponseStatusException exception = assertThrows(ResponseStatusException.class, 
+        RuntimeException exception = assertThrows(RuntimeException.class, 
                 () -> authService.refreshToken(request));
         
-        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
-        assertEquals("User not found", exception.getReason());
+        assertEquals("Invalid refresh token", exception.getMessage());
+        verify(jwtTokenProvider, never()).generateAccessToken(anyString(), anyLong(), anyString(), anyBoolean());
     }
     
     @Test
     void testRefreshToken_ExpiredToken_ShouldThrowException() {
-        // Given
+        // Given - истёкший токен не проходит разбор
         RefreshTokenRequest request = new RefreshTokenRequest();
         request.setRefreshToken("expiredRefreshToken");
         
-        when(jwtTokenProvider.isRefreshToken("expiredRefreshToken")).thenReturn(true);
-        when(jwtTokenProvider.extractUsername("expiredRefreshToken")).thenReturn(testUser.getEmail());
-        when(userRepository.findByEmail(testUser.getEmail())).thenReturn(Optional.of(testUser));
+        when(jwtTokenProvider.parseToken("expiredRefreshToken")).thenReturn(null);
         
-        UserDetails userDetails = org.springframework.security.core.userdetails.User.builder()
-                .username(testUser.getEmail())
-                .password(testUser.getPasswordHash())
-                .authorities("ROLE_" + testUser.getRole().name())
-                .build();
+        // When & Then
+        RuntimeException exception = assertThrows(RuntimeException.class, 
+                () -> authService.refreshToken(request));
+        
+        assertEquals("Invalid refresh token", exception.getMessage());
+        verify(userRepository, never()).findByEmail(anyString());
+    }
+    
+    @Test
+    void testRefreshToken_AccessTokenInsteadOfRefresh_ShouldThrowException() {
+        // Given
+        RefreshTokenRequest request = new RefreshTokenRequest();
+        request.setRefreshToken("accessToken");
+        Instant now = Instant.now();
         
-        when(jwtTokenProvider.validateToken("expiredRefreshToken", userDetails)).thenReturn(false);
+        when(jwtTokenProvider.parseToken("accessToken")).thenReturn(new TokenClaims(testUser.getEmail(), "access",
+                "USER", 1L, true, now, now.plusSeconds(300), null));
         
         // When & Then
         RuntimeException exception = assertThrows(RuntimeException.class, 
                 () -> authService.refreshToken(request));
         
-        assertEquals("Refresh token is expired or invalid", exception.getMessage());
+        assertEquals("Invalid refresh token", exception.getMessage());
+    }
+    
+    private static TokenClaims refreshClaims(String email) {
+        Instant now = Instant.now();
+        return new TokenClaims(email, "refresh", "USER", 1L, true, now, now.plusSeconds(86400), "token-id");
     }
 }
-
@@ -0,0 +1,143 @@
+package online.ityura.springdigitallibrary.unit.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import online.ityura.springdigitallibrary.dto.response.BookResponse;
+import online.ityura.springdigitallibrary.model.Genre;
+import online.ityura.springdigitallibrary.service.BookCatalogCacheService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookCatalogCacheServiceTest {
+    
+    private SimpleMeterRegistry meterRegistry;
+    private BookCatalogCacheService cacheService;
+    private AtomicInteger loads;
+    
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cacheService = new BookCatalogCacheService(meterRegistry, 2);
+        loads = new AtomicInteger();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+    
+    @Test
+    void testGetPage_ShouldCountHitsAndMisses() {
+        // Given
+        Pageable pageable = PageRequest.of(0, 10);
+        
+        // When
+        cacheService.getPage(null, pageable, loader(1L));
+        cacheService.getPage(null, pageable, loader(1L));
+        cacheService.getPage(Genre.FICTION, pageable, loader(2L));
+        
+        // Then
+        assertEquals(2, loads.get());
+        assertEquals(1.0, meterRegistry.get("catalog.cache.requests").tag("result", "hit").counter().count());
+        assertEquals(2.0, meterRegistry.get("catalog.cache.requests").tag("result", "miss").counter().count());
+        assertEquals(2.0, meterRegistry.get("catalog.cache.size").gauge().value());
+    }
+    
+    @Test
+    void testGetPage_OverCapacity_ShouldEvictLeastRecentlyUsed() {
+        // Given
+        cacheService.getPage(null, PageRequest.of(0, 10), loader(1L));
+        cacheService.getPage(null, PageRequest.of(1, 10), loader(2L));
+        cacheService.getPage(null, PageRequest.of(0, 10), loader(1L));
+        
+        // When
+        cacheService.getPage(null, PageRequest.of(2, 10), loader(3L));
+        
+        // Then
+        assertEquals(2, cacheService.size());
+        assertEquals(1.0, meterRegistry.get("catalog.cache.evictions").tag("cause", "size").counter().count());
+        cacheService.getPage(null, PageRequest.of(0, 10), loader(1L));
+        assertEquals(3, loads.get());
+    }
+    
+    @Test
+    void testInvalidateBook_ShouldEvictPagesWithBookOrMatchingSort() {
+        // Given
+        Pageable byTitle = PageRequest.of(0, 10, Sort.by("title"));
+        Pageable byRating = PageRequest.of(5, 10, Sort.by(Sort.Direction.DESC, "ratingAvg"));
+        cacheService.getPage(null, byTitle, loader(1L));
+        cacheService.getPage(null, byRating, loader(2L));
+        
+        // When
+        cacheService.invalidateBook(1L, "ratingAvg");
+        
+        // Then
+        assertEquals(0, cacheService.size());
+        assertEquals(2.0, meterRegistry.get("catalog.cache.evictions").tag("cause", "invalidation").counter().count());
+    }
+    
+    @Test
+    void testInvalidateBook_OtherBook_ShouldKeepPage() {
+        // Given
+        cacheService.getPage(null, PageRequest.of(0, 10), loader(1L));
+        
+        // When
+        cacheService.invalidateBook(42L);
+        
+        // Then
+        assertEquals(1, cacheService.size());
+    }
+    
+    @Test
+    void testInvalidateAll_InTransaction_ShouldApplyAfterCommit() {
+        // Given
+        cacheService.getPage(null, PageRequest.of(0, 10), loader(1L));
+        TransactionSynchronizationManager.initSynchronization();
+        
+        // When
+        cacheService.invalidateAll();
+        
+        // Then
+        assertEquals(1, cacheService.size());
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        assertEquals(0, cacheService.size());
+    }
+    
+    @Test
+    void testGetPage_InvalidatedWhileLoading_ShouldNotCacheStalePage() {
+        // Given
+        Pageable pageable = PageRequest.of(0, 10);
+        
+        // When
+        cacheService.getPage(null, pageable, () -> {
+            cacheService.invalidateAll();
+            return loader(1L).get();
+        });
+        
+        // Then
+        assertEquals(0, cacheService.size());
+    }
+    
+    private Supplier<Page<BookResponse>> loader(Long bookId) {
+        return () -> {
+            loads.incrementAndGet();
+            return new PageImpl<>(List.of(BookResponse.builder().id(bookId).build()));
+        };
+    }
+}
@@ -2,6 +2,7 @@ package online.ityura.springdigitallibrary.unit.service;
 
 import online.ityura.springdigitallibrary.model.Book;
 import online.ityura.springdigitallibrary.repository.BookRepository;
+import online.ityura.springdigitallibrary.service.BookCatalogCacheService;
 import online.ityura.springdigitallibrary.service.BookFileService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -23,6 +24,9 @@ class BookFileServiceTest {
     @Mock
     private BookRepository bookRepository;
     
+    @Mock
+    private BookCatalogCacheService bookCatalogCacheService;
+    
     @InjectMocks
     private BookFileService bookFileService;
     
@@ -1,22 +1,40 @@
 package online.ityura.springdigitallibrary.unit.service;
 
 import online.ityura.springdigitallibrary.model.Book;
+import online.ityura.springdigitallibrary.model.ImageVariant;
 import online.ityura.springdigitallibrary.repository.BookRepository;
+import online.ityura.springdigitallibrary.service.BookCatalogCacheService;
 import online.ityura.springdigitallibrary.service.BookImageService;
+import online.ityura.springdigitallibrary.service.BookImageVariantService;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.Resource;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -25,6 +43,12 @@ class BookImageServiceTest {
     @Mock
     private BookRepository bookRepository;
     
+    @Mock
+    private BookImageVariantService bookImageVariantService;
+    
+    @Mock
+    private BookCatalogCacheService bookCatalogCacheService;
+    
     @InjectMocks
     private BookImageService bookImageService;
     
@@ -44,6 +68,13 @@ class BookImageServiceTest {
         ReflectionTestUtils.setField(bookImageService, "storagePath", "test/storage/path");
     }
     
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+    
     @Test
     void testUploadBookImage_BookNotFound_ShouldThrowException() {
         // Given
@@ -84,6 +115,26 @@ class BookImageServiceTest {
         assertTrue(exception.getReason().contains("Image file is required"));
     }
     
+    @Test
+    void testUploadBookImage_ShouldScheduleVariantsAfterCommit(@TempDir Path tempDir) throws IOException {
+        // Given
+        ReflectionTestUtils.setField(bookImageService, "storagePath", tempDir.toString());
+        when(bookRepository.findById(1L)).thenReturn(Optional.of(testBook));
+        when(mockFile.isEmpty()).thenReturn(false);
+        when(mockFile.getOriginalFilename()).thenReturn("cover.jpg");
+        when(mockFile.getInputStream()).thenReturn(new ByteArrayInputStream("jpeg bytes".getBytes()));
+        TransactionSynchronizationManager.initSynchronization();
+        
+        // When
+        String imagePath = bookImageService.uploadBookImage(1L, mockFile);
+        
+        // Then - до коммита варианты не создаются, после коммита ставятся в фоновую очередь
+        verify(bookImageVariantService, never()).scheduleBackfill(any());
+        verify(bookImageVariantService, never()).generateVariants(any());
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(bookImageVariantService).scheduleBackfill(Path.of(imagePath));
+    }
+    
     @Test
     void testGetBookImage_BookNotFound_ShouldThrowException() {
         // Given
@@ -96,5 +147,185 @@ class BookImageServiceTest {
         assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
         assertTrue(exception.getReason().contains("Book not found"));
     }
+    
+    @Test
+    void testWriteAllBookImagesAsZip_NoImages_ShouldThrowNotFoundBeforeOpeningStream() {
+        // Given
+        when(bookRepository.findAllWithImages()).thenReturn(List.of());
+        
+        // When & Then
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, 
+                () -> bookImageService.writeAllBookImagesAsZip(() -> {
+                    throw new AssertionError("Stream must not be opened");
+                }));
+        
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+    }
+    
+    @Test
+    void testWriteAllBookImagesAsZip_OpenFails_ShouldNotLeaveTempFile(@TempDir Path tempDir) throws IOException {
+        // Given
+        Path archives = tempDir.resolve("archives");
+        testBook.setImagePath(tempDir.resolve("cover.jpg").toString());
+        ReflectionTestUtils.setField(bookImageService, "archiveCachePath", archives.toString());
+        when(bookRepository.findAllWithImages()).thenReturn(List.of(testBook));
+        
+        // When
+        IOException exception = assertThrows(IOException.class, () -> bookImageService.writeAllBookImagesAsZip(() -> {
+            throw new IOException("Client disconnected");
+        }));
+        
+        // Then
+        assertEquals("Client disconnected", exception.getMessage());
+        try (Stream<Path> files = Files.list(archives)) {
+            assertEquals(0, files.count());
+        }
+    }
+    
+    @Test
+    void testWriteAllBookImagesAsZip_ShouldStreamStoredEntriesAndCacheArchive(@TempDir Path tempDir) throws IOException {
+        // Given
+        Path image = tempDir.resolve("cover.jpg");
+        Files.write(image, "jpeg bytes".getBytes());
+        testBook.setImagePath(image.toString());
+        ReflectionTestUtils.setField(bookImageService, "archiveCachePath", tempDir.resolve("archives").toString());
+        when(bookRepository.findAllWithImages()).thenReturn(List.of(testBook));
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        
+        // When
+        assertNull(bookImageService.findCachedImagesArchive());
+        bookImageService.writeAllBookImagesAsZip(() -> streamed);
+        
+        // Then
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(streamed.toByteArray()))) {
+            ZipEntry entry = zis.getNextEntry();
+            assertNotNull(entry);
+            assertEquals("1_cover.jpg", entry.getName());
+            assertEquals(ZipEntry.STORED, entry.getMethod());
+            assertEquals("jpeg bytes", new String(zis.readAllBytes()));
+            assertNull(zis.getNextEntry());
+        }
+        Path cached = bookImageService.findCachedImagesArchive();
+        assertNotNull(cached);
+        assertArrayEquals(streamed.toByteArray(), Files.readAllBytes(cached));
+    }
+    
+    @Test
+    void testFindCachedImagesArchive_AfterRestart_ShouldReuseArchiveWithSameContent(@TempDir Path tempDir) throws IOException {
+        // Given
+        Path image = tempDir.resolve("cover.png");
+        Files.write(image, "png bytes".getBytes());
+        testBook.setImagePath(image.toString());
+        String archivesPath = tempDir.resolve("archives").toString();
+        ReflectionTestUtils.setField(bookImageService, "archiveCachePath", archivesPath);
+        when(bookRepository.findAllWithImages()).thenReturn(List.of(testBook));
+        bookImageService.writeAllBookImagesAsZip(ByteArrayOutputStream::new);
+        
+        // Новый экземпляр сервиса без состояния в памяти
+        BookImageService restarted = new BookImageService();
+        ReflectionTestUtils.setField(restarted, "bookRepository", bookRepository);
+        ReflectionTestUtils.setField(restarted, "archiveCachePath", archivesPath);
+        
+        // When & Then
+        assertEquals(bookImageService.findCachedImagesArchive(), restarted.findCachedImagesArchive());
+        
+        // Изменение изображения меняет ключ архива
+        Files.write(image, "new png bytes".getBytes());
+        BookImageService restartedAfterChange = new BookImageService();
+        ReflectionTestUtils.setField(restartedAfterChange, "bookRepository", bookRepository);
+        ReflectionTestUtils.setField(restartedAfterChange, "archiveCachePath", archivesPath);
+        assertNull(restartedAfterChange.findCachedImagesArchive());
+    }
+    
+    @Test
+    void testInvalidateImagesArchive_ShouldDeleteCachedArchive(@TempDir Path tempDir) throws IOException {
+        // Given
+        Path image = tempDir.resolve("cover.jpg");
+        Files.write(image, "jpeg bytes".getBytes());
+        testBook.setImagePath(image.toString());
+        ReflectionTestUtils.setField(bookImageService, "archiveCachePath", tempDir.resolve("archives").toString());
+        when(bookRepository.findAllWithImages()).thenReturn(List.of(testBook));
+        bookImageService.writeAllBookImagesAsZip(ByteArrayOutputStream::new);
+        Path cached = bookImageService.findCachedImagesArchive();
+        
+        // When
+        bookImageService.invalidateImagesArchive();
+        
+        // Then
+        assertFalse(Files.exists(cached));
+        assertNull(bookImageService.findCachedImagesArchive());
+    }
+    
+    @Test
+    void testWriteAllBookImagesAsZip_InvalidatedDuringBuild_ShouldNotCacheStaleArchive(@TempDir Path tempDir)
+            throws IOException {
+        // Given - изображение меняется, пока архив строится
+        Path image = Files.write(tempDir.resolve("cover.jpg"), "jpeg bytes".getBytes());
+        testBook.setImagePath(image.toString());
+        ReflectionTestUtils.setField(bookImageService, "archiveCachePath", tempDir.resolve("archives").toString());
+        when(bookRepository.findAllWithImages()).thenReturn(List.of(testBook));
+        
+        // When
+        bookImageService.writeAllBookImagesAsZip(() -> {
+            bookImageService.invalidateImagesArchive();
+            return new ByteArrayOutputStream();
+        });
+        
+        // Then
+        assertNull(bookImageService.findCachedImagesArchive());
+        try (var archives = Files.list(tempDir.resolve("archives"))) {
+            assertEquals(0, archives.count());
+        }
+    }
+    
+    @Test
+    void testInvalidateImagesArchive_InTransaction_ShouldWaitForCommit(@TempDir Path tempDir) throws IOException {
+        // Given
+        Path image = Files.write(tempDir.resolve("cover.jpg"), "jpeg bytes".getBytes());
+        testBook.setImagePath(image.toString());
+        ReflectionTestUtils.setField(bookImageService, "archiveCachePath", tempDir.resolve("archives").toString());
+        when(bookRepository.findAllWithImages()).thenReturn(List.of(testBook));
+        bookImageService.writeAllBookImagesAsZip(ByteArrayOutputStream::new);
+        Path cached = bookImageService.findCachedImagesArchive();
+        TransactionSynchronizationManager.initSynchronization();
+        
+        // When
+        bookImageService.invalidateImagesArchive();
+        
+        // Then - до коммита архив остаётся, после коммита удаляется
+        assertTrue(Files.exists(cached));
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertFalse(Files.exists(cached));
+    }
+    
+    @Test
+    void testGetBookImage_VariantReady_ShouldReturnVariant(@TempDir Path tempDir) throws IOException {
+        // Given
+        Path original = Files.write(tempDir.resolve("cover.jpg"), "original".getBytes());
+        Path thumbnail = Files.write(tempDir.resolve("thumbnail.jpg"), "thumbnail".getBytes());
+        testBook.setImagePath(original.toString());
+        when(bookRepository.findById(1L)).thenReturn(Optional.of(testBook));
+        when(bookImageVariantService.findVariant(original, ImageVariant.THUMBNAIL)).thenReturn(thumbnail);
+        
+        // When
+        Resource resource = bookImageService.getBookImage(1L, ImageVariant.THUMBNAIL);
+        
+        // Then
+        assertEquals(thumbnail, resource.getFile().toPath());
+    }
+    
+    @Test
+    void testGetBookImage_VariantMissing_ShouldFallBackToOriginal(@TempDir Path tempDir) throws IOException {
+        // Given
+        Path original = Files.write(tempDir.resolve("cover.jpg"), "original".getBytes());
+        testBook.setImagePath(original.toString());
+        when(bookRepository.findById(1L)).thenReturn(Optional.of(testBook));
+        when(bookImageVariantService.findVariant(original, ImageVariant.CARD)).thenReturn(null);
+        
+        // When
+        Resource resource = bookImageService.getBookImage(1L, ImageVariant.CARD);
+        
+        // Then
+        assertEquals(original, resource.getFile().toPath());
+    }
 }
-
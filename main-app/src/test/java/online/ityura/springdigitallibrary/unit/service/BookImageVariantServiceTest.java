@@ -0,0 +1,119 @@
+package online.ityura.springdigitallibrary.unit.service;
+
+import online.ityura.springdigitallibrary.model.ImageVariant;
+import online.ityura.springdigitallibrary.service.BookImageVariantService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookImageVariantServiceTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private BookImageVariantService bookImageVariantService;
+    
+    @BeforeEach
+    void setUp() {
+        bookImageVariantService = new BookImageVariantService();
+        ReflectionTestUtils.setField(bookImageVariantService, "storagePath", tempDir.toString());
+    }
+    
+    @AfterEach
+    void tearDown() {
+        bookImageVariantService.shutdown();
+    }
+    
+    @Test
+    void testGenerateVariants_ShouldResizeKeepingAspectRatio() throws IOException {
+        // Given
+        Path original = writeImage("cover.png", 2000, 3000);
+        
+        // When
+        bookImageVariantService.generateVariants(original);
+        
+        // Then
+        assertImageSize(bookImageVariantService.findVariant(original, ImageVariant.THUMBNAIL), 160, 240);
+        assertImageSize(bookImageVariantService.findVariant(original, ImageVariant.CARD), 480, 720);
+        assertImageSize(bookImageVariantService.findVariant(original, ImageVariant.FULL), 1200, 1800);
+    }
+    
+    @Test
+    void testGenerateVariants_SmallImage_ShouldNotUpscale() throws IOException {
+        // Given
+        Path original = writeImage("small.jpg", 100, 150);
+        
+        // When
+        bookImageVariantService.generateVariants(original);
+        
+        // Then
+        Path card = bookImageVariantService.findVariant(original, ImageVariant.CARD);
+        assertNotNull(card);
+        assertArrayEquals(Files.readAllBytes(original), Files.readAllBytes(card));
+    }
+    
+    @Test
+    void testFindVariant_Missing_ShouldReturnNullAndBackfill() throws Exception {
+        // Given
+        Path original = writeImage("cover.jpg", 800, 1200);
+        
+        // When
+        Path variant = bookImageVariantService.findVariant(original, ImageVariant.THUMBNAIL);
+        
+        // Then
+        assertNull(variant);
+        Path expected = tempDir.resolve("variants").resolve("thumbnail").resolve("cover.jpg");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Files.exists(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertImageSize(expected, 160, 240);
+    }
+    
+    @Test
+    void testFindVariant_OriginalReplaced_ShouldTreatVariantAsStale() throws IOException {
+        // Given
+        Path original = writeImage("cover.png", 600, 900);
+        bookImageVariantService.generateVariants(original);
+        
+        // When
+        Files.setLastModifiedTime(original, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+        
+        // Then
+        assertNull(bookImageVariantService.findVariant(original, ImageVariant.CARD));
+    }
+    
+    @Test
+    void testFindVariant_UnsupportedFormat_ShouldReturnNull() throws IOException {
+        // Given
+        Path original = Files.write(tempDir.resolve("cover.webp"), "webp".getBytes());
+        
+        // When & Then
+        assertNull(bookImageVariantService.findVariant(original, ImageVariant.CARD));
+    }
+    
+    private Path writeImage(String fileName, int width, int height) throws IOException {
+        Path path = tempDir.resolve(fileName);
+        String format = fileName.endsWith(".png") ? "png" : "jpg";
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, path.toFile());
+        return path;
+    }
+    
+    private void assertImageSize(Path path, int expectedWidth, int expectedHeight) throws IOException {
+        assertNotNull(path);
+        BufferedImage image = ImageIO.read(path.toFile());
+        assertEquals(expectedWidth, image.getWidth());
+        assertEquals(expectedHeight, image.getHeight());
+    }
+}
@@ -1,26 +1,37 @@
 package online.ityura.springdigitallibrary.unit.service;
 
 import online.ityura.springdigitallibrary.dto.response.BookResponse;
+import online.ityura.springdigitallibrary.dto.response.CursorPageResponse;
 import online.ityura.springdigitallibrary.model.Author;
 import online.ityura.springdigitallibrary.model.Book;
 import online.ityura.springdigitallibrary.model.Genre;
 import online.ityura.springdigitallibrary.model.Review;
 import online.ityura.springdigitallibrary.model.Role;
 import online.ityura.springdigitallibrary.model.User;
+import online.ityura.springdigitallibrary.repository.BookCatalogSortKey;
 import online.ityura.springdigitallibrary.repository.BookRepository;
 import online.ityura.springdigitallibrary.repository.ReviewRepository;
+import online.ityura.springdigitallibrary.repository.projection.BookCatalogRow;
+import online.ityura.springdigitallibrary.repository.projection.BookReviewCountView;
+import online.ityura.springdigitallibrary.repository.projection.ReviewSnippetView;
+import online.ityura.springdigitallibrary.service.BookCatalogCacheService;
+import online.ityura.springdigitallibrary.service.BookCatalogCursor;
 import online.ityura.springdigitallibrary.service.BookService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
@@ -42,6 +53,9 @@ class BookServiceTest {
     @Mock
     private ReviewRepository reviewRepository;
     
+    @Spy
+    private BookCatalogCacheService bookCatalogCacheService = new BookCatalogCacheService(new SimpleMeterRegistry(), 100);
+    
     @InjectMocks
     private BookService bookService;
     
@@ -52,6 +66,10 @@ class BookServiceTest {
     
     @BeforeEach
     void setUp() {
+        ReflectionTestUtils.setField(bookService, "reviewSnippetsLimit", 3);
+        ReflectionTestUtils.setField(bookService, "reviewSnippetLength", 200);
+        ReflectionTestUtils.setField(bookService, "descriptionExcerptLength", 300);
+        
         testAuthor = Author.builder()
                 .id(1L)
                 .fullName("Test Author")
@@ -66,6 +84,7 @@ class BookServiceTest {
                 .genre(Genre.FICTION)
                 .ratingAvg(BigDecimal.valueOf(4.5))
                 .ratingCount(10)
+                .ratingHistogram(new int[]{0, 0, 0, 2, 3, 5, 0, 0, 0, 0})
                 .imagePath("/images/test.jpg")
                 .pdfPath("/pdf/test.pdf")
                 .createdAt(LocalDateTime.now())
@@ -94,10 +113,11 @@ class BookServiceTest {
     void testGetAllBooks_ShouldReturnPageOfBooks() {
         // Given
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Book> bookPage = new PageImpl<>(List.of(testBook), pageable, 1);
+        Page<BookCatalogRow> bookPage = new PageImpl<>(List.of(catalogRow(testBook)), pageable, 1);
         
-        when(bookRepository.findAll(pageable)).thenReturn(bookPage);
-        when(reviewRepository.findByBookIdIn(anyList())).thenReturn(Collections.emptyList());
+        when(bookRepository.findCatalogPage(300, pageable)).thenReturn(bookPage);
+        when(reviewRepository.countByBookIdIn(anyList())).thenReturn(Collections.emptyList());
+        when(reviewRepository.findLatestSnippetsByBookIdIn(anyList(), eq(3), eq(200))).thenReturn(Collections.emptyList());
         
         // When
         Page<BookResponse> result = bookService.getAllBooks(pageable, null);
@@ -112,19 +132,23 @@ class BookServiceTest {
         assertEquals(testBook.getTitle(), bookResponse.getTitle());
         assertEquals(testBook.getDescription(), bookResponse.getDescription());
         assertTrue(bookResponse.getHasFile());
+        assertEquals(0L, bookResponse.getReviewCount());
         
-        verify(bookRepository).findAll(pageable);
-        verify(reviewRepository).findByBookIdIn(anyList());
+        verify(bookRepository).findCatalogPage(300, pageable);
+        verify(reviewRepository).countByBookIdIn(anyList());
+        verify(reviewRepository).findLatestSnippetsByBookIdIn(anyList(), eq(3), eq(200));
     }
     
     @Test
-    void testGetAllBooks_WithReviews_ShouldIncludeReviews() {
+    void testGetAllBooks_WithReviews_ShouldIncludeCountAndSnippets() {
         // Given
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Book> bookPage = new PageImpl<>(List.of(testBook), pageable, 1);
+        Page<BookCatalogRow> bookPage = new PageImpl<>(List.of(catalogRow(testBook)), pageable, 1);
         
-        when(bookRepository.findAll(pageable)).thenReturn(bookPage);
-        when(reviewRepository.findByBookIdIn(anyList())).thenReturn(List.of(testReview));
+        when(bookRepository.findCatalogPage(300, pageable)).thenReturn(bookPage);
+        when(reviewRepository.countByBookIdIn(anyList())).thenReturn(List.of(reviewCount(1L, 42L)));
+        when(reviewRepository.findLatestSnippetsByBookIdIn(anyList(), eq(3), eq(200)))
+                .thenReturn(List.of(reviewSnippet(testReview)));
         
         // When
         Page<BookResponse> result = bookService.getAllBooks(pageable, null);
@@ -132,20 +156,98 @@ class BookServiceTest {
         // Then
         assertNotNull(result);
         BookResponse bookResponse = result.getContent().get(0);
+        assertEquals(42L, bookResponse.getReviewCount());
         assertNotNull(bookResponse.getReviews());
         assertEquals(1, bookResponse.getReviews().size());
+        assertEquals("Great book!", bookResponse.getReviews().get(0).getText());
+        assertEquals(testUser.getNickname(), bookResponse.getReviews().get(0).getUser().getNickname());
+        assertNull(bookResponse.getReviews().get(0).getUser().getEmail());
+        
+        verify(bookRepository).findCatalogPage(300, pageable);
+        verify(reviewRepository, never()).findByBookIdWithUserOrderByCreatedAtDesc(any());
+    }
+    
+    @Test
+    void testGetAllBooks_SamePageTwice_ShouldHitCache() {
+        // Given
+        Pageable pageable = PageRequest.of(0, 10);
+        Page<BookCatalogRow> bookPage = new PageImpl<>(List.of(catalogRow(testBook)), pageable, 1);
+        
+        when(bookRepository.findCatalogPage(300, pageable)).thenReturn(bookPage);
+        when(reviewRepository.countByBookIdIn(anyList())).thenReturn(Collections.emptyList());
+        
+        // When
+        Page<BookResponse> first = bookService.getAllBooks(pageable, null);
+        Page<BookResponse> second = bookService.getAllBooks(pageable, null);
+        
+        // Then
+        assertSame(first, second);
+        verify(bookRepository, times(1)).findCatalogPage(300, pageable);
+        verify(reviewRepository, times(1)).countByBookIdIn(anyList());
+    }
+    
+    @Test
+    void testGetAllBooks_AfterBookInvalidation_ShouldReload() {
+        // Given
+        Pageable pageable = PageRequest.of(0, 10);
+        Page<BookCatalogRow> bookPage = new PageImpl<>(List.of(catalogRow(testBook)), pageable, 1);
+        
+        when(bookRepository.findCatalogPage(300, pageable)).thenReturn(bookPage);
+        when(reviewRepository.countByBookIdIn(anyList())).thenReturn(Collections.emptyList());
+        bookService.getAllBooks(pageable, null);
+        
+        // When
+        bookCatalogCacheService.invalidateBook(testBook.getId());
+        bookService.getAllBooks(pageable, null);
+        
+        // Then
+        verify(bookRepository, times(2)).findCatalogPage(300, pageable);
+    }
+    
+    @Test
+    void testGetAllBooks_WithGenre_ShouldUseGenreProjectionQuery() {
+        // Given
+        Pageable pageable = PageRequest.of(0, 10);
+        Page<BookCatalogRow> bookPage = new PageImpl<>(List.of(catalogRow(testBook)), pageable, 1);
+        
+        when(bookRepository.findCatalogPageByGenre(Genre.FICTION, 300, pageable)).thenReturn(bookPage);
+        when(reviewRepository.countByBookIdIn(anyList())).thenReturn(Collections.emptyList());
         
-        verify(bookRepository).findAll(pageable);
-        verify(reviewRepository).findByBookIdIn(anyList());
+        // When
+        Page<BookResponse> result = bookService.getAllBooks(pageable, Genre.FICTION);
+        
+        // Then
+        BookResponse bookResponse = result.getContent().get(0);
+        assertEquals(Genre.FICTION, bookResponse.getGenre());
+        assertEquals("Test Author", bookResponse.getAuthor().getFullName());
+        verify(bookRepository, never()).findCatalogPage(anyInt(), any());
+    }
+    
+    @Test
+    void testGetAllBooks_ShouldCalculateFinalPriceFromProjection() {
+        // Given
+        testBook.setPrice(new BigDecimal("200.00"));
+        testBook.setDiscountPercent(new BigDecimal("25.00"));
+        Pageable pageable = PageRequest.of(0, 10);
+        Page<BookCatalogRow> bookPage = new PageImpl<>(List.of(catalogRow(testBook)), pageable, 1);
+        
+        when(bookRepository.findCatalogPage(300, pageable)).thenReturn(bookPage);
+        when(reviewRepository.countByBookIdIn(anyList())).thenReturn(Collections.emptyList());
+        
+        // When
+        Page<BookResponse> result = bookService.getAllBooks(pageable, null);
+        
+        // Then
+        assertEquals(0, new BigDecimal("150.00").compareTo(result.getContent().get(0).getFinalPrice()));
     }
     
     @Test
     void testGetAllBooks_EmptyPage_ShouldReturnEmptyPage() {
         // Given
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Book> emptyPage = new PageImpl<>(Collections.emptyList(), pageable, 0);
+        Page<BookCatalogRow> emptyPage = new PageImpl<>(Collections.emptyList(), pageable, 0);
         
-        when(bookRepository.findAll(pageable)).thenReturn(emptyPage);
+        when(bookRepository.findCatalogPage(300, pageable)).thenReturn(emptyPage);
         
         // When
         Page<BookResponse> result = bookService.getAllBooks(pageable, null);
@@ -155,8 +257,116 @@ class BookServiceTest {
         assertEquals(0, result.getTotalElements());
         assertTrue(result.getContent().isEmpty());
         
-        verify(bookRepository).findAll(pageable);
-        verify(reviewRepository, never()).findByBookIdIn(anyList());
+        verify(bookRepository).findCatalogPage(300, pageable);
+        verify(reviewRepository, never()).countByBookIdIn(anyList());
+        verify(reviewRepository, never()).findLatestSnippetsByBookIdIn(anyList(), anyInt(), anyInt());
+    }
+    
+    @Test
+    void testGetBooksByCursor_FirstPage_ShouldReturnNextCursorWithoutCount() {
+        // Given
+        Book second = Book.builder().id(2L).title("Second Book").author(testAuthor).build();
+        Book third = Book.builder().id(3L).title("Third Book").author(testAuthor).build();
+        when(bookRepository.findCatalogSlice(null, BookCatalogSortKey.TITLE, Sort.Direction.ASC, null, null, 300, 3))
+                .thenReturn(List.of(catalogRow(testBook), catalogRow(second), catalogRow(third)));
+        
+        // When
+        CursorPageResponse<BookResponse> result = bookService.getBooksByCursor(null, null, null, 2);
+        
+        // Then
+        assertEquals(2, result.getContent().size());
+        assertTrue(result.getHasNext());
+        assertNotNull(result.getNextCursor());
+        BookCatalogCursor cursor = BookCatalogCursor.decode(result.getNextCursor());
+        assertEquals(BookCatalogSortKey.TITLE, cursor.sortKey());
+        assertEquals(Sort.Direction.ASC, cursor.direction());
+        assertEquals(2L, cursor.lastId());
+        assertEquals("Second Book", cursor.lastValue());
+        verify(bookRepository, never()).findCatalogPage(anyInt(), any());
+    }
+    
+    @Test
+    void testGetBooksByCursor_WithCursor_ShouldSeekAfterLastRow() {
+        // Given
+        String cursor = new BookCatalogCursor(BookCatalogSortKey.RATING_AVG, Sort.Direction.DESC, 7L,
+                new BigDecimal("4.50")).encode();
+        when(bookRepository.findCatalogSlice(Genre.FICTION, BookCatalogSortKey.RATING_AVG, Sort.Direction.DESC,
+                new BigDecimal("4.50"), 7L, 300, 11)).thenReturn(List.of(catalogRow(testBook)));
+        
+        // When
+        CursorPageResponse<BookResponse> result = bookService.getBooksByCursor(Genre.FICTION, null, cursor, 10);
+        
+        // Then
+        assertEquals(1, result.getContent().size());
+        assertFalse(result.getHasNext());
+        assertNull(result.getNextCursor());
+    }
+    
+    @Test
+    void testGetBooksByCursor_CursorDoesNotMatchSort_ShouldThrowBadRequest() {
+        // Given
+        String cursor = new BookCatalogCursor(BookCatalogSortKey.TITLE, Sort.Direction.ASC, 1L, "Test Book").encode();
+        
+        // When & Then
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> bookService.getBooksByCursor(null, "ratingAvg,desc", cursor, 10));
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+    }
+    
+    @Test
+    void testGetBooksByCursor_InvalidCursorOrSort_ShouldThrowBadRequest() {
+        // When & Then
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class,
+                () -> bookService.getBooksByCursor(null, null, "not-a-cursor", 10)).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class,
+                () -> bookService.getBooksByCursor(null, "author.fullName,asc", null, 10)).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class,
+                () -> bookService.getBooksByCursor(null, null, null, 0)).getStatusCode());
+    }
+    
+    @Test
+    void testSearchBooks_ShouldUsePrefixQueryAndKeepRelevanceOrder() {
+        // Given
+        Pageable pageable = PageRequest.of(0, 10);
+        Book second = Book.builder().id(2L).title("Second Book").author(testAuthor).build();
+        when(bookRepository.searchBookIds("война:* & мир:*", "FICTION", 10, 0L)).thenReturn(List.of(2L, 1L));
+        when(bookRepository.findCatalogRowsByIdIn(List.of(2L, 1L), 300))
+                .thenReturn(List.of(catalogRow(testBook), catalogRow(second)));
+        
+        // When
+        Page<BookResponse> result = bookService.searchBooks("  Война,  МИР! ", Genre.FICTION, pageable);
+        
+        // Then
+        assertEquals(2, result.getTotalElements());
+        assertEquals(2L, result.getContent().get(0).getId());
+        assertEquals(1L, result.getContent().get(1).getId());
+        // Неполная первая страница - общее количество известно без COUNT
+        verify(bookRepository, never()).countSearchResults(anyString(), any());
+    }
+    
+    @Test
+    void testSearchBooks_FullPage_ShouldCountResults() {
+        // Given
+        Pageable pageable = PageRequest.of(0, 1);
+        when(bookRepository.searchBookIds("test:*", null, 1, 0L)).thenReturn(List.of(1L));
+        when(bookRepository.countSearchResults("test:*", null)).thenReturn(5L);
+        when(bookRepository.findCatalogRowsByIdIn(List.of(1L), 300)).thenReturn(List.of(catalogRow(testBook)));
+        
+        // When
+        Page<BookResponse> result = bookService.searchBooks("test", null, pageable);
+        
+        // Then
+        assertEquals(5, result.getTotalElements());
+        assertEquals(1, result.getContent().size());
+    }
+    
+    @Test
+    void testSearchBooks_QueryWithoutWords_ShouldThrowBadRequest() {
+        // When & Then
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> bookService.searchBooks(" :*& | ! ", null, PageRequest.of(0, 10)));
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        verify(bookRepository, never()).searchBookIds(anyString(), any(), anyInt(), anyLong());
     }
     
     @Test
@@ -176,9 +386,12 @@ class BookServiceTest {
         assertEquals(testBook.getDescription(), result.getDescription());
         assertEquals(testBook.getPublishedYear(), result.getPublishedYear());
         assertEquals(testBook.getGenre(), result.getGenre());
+        assertArrayEquals(testBook.getRatingHistogram(), result.getRatingHistogram());
         assertTrue(result.getHasFile());
         assertNotNull(result.getReviews());
         assertEquals(1, result.getReviews().size());
+        assertEquals(1L, result.getReviewCount());
+        assertEquals(testUser.getEmail(), result.getReviews().get(0).getUser().getEmail());
         
         verify(bookRepository).findByIdWithAuthor(1L);
         verify(reviewRepository).findByBookIdWithUserOrderByCreatedAtDesc(1L);
@@ -243,5 +456,64 @@ class BookServiceTest {
         assertNotNull(result);
         assertFalse(result.getHasFile());
     }
+    
+    private BookCatalogRow catalogRow(Book book) {
+        return new BookCatalogRow(book.getId(), book.getTitle(), book.getAuthor().getId(), book.getAuthor().getFullName(),
+                book.getDescription(), book.getPublishedYear(), book.getGenre(), book.getRatingAvg(), book.getRatingCount(),
+                book.getRatingHistogram(), book.getPdfPath() != null && !book.getPdfPath().isEmpty(), book.getImagePath(),
+                book.getPrice(), book.getDiscountPercent(), book.getCreatedAt(), book.getUpdatedAt());
+    }
+    
+    private BookReviewCountView reviewCount(Long bookId, Long count) {
+        return new BookReviewCountView() {
+            @Override
+            public Long getBookId() {
+                return bookId;
+            }
+            
+            @Override
+            public Long getReviewCount() {
+                return count;
+            }
+        };
+    }
+    
+    private ReviewSnippetView reviewSnippet(Review review) {
+        return new ReviewSnippetView() {
+            @Override
+            public Long getId() {
+                return review.getId();
+            }
+            
+            @Override
+            public Long getBookId() {
+                return review.getBook().getId();
+            }
+            
+            @Override
+            public Long getUserId() {
+                return review.getUser().getId();
+            }
+            
+            @Override
+            public String getNickname() {
+                return review.getUser().getNickname();
+            }
+            
+            @Override
+            public String getText() {
+                return review.getText();
+            }
+            
+            @Override
+            public LocalDateTime getCreatedAt() {
+                return review.getCreatedAt();
+            }
+            
+            @Override
+            public LocalDateTime getUpdatedAt() {
+                return review.getUpdatedAt();
+            }
+        };
+    }
 }
-
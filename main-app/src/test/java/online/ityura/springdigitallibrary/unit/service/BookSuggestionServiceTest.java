@@ -0,0 +1,122 @@
+package online.ityura.springdigitallibrary.unit.service;
+
+import online.ityura.springdigitallibrary.dto.response.SuggestionResponse;
+import online.ityura.springdigitallibrary.model.SuggestionType;
+import online.ityura.springdigitallibrary.repository.BookRepository;
+import online.ityura.springdigitallibrary.repository.projection.BookSuggestionRow;
+import online.ityura.springdigitallibrary.service.BookSuggestionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookSuggestionServiceTest {
+    
+    @Mock
+    private BookRepository bookRepository;
+    
+    @InjectMocks
+    private BookSuggestionService bookSuggestionService;
+    
+    @BeforeEach
+    void setUp() {
+        when(bookRepository.findAllSuggestionRows()).thenReturn(List.of(
+                new BookSuggestionRow(1L, "Война и мир", 10L, "Лев Толстой"),
+                new BookSuggestionRow(2L, "Анна Каренина", 10L, "Лев Толстой"),
+                new BookSuggestionRow(3L, "Ёлка", 20L, "Фёдор Достоевский"),
+                new BookSuggestionRow(4L, "War and Peace", 30L, "Tolstoy Translation")
+        ));
+        bookSuggestionService.rebuild();
+    }
+    
+    @Test
+    void testSuggest_ByPrefix_ShouldReturnBooksAndAuthors() {
+        // When
+        List<SuggestionResponse> result = bookSuggestionService.suggest("ТОЛ", 10);
+        List<SuggestionResponse> latin = bookSuggestionService.suggest("t", 10);
+        
+        // Then
+        // Автор двух книг и подсказка с двумя подходящими словами возвращаются один раз
+        assertEquals(List.of(new SuggestionResponse("Лев Толстой", SuggestionType.AUTHOR, 10L)), result);
+        assertEquals(List.of(new SuggestionResponse("Tolstoy Translation", SuggestionType.AUTHOR, 30L)), latin);
+        assertEquals(List.of(new SuggestionResponse("War and Peace", SuggestionType.BOOK, 4L)),
+                bookSuggestionService.suggest("Pea", 10));
+        verify(bookRepository, times(1)).findAllSuggestionRows();
+    }
+    
+    @Test
+    void testSuggest_SeveralWords_ShouldRequireAllWords() {
+        // When
+        List<SuggestionResponse> result = bookSuggestionService.suggest("вой ми", 10);
+        
+        // Then
+        assertEquals(List.of(new SuggestionResponse("Война и мир", SuggestionType.BOOK, 1L)), result);
+        assertTrue(bookSuggestionService.suggest("вой анна", 10).isEmpty());
+    }
+    
+    @Test
+    void testSuggest_ShouldNormalizeYoAndRespectLimit() {
+        // When & Then
+        assertEquals(List.of(new SuggestionResponse("Ёлка", SuggestionType.BOOK, 3L)),
+                bookSuggestionService.suggest("елк", 10));
+        assertEquals(1, bookSuggestionService.suggest("л", 1).size());
+        assertTrue(bookSuggestionService.suggest("  ,. ", 10).isEmpty());
+    }
+    
+    @Test
+    void testIndexAndRemoveBooks_ShouldUpdateSuggestionsWithoutReload() {
+        // When
+        bookSuggestionService.indexBooks(List.of(new BookSuggestionRow(1L, "Воскресение", 10L, "Лев Толстой")));
+        bookSuggestionService.removeBooks(List.of(3L));
+        
+        // Then
+        assertTrue(bookSuggestionService.suggest("война", 10).isEmpty());
+        assertEquals(List.of(new SuggestionResponse("Воскресение", SuggestionType.BOOK, 1L)),
+                bookSuggestionService.suggest("воскр", 10));
+        // Автор пропадает вместе с последней книгой
+        assertTrue(bookSuggestionService.suggest("достоевский", 10).isEmpty());
+        verify(bookRepository, times(1)).findAllSuggestionRows();
+    }
+    
+    @Test
+    void testIndexBooks_ShouldMergeNewWordsIntoSortedIndexAndTrackAuthorBooks() {
+        // When - новая книга у автора с книгами, книга 4 переходит к новому автору
+        bookSuggestionService.indexBooks(List.of(
+                new BookSuggestionRow(5L, "Аэлита", 10L, "Лев Толстой"),
+                new BookSuggestionRow(4L, "War and Peace", 40L, "Leo Tolstoy")));
+        List<SuggestionResponse> merged = bookSuggestionService.suggest("а", 10);
+        bookSuggestionService.removeBooks(List.of(1L, 2L));
+        
+        // Then
+        // Слова новой книги встают по порядку среди уже отсортированных
+        assertEquals(List.of(
+                new SuggestionResponse("Анна Каренина", SuggestionType.BOOK, 2L),
+                new SuggestionResponse("Аэлита", SuggestionType.BOOK, 5L)), merged);
+        // У автора осталась книга 5, у прежнего автора книги 4 книг не осталось
+        assertEquals(List.of(new SuggestionResponse("Лев Толстой", SuggestionType.AUTHOR, 10L)),
+                bookSuggestionService.suggest("лев тол", 10));
+        assertEquals(List.of(new SuggestionResponse("Leo Tolstoy", SuggestionType.AUTHOR, 40L)),
+                bookSuggestionService.suggest("t", 10));
+        assertEquals(List.of(new SuggestionResponse("Аэлита", SuggestionType.BOOK, 5L)),
+                bookSuggestionService.suggest("а", 10));
+        verify(bookRepository, times(1)).findAllSuggestionRows();
+    }
+    
+    @Test
+    void testSuggest_InvalidLimit_ShouldThrowBadRequest() {
+        // When & Then
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> bookSuggestionService.suggest("лев", BookSuggestionService.MAX_LIMIT + 1));
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+    }
+}
@@ -0,0 +1,170 @@
+package online.ityura.springdigitallibrary.unit.service;
+
+import jakarta.validation.Validation;
+import online.ityura.springdigitallibrary.config.RestTemplateConfig;
+import online.ityura.springdigitallibrary.dto.response.ImportResultResponse;
+import online.ityura.springdigitallibrary.repository.BookRepository;
+import online.ityura.springdigitallibrary.repository.UserRepository;
+import online.ityura.springdigitallibrary.service.BookCatalogCacheService;
+import online.ityura.springdigitallibrary.service.BulkImportService;
+import online.ityura.springdigitallibrary.service.RatingAggregator;
+import online.ityura.springdigitallibrary.service.ReviewPageCacheService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BulkImportServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private RatingAggregator ratingAggregator;
+
+    @Mock
+    private BookCatalogCacheService bookCatalogCacheService;
+
+    @Mock
+    private ReviewPageCacheService reviewPageCacheService;
+
+    @InjectMocks
+    private BulkImportService bulkImportService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(bulkImportService, "objectMapper", new RestTemplateConfig().objectMapper());
+        ReflectionTestUtils.setField(bulkImportService, "validator",
+                Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(bulkImportService, "chunkSize", 1000);
+        ReflectionTestUtils.setField(bulkImportService, "maxReportedErrors", 100);
+    }
+
+    @Test
+    void testImportRatings_MixedLines_ShouldWriteValidRowsPerChunkAndReportSkipped() {
+        // Given - пакеты по 2 строки; книги 999 нет, оценка из строки 4 уже существует
+        ReflectionTestUtils.setField(bulkImportService, "chunkSize", 2);
+        InputStream ndjson = ndjson(
+                "{\"bookId\":1,\"userId\":10,\"value\":8}",
+                "{oops",
+                "{\"bookId\":1,\"userId\":11,\"value\":11}",
+                "{\"bookId\":1,\"userId\":12,\"value\":8,\"source\":\"partner\"}",
+                "",
+                "{\"bookId\":999,\"userId\":10,\"value\":5}",
+                "{\"bookId\":2,\"userId\":10,\"value\":3}");
+        when(bookRepository.findExistingIds(anyCollection()))
+                .thenAnswer(invocation -> existing(invocation.getArgument(0), Set.of(1L, 2L)));
+        when(userRepository.findExistingIds(anyCollection()))
+                .thenAnswer(invocation -> List.copyOf(invocation.<Collection<Long>>getArgument(0)));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenReturn(new int[]{1, 0})
+                .thenReturn(new int[]{1});
+
+        // When
+        ImportResultResponse result = bulkImportService.importRatings(ndjson);
+
+        // Then
+        assertEquals(6L, result.getProcessed());
+        assertEquals(2L, result.getImported());
+        assertEquals(4L, result.getSkipped());
+        assertEquals(List.of(2L, 3L, 4L, 6L), result.getErrors().stream().map(ImportResultResponse.LineError::getLine).toList());
+        assertTrue(result.getErrors().get(0).getMessage().startsWith("Invalid JSON"));
+        assertEquals("Rating must be at most 10", result.getErrors().get(1).getMessage());
+        assertEquals("Rating already exists for this book", result.getErrors().get(2).getMessage());
+        assertEquals("Book not found with id: 999", result.getErrors().get(3).getMessage());
+
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyList());
+        verify(ratingAggregator).recordCreated(eq(1L), aryEq(new long[]{0, 0, 0, 0, 0, 0, 0, 1, 0, 0}));
+        verify(ratingAggregator).recordCreated(eq(2L), aryEq(new long[]{0, 0, 1, 0, 0, 0, 0, 0, 0, 0}));
+        verifyNoInteractions(reviewPageCacheService);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testImportReviews_ValidRows_ShouldBatchInsertAndInvalidateCachesOncePerBook() {
+        // Given - пользователя 99 нет
+        InputStream ndjson = ndjson(
+                "{\"bookId\":1,\"userId\":10,\"text\":\"Отличная книга\",\"createdAt\":\"2024-05-01T12:00:00\"}",
+                "{\"bookId\":1,\"userId\":11,\"text\":\"Неплохо\"}",
+                "{\"bookId\":1,\"userId\":99,\"text\":\"Кто я?\"}",
+                "{\"bookId\":1,\"userId\":10,\"text\":\"   \"}");
+        when(bookRepository.findExistingIds(anyCollection())).thenReturn(List.of(1L));
+        when(userRepository.findExistingIds(anyCollection())).thenReturn(List.of(10L, 11L));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1, 1});
+
+        // When
+        ImportResultResponse result = bulkImportService.importReviews(ndjson);
+
+        // Then
+        assertEquals(4L, result.getProcessed());
+        assertEquals(2L, result.getImported());
+        assertEquals(2L, result.getSkipped());
+        assertEquals("Review text is required", result.getErrors().get(0).getMessage());
+        assertEquals("User not found with id: 99", result.getErrors().get(1).getMessage());
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(contains("INSERT INTO reviews"), rows.capture());
+        assertEquals(2, rows.getValue().size());
+        Timestamp importedCreatedAt = Timestamp.valueOf(LocalDateTime.of(2024, 5, 1, 12, 0));
+        assertArrayEquals(new Object[]{1L, 10L, "Отличная книга", importedCreatedAt, importedCreatedAt},
+                rows.getValue().get(0));
+        verify(bookCatalogCacheService, times(1)).invalidateBook(1L);
+        verify(reviewPageCacheService, times(1)).invalidateBook(1L);
+        verifyNoInteractions(ratingAggregator);
+    }
+
+    @Test
+    void testImportRatings_OnlyInvalidLines_ShouldNotTouchDatabaseAndCapReportedErrors() {
+        // Given
+        ReflectionTestUtils.setField(bulkImportService, "maxReportedErrors", 1);
+        InputStream ndjson = ndjson("null", "{\"bookId\":1,\"value\":5}");
+
+        // When
+        ImportResultResponse result = bulkImportService.importRatings(ndjson);
+
+        // Then
+        assertEquals(2L, result.getSkipped());
+        assertEquals(0L, result.getImported());
+        assertEquals(1, result.getErrors().size());
+        assertEquals("Invalid JSON: expected an object", result.getErrors().get(0).getMessage());
+        verifyNoInteractions(jdbcTemplate, bookRepository, userRepository, ratingAggregator);
+    }
+
+    private static InputStream ndjson(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<Long> existing(Collection<Long> requested, Set<Long> present) {
+        return requested.stream().filter(present::contains).toList();
+    }
+}
@@ -5,6 +5,7 @@ import online.ityura.springdigitallibrary.model.Role;
 import online.ityura.springdigitallibrary.model.User;
 import online.ityura.springdigitallibrary.repository.EmailVerificationTokenRepository;
 import online.ityura.springdigitallibrary.repository.UserRepository;
+import online.ityura.springdigitallibrary.security.CustomUserDetailsService;
 import online.ityura.springdigitallibrary.service.EmailService;
 import online.ityura.springdigitallibrary.service.EmailVerificationService;
 import org.junit.jupiter.api.BeforeEach;
@@ -36,6 +37,9 @@ class EmailVerificationServiceTest {
     @Mock
     private EmailService emailService;
     
+    @Mock
+    private CustomUserDetailsService customUserDetailsService;
+    
     @InjectMocks
     private EmailVerificationService emailVerificationService;
     
@@ -94,6 +98,7 @@ class EmailVerificationServiceTest {
         assertTrue(testUser.getIsVerified());
         assertTrue(testToken.getUsed());
         verify(userRepository).save(testUser);
+        verify(customUserDetailsService).evict(testUser.getEmail());
         verify(tokenRepository).save(testToken);
     }
     
@@ -0,0 +1,83 @@
+package online.ityura.springdigitallibrary.unit.service;
+
+import online.ityura.springdigitallibrary.service.EventRingBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventRingBufferTest {
+
+    @Test
+    void testOfferPoll_ShouldBeFifoAndBounded() {
+        // Given - вместимость округляется до 4
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<>(3);
+
+        // When
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+
+        // Then
+        assertEquals(4, buffer.capacity());
+        assertEquals(2, new EventRingBuffer<>(1).capacity());
+        assertFalse(buffer.offer(4));
+        assertEquals(0, buffer.poll());
+        assertTrue(buffer.offer(4));
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(4, buffer.drainTo(drained, 10));
+        assertEquals(List.of(1, 2, 3, 4), drained);
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void testConcurrentProducersAndConsumers_ShouldDeliverEachItemOnce() throws Exception {
+        // Given - 3 производителя по 20 000 элементов, 2 потребителя, буфер на 64 элемента
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<>(64);
+        int producers = 3;
+        int perProducer = 20_000;
+        Set<Integer> received = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(producers + 2);
+
+        // When
+        for (int p = 0; p < producers; p++) {
+            int offset = p * perProducer;
+            executor.execute(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(offset + i)) {
+                        Thread.yield();
+                    }
+                }
+            });
+        }
+        for (int c = 0; c < 2; c++) {
+            executor.execute(() -> {
+                while (received.size() < producers * perProducer) {
+                    Integer item = buffer.poll();
+                    if (item == null) {
+                        Thread.yield();
+                    } else if (!received.add(item)) {
+                        duplicates.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+
+        // Then
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(producers * perProducer, received.size());
+        assertEquals(0, duplicates.get());
+        assertTrue(buffer.isEmpty());
+    }
+}
@@ -0,0 +1,119 @@
+package online.ityura.springdigitallibrary.unit.service;
+
+import online.ityura.springdigitallibrary.service.EventSpillLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventSpillLogTest {
+
+    // 8 байт заголовка + 20 байт данных: две записи на сегмент
+    private static final int SEGMENT_BYTES = 64;
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void testAppendReadCommit_ShouldRollSegmentsAndDeleteCommittedOnes() throws IOException {
+        // Given
+        EventSpillLog spillLog = new EventSpillLog(tempDir, SEGMENT_BYTES, 1024);
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(spillLog.append(record(i)));
+        }
+        assertEquals(3, segmentFiles().size());
+
+        // When
+        List<String> records = decode(spillLog.read(10));
+        spillLog.commit();
+
+        // Then
+        assertEquals(decode(List.of(record(1), record(2), record(3), record(4), record(5))), records);
+        assertFalse(spillLog.hasPending());
+        assertEquals(1, segmentFiles().size());
+        spillLog.close();
+    }
+
+    @Test
+    void testRewind_ShouldReturnUncommittedRecords() {
+        // Given
+        EventSpillLog spillLog = new EventSpillLog(tempDir, SEGMENT_BYTES, 1024);
+        spillLog.append(record(1));
+        spillLog.append(record(2));
+        spillLog.append(record(3));
+
+        // When
+        spillLog.read(1);
+        spillLog.commit();
+        spillLog.read(2);
+        spillLog.rewind();
+
+        // Then
+        assertEquals(decode(List.of(record(2), record(3))), decode(spillLog.read(10)));
+        spillLog.close();
+    }
+
+    @Test
+    void testReopen_ShouldResumeFromCommittedOffsetAndIgnoreTornRecord() throws IOException {
+        // Given - запись 1 подтверждена, запись 2 прочитана без подтверждения, журнал не закрыт
+        EventSpillLog spillLog = new EventSpillLog(tempDir, SEGMENT_BYTES, 1024);
+        spillLog.append(record(1));
+        spillLog.append(record(2));
+        spillLog.read(1);
+        spillLog.commit();
+        spillLog.read(1);
+        spillLog.close();
+        // Недописанная запись с неверной CRC в начале следующего сегмента
+        try (FileChannel channel = FileChannel.open(tempDir.resolve("segment-0000000000000000001.log"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(SEGMENT_BYTES).putInt(20).putInt(12345).flip());
+        }
+
+        // When
+        EventSpillLog reopened = new EventSpillLog(tempDir, SEGMENT_BYTES, 1024);
+        reopened.append(record(3));
+
+        // Then
+        assertEquals(decode(List.of(record(2), record(3))), decode(reopened.read(10)));
+        reopened.close();
+    }
+
+    @Test
+    void testAppend_ShouldRejectRecordsOverMaxBytes() {
+        // Given - не больше двух сегментов
+        EventSpillLog spillLog = new EventSpillLog(tempDir, SEGMENT_BYTES, 2 * SEGMENT_BYTES);
+        for (int i = 1; i <= 4; i++) {
+            assertTrue(spillLog.append(record(i)));
+        }
+
+        // When / Then
+        assertFalse(spillLog.append(record(5)));
+        assertFalse(spillLog.append(new byte[SEGMENT_BYTES]));
+        assertEquals(4 * (8 + 20), spillLog.pendingBytes());
+        spillLog.close();
+    }
+
+    private static byte[] record(int number) {
+        return String.format("event-%014d", number).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> decode(List<byte[]> records) {
+        return records.stream().map(bytes -> new String(bytes, StandardCharsets.UTF_8)).toList();
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("segment-")).toList();
+        }
+    }
+}
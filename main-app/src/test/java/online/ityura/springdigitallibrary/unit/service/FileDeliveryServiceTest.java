@@ -0,0 +1,218 @@
+package online.ityura.springdigitallibrary.unit.service;
+
+import online.ityura.springdigitallibrary.service.FileDeliveryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileDeliveryServiceTest {
+    
+    private final FileDeliveryService fileDeliveryService = new FileDeliveryService();
+    
+    @TempDir
+    Path tempDir;
+    
+    private Path file;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        file = Files.write(tempDir.resolve("book.pdf"), "0123456789".getBytes());
+    }
+    
+    @Test
+    void testDeliver_FullFile_ShouldReturn200WithContent() throws Exception {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        // When
+        boolean fromFirstByte = fileDeliveryService.deliver(file, MediaType.APPLICATION_PDF, "attachment", null,
+                request(null), response);
+        
+        // Then
+        assertTrue(fromFirstByte);
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+        assertEquals(10, response.getContentLength());
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals("attachment", response.getHeader(HttpHeaders.CONTENT_DISPOSITION));
+    }
+    
+    @Test
+    void testDeliver_SuffixRange_ShouldReturnLastBytes() throws Exception {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        // When
+        boolean fromFirstByte = fileDeliveryService.deliver(file, MediaType.APPLICATION_PDF, null, null,
+                request("bytes=-3"), response);
+        
+        // Then
+        assertFalse(fromFirstByte);
+        assertEquals(HttpStatus.PARTIAL_CONTENT.value(), response.getStatus());
+        assertEquals("789", response.getContentAsString());
+        assertEquals("bytes 7-9/10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+    
+    @Test
+    void testDeliver_RangeBeyondFile_ShouldReturn416() throws Exception {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        // When
+        boolean fromFirstByte = fileDeliveryService.deliver(file, MediaType.APPLICATION_PDF, null, null,
+                request("bytes=20-"), response);
+        
+        // Then
+        assertFalse(fromFirstByte);
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value(), response.getStatus());
+        assertEquals("bytes */10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("", response.getContentAsString());
+    }
+    
+    @Test
+    void testDeliver_MultipleRanges_ShouldReturnFullFile() throws Exception {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        // When
+        fileDeliveryService.deliver(file, MediaType.APPLICATION_PDF, null, null, request("bytes=0-1,4-5"), response);
+        
+        // Then
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+    }
+    
+    @Test
+    void testDeliver_SendfileSupported_ShouldDelegateToContainer() throws Exception {
+        // Given
+        Path largeFile = Files.write(tempDir.resolve("large.pdf"), new byte[64 * 1024]);
+        MockHttpServletRequest request = request("bytes=1024-");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        // When
+        fileDeliveryService.deliver(largeFile, MediaType.APPLICATION_PDF, null, null, request, response);
+        
+        // Then
+        assertEquals(HttpStatus.PARTIAL_CONTENT.value(), response.getStatus());
+        assertEquals(largeFile.toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(1024L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(64L * 1024, request.getAttribute("org.apache.tomcat.sendfile.end"));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+    
+    @Test
+    void testDeliver_ShouldSetValidatorsAndCacheControl() throws Exception {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        // When
+        fileDeliveryService.deliver(file, MediaType.APPLICATION_PDF, null, CacheControl.noCache().cachePublic(),
+                request(null), response);
+        
+        // Then
+        assertNotNull(response.getHeader(HttpHeaders.ETAG));
+        assertTrue(response.getHeader(HttpHeaders.ETAG).startsWith("\""));
+        assertNotNull(response.getHeader(HttpHeaders.LAST_MODIFIED));
+        assertEquals("no-cache, public", response.getHeader(HttpHeaders.CACHE_CONTROL));
+    }
+    
+    @Test
+    void testDeliver_IfNoneMatch_ShouldReturn304WithoutBody() throws Exception {
+        // Given
+        String etag = deliverAndGetEtag();
+        MockHttpServletRequest request = request(null);
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        // When
+        boolean fromFirstByte = fileDeliveryService.deliver(file, MediaType.APPLICATION_PDF, null, null, request, response);
+        
+        // Then
+        assertFalse(fromFirstByte);
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus());
+        assertEquals(etag, response.getHeader(HttpHeaders.ETAG));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+    
+    @Test
+    void testDeliver_IfModifiedSince_ShouldReturn304() throws Exception {
+        // Given
+        MockHttpServletRequest request = request(null);
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, Files.getLastModifiedTime(file).toMillis() + 1000);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        // When
+        fileDeliveryService.deliver(file, MediaType.APPLICATION_PDF, null, null, request, response);
+        
+        // Then
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus());
+    }
+    
+    @Test
+    void testDeliver_IfRangeMatches_ShouldReturnPartialContent() throws Exception {
+        // Given
+        String etag = deliverAndGetEtag();
+        MockHttpServletRequest request = request("bytes=0-1");
+        request.addHeader(HttpHeaders.IF_RANGE, etag);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        // When
+        boolean fromFirstByte = fileDeliveryService.deliver(file, MediaType.APPLICATION_PDF, null, null, request, response);
+        
+        // Then
+        assertTrue(fromFirstByte);
+        assertEquals(HttpStatus.PARTIAL_CONTENT.value(), response.getStatus());
+        assertEquals("01", response.getContentAsString());
+    }
+    
+    @Test
+    void testDeliver_IfRangeStale_ShouldReturnFullFile() throws Exception {
+        // Given
+        MockHttpServletRequest request = request("bytes=0-1");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"stale-etag\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        // When
+        fileDeliveryService.deliver(file, MediaType.APPLICATION_PDF, null, null, request, response);
+        
+        // Then
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+    }
+    
+    @Test
+    void testDeliver_MissingFile_ShouldThrowNotFound() {
+        // When & Then
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> fileDeliveryService.deliver(tempDir.resolve("missing.pdf"), MediaType.APPLICATION_PDF, null, null,
+                        request(null), new MockHttpServletResponse()));
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+    }
+    
+    private String deliverAndGetEtag() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        fileDeliveryService.deliver(file, MediaType.APPLICATION_PDF, null, null, request(null), response);
+        return response.getHeader(HttpHeaders.ETAG);
+    }
+    
+    private MockHttpServletRequest request(String range) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/books/1/download");
+        if (range != null) {
+            request.addHeader(HttpHeaders.RANGE, range);
+        }
+        return request;
+    }
+}
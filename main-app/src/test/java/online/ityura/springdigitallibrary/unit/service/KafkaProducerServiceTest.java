@@ -1,23 +1,34 @@
 package online.ityura.springdigitallibrary.unit.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import online.ityura.springdigitallibrary.dto.event.*;
+import online.ityura.springdigitallibrary.config.RestTemplateConfig;
+import online.ityura.springdigitallibrary.service.EventOverflowPolicy;
+import online.ityura.springdigitallibrary.service.KafkaConnectivityProbe;
 import online.ityura.springdigitallibrary.service.KafkaProducerService;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.serialization.StringSerializer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
 import org.springframework.kafka.support.SendResult;
 
-import java.lang.reflect.Field;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -27,7 +38,13 @@ class KafkaProducerServiceTest {
     @Mock
     private KafkaTemplate<String, Object> kafkaTemplate;
     
-    @InjectMocks
+    @Mock
+    private KafkaConnectivityProbe connectivityProbe;
+    
+    @TempDir
+    private Path tempDir;
+    
+    private SimpleMeterRegistry meterRegistry;
     private KafkaProducerService kafkaProducerService;
     
     private BookViewEvent bookViewEvent;
@@ -37,12 +54,8 @@ class KafkaProducerServiceTest {
     private BookRatingEvent bookRatingEvent;
     
     @BeforeEach
-    void setUp() throws Exception {
-        // Reset kafkaAvailable to true before each test
-        Field kafkaAvailableField = KafkaProducerService.class.getDeclaredField("kafkaAvailable");
-        kafkaAvailableField.setAccessible(true);
-        AtomicBoolean kafkaAvailable = (AtomicBoolean) kafkaAvailableField.get(null);
-        kafkaAvailable.set(true);
+    void setUp() {
+        kafkaProducerService = createService(16, EventOverflowPolicy.DROP_OLDEST);
         
         bookViewEvent = BookViewEvent.builder()
                 .eventId("event-1")
@@ -113,13 +126,14 @@ class KafkaProducerServiceTest {
         
         // When
         kafkaProducerService.sendBookViewEvent(bookViewEvent);
+        kafkaProducerService.sendBatch();
         
         // Then
         verify(kafkaTemplate).send(eq("book.views"), eq("1"), any(BookViewEvent.class));
     }
     
     @Test
-    void testSendBookViewEvent_TimeoutException_ShouldHandleGracefully() {
+    void testSendBookViewEvent_TimeoutException_ShouldSpillEventAndMarkKafkaUnavailable() {
         // Given
         CompletableFuture<SendResult<String, Object>> future = new CompletableFuture<>();
         future.completeExceptionally(new TimeoutException("Kafka timeout"));
@@ -130,12 +144,22 @@ class KafkaProducerServiceTest {
         // When - should not throw exception
         try {
             kafkaProducerService.sendBookViewEvent(bookViewEvent);
+            kafkaProducerService.sendBatch();
         } catch (Exception e) {
             fail("Should not throw exception");
         }
         
-        // Then
+        // Then - обработчик ошибки (сетевой поток продюсера) не пишет в журнал, событие ждёт потока отправки
         verify(kafkaTemplate).send(eq("book.views"), eq("1"), any(BookViewEvent.class));
+        assertFalse(kafkaProducerService.isKafkaAvailable());
+        assertEquals(0.0, meterRegistry.get("analytics.events.spilled").counter().count());
+        assertEquals(0.0, meterRegistry.get("analytics.kafka.available").gauge().value());
+        
+        // When
+        assertEquals(1, kafkaProducerService.sendBatch());
+        
+        // Then
+        assertEquals(1.0, meterRegistry.get("analytics.events.spilled").counter().count());
     }
     
     @Test
@@ -150,6 +174,7 @@ class KafkaProducerServiceTest {
         
         // When
         kafkaProducerService.sendBookDownloadEvent(bookDownloadEvent);
+        kafkaProducerService.sendBatch();
         
         // Then
         verify(kafkaTemplate).send(eq("book.downloads"), eq("100"), any(BookDownloadEvent.class));
@@ -167,6 +192,7 @@ class KafkaProducerServiceTest {
         
         // When
         kafkaProducerService.sendBookPurchaseEvent(bookPurchaseEvent);
+        kafkaProducerService.sendBatch();
         
         // Then
         verify(kafkaTemplate).send(eq("book.purchases"), eq("100"), any(BookPurchaseEvent.class));
@@ -184,6 +210,7 @@ class KafkaProducerServiceTest {
         
         // When
         kafkaProducerService.sendBookReviewEvent(bookReviewEvent);
+        kafkaProducerService.sendBatch();
         
         // Then
         verify(kafkaTemplate).send(eq("book.reviews"), eq("1"), any(BookReviewEvent.class));
@@ -201,13 +228,14 @@ class KafkaProducerServiceTest {
         
         // When
         kafkaProducerService.sendBookRatingEvent(bookRatingEvent);
+        kafkaProducerService.sendBatch();
         
         // Then
         verify(kafkaTemplate).send(eq("book.ratings"), eq("1"), any(BookRatingEvent.class));
     }
     
     @Test
-    void testSendBookViewEvent_Exception_ShouldHandleGracefully() {
+    void testSendBookViewEvent_Exception_ShouldSpillEventAndMarkKafkaUnavailable() {
         // Given
         when(kafkaTemplate.send(eq("book.views"), eq("1"), any(BookViewEvent.class)))
                 .thenThrow(new RuntimeException("Kafka error"));
@@ -215,11 +243,218 @@ class KafkaProducerServiceTest {
         // When - should not throw exception
         try {
             kafkaProducerService.sendBookViewEvent(bookViewEvent);
+            kafkaProducerService.sendBatch();
+            kafkaProducerService.sendBatch();
         } catch (Exception e) {
             fail("Should not throw exception");
         }
         
         // Then
         verify(kafkaTemplate).send(eq("book.views"), eq("1"), any(BookViewEvent.class));
+        assertFalse(kafkaProducerService.isKafkaAvailable());
+        assertEquals(1.0, meterRegistry.get("analytics.events.spilled").counter().count());
+    }
+    
+    @Test
+    void testPublish_ShouldNotCallKafkaOnCallerThread() {
+        // When
+        kafkaProducerService.sendBookViewEvent(bookViewEvent);
+        
+        // Then - событие ждёт потока отправки в буфере
+        verifyNoInteractions(kafkaTemplate);
+        assertEquals(1.0, meterRegistry.get("analytics.events.queue.size").gauge().value());
+    }
+    
+    @Test
+    void testSendBatch_Acknowledged_ShouldRecordSentAndLatency() {
+        // Given
+        @SuppressWarnings("unchecked")
+        SendResult<String, Object> sendResult = mock(SendResult.class);
+        when(kafkaTemplate.send(anyString(), anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture(sendResult));
+        kafkaProducerService.sendBookViewEvent(bookViewEvent);
+        kafkaProducerService.sendBookRatingEvent(bookRatingEvent);
+        
+        // When
+        int taken = kafkaProducerService.sendBatch();
+        
+        // Then
+        assertEquals(2, taken);
+        assertEquals(0, kafkaProducerService.sendBatch());
+        assertEquals(2.0, meterRegistry.get("analytics.events.sent").counter().count());
+        assertEquals(2L, meterRegistry.get("analytics.events.latency").timer().count());
+    }
+    
+    @Test
+    void testOverflow_DropOldest_ShouldKeepNewestEvents() {
+        // Given - вместимость буфера 2
+        kafkaProducerService = createService(2, EventOverflowPolicy.DROP_OLDEST);
+        when(kafkaTemplate.send(eq("book.views"), anyString(), any())).thenReturn(new CompletableFuture<>());
+        
+        // When
+        for (long bookId = 1; bookId <= 3; bookId++) {
+            kafkaProducerService.sendBookViewEvent(viewEvent(bookId));
+        }
+        kafkaProducerService.sendBatch();
+        
+        // Then
+        assertEquals(List.of("2", "3"), sentKeys(2));
+        assertEquals(1.0, meterRegistry.get("analytics.events.dropped").tag("reason", "queue_full").counter().count());
+    }
+    
+    @Test
+    void testOverflow_DropNew_ShouldKeepOldestEvents() {
+        // Given
+        kafkaProducerService = createService(2, EventOverflowPolicy.DROP_NEW);
+        when(kafkaTemplate.send(eq("book.views"), anyString(), any())).thenReturn(new CompletableFuture<>());
+        
+        // When
+        for (long bookId = 1; bookId <= 3; bookId++) {
+            kafkaProducerService.sendBookViewEvent(viewEvent(bookId));
+        }
+        kafkaProducerService.sendBatch();
+        
+        // Then
+        assertEquals(List.of("1", "2"), sentKeys(2));
+        assertEquals(1.0, meterRegistry.get("analytics.events.dropped").tag("reason", "queue_full").counter().count());
+    }
+    
+    @Test
+    void testOverflow_Spill_ShouldMoveBufferToSpillLogAndSendInOrder() {
+        // Given - вместимость буфера 2: при переполнении поток отправки переносит буфер и новые события в журнал
+        kafkaProducerService = createService(2, EventOverflowPolicy.SPILL);
+        @SuppressWarnings("unchecked")
+        SendResult<String, Object> sendResult = mock(SendResult.class);
+        when(kafkaTemplate.send(eq("book.views"), anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture(sendResult));
+        
+        // When
+        for (long bookId = 1; bookId <= 4; bookId++) {
+            kafkaProducerService.sendBookViewEvent(viewEvent(bookId));
+        }
+        // Поток запроса не пишет в журнал
+        assertEquals(0.0, meterRegistry.get("analytics.events.spilled").counter().count());
+        kafkaProducerService.sendBatch();
+        assertEquals(4.0, meterRegistry.get("analytics.events.spilled").counter().count());
+        
+        // Then - события из журнала восстановлены в исходном типе
+        assertEquals(List.of("1", "2", "3", "4"), sentKeys(4));
+        ArgumentCaptor<Object> payloads = ArgumentCaptor.forClass(Object.class);
+        verify(kafkaTemplate, times(4)).send(anyString(), anyString(), payloads.capture());
+        assertEquals(viewEvent(4L), payloads.getAllValues().get(3));
+        assertEquals(0.0, meterRegistry.get("analytics.events.spill.bytes").gauge().value());
+    }
+    
+    @Test
+    void testOverflow_SpillQueueFull_ShouldDropOnCallerThread() {
+        // Given - буфер и очередь переполнения по 2 события, поток отправки не успевает
+        kafkaProducerService = createService(2, EventOverflowPolicy.SPILL);
+        
+        // When
+        for (long bookId = 1; bookId <= 5; bookId++) {
+            kafkaProducerService.sendBookViewEvent(viewEvent(bookId));
+        }
+        
+        // Then - поток запроса не ждёт журнал: лишнее событие отброшено и учтено
+        assertEquals(1.0, meterRegistry.get("analytics.events.dropped").tag("reason", "queue_full").counter().count());
+        assertEquals(0.0, meterRegistry.get("analytics.events.spill.bytes").gauge().value());
+        verifyNoInteractions(kafkaTemplate);
+    }
+    
+    @Test
+    void testKafkaOutage_ShouldSpillEventsAndReplayInOrderAfterProbeSucceeds() {
+        // Given - брокер-заглушка (KafkaTemplate закрывает продюсер после отправки, поэтому на каждую отправку - новый)
+        AtomicBoolean brokerDown = new AtomicBoolean(true);
+        List<MockProducer<String, Object>> producers = new ArrayList<>();
+        MockProducerFactory<String, Object> producerFactory = new MockProducerFactory<>(() -> {
+            MockProducer<String, Object> producer = new MockProducer<>(true, null, new StringSerializer(),
+                    (topic, value) -> new byte[0]);
+            if (brokerDown.get()) {
+                producer.sendException = new TimeoutException("Broker not available");
+            }
+            producers.add(producer);
+            return producer;
+        });
+        kafkaProducerService = createService(new KafkaTemplate<>(producerFactory), 16, EventOverflowPolicy.DROP_OLDEST);
+        
+        // When - Kafka недоступен: первое событие не отправлено, следующие сразу пишутся в журнал
+        kafkaProducerService.sendBookViewEvent(viewEvent(1L));
+        kafkaProducerService.sendBatch();
+        kafkaProducerService.sendBookViewEvent(viewEvent(2L));
+        kafkaProducerService.sendBookViewEvent(viewEvent(3L));
+        kafkaProducerService.sendBatch();
+        
+        // Then
+        assertFalse(kafkaProducerService.isKafkaAvailable());
+        assertTrue(history(producers).isEmpty());
+        assertEquals(3.0, meterRegistry.get("analytics.events.spilled").counter().count());
+        assertTrue(meterRegistry.get("analytics.events.spill.bytes").gauge().value() > 0);
+        
+        // When - успешная отправка не нужна для восстановления: доступность определяет проверка
+        brokerDown.set(false);
+        when(connectivityProbe.isReachable()).thenReturn(false, true);
+        kafkaProducerService.probeKafka();
+        kafkaProducerService.sendBatch();
+        assertTrue(history(producers).isEmpty());
+        kafkaProducerService.sendBookViewEvent(viewEvent(4L));
+        kafkaProducerService.probeKafka();
+        kafkaProducerService.sendBatch();
+        
+        // Then - сначала события из журнала, затем новое
+        assertTrue(kafkaProducerService.isKafkaAvailable());
+        assertEquals(List.of("1", "2", "3", "4"), history(producers).stream().map(ProducerRecord::key).toList());
+        assertEquals(viewEvent(3L), history(producers).get(2).value());
+        assertEquals(0.0, meterRegistry.get("analytics.events.spill.bytes").gauge().value());
+        assertEquals(4.0, meterRegistry.get("analytics.events.sent").counter().count());
+    }
+    
+    @Test
+    void testStop_ShouldPersistBufferedEventsForNextStart() throws Exception {
+        // Given
+        kafkaProducerService.sendBookViewEvent(viewEvent(1L));
+        kafkaProducerService.stop();
+        @SuppressWarnings("unchecked")
+        SendResult<String, Object> sendResult = mock(SendResult.class);
+        when(kafkaTemplate.send(eq("book.views"), anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture(sendResult));
+        
+        // When - новый экземпляр с тем же каталогом журнала
+        kafkaProducerService = createService(16, EventOverflowPolicy.DROP_OLDEST);
+        kafkaProducerService.sendBatch();
+        
+        // Then
+        assertEquals(List.of("1"), sentKeys(1));
+    }
+    
+    private KafkaProducerService createService(int bufferCapacity, EventOverflowPolicy policy) {
+        return createService(kafkaTemplate, bufferCapacity, policy);
+    }
+    
+    private KafkaProducerService createService(KafkaTemplate<String, Object> template, int bufferCapacity,
+                                               EventOverflowPolicy policy) {
+        meterRegistry = new SimpleMeterRegistry();
+        return new KafkaProducerService(template, new RestTemplateConfig().objectMapper(), meterRegistry,
+                connectivityProbe, bufferCapacity, policy, 100, 1, tempDir.resolve("spill").toString(),
+                64 * 1024, 1024 * 1024);
+    }
+    
+    private BookViewEvent viewEvent(long bookId) {
+        return BookViewEvent.builder()
+                .eventId("view-" + bookId)
+                .eventType("BOOK_VIEW")
+                .timestamp(LocalDateTime.of(2025, 1, 1, 12, 0))
+                .bookId(bookId)
+                .bookTitle("Book " + bookId)
+                .build();
+    }
+    
+    private static List<ProducerRecord<String, Object>> history(List<MockProducer<String, Object>> producers) {
+        return producers.stream().flatMap(producer -> producer.history().stream()).toList();
+    }
+    
+    private List<String> sentKeys(int expectedSends) {
+        ArgumentCaptor<String> keys = ArgumentCaptor.forClass(String.class);
+        verify(kafkaTemplate, times(expectedSends)).send(eq("book.views"), keys.capture(), any());
+        return keys.getAllValues();
     }
 }
@@ -5,8 +5,11 @@ import online.ityura.springdigitallibrary.model.Role;
 import online.ityura.springdigitallibrary.model.User;
 import online.ityura.springdigitallibrary.repository.PasswordResetTokenRepository;
 import online.ityura.springdigitallibrary.repository.UserRepository;
+import online.ityura.springdigitallibrary.security.CustomUserDetailsService;
+import online.ityura.springdigitallibrary.security.TokenRevocationList;
 import online.ityura.springdigitallibrary.service.EmailService;
 import online.ityura.springdigitallibrary.service.PasswordResetService;
+import online.ityura.springdigitallibrary.service.RefreshTokenService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -40,6 +43,15 @@ class PasswordResetServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
     
+    @Mock
+    private CustomUserDetailsService customUserDetailsService;
+    
+    @Mock
+    private TokenRevocationList tokenRevocationList;
+    
+    @Mock
+    private RefreshTokenService refreshTokenService;
+    
     @InjectMocks
     private PasswordResetService passwordResetService;
     
@@ -119,6 +131,9 @@ class PasswordResetServiceTest {
         assertTrue(testToken.getUsed());
         verify(passwordEncoder).encode(newPassword);
         verify(userRepository).save(testUser);
+        verify(customUserDetailsService).evict(testUser.getEmail());
+        verify(tokenRevocationList).revoke(testUser.getId());
+        verify(refreshTokenService).revokeAllForUser(testUser.getId());
         verify(tokenRepository).save(testToken);
     }
     
@@ -0,0 +1,72 @@
+package online.ityura.springdigitallibrary.unit.service;
+
+import online.ityura.springdigitallibrary.repository.BookRepository;
+import online.ityura.springdigitallibrary.service.BookCatalogCacheService;
+import online.ityura.springdigitallibrary.service.RatingAggregateReconciler;
+import online.ityura.springdigitallibrary.service.RatingAggregator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RatingAggregateReconcilerTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private BookCatalogCacheService bookCatalogCacheService;
+
+    @Mock
+    private RatingAggregator ratingAggregator;
+
+    @InjectMocks
+    private RatingAggregateReconciler reconciler;
+
+    @BeforeEach
+    void setUp() {
+        when(ratingAggregator.withDeltasFlushed(any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+    }
+
+    @Test
+    void testReconcile_NoDrift_ShouldNotUpdateBooks() {
+        // Given
+        when(bookRepository.findBookIdsWithStaleRatingAggregates()).thenReturn(List.of());
+
+        // When
+        int fixed = reconciler.reconcile();
+
+        // Then
+        assertEquals(0, fixed);
+        verify(bookRepository, never()).recalculateRatingAggregates(anyCollection());
+        verifyNoInteractions(bookCatalogCacheService);
+    }
+
+    @Test
+    void testReconcile_StaleBooks_ShouldRecalculateOnlyThemAndInvalidateCache() {
+        // Given
+        List<Long> stale = List.of(3L, 7L);
+        when(bookRepository.findBookIdsWithStaleRatingAggregates()).thenReturn(stale);
+        when(bookRepository.recalculateRatingAggregates(stale)).thenReturn(2);
+
+        // When
+        int fixed = reconciler.reconcile();
+
+        // Then
+        assertEquals(2, fixed);
+        verify(bookRepository).recalculateRatingAggregates(stale);
+        verify(bookCatalogCacheService).invalidateBook(3L, "ratingAvg", "ratingCount");
+        verify(bookCatalogCacheService).invalidateBook(7L, "ratingAvg", "ratingCount");
+    }
+}
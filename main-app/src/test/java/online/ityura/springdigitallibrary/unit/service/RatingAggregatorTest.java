@@ -0,0 +1,217 @@
+package online.ityura.springdigitallibrary.unit.service;
+
+import online.ityura.springdigitallibrary.model.Author;
+import online.ityura.springdigitallibrary.model.Book;
+import online.ityura.springdigitallibrary.repository.BookRepository;
+import online.ityura.springdigitallibrary.repository.projection.BookRatingTotals;
+import online.ityura.springdigitallibrary.service.BookCatalogCacheService;
+import online.ityura.springdigitallibrary.service.RatingAggregator;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.sql.model.MutationOperationGroup;
+import org.hibernate.sql.model.jdbc.JdbcMutationOperation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RatingAggregatorTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private BookCatalogCacheService bookCatalogCacheService;
+
+    @InjectMocks
+    private RatingAggregator ratingAggregator;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlush_ConcurrentRatings_ShouldWriteOneRowPerBookInOneBatch() throws Exception {
+        // Given - 1000 оценок "4" одной книги из 8 потоков, одна оценка другой книги и одно изменение 5 -> 3
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 1000; i++) {
+            executor.execute(() -> ratingAggregator.recordCreated(1L, (short) 4));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        ratingAggregator.recordCreated(2L, (short) 5);
+        ratingAggregator.recordChanged(2L, (short) 5, (short) 3);
+        ratingAggregator.recordChanged(3L, (short) 7, (short) 7);
+
+        // When
+        ratingAggregator.flush();
+        ratingAggregator.flush();
+
+        // Then - строки упорядочены по id книги, оценка без изменения и повторная запись ничего не пишут
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), rows.capture());
+        assertEquals(2, rows.getValue().size());
+        assertArrayEquals(new Object[]{4000L, 1000, 1000, 4000L, 1000, "{0,0,0,1000,0,0,0,0,0,0}", 1L},
+                rows.getValue().get(0));
+        assertArrayEquals(new Object[]{3L, 1, 1, 3L, 1, "{0,0,1,0,0,0,0,0,0,0}", 2L}, rows.getValue().get(1));
+        verify(bookCatalogCacheService).invalidateBook(1L, "ratingAvg", "ratingCount", "updatedAt");
+        verify(bookCatalogCacheService).invalidateBook(2L, "ratingAvg", "ratingCount", "updatedAt");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlush_DatabaseError_ShouldKeepDeltasForNextFlush() {
+        // Given
+        ratingAggregator.recordCreated(1L, (short) 4);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new QueryTimeoutException("timeout"))
+                .thenReturn(new int[]{1});
+
+        // When
+        ratingAggregator.flush();
+        ratingAggregator.recordCreated(1L, (short) 2);
+        ratingAggregator.flush();
+
+        // Then - вторая запись содержит и неудачную дельту
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), rows.capture());
+        assertArrayEquals(new Object[]{6L, 2, 2, 6L, 2, "{0,1,0,1,0,0,0,0,0,0}", 1L}, rows.getAllValues().get(1).get(0));
+        verify(bookCatalogCacheService, times(1)).invalidateBook(anyLong(), any(String[].class));
+    }
+
+    @Test
+    void testCurrentTotals_ShouldIncludePendingDeltas() {
+        // Given - в БД 2 оценки с суммой 7, в памяти ещё одна "5"
+        when(bookRepository.findRatingTotals(1L)).thenReturn(Optional.of(new BookRatingTotals(7L, 2)));
+        ratingAggregator.recordCreated(1L, (short) 5);
+
+        // When
+        BookRatingTotals totals = ratingAggregator.currentTotals(1L);
+
+        // Then
+        assertEquals(12L, totals.ratingSum());
+        assertEquals(3, totals.ratingCount());
+        assertEquals(new BigDecimal("4.00"), totals.ratingAvg());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testWithDeltasFlushed_RatingCommitDuringAction_ShouldWaitAndNotBeCountedTwice() throws Exception {
+        // Given - сверка уже записала дельты и пересчитывает агрегаты
+        CountDownLatch inAction = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<Integer> reconcile = executor.submit(() -> ratingAggregator.withDeltasFlushed(() -> {
+            inAction.countDown();
+            try {
+                assertTrue(release.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return 0;
+        }));
+        assertTrue(inAction.await(5, TimeUnit.SECONDS));
+
+        // When - транзакция оценки коммитится в это время
+        Future<?> commit = executor.submit(() -> {
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                ratingAggregator.recordCreated(1L, (short) 4);
+                TransactionSynchronizationManager.getSynchronizations().forEach(s -> s.beforeCommit(false));
+                TransactionSynchronizationManager.getSynchronizations()
+                        .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+        });
+
+        // Then - коммит ждёт окончания сверки, её пересчёт дельту не видит, а следующая запись учитывает её один раз
+        assertThrows(TimeoutException.class, () -> commit.get(200, TimeUnit.MILLISECONDS));
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+        release.countDown();
+        assertEquals(0, reconcile.get(5, TimeUnit.SECONDS));
+        commit.get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        ratingAggregator.flush();
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), rows.capture());
+        assertArrayEquals(new Object[]{4L, 1, 1, 4L, 1, "{0,0,0,1,0,0,0,0,0,0}", 1L}, rows.getValue().get(0));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlush_ConcurrentAdminBookSave_ShouldNotOverwriteRatingColumns() {
+        // Given - администратор прочитал книгу до записи дельт (агрегаты в сущности устарели)
+        ratingAggregator.recordCreated(1L, (short) 8);
+
+        // When - дельта записывается, затем правка администратора сохраняется UPDATE сущности
+        ratingAggregator.flush();
+        String adminUpdateSql = bookUpdateSql();
+
+        // Then - агрегаты пишет только UPDATE агрегатора, UPDATE сущности их не содержит
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<String> flushSql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).batchUpdate(flushSql.capture(), rows.capture());
+        assertTrue(flushSql.getValue().contains("rating_sum = rating_sum + ?"));
+        assertTrue(adminUpdateSql.contains("title"), adminUpdateSql);
+        for (String column : List.of("rating_sum", "rating_count", "rating_avg", "rating_histogram")) {
+            assertFalse(adminUpdateSql.contains(column), adminUpdateSql);
+        }
+    }
+
+    /**
+     * UPDATE, которым Hibernate сохраняет изменённую книгу (маппинг строится без подключения к БД)
+     */
+    private static String bookUpdateSql() {
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.DIALECT, PostgreSQLDialect.class.getName())
+                .applySetting(AvailableSettings.ALLOW_METADATA_ON_BOOT, false)
+                .build();
+        try (SessionFactory sessionFactory = new MetadataSources(registry)
+                .addAnnotatedClass(Book.class)
+                .addAnnotatedClass(Author.class)
+                .buildMetadata()
+                .buildSessionFactory()) {
+            AbstractEntityPersister persister = (AbstractEntityPersister) sessionFactory
+                    .unwrap(SessionFactoryImplementor.class)
+                    .getMappingMetamodel()
+                    .getEntityDescriptor(Book.class);
+            MutationOperationGroup update = persister.getUpdateCoordinator().getStaticMutationOperationGroup();
+            return ((JdbcMutationOperation) update.getSingleOperation()).getSqlString();
+        } finally {
+            StandardServiceRegistryBuilder.destroy(registry);
+        }
+    }
+}
@@ -11,6 +11,8 @@ import online.ityura.springdigitallibrary.model.User;
 import online.ityura.springdigitallibrary.repository.BookRepository;
 import online.ityura.springdigitallibrary.repository.RatingRepository;
 import online.ityura.springdigitallibrary.repository.UserRepository;
+import online.ityura.springdigitallibrary.repository.projection.BookRatingTotals;
+import online.ityura.springdigitallibrary.service.RatingAggregator;
 import online.ityura.springdigitallibrary.service.RatingService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -19,6 +21,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
@@ -41,6 +44,9 @@ class RatingServiceTest {
     @Mock
     private UserRepository userRepository;
     
+    @Mock
+    private RatingAggregator ratingAggregator;
+    
     @InjectMocks
     private RatingService ratingService;
     
@@ -97,9 +103,6 @@ class RatingServiceTest {
         when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
         when(ratingRepository.existsByBookIdAndUserId(1L, 1L)).thenReturn(false);
         when(ratingRepository.save(any(Rating.class))).thenReturn(testRating);
-        when(ratingRepository.calculateAverageRating(1L)).thenReturn(5.0);
-        when(ratingRepository.countByBookId(1L)).thenReturn(1L);
-        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
         
         // When
         RatingResponse response = ratingService.createRating(1L, 1L, createRequest);
@@ -111,13 +114,12 @@ class RatingServiceTest {
         assertEquals(testRating.getUser().getId(), response.getUserId());
         assertEquals(testRating.getValue(), response.getValue());
         
-        verify(bookRepository, times(2)).findById(1L); // Called in createRating and updateBookRating
+        verify(bookRepository).findById(1L);
         verify(userRepository).findById(1L);
         verify(ratingRepository).existsByBookIdAndUserId(1L, 1L);
         verify(ratingRepository).save(any(Rating.class));
-        verify(ratingRepository).calculateAverageRating(1L);
-        verify(ratingRepository).countByBookId(1L);
-        verify(bookRepository).save(any(Book.class));
+        verify(ratingAggregator).recordCreated(1L, (short) 5);
+        verify(bookRepository, never()).save(any(Book.class));
     }
     
     @Test
@@ -184,13 +186,9 @@ class RatingServiceTest {
                 .updatedAt(LocalDateTime.now())
                 .build();
         
-        when(ratingRepository.findByBookIdAndUserId(1L, 1L))
+        when(ratingRepository.findByBookIdAndUserIdWithLock(1L, 1L))
                 .thenReturn(Optional.of(testRating));
         when(ratingRepository.save(any(Rating.class))).thenReturn(updatedRating);
-        when(ratingRepository.calculateAverageRating(1L)).thenReturn(4.5);
-        when(ratingRepository.countByBookId(1L)).thenReturn(1L);
-        when(bookRepository.findById(1L)).thenReturn(Optional.of(testBook));
-        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
         
         // When
         RatingResponse response = ratingService.updateRating(1L, 1L, updateRequest);
@@ -199,16 +197,16 @@ class RatingServiceTest {
         assertNotNull(response);
         assertEquals(updatedRating.getValue(), response.getValue());
         
-        verify(ratingRepository).findByBookIdAndUserId(1L, 1L);
+        verify(ratingRepository).findByBookIdAndUserIdWithLock(1L, 1L);
         verify(ratingRepository).save(any(Rating.class));
-        verify(ratingRepository).calculateAverageRating(1L);
-        verify(bookRepository).save(any(Book.class));
+        // Старая оценка 5, новая 4: сумма -1, количество не меняется
+        verify(ratingAggregator).recordChanged(1L, (short) 5, (short) 4);
     }
     
     @Test
     void testUpdateRating_RatingNotFound_ShouldThrowException() {
         // Given
-        when(ratingRepository.findByBookIdAndUserId(1L, 1L))
+        when(ratingRepository.findByBookIdAndUserIdWithLock(1L, 1L))
                 .thenReturn(Optional.empty());
         
         // When & Then
@@ -222,24 +220,40 @@ class RatingServiceTest {
     }
     
     @Test
-    void testCreateRating_ShouldUpdateBookRating() {
+    void testCreateRating_ShouldRecordDeltaWithoutWritingBook() {
+        // Given
+        when(bookRepository.findById(1L)).thenReturn(Optional.of(testBook));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(ratingRepository.existsByBookIdAndUserId(1L, 1L)).thenReturn(false);
+        when(ratingRepository.save(any(Rating.class))).thenReturn(testRating);
+        
+        // When
+        RatingResponse response = ratingService.createRating(1L, 1L, createRequest);
+        
+        // Then - строка книги не читается и не пишется, агрегаты обновит RatingAggregator
+        verify(ratingAggregator).recordCreated(1L, (short) 5);
+        verify(ratingRepository, never()).calculateAverageRating(anyLong());
+        verify(ratingRepository, never()).countByBookId(anyLong());
+        verify(bookRepository, never()).save(any(Book.class));
+        assertNull(response.getBookRatingAvg());
+    }
+    
+    @Test
+    void testCreateRating_ReadYourWrites_ShouldIncludeOwnRatingInBookAggregates() {
         // Given
+        ReflectionTestUtils.setField(ratingService, "readYourWrites", true);
         when(bookRepository.findById(1L)).thenReturn(Optional.of(testBook));
         when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
         when(ratingRepository.existsByBookIdAndUserId(1L, 1L)).thenReturn(false);
         when(ratingRepository.save(any(Rating.class))).thenReturn(testRating);
-        when(ratingRepository.calculateAverageRating(1L)).thenReturn(4.75);
-        when(ratingRepository.countByBookId(1L)).thenReturn(2L);
-        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
+        // Две оценки уже учтены (БД + незаписанная дельта), своя ещё нет: она учитывается после коммита
+        when(ratingAggregator.currentTotals(1L)).thenReturn(new BookRatingTotals(7L, 2));
         
         // When
-        ratingService.createRating(1L, 1L, createRequest);
+        RatingResponse response = ratingService.createRating(1L, 1L, createRequest);
         
         // Then
-        verify(bookRepository).save(argThat(book -> 
-                book.getRatingAvg().equals(BigDecimal.valueOf(4.75).setScale(2)) &&
-                book.getRatingCount() == 2
-        ));
+        assertEquals(3, response.getBookRatingCount());
+        assertEquals(new BigDecimal("4.00"), response.getBookRatingAvg());
     }
 }
-
@@ -0,0 +1,137 @@
+package online.ityura.springdigitallibrary.unit.service;
+
+import online.ityura.springdigitallibrary.model.Role;
+import online.ityura.springdigitallibrary.model.User;
+import online.ityura.springdigitallibrary.repository.RefreshTokenRepository;
+import online.ityura.springdigitallibrary.security.JwtTokenProvider;
+import online.ityura.springdigitallibrary.security.TokenClaims;
+import online.ityura.springdigitallibrary.service.RefreshTokenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshTokenServiceTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private JwtTokenProvider jwtTokenProvider;
+
+    @InjectMocks
+    private RefreshTokenService refreshTokenService;
+
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(refreshTokenService, "refreshExpirationMillis", 86400000L);
+        testUser = User.builder()
+                .id(1L)
+                .email("test@example.com")
+                .role(Role.USER)
+                .isVerified(true)
+                .build();
+        lenient().when(jwtTokenProvider.generateRefreshToken(anyString(), anyLong(), anyString(), anyBoolean(), anyString()))
+                .thenAnswer(invocation -> "jwt-" + invocation.getArgument(4));
+    }
+
+    @Test
+    void testRotate_ActiveToken_ShouldIssueNewTokenWithoutDatabaseLookup() {
+        // Given
+        String loginToken = refreshTokenService.issue(testUser);
+
+        // When
+        String rotated = refreshTokenService.rotate(claims(loginToken));
+
+        // Then
+        assertNotEquals(loginToken, rotated);
+        assertEquals(2, refreshTokenService.size());
+        verify(refreshTokenRepository, never()).findById(anyString());
+    }
+
+    @Test
+    void testRotate_ReusedToken_ShouldRevokeWholeSession() {
+        // Given
+        String loginToken = refreshTokenService.issue(testUser);
+        String rotated = refreshTokenService.rotate(claims(loginToken));
+
+        // When - старый токен предъявлен повторно
+        RuntimeException reuse = assertThrows(RuntimeException.class,
+                () -> refreshTokenService.rotate(claims(loginToken)));
+
+        // Then - отозван и токен, выданный при ротации
+        assertEquals("Invalid refresh token", reuse.getMessage());
+        assertThrows(RuntimeException.class, () -> refreshTokenService.rotate(claims(rotated)));
+        verify(refreshTokenRepository).revokeFamily(anyString());
+    }
+
+    @Test
+    void testRevokeAllForUser_ShouldRejectAllSessions() {
+        // Given
+        String firstSession = refreshTokenService.issue(testUser);
+        String secondSession = refreshTokenService.issue(testUser);
+
+        // When
+        refreshTokenService.revokeAllForUser(testUser.getId());
+
+        // Then
+        assertThrows(RuntimeException.class, () -> refreshTokenService.rotate(claims(firstSession)));
+        assertThrows(RuntimeException.class, () -> refreshTokenService.rotate(claims(secondSession)));
+        verify(refreshTokenRepository).revokeAllByUserId(testUser.getId());
+    }
+
+    @Test
+    void testRotate_UnknownToken_ShouldThrowException() {
+        // Given
+        when(refreshTokenRepository.findById("unknown")).thenReturn(Optional.empty());
+
+        // When & Then
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> refreshTokenService.rotate(claims("jwt-unknown")));
+        assertEquals("Invalid refresh token", exception.getMessage());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlush_ShouldWritePendingChangesInOneBatch() {
+        // Given
+        String loginToken = refreshTokenService.issue(testUser);
+        refreshTokenService.rotate(claims(loginToken));
+
+        // When
+        refreshTokenService.flush();
+        refreshTokenService.flush();
+
+        // Then - два токена одним пакетом, повторный flush без изменений ничего не пишет
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), rows.capture());
+        assertEquals(2, rows.getValue().size());
+        assertTrue(rows.getValue().stream().anyMatch(row -> "ROTATED".equals(row[3])));
+        assertTrue(rows.getValue().stream().anyMatch(row -> "ACTIVE".equals(row[3])));
+    }
+
+    private TokenClaims claims(String token) {
+        Instant now = Instant.now();
+        return new TokenClaims(testUser.getEmail(), "refresh", "USER", testUser.getId(), true, now,
+                now.plusSeconds(86400), token.substring("jwt-".length()));
+    }
+}
@@ -0,0 +1,68 @@
+package online.ityura.springdigitallibrary.unit.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import online.ityura.springdigitallibrary.dto.response.CursorPageResponse;
+import online.ityura.springdigitallibrary.dto.response.ReviewResponse;
+import online.ityura.springdigitallibrary.service.ReviewPageCacheService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReviewPageCacheServiceTest {
+    
+    private SimpleMeterRegistry meterRegistry;
+    private ReviewPageCacheService cacheService;
+    private AtomicInteger loads;
+    
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cacheService = new ReviewPageCacheService(meterRegistry, 10);
+        loads = new AtomicInteger();
+    }
+    
+    @Test
+    void testGetFirstPage_RepeatedRequest_ShouldHitCache() {
+        // When
+        cacheService.getFirstPage(1L, 20, loader());
+        cacheService.getFirstPage(1L, 20, loader());
+        cacheService.getFirstPage(2L, 20, loader());
+        
+        // Then
+        assertEquals(2, loads.get());
+        assertEquals(1.0, meterRegistry.get("reviews.cache.requests").tag("result", "hit").counter().count());
+        assertEquals(2.0, meterRegistry.get("reviews.cache.size").gauge().value());
+    }
+    
+    @Test
+    void testInvalidateBook_ShouldEvictOnlyPagesOfThatBook() {
+        // Given
+        cacheService.getFirstPage(1L, 10, loader());
+        cacheService.getFirstPage(1L, 20, loader());
+        cacheService.getFirstPage(2L, 20, loader());
+        
+        // When
+        cacheService.invalidateBook(1L);
+        
+        // Then
+        assertEquals(1, cacheService.size());
+        cacheService.getFirstPage(2L, 20, loader());
+        assertEquals(3, loads.get());
+    }
+    
+    private Supplier<CursorPageResponse<ReviewResponse>> loader() {
+        return () -> {
+            loads.incrementAndGet();
+            return CursorPageResponse.<ReviewResponse>builder()
+                    .content(List.of())
+                    .size(20)
+                    .hasNext(false)
+                    .build();
+        };
+    }
+}
@@ -2,6 +2,7 @@ package online.ityura.springdigitallibrary.unit.service;
 
 import online.ityura.springdigitallibrary.dto.request.CreateReviewRequest;
 import online.ityura.springdigitallibrary.dto.request.UpdateReviewRequest;
+import online.ityura.springdigitallibrary.dto.response.CursorPageResponse;
 import online.ityura.springdigitallibrary.dto.response.ReviewResponse;
 import online.ityura.springdigitallibrary.model.Author;
 import online.ityura.springdigitallibrary.model.Book;
@@ -11,6 +12,10 @@ import online.ityura.springdigitallibrary.model.User;
 import online.ityura.springdigitallibrary.repository.BookRepository;
 import online.ityura.springdigitallibrary.repository.ReviewRepository;
 import online.ityura.springdigitallibrary.repository.UserRepository;
+import online.ityura.springdigitallibrary.repository.projection.ReviewRow;
+import online.ityura.springdigitallibrary.service.BookCatalogCacheService;
+import online.ityura.springdigitallibrary.service.ReviewCursor;
+import online.ityura.springdigitallibrary.service.ReviewPageCacheService;
 import online.ityura.springdigitallibrary.service.ReviewService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -22,12 +27,14 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -45,6 +52,12 @@ class ReviewServiceTest {
     @Mock
     private UserRepository userRepository;
     
+    @Mock
+    private BookCatalogCacheService bookCatalogCacheService;
+    
+    @Mock
+    private ReviewPageCacheService reviewPageCacheService;
+    
     @InjectMocks
     private ReviewService reviewService;
     
@@ -114,6 +127,8 @@ class ReviewServiceTest {
         verify(userRepository).findById(1L);
         verify(reviewRepository).existsByBookIdAndUserId(1L, 1L);
         verify(reviewRepository).save(any(Review.class));
+        verify(bookCatalogCacheService).invalidateBook(1L);
+        verify(reviewPageCacheService).invalidateBook(1L);
     }
     
     @Test
@@ -285,5 +300,55 @@ class ReviewServiceTest {
         
         verify(reviewRepository).findByUserIdOrderByCreatedAtDesc(1L, pageable);
     }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGetReviewsByCursor_FirstPage_ShouldLoadThroughCacheWithoutCount() {
+        // Given
+        LocalDateTime createdAt = LocalDateTime.of(2025, 12, 17, 13, 20);
+        ReviewRow newest = new ReviewRow(7L, 1L, 1L, "testuser", "Newest", createdAt.plusMinutes(1), null);
+        ReviewRow older = new ReviewRow(5L, 1L, 2L, "reader", "Older", createdAt, null);
+        when(reviewPageCacheService.getFirstPage(eq(1L), eq(2), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<CursorPageResponse<ReviewResponse>>>getArgument(2).get());
+        when(reviewRepository.findRowsByBookId(1L, PageRequest.of(0, 2)))
+                .thenReturn(new SliceImpl<>(List.of(newest, older), PageRequest.of(0, 2), true));
+        
+        // When
+        CursorPageResponse<ReviewResponse> result = reviewService.getReviewsByCursor(1L, null, 2);
+        
+        // Then - курсор указывает на последний отзыв страницы, email автора не возвращается
+        assertEquals(2, result.getContent().size());
+        assertTrue(result.getHasNext());
+        assertEquals(new ReviewCursor(createdAt, 5L), ReviewCursor.decode(result.getNextCursor()));
+        assertEquals("reader", result.getContent().get(1).getUser().getNickname());
+        assertNull(result.getContent().get(1).getUser().getEmail());
+        verify(reviewRepository, never()).countByBookId(anyLong());
+    }
+    
+    @Test
+    void testGetReviewsByCursor_NextPage_ShouldContinueAfterCursorBypassingCache() {
+        // Given
+        LocalDateTime createdAt = LocalDateTime.of(2025, 12, 17, 13, 20);
+        String cursor = new ReviewCursor(createdAt, 5L).encode();
+        when(reviewRepository.findRowsByBookIdBefore(1L, createdAt, 5L, PageRequest.of(0, 2)))
+                .thenReturn(new SliceImpl<>(List.of(), PageRequest.of(0, 2), false));
+        
+        // When
+        CursorPageResponse<ReviewResponse> result = reviewService.getReviewsByCursor(1L, cursor, 2);
+        
+        // Then
+        assertFalse(result.getHasNext());
+        assertNull(result.getNextCursor());
+        verifyNoInteractions(reviewPageCacheService);
+    }
+    
+    @Test
+    void testGetReviewsByCursor_InvalidCursor_ShouldThrowBadRequest() {
+        // When & Then
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> reviewService.getReviewsByCursor(1L, "not-a-cursor", 20));
+        
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        assertEquals("Invalid cursor", exception.getReason());
+    }
 }
-